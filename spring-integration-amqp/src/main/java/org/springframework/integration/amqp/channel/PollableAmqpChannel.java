@@ -130,7 +130,7 @@ public class PollableAmqpChannel extends AbstractAmqpChannel implements Pollable
 			if (logger.isTraceEnabled()) {
 				logger.trace("preReceive on channel '" + this + "'");
 			}
-			if (interceptorList.getInterceptors().size() > 0) {
+			if (interceptorList.getSize() > 0) {
 				interceptorStack = new ArrayDeque<ChannelInterceptor>();
 
 				if (!interceptorList.preReceive(this, interceptorStack)) {
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.integration.channel.AbstractMessageChannel;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.ExecutorChannel;
+import org.springframework.integration.channel.PartitionedChannel;
+import org.springframework.integration.channel.PriorityChannel;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.channel.RingBufferChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.test.util.TestUtils.TestApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.PollableChannel;
+import org.springframework.messaging.SubscribableChannel;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
+
+/**
+ * Throughput of {@code send()} (and {@code receive()} for pollable channels) for the
+ * standard channel types, with a number of no-op interceptors.
+ * <p>
+ * The {@code executor} channel uses a single consumer thread with a bounded queue and a
+ * caller-runs policy so that the producer cannot outrun the consumer indefinitely; the
+ * {@code partitioned} channel has 4 partitions with bounded queues, and the sender blocks
+ * when a queue is full.
+ *
+ * @since 4.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChannelBenchmarks {
+
+	@Param({ "direct", "executor", "queue", "priority", "ringBuffer", "pubsub", "partitioned" })
+	public String channelType;
+
+	@Param({ "0", "1", "4" })
+	public int interceptors;
+
+	private TestApplicationContext context;
+
+	private ThreadPoolExecutor executor;
+
+	private AbstractMessageChannel channel;
+
+	private PollableChannel pollableChannel;
+
+	private Message<String> message;
+
+	@Setup
+	public void setup() {
+		this.context = TestUtils.createTestApplicationContext();
+		this.context.refresh();
+		if ("direct".equals(this.channelType)) {
+			this.channel = new DirectChannel();
+		}
+		else if ("executor".equals(this.channelType)) {
+			this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<Runnable>(1024), new ThreadPoolExecutor.CallerRunsPolicy());
+			this.channel = new ExecutorChannel(this.executor);
+		}
+		else if ("queue".equals(this.channelType)) {
+			QueueChannel channel = new QueueChannel();
+			this.pollableChannel = channel;
+			this.channel = channel;
+		}
+		else if ("priority".equals(this.channelType)) {
+			PriorityChannel channel = new PriorityChannel();
+			this.pollableChannel = channel;
+			this.channel = channel;
+		}
+		else if ("ringBuffer".equals(this.channelType)) {
+			RingBufferChannel channel = new RingBufferChannel();
+			this.pollableChannel = channel;
+			this.channel = channel;
+		}
+		else if ("pubsub".equals(this.channelType)) {
+			this.channel = new PublishSubscribeChannel();
+		}
+		else if ("partitioned".equals(this.channelType)) {
+			PartitionedChannel channel = new PartitionedChannel(4);
+			channel.setPartitionQueueCapacity(1024);
+			this.channel = channel;
+		}
+		else {
+			throw new IllegalArgumentException("Unknown channel type: " + this.channelType);
+		}
+		List<ChannelInterceptor> interceptors = new ArrayList<ChannelInterceptor>();
+		for (int i = 0; i < this.interceptors; i++) {
+			interceptors.add(new ChannelInterceptorAdapter() {
+
+				@Override
+				public Message<?> preSend(Message<?> message, MessageChannel channel) {
+					return message;
+				}
+
+			});
+		}
+		this.channel.setInterceptors(interceptors);
+		this.channel.setBeanName(this.channelType);
+		this.channel.setBeanFactory(this.context);
+		this.channel.afterPropertiesSet();
+		if (this.channel instanceof SubscribableChannel) {
+			((SubscribableChannel) this.channel).subscribe(new ConsumingHandler());
+			if (this.channel instanceof PublishSubscribeChannel) {
+				((SubscribableChannel) this.channel).subscribe(new ConsumingHandler());
+			}
+		}
+		this.message = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+		if (this.channel instanceof PartitionedChannel) {
+			((PartitionedChannel) this.channel).destroy();
+		}
+		this.context.close();
+	}
+
+	@Benchmark
+	public Object send() {
+		boolean sent = this.channel.send(this.message);
+		if (this.pollableChannel != null) {
+			return this.pollableChannel.receive(0);
+		}
+		return sent;
+	}
+
+	private static class ConsumingHandler implements MessageHandler {
+
+		private volatile Message<?> last;
+
+		@Override
+		public void handleMessage(Message<?> message) throws MessagingException {
+			this.last = message;
+		}
+
+		@Override
+		public String toString() {
+			return "ConsumingHandler [last=" + this.last + "]";
+		}
+
+	}
+
+}
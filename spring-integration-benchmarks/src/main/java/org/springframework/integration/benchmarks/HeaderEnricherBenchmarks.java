@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.test.util.TestUtils.TestApplicationContext;
+import org.springframework.integration.transformer.HeaderEnricher;
+import org.springframework.integration.transformer.support.ExpressionEvaluatingHeaderValueMessageProcessor;
+import org.springframework.integration.transformer.support.HeaderValueMessageProcessor;
+import org.springframework.integration.transformer.support.StaticHeaderValueMessageProcessor;
+import org.springframework.messaging.Message;
+
+/**
+ * Header enrichment with static and expression values, and the underlying
+ * {@link MessageBuilder} operations.
+ *
+ * @since 4.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderEnricherBenchmarks {
+
+	private TestApplicationContext context;
+
+	private HeaderEnricher staticEnricher;
+
+	private HeaderEnricher expressionEnricher;
+
+	private Message<String> message;
+
+	@Setup
+	public void setup() throws Exception {
+		this.context = TestUtils.createTestApplicationContext();
+		this.context.refresh();
+		Map<String, HeaderValueMessageProcessor<?>> headers = new HashMap<String, HeaderValueMessageProcessor<?>>();
+		headers.put("foo", new StaticHeaderValueMessageProcessor<String>("bar"));
+		headers.put("baz", new StaticHeaderValueMessageProcessor<Integer>(42));
+		this.staticEnricher = new HeaderEnricher(headers);
+		this.staticEnricher.setBeanFactory(this.context);
+		this.staticEnricher.afterPropertiesSet();
+
+		headers = new HashMap<String, HeaderValueMessageProcessor<?>>();
+		headers.put("foo", new ExpressionEvaluatingHeaderValueMessageProcessor<String>("payload.toUpperCase()",
+				String.class));
+		headers.put("baz", new ExpressionEvaluatingHeaderValueMessageProcessor<Integer>("payload.length()",
+				Integer.class));
+		this.expressionEnricher = new HeaderEnricher(headers);
+		this.expressionEnricher.setBeanFactory(this.context);
+		this.expressionEnricher.afterPropertiesSet();
+
+		this.message = MessageBuilder.withPayload("qux").setHeader("existing", "header").build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Object staticHeaders() {
+		return this.staticEnricher.transform(this.message);
+	}
+
+	@Benchmark
+	public Object expressionHeaders() {
+		return this.expressionEnricher.transform(this.message);
+	}
+
+	@Benchmark
+	public Object builderWithPayload() {
+		return MessageBuilder.withPayload("qux").setHeader("foo", "bar").build();
+	}
+
+	@Benchmark
+	public Object builderFromMessage() {
+		return MessageBuilder.fromMessage(this.message).setHeader("foo", "bar").build();
+	}
+
+}
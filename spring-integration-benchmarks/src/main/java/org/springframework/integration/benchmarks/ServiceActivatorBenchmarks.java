@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
+import org.springframework.integration.handler.ServiceActivatingHandler;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.test.util.TestUtils.TestApplicationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.PollableChannel;
+
+/**
+ * Invocation of a service activator via a method reference (reflective invocation by
+ * {@code MessagingMethodInvokerHelper}) and via a SpEL expression.
+ *
+ * @since 4.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServiceActivatorBenchmarks {
+
+	@Param({ "method", "expression" })
+	public String invocation;
+
+	private TestApplicationContext context;
+
+	private ServiceActivatingHandler handler;
+
+	private PollableChannel outputChannel;
+
+	private Message<String> message;
+
+	@Setup
+	public void setup() {
+		this.context = TestUtils.createTestApplicationContext();
+		this.context.refresh();
+		if ("method".equals(this.invocation)) {
+			this.handler = new ServiceActivatingHandler(new Service(), "upperCase");
+		}
+		else if ("expression".equals(this.invocation)) {
+			this.handler = new ServiceActivatingHandler(new ExpressionEvaluatingMessageProcessor<String>(
+					new SpelExpressionParser().parseExpression("payload.toUpperCase()")));
+		}
+		else {
+			throw new IllegalArgumentException("Unknown invocation: " + this.invocation);
+		}
+		this.outputChannel = new QueueChannel();
+		this.handler.setOutputChannel(this.outputChannel);
+		this.handler.setBeanFactory(this.context);
+		this.handler.afterPropertiesSet();
+		this.message = MessageBuilder.withPayload("foo").build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Object invoke() {
+		this.handler.handleMessage(this.message);
+		return this.outputChannel.receive(0);
+	}
+
+	public static class Service {
+
+		public String upperCase(String in) {
+			return in.toUpperCase();
+		}
+
+	}
+
+}
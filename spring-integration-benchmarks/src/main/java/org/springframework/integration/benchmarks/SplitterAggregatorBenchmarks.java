@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.DefaultAggregatingMessageGroupProcessor;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.splitter.DefaultMessageSplitter;
+import org.springframework.integration.store.SimpleMessageStore;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.test.util.TestUtils.TestApplicationContext;
+import org.springframework.messaging.Message;
+
+/**
+ * A splitter &rarr; aggregator round trip over a {@link SimpleMessageStore}; each
+ * invocation splits a list of {@code groupSize} elements and receives the aggregated
+ * result.
+ *
+ * @since 4.2
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SplitterAggregatorBenchmarks {
+
+	@Param({ "10", "100", "1000" })
+	public int groupSize;
+
+	private TestApplicationContext context;
+
+	private DefaultMessageSplitter splitter;
+
+	private QueueChannel outputChannel;
+
+	private Message<List<Integer>> message;
+
+	@Setup
+	public void setup() {
+		this.context = TestUtils.createTestApplicationContext();
+		this.context.refresh();
+
+		this.outputChannel = new QueueChannel();
+		AggregatingMessageHandler aggregator = new AggregatingMessageHandler(
+				new DefaultAggregatingMessageGroupProcessor(), new SimpleMessageStore());
+		aggregator.setExpireGroupsUponCompletion(true);
+		aggregator.setOutputChannel(this.outputChannel);
+		aggregator.setBeanFactory(this.context);
+		aggregator.afterPropertiesSet();
+
+		DirectChannel splitChannel = new DirectChannel();
+		splitChannel.subscribe(aggregator);
+		this.splitter = new DefaultMessageSplitter();
+		this.splitter.setOutputChannel(splitChannel);
+		this.splitter.setBeanFactory(this.context);
+		this.splitter.afterPropertiesSet();
+
+		List<Integer> payload = new ArrayList<Integer>(this.groupSize);
+		for (int i = 0; i < this.groupSize; i++) {
+			payload.add(i);
+		}
+		this.message = MessageBuilder.withPayload(payload).build();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public Object roundTrip() {
+		this.splitter.handleMessage(this.message);
+		return this.outputChannel.receive(0);
+	}
+
+}
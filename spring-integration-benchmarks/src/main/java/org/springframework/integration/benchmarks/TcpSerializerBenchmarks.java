@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.integration.ip.tcp.serializer.AbstractByteArraySerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayCrLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLengthHeaderSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayLfSerializer;
+import org.springframework.integration.ip.tcp.serializer.ByteArrayStxEtxSerializer;
+
+/**
+ * Encoding and decoding of a payload with the TCP (de)serializers.
+ *
+ * @since 4.2
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TcpSerializerBenchmarks {
+
+	@Param({ "crlf", "lf", "lengthHeader", "stxEtx" })
+	public String serializerType;
+
+	@Param({ "64", "4096" })
+	public int payloadSize;
+
+	private AbstractByteArraySerializer serializer;
+
+	private byte[] payload;
+
+	private byte[] encoded;
+
+	private ByteArrayOutputStream outputStream;
+
+	@Setup
+	public void setup() throws IOException {
+		if ("crlf".equals(this.serializerType)) {
+			this.serializer = new ByteArrayCrLfSerializer();
+		}
+		else if ("lf".equals(this.serializerType)) {
+			this.serializer = new ByteArrayLfSerializer();
+		}
+		else if ("lengthHeader".equals(this.serializerType)) {
+			this.serializer = new ByteArrayLengthHeaderSerializer();
+		}
+		else if ("stxEtx".equals(this.serializerType)) {
+			this.serializer = new ByteArrayStxEtxSerializer();
+		}
+		else {
+			throw new IllegalArgumentException("Unknown serializer type: " + this.serializerType);
+		}
+		this.serializer.setMaxMessageSize(this.payloadSize + 16);
+		this.payload = new byte[this.payloadSize];
+		Arrays.fill(this.payload, (byte) 'x');
+		this.outputStream = new ByteArrayOutputStream(this.payloadSize + 16);
+		this.serializer.serialize(this.payload, this.outputStream);
+		this.encoded = this.outputStream.toByteArray();
+	}
+
+	@Benchmark
+	public Object encode() throws IOException {
+		this.outputStream.reset();
+		this.serializer.serialize(this.payload, this.outputStream);
+		return this.outputStream;
+	}
+
+	@Benchmark
+	public Object decode() throws IOException {
+		return this.serializer.deserialize(new ByteArrayInputStream(this.encoded));
+	}
+
+}
@@ -21,6 +21,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.locks.Lock;
 
@@ -94,6 +95,8 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 
 	private final Map<UUID, ScheduledFuture<?>> expireGroupScheduledFutures = new HashMap<UUID, ScheduledFuture<?>>();
 
+	private final Map<Object, CorrelationState> correlationStates = new ConcurrentHashMap<Object, CorrelationState>();
+
 	protected volatile MessageGroupStore messageStore;
 
 	private final MessageGroupProcessor outputProcessor;
@@ -386,29 +389,42 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 				}
 			}
 			MessageGroup messageGroup = messageStore.getMessageGroup(correlationKey);
-			if (this.sequenceAware) {
-				messageGroup = new SequenceAwareMessageGroup(messageGroup);
+			CorrelationState correlationState = null;
+			boolean canAdd = false;
+			if (!messageGroup.isComplete()) {
+				correlationState = obtainCorrelationState(correlationKey, messageGroup);
+				canAdd = this.sequenceAware ? correlationState.canAdd(message) : messageGroup.canAdd(message);
 			}
 
-			if (!messageGroup.isComplete() && messageGroup.canAdd(message)) {
+			if (canAdd) {
 				if (logger.isTraceEnabled()) {
 					logger.trace("Adding message to group [ " + messageGroup + "]");
 				}
 				messageGroup = this.store(correlationKey, message);
+				correlationState.added(message, messageGroup);
 
-				if (releaseStrategy.canRelease(messageGroup)) {
-					Collection<Message<?>> completedMessages = null;
-					try {
-						completedMessages = this.completeGroup(message, correlationKey, messageGroup);
+				CorrelationState previousState = correlationState.bind(messageGroup);
+				try {
+					if (releaseStrategy.canRelease(messageGroup)) {
+						Collection<Message<?>> completedMessages = null;
+						try {
+							completedMessages = this.completeGroup(message, correlationKey, messageGroup);
+						}
+						finally {
+							// Always clean up even if there was an exception
+							// processing messages
+							this.afterRelease(messageGroup, completedMessages);
+							if (completedMessages == null || !correlationState.released(completedMessages)) {
+								this.correlationStates.remove(correlationKey);
+							}
+						}
 					}
-					finally {
-						// Always clean up even if there was an exception
-						// processing messages
-						this.afterRelease(messageGroup, completedMessages);
+					else {
+						scheduleGroupToForceComplete(messageGroup);
 					}
 				}
-				else {
-					scheduleGroupToForceComplete(messageGroup);
+				finally {
+					correlationState.unbind(previousState);
 				}
 			}
 			else {
@@ -420,6 +436,26 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 		}
 	}
 
+	/**
+	 * Return the state of the group that is maintained by this handler, (re)building it
+	 * from the group if there is none, or if the group has been changed elsewhere.
+	 * Partial sequences are retained by the state when they are released by a
+	 * {@link ResequencingMessageGroupProcessor}, so that it does not need to sort the
+	 * group on each release.
+	 */
+	private CorrelationState obtainCorrelationState(Object correlationKey, MessageGroup group) {
+		CorrelationState state = this.correlationStates.get(correlationKey);
+		if (state == null || !state.isCurrent(group)) {
+			boolean releasePartialSequences = this.releasePartialSequences
+					|| (this.releaseStrategy instanceof SequenceSizeReleaseStrategy
+							&& ((SequenceSizeReleaseStrategy) this.releaseStrategy).isReleasePartialSequences());
+			state = new CorrelationState(group,
+					releasePartialSequences && this.outputProcessor instanceof ResequencingMessageGroupProcessor);
+			this.correlationStates.put(correlationKey, state);
+		}
+		return state;
+	}
+
 	private void scheduleGroupToForceComplete(final MessageGroup messageGroup) {
 		final Long groupTimeout = this.obtainGroupTimeout(messageGroup);
 		/*
@@ -572,6 +608,7 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 			}
 			finally {
 				try {
+					this.correlationStates.remove(correlationKey);
 					if (removeGroup) {
 						this.remove(group);
 					}
@@ -589,6 +626,7 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 
 	void remove(MessageGroup group) {
 		Object correlationKey = group.getGroupId();
+		this.correlationStates.remove(correlationKey);
 		messageStore.removeMessageGroup(correlationKey);
 	}
 
@@ -668,8 +706,15 @@ public abstract class AbstractCorrelatingMessageHandler extends AbstractMessageP
 		for (ScheduledFuture<?> future : expireGroupScheduledFutures.values()) {
 			future.cancel(true);
 		}
+		this.correlationStates.clear();
 	}
 
+	/**
+	 * A {@link SimpleMessageGroup} that rejects messages superseded by its members.
+	 * @deprecated since 4.2; no longer used by the framework, which now maintains this
+	 * state incrementally in a {@link CorrelationState}.
+	 */
+	@Deprecated
 	protected static class SequenceAwareMessageGroup extends SimpleMessageGroup {
 
 		public SequenceAwareMessageGroup(MessageGroup messageGroup) {
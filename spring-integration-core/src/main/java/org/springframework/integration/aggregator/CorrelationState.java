@@ -0,0 +1,344 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.messaging.Message;
+
+/**
+ * The state of a message group that is maintained by an
+ * {@link AbstractCorrelatingMessageHandler} as messages are added to (and released
+ * from) the group, so that release decisions do not need to retrieve and scan the
+ * group's messages: a running count, the earliest message timestamp, the sequence
+ * numbers present in the group and the lowest of those (the next sequence number
+ * that can be released). When partial sequences are released by a resequencer, the
+ * state also retains the messages by sequence number, so that the next contiguous run
+ * can be emitted without sorting the group.
+ * <p>
+ * The state is a cache; it is rebuilt from the group when the handler has no state for
+ * the group or when the group has been changed by something other than the handler
+ * (for example, after a restart when using a persistent message group store).
+ * <p>
+ * While the handler consults its release strategy and releases the group, release
+ * strategies and message group processors invoked on the same thread can obtain the
+ * state using {@link #of(MessageGroup)}.
+ *
+ * @since 4.2
+ *
+ */
+public class CorrelationState {
+
+	private static final ThreadLocal<CorrelationState> currentState = new ThreadLocal<CorrelationState>();
+
+	private final boolean retainMessages;
+
+	private final BitSet sequenceNumbers = new BitSet();
+
+	private final Map<Integer, Message<?>> messagesBySequenceNumber;
+
+	private volatile MessageGroup boundGroup;
+
+	private long groupTimestamp;
+
+	private int lastReleasedSequenceNumber;
+
+	private int count;
+
+	private int sequenceSize;
+
+	private long earliestTimestamp;
+
+	private boolean earliestTimestampStale;
+
+	private int lowestSequenceNumberHint;
+
+	private int unsequenced;
+
+	private boolean duplicates;
+
+	CorrelationState(MessageGroup group, boolean retainMessages) {
+		this.retainMessages = retainMessages;
+		this.messagesBySequenceNumber = retainMessages ? new HashMap<Integer, Message<?>>() : null;
+		rebuild(group);
+	}
+
+	/**
+	 * Return the state of the group, if it is the group currently being released by an
+	 * {@link AbstractCorrelatingMessageHandler} on this thread.
+	 * @param group the group.
+	 * @return the state, or null if there is no state for the group.
+	 */
+	public static CorrelationState of(MessageGroup group) {
+		CorrelationState state = currentState.get();
+		return state != null && state.boundGroup == group ? state : null;
+	}
+
+	/**
+	 * @return the number of messages in the group.
+	 */
+	public int getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return the sequence size of the first message added to the group (0 if the group
+	 * is empty or the message has no sequence size).
+	 */
+	public int getSequenceSize() {
+		return this.sequenceSize;
+	}
+
+	/**
+	 * @return the earliest timestamp of the messages in the group or
+	 * {@link Long#MAX_VALUE} if the group is empty.
+	 */
+	public long getEarliestTimestamp() {
+		if (this.earliestTimestampStale) {
+			this.earliestTimestamp = Long.MAX_VALUE;
+			for (Message<?> message : this.messagesBySequenceNumber.values()) {
+				updateEarliestTimestamp(message);
+			}
+			this.earliestTimestampStale = false;
+		}
+		return this.earliestTimestamp;
+	}
+
+	/**
+	 * @param sequenceNumber the sequence number.
+	 * @return true if the group contains a message with this sequence number.
+	 */
+	public boolean containsSequenceNumber(int sequenceNumber) {
+		return sequenceNumber > 0 && this.sequenceNumbers.get(sequenceNumber);
+	}
+
+	/**
+	 * @return the lowest sequence number in the group; 0 if the group is empty or
+	 * contains a message without a sequence number.
+	 */
+	public int getMinSequenceNumber() {
+		if (this.unsequenced > 0) {
+			return 0;
+		}
+		int min = this.sequenceNumbers.nextSetBit(this.lowestSequenceNumberHint);
+		if (min < 0) {
+			return 0;
+		}
+		this.lowestSequenceNumberHint = min;
+		return min;
+	}
+
+	/**
+	 * @return the sequence number of the last message released from the group.
+	 */
+	public int getLastReleasedSequenceNumber() {
+		return this.lastReleasedSequenceNumber;
+	}
+
+	/**
+	 * Return the message with the lowest sequence number in the group, followed by
+	 * the messages with the subsequent sequence numbers, up to the first missing one.
+	 * @return the messages in sequence order; null if the messages are not retained by
+	 * this state, or if the group contains messages that cannot be ordered (those
+	 * without a sequence number or with duplicate sequence numbers).
+	 */
+	public List<Message<?>> getContiguousMessages() {
+		if (!this.retainMessages || this.unsequenced > 0 || this.duplicates) {
+			return null;
+		}
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		int min = getMinSequenceNumber();
+		if (min > 0) {
+			int end = this.sequenceNumbers.nextClearBit(min);
+			for (int i = min; i < end; i++) {
+				messages.add(this.messagesBySequenceNumber.get(i));
+			}
+		}
+		return messages;
+	}
+
+	/**
+	 * @param group the group.
+	 * @return true if the state reflects the group, as far as can be determined without
+	 * retrieving its messages.
+	 */
+	boolean isCurrent(MessageGroup group) {
+		return group.getTimestamp() == this.groupTimestamp
+				&& group.getLastReleasedMessageSequenceNumber() == this.lastReleasedSequenceNumber
+				&& group.size() == this.count;
+	}
+
+	/**
+	 * Determine whether messages have been added to the group that supersede the given
+	 * message based on its sequence number (the rules previously implemented by the
+	 * deprecated {@link AbstractCorrelatingMessageHandler.SequenceAwareMessageGroup}).
+	 * @param message the message.
+	 * @return true if the message can be added.
+	 */
+	boolean canAdd(Message<?> message) {
+		if (this.count == 0) {
+			return true;
+		}
+		int sequenceNumber = sequenceNumberOf(message);
+		if (sequenceNumber > 0) {
+			return sequenceSizeOf(message) == this.sequenceSize && !this.sequenceNumbers.get(sequenceNumber);
+		}
+		return true;
+	}
+
+	/**
+	 * Update the state after the message has been added to the group.
+	 * @param message the message.
+	 * @param group the group returned by the store, after the message was added.
+	 */
+	void added(Message<?> message, MessageGroup group) {
+		if (group.size() == this.count + 1) {
+			add(message);
+			this.groupTimestamp = group.getTimestamp();
+			this.lastReleasedSequenceNumber = group.getLastReleasedMessageSequenceNumber();
+		}
+		else {
+			rebuild(group);
+		}
+	}
+
+	/**
+	 * Make this state available from {@link #of(MessageGroup)} for the group, on the
+	 * current thread.
+	 * @param group the group.
+	 * @return the state previously bound to the thread, if any.
+	 */
+	CorrelationState bind(MessageGroup group) {
+		CorrelationState previous = currentState.get();
+		this.boundGroup = group;
+		currentState.set(this);
+		return previous;
+	}
+
+	/**
+	 * Remove the binding made by {@link #bind(MessageGroup)}.
+	 * @param previous the state previously bound to the thread, if any.
+	 */
+	void unbind(CorrelationState previous) {
+		this.boundGroup = null;
+		if (previous != null) {
+			currentState.set(previous);
+		}
+		else {
+			currentState.remove();
+		}
+	}
+
+	/**
+	 * Update the state after the messages have been released and removed from the
+	 * group.
+	 * @param messages the released messages.
+	 * @return false if the state cannot be updated and should be discarded.
+	 */
+	boolean released(Collection<Message<?>> messages) {
+		if (!this.retainMessages || this.unsequenced > 0 || this.duplicates) {
+			return false;
+		}
+		int lastReleased = this.lastReleasedSequenceNumber;
+		for (Message<?> message : messages) {
+			int sequenceNumber = sequenceNumberOf(message);
+			if (this.messagesBySequenceNumber.remove(sequenceNumber) == null) {
+				return false;
+			}
+			this.sequenceNumbers.clear(sequenceNumber);
+			this.count--;
+			lastReleased = Math.max(lastReleased, sequenceNumber);
+			Long timestamp = message.getHeaders().getTimestamp();
+			if (timestamp != null && timestamp == this.earliestTimestamp) {
+				this.earliestTimestampStale = true;
+			}
+		}
+		this.lastReleasedSequenceNumber = lastReleased;
+		return true;
+	}
+
+	private void rebuild(MessageGroup group) {
+		this.sequenceNumbers.clear();
+		if (this.retainMessages) {
+			this.messagesBySequenceNumber.clear();
+		}
+		this.groupTimestamp = group.getTimestamp();
+		this.lastReleasedSequenceNumber = group.getLastReleasedMessageSequenceNumber();
+		this.count = 0;
+		this.sequenceSize = 0;
+		this.earliestTimestamp = Long.MAX_VALUE;
+		this.earliestTimestampStale = false;
+		this.lowestSequenceNumberHint = 1;
+		this.unsequenced = 0;
+		this.duplicates = false;
+		if (group.size() > 0) {
+			for (Message<?> message : group.getMessages()) {
+				add(message);
+			}
+		}
+	}
+
+	private void add(Message<?> message) {
+		if (this.count++ == 0) {
+			this.sequenceSize = sequenceSizeOf(message);
+		}
+		updateEarliestTimestamp(message);
+		int sequenceNumber = sequenceNumberOf(message);
+		if (sequenceNumber <= 0) {
+			this.unsequenced++;
+		}
+		else if (this.sequenceNumbers.get(sequenceNumber)) {
+			this.duplicates = true;
+		}
+		else {
+			this.sequenceNumbers.set(sequenceNumber);
+			if (sequenceNumber < this.lowestSequenceNumberHint) {
+				this.lowestSequenceNumberHint = sequenceNumber;
+			}
+			if (this.retainMessages) {
+				this.messagesBySequenceNumber.put(sequenceNumber, message);
+			}
+		}
+	}
+
+	private void updateEarliestTimestamp(Message<?> message) {
+		Long timestamp = message.getHeaders().getTimestamp();
+		if (timestamp != null && timestamp < this.earliestTimestamp) {
+			this.earliestTimestamp = timestamp;
+		}
+	}
+
+	private static int sequenceNumberOf(Message<?> message) {
+		Number sequenceNumber = message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER,
+				Number.class);
+		return sequenceNumber != null ? sequenceNumber.intValue() : 0;
+	}
+
+	private static int sequenceSizeOf(Message<?> message) {
+		Number sequenceSize = message.getHeaders().get(IntegrationMessageHeaderAccessor.SEQUENCE_SIZE,
+				Number.class);
+		return sequenceSize != null ? sequenceSize.intValue() : 0;
+	}
+
+}
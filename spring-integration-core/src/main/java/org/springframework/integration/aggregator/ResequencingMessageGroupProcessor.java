@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -36,6 +36,13 @@ public class ResequencingMessageGroupProcessor implements MessageGroupProcessor
 	private final Comparator<Message<?>> comparator = new SequenceNumberComparator();
 
 	public Object processMessageGroup(MessageGroup group) {
+		CorrelationState state = CorrelationState.of(group);
+		if (state != null) {
+			List<Message<?>> partialSequence = state.getContiguousMessages();
+			if (partialSequence != null) {
+				return partialSequence.isEmpty() ? null : partialSequence;
+			}
+		}
 		Collection<Message<?>> messages = group.getMessages();
 
 		if (messages.size() > 0) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -69,7 +69,7 @@ public class ResequencingMessageHandler extends AbstractCorrelatingMessageHandle
 	@Override
 	protected void afterRelease(MessageGroup messageGroup, Collection<Message<?>> completedMessages, boolean timeout) {
 
-		int size = messageGroup.getMessages().size();
+		int size = messageGroup.size();
 		int sequenceSize = 0;
 		Message<?> message = messageGroup.getOne();
 		if (message != null){
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,6 @@
 
 package org.springframework.integration.aggregator;
 
-import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 
@@ -64,21 +63,36 @@ public class SequenceSizeReleaseStrategy implements ReleaseStrategy {
 		this.releasePartialSequences = releasePartialSequences;
 	}
 
+	boolean isReleasePartialSequences() {
+		return this.releasePartialSequences;
+	}
+
+	/**
+	 * When the group carries a {@link CorrelationState} (it was provided by an
+	 * {@link AbstractCorrelatingMessageHandler}), the decision is made without
+	 * retrieving the group's messages.
+	 */
 	@Override
 	public boolean canRelease(MessageGroup messageGroup) {
 
 		boolean canRelease = false;
 
-		Collection<Message<?>> messages = messageGroup.getMessages();
+		int size = messageGroup.size();
 
-		if (releasePartialSequences && !messages.isEmpty()) {
+		if (releasePartialSequences && size > 0) {
 
 			if (logger.isTraceEnabled()) {
 				logger.trace("Considering partial release of group [" + messageGroup + "]");
 			}
-			Message<?> minMessage = Collections.min(messages, this.comparator);
-
-			int nextSequenceNumber = new IntegrationMessageHeaderAccessor(minMessage).getSequenceNumber();
+			int nextSequenceNumber;
+			CorrelationState state = CorrelationState.of(messageGroup);
+			if (state != null) {
+				nextSequenceNumber = state.getMinSequenceNumber();
+			}
+			else {
+				Message<?> minMessage = Collections.min(messageGroup.getMessages(), this.comparator);
+				nextSequenceNumber = new IntegrationMessageHeaderAccessor(minMessage).getSequenceNumber();
+			}
 			int lastReleasedMessageSequence = messageGroup.getLastReleasedMessageSequenceNumber();
 
 			if (nextSequenceNumber - lastReleasedMessageSequence == 1){
@@ -86,8 +100,6 @@ public class SequenceSizeReleaseStrategy implements ReleaseStrategy {
 			}
 		}
 		else {
-			int size = messages.size();
-
 			if (size == 0){
 				canRelease = true;
 			}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  * 
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -59,19 +59,23 @@ public class TimeoutCountSequenceSizeReleaseStrategy implements ReleaseStrategy
 	}
 
 	public boolean canRelease(MessageGroup messages) {
-		long elapsedTime = System.currentTimeMillis() - findEarliestTimestamp(messages);
-		return messages.isComplete() || messages.getMessages().size() >= threshold || elapsedTime > timeout;
+		if (messages.isComplete() || messages.size() >= threshold) {
+			return true;
+		}
+		CorrelationState state = CorrelationState.of(messages);
+		long earliestTimestamp = state != null ? state.getEarliestTimestamp() : findEarliestTimestamp(messages);
+		return System.currentTimeMillis() - earliestTimestamp > timeout;
 	}
 
 	/**
 	 * @param messages the message group
-	 * @return the earliest timestamp or Long.MAX_VALUE
+	 * @return the earliest timestamp or Long.MAX_VALUE (messages without a timestamp are ignored)
 	 */
 	private long findEarliestTimestamp(MessageGroup messages) {
 		long result = Long.MAX_VALUE;
 		for (Message<?> message : messages.getMessages()) {
-			long timestamp = message.getHeaders().getTimestamp();
-			if (timestamp < result) {
+			Long timestamp = message.getHeaders().getTimestamp();
+			if (timestamp != null && timestamp < result) {
 				result = timestamp;
 			}
 		}
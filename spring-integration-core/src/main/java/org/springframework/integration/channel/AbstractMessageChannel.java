@@ -16,7 +16,6 @@
 
 package org.springframework.integration.channel;
 
-import java.util.ArrayDeque;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Deque;
@@ -37,6 +36,7 @@ import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.history.TrackableComponent;
 import org.springframework.integration.support.converter.DefaultDatatypeChannelMessageConverter;
 import org.springframework.integration.support.management.ConfigurableMetricsAware;
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.IntegrationManagedResource;
 import org.springframework.integration.support.management.MetricsContext;
 import org.springframework.integration.support.management.Statistics;
@@ -83,8 +83,13 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 
 	private volatile AbstractMessageChannelMetrics channelMetrics = new DefaultMessageChannelMetrics();
 
+	private final Object pipelineMonitor = new Object();
+
+	private volatile SendPipeline sendPipeline;
+
 	public AbstractMessageChannel() {
 		this.interceptors = new ChannelInterceptorList(logger);
+		rebuildSendPipeline();
 	}
 
 	@Override
@@ -95,6 +100,7 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 	@Override
 	public void setShouldTrack(boolean shouldTrack) {
 		this.shouldTrack = shouldTrack;
+		rebuildSendPipeline();
 	}
 
 	@Override
@@ -103,6 +109,7 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 		if (!countsEnabled) {
 			this.statsEnabled = false;
 		}
+		rebuildSendPipeline();
 	}
 
 	@Override
@@ -117,6 +124,7 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 		}
 		this.statsEnabled = statsEnabled;
 		this.channelMetrics.setFullStatsEnabled(statsEnabled);
+		rebuildSendPipeline();
 	}
 
 	@Override
@@ -150,6 +158,7 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 	public void setDatatypes(Class<?>... datatypes) {
 		this.datatypes = (datatypes != null && datatypes.length > 0)
 				? datatypes : new Class<?>[0];
+		rebuildSendPipeline();
 	}
 
 	/**
@@ -330,6 +339,36 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 		return this.channelMetrics.getErrorRate();
 	}
 
+	@Override
+	public double getP50SendDuration() {
+		return this.channelMetrics.getSendDurationPercentile(50);
+	}
+
+	@Override
+	public double getP99SendDuration() {
+		return this.channelMetrics.getSendDurationPercentile(99);
+	}
+
+	@Override
+	public double getP999SendDuration() {
+		return this.channelMetrics.getSendDurationPercentile(99.9);
+	}
+
+	@Override
+	public double getSendDurationPercentile(double percentile) {
+		return this.channelMetrics.getSendDurationPercentile(percentile);
+	}
+
+	@Override
+	public HistogramSnapshot getSendDurationHistogram() {
+		return this.channelMetrics.getSendDurationHistogram();
+	}
+
+	@Override
+	public HistogramSnapshot getSendDurationIntervalHistogram() {
+		return this.channelMetrics.getSendDurationIntervalHistogram();
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		super.onInit();
@@ -398,30 +437,49 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 	public final boolean send(Message<?> message, long timeout) {
 		Assert.notNull(message, "message must not be null");
 		Assert.notNull(message.getPayload(), "message payload must not be null");
-		if (this.shouldTrack) {
+		SendPipeline pipeline = getSendPipeline();
+		if (pipeline.direct && !logger.isDebugEnabled()) {
+			try {
+				return this.doSend(message, timeout);
+			}
+			catch (Exception e) {
+				throw wrapSendException(message, e);
+			}
+		}
+		return send(message, timeout, pipeline);
+	}
+
+	private boolean send(Message<?> message, long timeout, SendPipeline pipeline) {
+		if (pipeline.track) {
 			message = MessageHistory.write(message, this, this.getMessageBuilderFactory());
 		}
 
-		Deque<ChannelInterceptor> interceptorStack = null;
+		ChannelInterceptor[] interceptors = pipeline.interceptors;
+		int preSendInvoked = 0;
 		boolean sent = false;
 		boolean metricsProcessed = false;
 		MetricsContext metrics = null;
-		boolean countsEnabled = this.countsEnabled;
-		ChannelInterceptorList interceptors = this.interceptors;
+		boolean countsEnabled = pipeline.countsEnabled;
 		AbstractMessageChannelMetrics channelMetrics = this.channelMetrics;
 		try {
-			if (this.datatypes.length > 0) {
-				message = this.convertPayloadIfNecessary(message);
+			if (pipeline.datatypes.length > 0) {
+				message = this.convertPayloadIfNecessary(message, pipeline.datatypes);
 			}
 			if (logger.isDebugEnabled()) {
 				logger.debug("preSend on channel '" + this + "', message: " + message);
 			}
-			if (interceptors.getInterceptors().size() > 0) {
-				interceptorStack = new ArrayDeque<ChannelInterceptor>();
-				message = interceptors.preSend(message, this, interceptorStack);
-				if (message == null) {
+			for (ChannelInterceptor interceptor : interceptors) {
+				Message<?> intercepted = interceptor.preSend(message, this);
+				if (intercepted == null) {
+					if (logger.isDebugEnabled()) {
+						logger.debug(interceptor.getClass().getSimpleName()
+								+ " returned null from preSend, i.e. precluding the send.");
+					}
+					triggerAfterSendCompletion(null, false, null, interceptors, preSendInvoked);
 					return false;
 				}
+				message = intercepted;
+				preSendInvoked++;
 			}
 			if (countsEnabled) {
 				metrics = channelMetrics.beforeSend();
@@ -434,9 +492,11 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 			if (logger.isDebugEnabled()) {
 				logger.debug("postSend (sent=" + sent + ") on channel '" + this + "', message: " + message);
 			}
-			if (interceptorStack != null) {
-				interceptors.postSend(message, this, sent);
-				interceptors.afterSendCompletion(message, this, sent, null, interceptorStack);
+			if (interceptors.length > 0) {
+				for (ChannelInterceptor interceptor : interceptors) {
+					interceptor.postSend(message, this, sent);
+				}
+				triggerAfterSendCompletion(message, sent, null, interceptors, preSendInvoked);
 			}
 			return sent;
 		}
@@ -444,27 +504,68 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 			if (countsEnabled && !metricsProcessed) {
 				channelMetrics.afterSend(metrics, false);
 			}
-			if (interceptorStack != null) {
-				interceptors.afterSendCompletion(message, this, sent, e, interceptorStack);
+			triggerAfterSendCompletion(message, sent, e, interceptors, preSendInvoked);
+			throw wrapSendException(message, e);
+		}
+	}
+
+	/**
+	 * Invoke {@code afterSendCompletion} on the first {@code count} interceptors (those
+	 * whose {@code preSend} completed), in reverse order.
+	 */
+	private void triggerAfterSendCompletion(Message<?> message, boolean sent, Exception ex,
+			ChannelInterceptor[] interceptors, int count) {
+		for (int i = count - 1; i >= 0; i--) {
+			ChannelInterceptor interceptor = interceptors[i];
+			try {
+				interceptor.afterSendCompletion(message, this, sent, ex);
 			}
-			if (e instanceof MessagingException) {
-				throw (MessagingException) e;
+			catch (Exception ex2) {
+				logger.error("Exception from afterSendCompletion in " + interceptor, ex2);
 			}
-			throw new MessageDeliveryException(message,
-					"failed to send Message to channel '" + this.getComponentName() + "'", e);
 		}
 	}
 
-	private Message<?> convertPayloadIfNecessary(Message<?> message) {
+	private MessagingException wrapSendException(Message<?> message, Exception e) {
+		if (e instanceof MessagingException) {
+			return (MessagingException) e;
+		}
+		return new MessageDeliveryException(message,
+				"failed to send Message to channel '" + this.getComponentName() + "'", e);
+	}
+
+	/**
+	 * Return the current send pipeline, rebuilding it if the interceptors have changed
+	 * since it was built (interceptors may be added to the {@link ChannelInterceptorList}
+	 * directly by subclasses).
+	 */
+	private SendPipeline getSendPipeline() {
+		SendPipeline pipeline = this.sendPipeline;
+		if (pipeline.interceptors != this.interceptors.getSnapshot()) {
+			pipeline = rebuildSendPipeline();
+		}
+		return pipeline;
+	}
+
+	private SendPipeline rebuildSendPipeline() {
+		synchronized (this.pipelineMonitor) {
+			SendPipeline pipeline = new SendPipeline(this.interceptors.getSnapshot(), this.datatypes,
+					this.shouldTrack, this.countsEnabled);
+			this.sendPipeline = pipeline;
+			return pipeline;
+		}
+	}
+
+	private Message<?> convertPayloadIfNecessary(Message<?> message, Class<?>[] datatypes) {
 		// first pass checks if the payload type already matches any of the datatypes
-		for (Class<?> datatype : this.datatypes) {
+		for (Class<?> datatype : datatypes) {
 			if (datatype.isAssignableFrom(message.getPayload().getClass())) {
 				return message;
 			}
 		}
 		if (this.messageConverter != null) {
 			// second pass applies conversion if possible, attempting datatypes in order
-			for (Class<?> datatype : this.datatypes) {
+			for (Class<?> datatype : datatypes) {
 				Object converted = this.messageConverter.fromMessage(message, datatype);
 				if (converted != null) {
 					if (converted instanceof Message) {
@@ -481,7 +582,7 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 		}
 		throw new MessageDeliveryException(message, "Channel '" + this.getComponentName() +
 				"' expected one of the following datataypes [" +
-				StringUtils.arrayToCommaDelimitedString(this.datatypes) +
+				StringUtils.arrayToCommaDelimitedString(datatypes) +
 				"], but received [" + message.getPayload().getClass() + "]");
 	}
 
@@ -499,15 +600,52 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 	protected abstract boolean doSend(Message<?> message, long timeout);
 
 
+	/**
+	 * An immutable snapshot of the configuration that affects sending: the interceptors,
+	 * datatypes, history tracking and metrics. Rebuilt whenever any of them changes so
+	 * that {@link #send(Message, long)} reads a single field and, when nothing is
+	 * configured, calls {@link #doSend(Message, long)} directly without allocating.
+	 */
+	private static final class SendPipeline {
+
+		private final ChannelInterceptor[] interceptors;
+
+		private final Class<?>[] datatypes;
+
+		private final boolean track;
+
+		private final boolean countsEnabled;
+
+		private final boolean direct;
+
+		private SendPipeline(ChannelInterceptor[] interceptors, Class<?>[] datatypes, boolean track,
+				boolean countsEnabled) {
+			this.interceptors = interceptors;
+			this.datatypes = datatypes;
+			this.track = track;
+			this.countsEnabled = countsEnabled;
+			this.direct = interceptors.length == 0 && datatypes.length == 0 && !track && !countsEnabled;
+		}
+
+	}
+
 	/**
 	 * A convenience wrapper class for the list of ChannelInterceptors.
 	 */
 	protected static class ChannelInterceptorList {
 
+		private static final ChannelInterceptor[] NO_INTERCEPTORS = new ChannelInterceptor[0];
+
 		private final Log logger;
 
 		private final List<ChannelInterceptor> interceptors = new CopyOnWriteArrayList<ChannelInterceptor>();
 
+		/*
+		 * An immutable snapshot of the interceptors, replaced whenever the list changes;
+		 * used by the send pipeline and to avoid an allocation when testing for emptiness.
+		 */
+		private volatile ChannelInterceptor[] snapshot = NO_INTERCEPTORS;
+
 		public ChannelInterceptorList(Log logger) {
 			this.logger = logger;
 		}
@@ -515,16 +653,43 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 		public boolean set(List<ChannelInterceptor> interceptors) {
 			synchronized (this.interceptors) {
 				this.interceptors.clear();
-				return this.interceptors.addAll(interceptors);
+				boolean changed = this.interceptors.addAll(interceptors);
+				refreshSnapshot();
+				return changed;
 			}
 		}
 
 		public boolean add(ChannelInterceptor interceptor) {
-			return this.interceptors.add(interceptor);
+			synchronized (this.interceptors) {
+				boolean added = this.interceptors.add(interceptor);
+				refreshSnapshot();
+				return added;
+			}
 		}
 
 		public void add(int index, ChannelInterceptor interceptor) {
-			this.interceptors.add(index, interceptor);
+			synchronized (this.interceptors) {
+				this.interceptors.add(index, interceptor);
+				refreshSnapshot();
+			}
+		}
+
+		private void refreshSnapshot() {
+			this.snapshot = this.interceptors.isEmpty()
+					? NO_INTERCEPTORS
+					: this.interceptors.toArray(new ChannelInterceptor[this.interceptors.size()]);
+		}
+
+		/**
+		 * @return the number of interceptors.
+		 * @since 4.2
+		 */
+		public int getSize() {
+			return this.snapshot.length;
+		}
+
+		ChannelInterceptor[] getSnapshot() {
+			return this.snapshot;
 		}
 
 		public Message<?> preSend(Message<?> message, MessageChannel channel,
@@ -610,11 +775,19 @@ public abstract class AbstractMessageChannel extends IntegrationObjectSupport
 		}
 
 		public boolean remove(ChannelInterceptor interceptor) {
-			return this.interceptors.remove(interceptor);
+			synchronized (this.interceptors) {
+				boolean removed = this.interceptors.remove(interceptor);
+				refreshSnapshot();
+				return removed;
+			}
 		}
 
 		public ChannelInterceptor remove(int index) {
-			return this.interceptors.remove(index);
+			synchronized (this.interceptors) {
+				ChannelInterceptor removed = this.interceptors.remove(index);
+				refreshSnapshot();
+				return removed;
+			}
 		}
 
 	}
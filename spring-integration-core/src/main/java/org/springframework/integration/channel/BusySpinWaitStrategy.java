@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+/**
+ * A {@link WaitStrategy} that retries immediately; this gives the lowest latency but
+ * consumes a CPU core per waiting thread, so it should only be used when the number of
+ * waiting threads is less than the number of available cores.
+ *
+ * @since 4.2
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+	@Override
+	public void idle(int attempt) {
+	}
+
+}
@@ -25,6 +25,7 @@ import org.springframework.integration.channel.management.DefaultMessageChannelM
 import org.springframework.integration.channel.management.MessageChannelMetrics;
 import org.springframework.integration.support.context.NamedComponent;
 import org.springframework.integration.support.management.ConfigurableMetricsAware;
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.IntegrationManagedResource;
 import org.springframework.integration.support.management.Statistics;
 import org.springframework.messaging.Message;
@@ -184,6 +185,36 @@ public class NullChannel implements PollableChannel, MessageChannelMetrics,
 		return this.channelMetrics.getErrorRate();
 	}
 
+	@Override
+	public double getP50SendDuration() {
+		return this.channelMetrics.getSendDurationPercentile(50);
+	}
+
+	@Override
+	public double getP99SendDuration() {
+		return this.channelMetrics.getSendDurationPercentile(99);
+	}
+
+	@Override
+	public double getP999SendDuration() {
+		return this.channelMetrics.getSendDurationPercentile(99.9);
+	}
+
+	@Override
+	public double getSendDurationPercentile(double percentile) {
+		return this.channelMetrics.getSendDurationPercentile(percentile);
+	}
+
+	@Override
+	public HistogramSnapshot getSendDurationHistogram() {
+		return this.channelMetrics.getSendDurationHistogram();
+	}
+
+	@Override
+	public HistogramSnapshot getSendDurationIntervalHistogram() {
+		return this.channelMetrics.getSendDurationIntervalHistogram();
+	}
+
 	@Override
 	public boolean send(Message<?> message) {
 		if (logger.isDebugEnabled()) {
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link WaitStrategy} that spins, then yields, and then parks the thread for a
+ * (short) period between attempts; the default for a {@link RingBufferChannel}. This
+ * strategy uses little CPU when the channel is idle, at the cost of latency when a
+ * thread has been parked.
+ *
+ * @since 4.2
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+	private static final int DEFAULT_SPIN_TRIES = 100;
+
+	private static final int DEFAULT_YIELD_TRIES = 100;
+
+	private static final long DEFAULT_PARK_NANOS = 100000;
+
+	private final int spinTries;
+
+	private final int yieldTries;
+
+	private final long parkNanos;
+
+	/**
+	 * Construct an instance that spins for 100 attempts, yields for 100 attempts and
+	 * then parks for 100 microseconds between attempts.
+	 */
+	public ParkingWaitStrategy() {
+		this(DEFAULT_SPIN_TRIES, DEFAULT_YIELD_TRIES, DEFAULT_PARK_NANOS);
+	}
+
+	/**
+	 * @param spinTries the number of attempts before yielding.
+	 * @param yieldTries the number of attempts (after spinning) before parking.
+	 * @param parkNanos the time to park between subsequent attempts.
+	 */
+	public ParkingWaitStrategy(int spinTries, int yieldTries, long parkNanos) {
+		this.spinTries = spinTries;
+		this.yieldTries = yieldTries;
+		this.parkNanos = parkNanos;
+	}
+
+	@Override
+	public void idle(int attempt) {
+		if (attempt < this.spinTries) {
+			return;
+		}
+		if (attempt < this.spinTries + this.yieldTries) {
+			Thread.yield();
+		}
+		else {
+			LockSupport.parkNanos(this.parkNanos);
+		}
+	}
+
+}
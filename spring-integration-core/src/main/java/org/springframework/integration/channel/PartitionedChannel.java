@@ -0,0 +1,259 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.channel.management.PartitionedChannelManagement;
+import org.springframework.integration.context.IntegrationProperties;
+import org.springframework.integration.dispatcher.LoadBalancingStrategy;
+import org.springframework.integration.dispatcher.PartitionedDispatcher;
+import org.springframework.integration.dispatcher.RoundRobinLoadBalancingStrategy;
+import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
+import org.springframework.integration.util.Function;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A subscribable channel that dispatches each message on one of a fixed number of
+ * single-threaded partitions, selected by hashing a key derived from the message (see
+ * {@link PartitionedDispatcher}). Messages with the same key are handled in order;
+ * messages with different keys are handled concurrently.
+ * <p>
+ * The key is the {@code correlationId} header by default (or, when it is absent, the
+ * message id, so that such messages are distributed across all partitions). Set a
+ * {@link #setPartitionKeyHeader(String) header name}, a
+ * {@link #setPartitionKeyExpression(Expression) SpEL expression} or a
+ * {@link #setPartitionKeyFunction(Function) function} to use a different key.
+ * <p>
+ * As with the {@link ExecutorChannel}, a transactional context is not shared between
+ * the sender and the handler.
+ *
+ * @since 4.2
+ */
+public class PartitionedChannel extends AbstractSubscribableChannel implements PartitionedChannelManagement,
+		DisposableBean {
+
+	private final PartitionedDispatcher dispatcher;
+
+	private volatile Function<Message<?>, Object> partitionKeyFunction = new DefaultPartitionKeyFunction();
+
+	private volatile boolean failover = true;
+
+	private volatile Integer maxSubscribers;
+
+	private volatile boolean threadFactorySet;
+
+	/**
+	 * Create a channel with the provided number of partitions and a round-robin load
+	 * balancing strategy (within each partition).
+	 * @param partitionCount the number of partitions.
+	 */
+	public PartitionedChannel(int partitionCount) {
+		this(partitionCount, new RoundRobinLoadBalancingStrategy());
+	}
+
+	/**
+	 * Create a channel with the provided number of partitions and load balancing
+	 * strategy (within each partition).
+	 * @param partitionCount the number of partitions.
+	 * @param loadBalancingStrategy the load balancing strategy; may be null.
+	 */
+	public PartitionedChannel(int partitionCount, LoadBalancingStrategy loadBalancingStrategy) {
+		this.dispatcher = new PartitionedDispatcher(partitionCount, new Function<Message<?>, Object>() {
+
+			@Override
+			public Object apply(Message<?> message) {
+				return PartitionedChannel.this.partitionKeyFunction.apply(message);
+			}
+
+		});
+		if (loadBalancingStrategy != null) {
+			this.dispatcher.setLoadBalancingStrategy(loadBalancingStrategy);
+		}
+	}
+
+	/**
+	 * Use the value of the named header as the partition key.
+	 * @param headerName the header name.
+	 */
+	public void setPartitionKeyHeader(final String headerName) {
+		Assert.hasText(headerName, "'headerName' must not be empty");
+		this.partitionKeyFunction = new Function<Message<?>, Object>() {
+
+			@Override
+			public Object apply(Message<?> message) {
+				return message.getHeaders().get(headerName);
+			}
+
+		};
+	}
+
+	/**
+	 * Use the result of evaluating the expression against the message as the partition
+	 * key.
+	 * @param partitionKeyExpression the expression.
+	 */
+	public void setPartitionKeyExpression(final Expression partitionKeyExpression) {
+		Assert.notNull(partitionKeyExpression, "'partitionKeyExpression' must not be null");
+		this.partitionKeyFunction = new Function<Message<?>, Object>() {
+
+			private volatile EvaluationContext evaluationContext;
+
+			@Override
+			public Object apply(Message<?> message) {
+				if (this.evaluationContext == null) {
+					this.evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+				}
+				return partitionKeyExpression.getValue(this.evaluationContext, message);
+			}
+
+		};
+	}
+
+	/**
+	 * Use the result of applying the function to the message as the partition key.
+	 * @param partitionKeyFunction the function.
+	 */
+	public void setPartitionKeyFunction(Function<Message<?>, Object> partitionKeyFunction) {
+		Assert.notNull(partitionKeyFunction, "'partitionKeyFunction' must not be null");
+		this.partitionKeyFunction = partitionKeyFunction;
+	}
+
+	/**
+	 * Specify whether the channel's dispatcher should have failover enabled.
+	 * By default, it will. Set this value to 'false' to disable it.
+	 * @param failover The failover boolean.
+	 */
+	public void setFailover(boolean failover) {
+		this.failover = failover;
+		this.dispatcher.setFailover(failover);
+	}
+
+	/**
+	 * Specify the maximum number of subscribers supported by the
+	 * channel's dispatcher.
+	 * @param maxSubscribers The maximum number of subscribers allowed.
+	 */
+	public void setMaxSubscribers(int maxSubscribers) {
+		this.maxSubscribers = maxSubscribers;
+		this.dispatcher.setMaxSubscribers(maxSubscribers);
+	}
+
+	/**
+	 * Set the capacity of each partition's queue; default unbounded.
+	 * @param capacity the capacity.
+	 * @see #setRejectedExecutionHandler(RejectedExecutionHandler)
+	 */
+	public void setPartitionQueueCapacity(int capacity) {
+		this.dispatcher.setPartitionQueueCapacity(capacity);
+	}
+
+	/**
+	 * Set the policy applied when a partition's queue is full; by default, the sender
+	 * blocks until there is room ({@link org.springframework.integration.util.CallerBlocksPolicy}).
+	 * @param rejectedExecutionHandler the handler.
+	 */
+	public void setRejectedExecutionHandler(RejectedExecutionHandler rejectedExecutionHandler) {
+		this.dispatcher.setRejectedExecutionHandler(rejectedExecutionHandler);
+	}
+
+	/**
+	 * Set the thread factory for the partition threads; by default, threads are named
+	 * after the channel ({@code channelName-n}).
+	 * @param threadFactory the thread factory.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		this.dispatcher.setThreadFactory(threadFactory);
+		this.threadFactorySet = true;
+	}
+
+	@Override
+	protected PartitionedDispatcher getDispatcher() {
+		return this.dispatcher;
+	}
+
+	@Override
+	public int getPartitionCount() {
+		return this.dispatcher.getPartitionCount();
+	}
+
+	@Override
+	public int[] getPartitionQueueSizes() {
+		return this.dispatcher.getPartitionQueueSizes();
+	}
+
+	@Override
+	public int getQueueSize() {
+		int size = 0;
+		for (int partitionSize : this.dispatcher.getPartitionQueueSizes()) {
+			size += partitionSize;
+		}
+		return size;
+	}
+
+	@Override
+	public int getMaxPartitionQueueSize() {
+		int max = 0;
+		for (int partitionSize : this.dispatcher.getPartitionQueueSizes()) {
+			max = Math.max(max, partitionSize);
+		}
+		return max;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		if (this.getBeanFactory() != null) {
+			this.dispatcher.setErrorHandler(new MessagePublishingErrorHandler(
+					new BeanFactoryChannelResolver(this.getBeanFactory())));
+		}
+		this.dispatcher.setFailover(this.failover);
+		if (this.maxSubscribers == null) {
+			this.maxSubscribers = this.getIntegrationProperty(IntegrationProperties.CHANNELS_MAX_UNICAST_SUBSCRIBERS,
+					Integer.class);
+		}
+		this.dispatcher.setMaxSubscribers(this.maxSubscribers);
+		if (!this.threadFactorySet && this.getComponentName() != null) {
+			this.dispatcher.setThreadFactory(new CustomizableThreadFactory(this.getComponentName() + "-"));
+		}
+	}
+
+	@Override
+	public void destroy() {
+		this.dispatcher.shutdown();
+	}
+
+
+	private static final class DefaultPartitionKeyFunction implements Function<Message<?>, Object> {
+
+		@Override
+		public Object apply(Message<?> message) {
+			Object correlationId = message.getHeaders().get(IntegrationMessageHeaderAccessor.CORRELATION_ID);
+			return correlationId != null ? correlationId : message.getHeaders().getId();
+		}
+
+	}
+
+}
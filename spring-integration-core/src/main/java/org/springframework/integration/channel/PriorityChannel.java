@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.channel;
 
 import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -102,6 +103,19 @@ public class PriorityChannel extends QueueChannel {
 		return message;
 	}
 
+	@Override
+	protected void doDrainTo(List<Message<?>> messages, int maxMessages) {
+		int start = messages.size();
+		super.doDrainTo(messages, maxMessages);
+		int drained = messages.size() - start;
+		for (int i = start; i < messages.size(); i++) {
+			messages.set(i, ((MessageWrapper) messages.get(i)).getRootMessage());
+		}
+		if (drained > 0) {
+			this.upperBound.release(drained);
+		}
+	}
+
 	private static class SequenceFallbackComparator implements Comparator<Message<?>> {
 
 		private final Comparator<Message<?>> targetComparator;
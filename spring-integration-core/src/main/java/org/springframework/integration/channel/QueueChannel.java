@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,7 @@
 package org.springframework.integration.channel;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.BlockingQueue;
@@ -145,6 +146,56 @@ public class QueueChannel extends AbstractPollableChannel implements QueueChanne
 		}
 	}
 
+	@Override
+	public int drainTo(Collection<? super Message<?>> collection, int maxMessages) {
+		Assert.notNull(collection, "'collection' must not be null");
+		if (maxMessages <= 0) {
+			return 0;
+		}
+		if (getInterceptors().getSize() > 0) {
+			int count = 0;
+			Message<?> message;
+			while (count < maxMessages && (message = receive(0)) != null) {
+				collection.add(message);
+				count++;
+			}
+			return count;
+		}
+		List<Message<?>> drained = new ArrayList<Message<?>>(Math.min(maxMessages, 64));
+		doDrainTo(drained, maxMessages);
+		if (isCountsEnabled()) {
+			for (int i = 0; i < drained.size(); i++) {
+				getMetrics().afterReceive();
+			}
+		}
+		if (drained.size() > 0 && logger.isDebugEnabled()) {
+			logger.debug("drained " + drained.size() + " message(s) from channel '" + this + "'");
+		}
+		collection.addAll(drained);
+		return drained.size();
+	}
+
+	/**
+	 * Remove at most the given number of messages from the queue, without waiting.
+	 * Subclasses that wrap messages, or track capacity, in {@link #doSend(Message, long)}
+	 * and {@link #doReceive(long)} must override this method accordingly.
+	 *
+	 * @param messages The list to which the messages will be added.
+	 * @param maxMessages The maximum number of messages.
+	 * @since 4.2
+	 */
+	protected void doDrainTo(List<Message<?>> messages, int maxMessages) {
+		if (this.queue instanceof BlockingQueue) {
+			((BlockingQueue<Message<?>>) this.queue).drainTo(messages, maxMessages);
+		}
+		else {
+			Message<?> message;
+			while (messages.size() < maxMessages && (message = this.queue.poll()) != null) {
+				messages.add(message);
+			}
+		}
+	}
+
 	@Override
 	public List<Message<?>> clear() {
 		List<Message<?>> clearedMessages = new ArrayList<Message<?>>();
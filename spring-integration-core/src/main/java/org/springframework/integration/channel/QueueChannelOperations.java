@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
  */
 package org.springframework.integration.channel;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.integration.core.MessageSelector;
@@ -54,4 +55,16 @@ public interface QueueChannelOperations {
 	 */
 	int getRemainingCapacity();
 
+	/**
+	 * Remove at most the given number of {@link Message Messages} from this channel,
+	 * without waiting, and add them to the collection. The messages are received with
+	 * the same semantics as {@code receive(0)} (channel interceptors and statistics).
+	 *
+	 * @param collection The collection to which the messages will be added.
+	 * @param maxMessages The maximum number of messages to remove.
+	 * @return The number of messages removed.
+	 * @since 4.2
+	 */
+	int drainTo(Collection<? super Message<?>> collection, int maxMessages);
+
 }
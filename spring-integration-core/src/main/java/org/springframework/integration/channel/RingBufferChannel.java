@@ -0,0 +1,307 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.integration.channel.management.QueueChannelManagement;
+import org.springframework.integration.core.MessageSelector;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A bounded {@link org.springframework.messaging.PollableChannel} backed by a
+ * pre-allocated ring buffer rather than a {@link java.util.concurrent.BlockingQueue}.
+ * No object is allocated per message and threads are not blocked on locks; when a send
+ * cannot proceed (the buffer is full) or a receive cannot proceed (the buffer is
+ * empty), the thread waits using the configured {@link WaitStrategy} until the
+ * timeout expires. The {@link ParkingWaitStrategy} is used by default;
+ * {@link YieldingWaitStrategy} and {@link BusySpinWaitStrategy} reduce latency at the
+ * cost of CPU usage.
+ * <p>
+ * By default, any number of threads may send to the channel. If only one thread will
+ * ever send to the channel, the {@code singleProducer} constructor argument avoids a
+ * compare-and-swap per send. Any number of threads may receive from the channel.
+ * <p>
+ * The capacity is rounded up to a power of 2.
+ *
+ * @since 4.2
+ */
+public class RingBufferChannel extends AbstractPollableChannel implements QueueChannelOperations,
+		QueueChannelManagement {
+
+	private static final int DEFAULT_CAPACITY = 1024;
+
+	private static final long MAX_TIMEOUT = TimeUnit.DAYS.toMillis(365);
+
+	private final int capacity;
+
+	private final int mask;
+
+	private final AtomicReferenceArray<Message<?>> buffer;
+
+	/*
+	 * Each slot has a sequence number; a slot at position p may be written when its
+	 * sequence is p and read when its sequence is p + 1.
+	 */
+	private final AtomicLongArray sequences;
+
+	private final AtomicLong tail = new AtomicLong();
+
+	private final AtomicLong head = new AtomicLong();
+
+	private final boolean singleProducer;
+
+	private final WaitStrategy waitStrategy;
+
+	/**
+	 * Create a multi-producer channel with a capacity of 1024 and a
+	 * {@link ParkingWaitStrategy}.
+	 */
+	public RingBufferChannel() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Create a multi-producer channel with the specified capacity (rounded up to a power
+	 * of 2) and a {@link ParkingWaitStrategy}.
+	 *
+	 * @param capacity The capacity.
+	 */
+	public RingBufferChannel(int capacity) {
+		this(capacity, false, new ParkingWaitStrategy());
+	}
+
+	/**
+	 * Create a channel with the specified capacity (rounded up to a power of 2),
+	 * producer mode and wait strategy.
+	 *
+	 * @param capacity The capacity.
+	 * @param singleProducer true if only one thread will ever send to this channel.
+	 * @param waitStrategy The wait strategy.
+	 */
+	public RingBufferChannel(int capacity, boolean singleProducer, WaitStrategy waitStrategy) {
+		Assert.isTrue(capacity > 0 && capacity <= 1 << 30, "'capacity' must be between 1 and 2^30");
+		Assert.notNull(waitStrategy, "'waitStrategy' must not be null");
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = size;
+		this.mask = size - 1;
+		this.buffer = new AtomicReferenceArray<Message<?>>(size);
+		this.sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			this.sequences.set(i, i);
+		}
+		this.singleProducer = singleProducer;
+		this.waitStrategy = waitStrategy;
+	}
+
+	/**
+	 * @return the capacity (a power of 2).
+	 */
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	@Override
+	protected boolean doSend(Message<?> message, long timeout) {
+		Assert.notNull(message, "'message' must not be null");
+		if (offer(message)) {
+			return true;
+		}
+		if (timeout == 0) {
+			return false;
+		}
+		long deadline = deadline(timeout);
+		int attempt = 0;
+		while (true) {
+			this.waitStrategy.idle(attempt++);
+			if (offer(message)) {
+				return true;
+			}
+			if (Thread.currentThread().isInterrupted() || (deadline != 0 && System.nanoTime() - deadline >= 0)) {
+				return false;
+			}
+		}
+	}
+
+	@Override
+	protected Message<?> doReceive(long timeout) {
+		Message<?> message = poll();
+		if (message != null || timeout == 0) {
+			return message;
+		}
+		long deadline = deadline(timeout);
+		int attempt = 0;
+		while (true) {
+			this.waitStrategy.idle(attempt++);
+			message = poll();
+			if (message != null) {
+				return message;
+			}
+			if (Thread.currentThread().isInterrupted() || (deadline != 0 && System.nanoTime() - deadline >= 0)) {
+				return null;
+			}
+		}
+	}
+
+	private static long deadline(long timeout) {
+		if (timeout < 0 || timeout >= MAX_TIMEOUT) {
+			return 0;
+		}
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+		return deadline == 0 ? 1 : deadline;
+	}
+
+	private boolean offer(Message<?> message) {
+		long position = this.tail.get();
+		while (true) {
+			int index = (int) position & this.mask;
+			long difference = this.sequences.get(index) - position;
+			if (difference == 0) {
+				if (this.singleProducer) {
+					this.tail.lazySet(position + 1);
+					break;
+				}
+				else if (this.tail.compareAndSet(position, position + 1)) {
+					break;
+				}
+				position = this.tail.get();
+			}
+			else if (difference < 0) {
+				return false;
+			}
+			else {
+				position = this.tail.get();
+			}
+		}
+		int index = (int) position & this.mask;
+		this.buffer.lazySet(index, message);
+		this.sequences.lazySet(index, position + 1);
+		return true;
+	}
+
+	private Message<?> poll() {
+		long position = this.head.get();
+		while (true) {
+			int index = (int) position & this.mask;
+			long difference = this.sequences.get(index) - (position + 1);
+			if (difference == 0) {
+				if (this.head.compareAndSet(position, position + 1)) {
+					Message<?> message = this.buffer.get(index);
+					this.buffer.lazySet(index, null);
+					this.sequences.lazySet(index, position + this.capacity);
+					return message;
+				}
+				position = this.head.get();
+			}
+			else if (difference < 0) {
+				return null;
+			}
+			else {
+				position = this.head.get();
+			}
+		}
+	}
+
+	@Override
+	public int drainTo(Collection<? super Message<?>> collection, int maxMessages) {
+		Assert.notNull(collection, "'collection' must not be null");
+		int count = 0;
+		if (getInterceptors().getSize() > 0) {
+			Message<?> message;
+			while (count < maxMessages && (message = receive(0)) != null) {
+				collection.add(message);
+				count++;
+			}
+			return count;
+		}
+		boolean countsEnabled = isCountsEnabled();
+		Message<?> message;
+		while (count < maxMessages && (message = poll()) != null) {
+			collection.add(message);
+			if (countsEnabled) {
+				getMetrics().afterReceive();
+			}
+			count++;
+		}
+		return count;
+	}
+
+	@Override
+	public List<Message<?>> clear() {
+		List<Message<?>> clearedMessages = new ArrayList<Message<?>>();
+		Message<?> message;
+		while ((message = poll()) != null) {
+			clearedMessages.add(message);
+		}
+		return clearedMessages;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * Messages cannot be removed from the middle of the ring buffer, so the retained
+	 * messages are removed and sent again; messages sent concurrently by other threads
+	 * may therefore be interleaved with the retained messages (and, if concurrent sends
+	 * fill the buffer, a retained message that cannot be sent again is included in the
+	 * returned list).
+	 */
+	@Override
+	public List<Message<?>> purge(MessageSelector selector) {
+		if (selector == null) {
+			return this.clear();
+		}
+		List<Message<?>> purgedMessages = new ArrayList<Message<?>>();
+		int size = getQueueSize();
+		for (int i = 0; i < size; i++) {
+			Message<?> message = poll();
+			if (message == null) {
+				break;
+			}
+			if (selector.accept(message)) {
+				if (!offer(message)) {
+					purgedMessages.add(message);
+				}
+			}
+			else {
+				purgedMessages.add(message);
+			}
+		}
+		return purgedMessages;
+	}
+
+	@Override
+	public int getQueueSize() {
+		long size = this.tail.get() - this.head.get();
+		return (int) Math.max(0, Math.min(size, this.capacity));
+	}
+
+	@Override
+	public int getRemainingCapacity() {
+		return this.capacity - getQueueSize();
+	}
+
+}
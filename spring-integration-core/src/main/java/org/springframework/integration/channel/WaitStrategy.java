@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+/**
+ * Strategy used by a {@link RingBufferChannel} to wait while a send cannot proceed
+ * (the buffer is full) or a receive cannot proceed (the buffer is empty).
+ *
+ * @since 4.2
+ */
+public interface WaitStrategy {
+
+	/**
+	 * Wait before the next attempt; implementations should return promptly (the caller
+	 * checks its timeout and the thread's interrupted status after each call).
+	 * @param attempt the number of consecutive unsuccessful attempts, starting at 0.
+	 */
+	void idle(int attempt);
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+/**
+ * A {@link WaitStrategy} that spins for a number of attempts and then calls
+ * {@link Thread#yield()}; a compromise between latency and CPU usage.
+ *
+ * @since 4.2
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+	private static final int DEFAULT_SPIN_TRIES = 100;
+
+	private final int spinTries;
+
+	public YieldingWaitStrategy() {
+		this(DEFAULT_SPIN_TRIES);
+	}
+
+	/**
+	 * @param spinTries the number of attempts before yielding.
+	 */
+	public YieldingWaitStrategy(int spinTries) {
+		this.spinTries = spinTries;
+	}
+
+	@Override
+	public void idle(int attempt) {
+		if (attempt >= this.spinTries) {
+			Thread.yield();
+		}
+	}
+
+}
@@ -19,6 +19,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.integration.support.management.ConfigurableMetrics;
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.MetricsContext;
 import org.springframework.integration.support.management.Statistics;
 
@@ -105,6 +106,36 @@ public abstract class AbstractMessageChannelMetrics implements ConfigurableMetri
 
 	public abstract Statistics getErrorRate();
 
+	/**
+	 * Implementations that maintain a send duration histogram should override this
+	 * method.
+	 * @return the send duration distribution (milliseconds) since startup or the last
+	 * reset, or null if not maintained.
+	 */
+	public HistogramSnapshot getSendDurationHistogram() {
+		return null;
+	}
+
+	/**
+	 * Implementations that maintain a send duration histogram should override this
+	 * method.
+	 * @return the send duration distribution (milliseconds) since the previous call to
+	 * this method, or null if not maintained.
+	 */
+	public HistogramSnapshot getSendDurationIntervalHistogram() {
+		return null;
+	}
+
+	/**
+	 * @param percentile the percentile (0-100).
+	 * @return the send duration (milliseconds) at the percentile since startup or the last
+	 * reset, or 0 if a histogram is not maintained.
+	 */
+	public double getSendDurationPercentile(double percentile) {
+		HistogramSnapshot histogram = getSendDurationHistogram();
+		return histogram == null ? 0 : histogram.getValueAtPercentile(percentile);
+	}
+
 	public abstract void afterReceive();
 
 	public abstract void afterError();
@@ -21,6 +21,8 @@ import org.apache.commons.logging.LogFactory;
 import org.springframework.integration.support.management.ExponentialMovingAverage;
 import org.springframework.integration.support.management.ExponentialMovingAverageRate;
 import org.springframework.integration.support.management.ExponentialMovingAverageRatio;
+import org.springframework.integration.support.management.HistogramSnapshot;
+import org.springframework.integration.support.management.LatencyHistogram;
 import org.springframework.integration.support.management.MetricsContext;
 import org.springframework.integration.support.management.Statistics;
 
@@ -50,6 +52,8 @@ public class DefaultMessageChannelMetrics extends AbstractMessageChannelMetrics
 
 	private final ExponentialMovingAverageRate sendRate;
 
+	private final LatencyHistogram sendDurationHistogram = new LatencyHistogram(1000000.);
+
 	private final AtomicLong sendCount = new AtomicLong();
 
 	private final AtomicLong sendErrorCount = new AtomicLong();
@@ -124,7 +128,9 @@ public class DefaultMessageChannelMetrics extends AbstractMessageChannelMetrics
 		if (result && isFullStatsEnabled()) {
 			long now = System.nanoTime();
 			this.sendSuccessRatio.success(now);
-			this.sendDuration.append(now - ((DefaultChannelMetricsContext) context).start);
+			long duration = now - ((DefaultChannelMetricsContext) context).start;
+			this.sendDuration.append(duration);
+			this.sendDurationHistogram.record(duration);
 		}
 		else {
 			if (isFullStatsEnabled()) {
@@ -146,6 +152,7 @@ public class DefaultMessageChannelMetrics extends AbstractMessageChannelMetrics
 		this.sendErrorRate.reset();
 		this.sendSuccessRatio.reset();
 		this.sendRate.reset();
+		this.sendDurationHistogram.reset();
 		this.sendCount.set(0);
 		this.sendErrorCount.set(0);
 		this.receiveErrorCount.set(0);
@@ -227,6 +234,16 @@ public class DefaultMessageChannelMetrics extends AbstractMessageChannelMetrics
 		return this.sendErrorRate.getStatistics();
 	}
 
+	@Override
+	public HistogramSnapshot getSendDurationHistogram() {
+		return this.sendDurationHistogram.getSnapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getSendDurationIntervalHistogram() {
+		return this.sendDurationHistogram.getIntervalSnapshot();
+	}
+
 	@Override
 	public void afterReceive() {
 		if (logger.isTraceEnabled()) {
@@ -0,0 +1,279 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.channel.management;
+
+import org.springframework.integration.support.management.HistogramSnapshot;
+import org.springframework.integration.support.management.LatencyHistogram;
+import org.springframework.integration.support.management.LockFreeExponentialMovingAverage;
+import org.springframework.integration.support.management.LockFreeExponentialMovingAverageRate;
+import org.springframework.integration.support.management.LockFreeExponentialMovingAverageRatio;
+import org.springframework.integration.support.management.MetricsContext;
+import org.springframework.integration.support.management.Statistics;
+import org.springframework.integration.support.management.StripedCounter;
+
+/**
+ * Channel metrics intended for heavily contended channels. Counters are
+ * {@link StripedCounter}s and the moving averages are the {@code LockFree*} variants,
+ * so the send path neither takes a lock nor boxes samples. When full statistics are
+ * disabled, no object is allocated per send.
+ *
+ * @since 4.2
+ *
+ */
+public class LockFreeMessageChannelMetrics extends AbstractMessageChannelMetrics {
+
+	private static final MetricsContext NO_STATS_CONTEXT = new LockFreeChannelMetricsContext(0);
+
+	private final LockFreeExponentialMovingAverage sendDuration;
+
+	private final LockFreeExponentialMovingAverageRate sendErrorRate;
+
+	private final LockFreeExponentialMovingAverageRatio sendSuccessRatio;
+
+	private final LockFreeExponentialMovingAverageRate sendRate;
+
+	private final LatencyHistogram sendDurationHistogram = new LatencyHistogram(1000000.);
+
+	private final StripedCounter sendCount = new StripedCounter();
+
+	private final StripedCounter sendErrorCount = new StripedCounter();
+
+	private final StripedCounter receiveCount = new StripedCounter();
+
+	private final StripedCounter receiveErrorCount = new StripedCounter();
+
+	public LockFreeMessageChannelMetrics() {
+		this(null);
+	}
+
+	/**
+	 * Construct an instance with default metrics with {@code window=10, period=1 second,
+	 * lapsePeriod=1 minute}.
+	 * @param name the name.
+	 */
+	public LockFreeMessageChannelMetrics(String name) {
+		this(name, new LockFreeExponentialMovingAverage(DefaultMessageChannelMetrics.DEFAULT_MOVING_AVERAGE_WINDOW,
+						1000000.),
+				new LockFreeExponentialMovingAverageRate(DefaultMessageChannelMetrics.ONE_SECOND_SECONDS,
+						DefaultMessageChannelMetrics.ONE_MINUTE_SECONDS,
+						DefaultMessageChannelMetrics.DEFAULT_MOVING_AVERAGE_WINDOW, true),
+				new LockFreeExponentialMovingAverageRatio(DefaultMessageChannelMetrics.ONE_MINUTE_SECONDS,
+						DefaultMessageChannelMetrics.DEFAULT_MOVING_AVERAGE_WINDOW, true),
+				new LockFreeExponentialMovingAverageRate(DefaultMessageChannelMetrics.ONE_SECOND_SECONDS,
+						DefaultMessageChannelMetrics.ONE_MINUTE_SECONDS,
+						DefaultMessageChannelMetrics.DEFAULT_MOVING_AVERAGE_WINDOW, true));
+	}
+
+	/**
+	 * Construct an instance with the supplied metrics. For proper representation of metrics, the
+	 * supplied sendDuration must have a {@code factor=1000000.} and the the other arguments
+	 * must be created with the {@code millis} constructor argument set to true.
+	 * @param name the name.
+	 * @param sendDuration a {@link LockFreeExponentialMovingAverage} for calculating the send duration.
+	 * @param sendErrorRate a {@link LockFreeExponentialMovingAverageRate} for calculating the send error rate.
+	 * @param sendSuccessRatio a {@link LockFreeExponentialMovingAverageRatio} for calculating the success ratio.
+	 * @param sendRate a {@link LockFreeExponentialMovingAverageRate} for calculating the send rate.
+	 */
+	public LockFreeMessageChannelMetrics(String name, LockFreeExponentialMovingAverage sendDuration,
+			LockFreeExponentialMovingAverageRate sendErrorRate, LockFreeExponentialMovingAverageRatio sendSuccessRatio,
+			LockFreeExponentialMovingAverageRate sendRate) {
+		super(name);
+		this.sendDuration = sendDuration;
+		this.sendErrorRate = sendErrorRate;
+		this.sendSuccessRatio = sendSuccessRatio;
+		this.sendRate = sendRate;
+	}
+
+	@Override
+	public MetricsContext beforeSend() {
+		if (logger.isTraceEnabled()) {
+			logger.trace("Recording send on channel(" + this.name + ")");
+		}
+		this.sendCount.increment();
+		if (isFullStatsEnabled()) {
+			long start = System.nanoTime();
+			this.sendRate.increment(start);
+			return new LockFreeChannelMetricsContext(start);
+		}
+		return NO_STATS_CONTEXT;
+	}
+
+	@Override
+	public void afterSend(MetricsContext context, boolean result) {
+		if (result && isFullStatsEnabled()) {
+			long now = System.nanoTime();
+			this.sendSuccessRatio.success(now);
+			long duration = now - ((LockFreeChannelMetricsContext) context).start;
+			this.sendDuration.append(duration);
+			this.sendDurationHistogram.record(duration);
+		}
+		else {
+			if (isFullStatsEnabled()) {
+				long now = System.nanoTime();
+				this.sendSuccessRatio.failure(now);
+				this.sendErrorRate.increment(now);
+			}
+			this.sendErrorCount.increment();
+		}
+	}
+
+	@Override
+	public synchronized void reset() {
+		this.sendDuration.reset();
+		this.sendErrorRate.reset();
+		this.sendSuccessRatio.reset();
+		this.sendRate.reset();
+		this.sendDurationHistogram.reset();
+		this.sendCount.reset();
+		this.sendErrorCount.reset();
+		this.receiveErrorCount.reset();
+		this.receiveCount.reset();
+	}
+
+	@Override
+	public int getSendCount() {
+		return (int) this.sendCount.get();
+	}
+
+	@Override
+	public long getSendCountLong() {
+		return this.sendCount.get();
+	}
+
+	@Override
+	public int getSendErrorCount() {
+		return (int) this.sendErrorCount.get();
+	}
+
+	@Override
+	public long getSendErrorCountLong() {
+		return this.sendErrorCount.get();
+	}
+
+	@Override
+	public double getTimeSinceLastSend() {
+		return this.sendRate.getTimeSinceLastMeasurement();
+	}
+
+	@Override
+	public double getMeanSendRate() {
+		return this.sendRate.getMean();
+	}
+
+	@Override
+	public double getMeanErrorRate() {
+		return this.sendErrorRate.getMean();
+	}
+
+	@Override
+	public double getMeanErrorRatio() {
+		return 1 - this.sendSuccessRatio.getMean();
+	}
+
+	@Override
+	public double getMeanSendDuration() {
+		return this.sendDuration.getMean();
+	}
+
+	@Override
+	public double getMinSendDuration() {
+		return this.sendDuration.getMin();
+	}
+
+	@Override
+	public double getMaxSendDuration() {
+		return this.sendDuration.getMax();
+	}
+
+	@Override
+	public double getStandardDeviationSendDuration() {
+		return this.sendDuration.getStandardDeviation();
+	}
+
+	@Override
+	public Statistics getSendDuration() {
+		return this.sendDuration.getStatistics();
+	}
+
+	@Override
+	public Statistics getSendRate() {
+		return this.sendRate.getStatistics();
+	}
+
+	@Override
+	public Statistics getErrorRate() {
+		return this.sendErrorRate.getStatistics();
+	}
+
+	@Override
+	public HistogramSnapshot getSendDurationHistogram() {
+		return this.sendDurationHistogram.getSnapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getSendDurationIntervalHistogram() {
+		return this.sendDurationHistogram.getIntervalSnapshot();
+	}
+
+	@Override
+	public void afterReceive() {
+		if (logger.isTraceEnabled()) {
+			logger.trace("Recording receive on channel(" + this.name + ") ");
+		}
+		this.receiveCount.increment();
+	}
+
+	@Override
+	public void afterError() {
+		this.receiveErrorCount.increment();
+	}
+
+	@Override
+	public int getReceiveCount() {
+		return (int) this.receiveCount.get();
+	}
+
+	@Override
+	public long getReceiveCountLong() {
+		return this.receiveCount.get();
+	}
+
+	@Override
+	public int getReceiveErrorCount() {
+		return (int) this.receiveErrorCount.get();
+	}
+
+	@Override
+	public long getReceiveErrorCountLong() {
+		return this.receiveErrorCount.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("MessageChannelMonitor: [name=%s, sends=%d]", this.name, this.sendCount.get());
+	}
+
+	private static class LockFreeChannelMetricsContext implements MetricsContext {
+
+		private final long start;
+
+		public LockFreeChannelMetricsContext(long start) {
+			this.start = start;
+		}
+
+	}
+
+}
@@ -16,9 +16,11 @@
 
 package org.springframework.integration.channel.management;
 
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.MetricsEnablement;
 import org.springframework.integration.support.management.Statistics;
 import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.support.MetricType;
 
 /**
@@ -105,11 +107,54 @@ public interface MessageChannelMetrics extends MetricsEnablement {
 	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Channel Send Standard Deviation Duration in Milliseconds")
 	double getStandardDeviationSendDuration();
 
+	/**
+	 * @return the median send duration (milliseconds) since startup
+	 * @since 4.2
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Channel Send Median Duration in Milliseconds")
+	double getP50SendDuration();
+
+	/**
+	 * @return the 99th percentile send duration (milliseconds) since startup
+	 * @since 4.2
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Channel Send 99th Percentile Duration in Milliseconds")
+	double getP99SendDuration();
+
+	/**
+	 * @return the 99.9th percentile send duration (milliseconds) since startup
+	 * @since 4.2
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Channel Send 99.9th Percentile Duration in Milliseconds")
+	double getP999SendDuration();
+
+	/**
+	 * @param percentile the percentile (0-100).
+	 * @return the send duration (milliseconds) at the percentile since startup
+	 * @since 4.2
+	 */
+	@ManagedOperation
+	double getSendDurationPercentile(double percentile);
+
 	/**
 	 * @return summary statistics about the send duration (milliseconds)
 	 */
 	Statistics getSendDuration();
 
+	/**
+	 * @return the send duration distribution (milliseconds) since startup, or null if
+	 * the metrics do not maintain a histogram
+	 * @since 4.2
+	 */
+	HistogramSnapshot getSendDurationHistogram();
+
+	/**
+	 * @return the send duration distribution (milliseconds) since the previous call to
+	 * this method, or null if the metrics do not maintain a histogram
+	 * @since 4.2
+	 */
+	HistogramSnapshot getSendDurationIntervalHistogram();
+
 	/**
 	 * @return summary statistics about the send rates (per second)
 	 */
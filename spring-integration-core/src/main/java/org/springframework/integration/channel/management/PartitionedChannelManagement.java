@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel.management;
+
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.support.MetricType;
+
+/**
+ * @since 4.2
+ *
+ */
+public interface PartitionedChannelManagement extends MessageChannelMetrics {
+
+	@ManagedAttribute(description = "PartitionedChannel Partition Count")
+	int getPartitionCount();
+
+	@ManagedAttribute(description = "PartitionedChannel Queue Size of Each Partition")
+	int[] getPartitionQueueSizes();
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "PartitionedChannel Queue Size")
+	int getQueueSize();
+
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "PartitionedChannel Max Partition Queue Size")
+	int getMaxPartitionQueueSize();
+
+}
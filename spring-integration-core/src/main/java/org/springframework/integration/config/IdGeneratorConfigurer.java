@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,6 +18,7 @@ package org.springframework.integration.config;
 
 import java.lang.reflect.Field;
 import java.util.HashSet;
+import java.util.Properties;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -30,11 +31,19 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ApplicationContextEvent;
 import org.springframework.context.event.ContextClosedEvent;
 import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.context.IntegrationProperties;
+import org.springframework.integration.support.MessageTimestamps;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.util.IdGenerator;
 import org.springframework.util.ReflectionUtils;
 
 /**
+ * Establishes the {@link IdGenerator} bean (if any) as the id generation strategy for
+ * {@link MessageHeaders} and, since 4.2, the
+ * {@link IntegrationProperties#MESSAGE_BUILDER_TIMESTAMP} mode for
+ * {@link MessageTimestamps}.
+ *
  * @author Oleg Zhurakousky
  * @author Mark Fisher
  * @author Gary Russell
@@ -44,6 +53,8 @@ public final class IdGeneratorConfigurer implements ApplicationListener<Applicat
 
 	private static final Set<String> generatorContextId = new HashSet<String>();
 
+	private static final Set<String> timestampContextId = new HashSet<String>();
+
 	private static volatile IdGenerator theIdGenerator;
 
 	private final Log logger = LogFactory.getLog(getClass());
@@ -57,6 +68,9 @@ public final class IdGeneratorConfigurer implements ApplicationListener<Applicat
 					IdGeneratorConfigurer.generatorContextId.add(context.getId());
 				}
 			}
+			if (this.setTimestampMode(context)) {
+				IdGeneratorConfigurer.timestampContextId.add(context.getId());
+			}
 		}
 		else if (event instanceof ContextClosedEvent) {
 			if (IdGeneratorConfigurer.generatorContextId.contains(context.getId())) {
@@ -65,6 +79,10 @@ public final class IdGeneratorConfigurer implements ApplicationListener<Applicat
 				}
 				IdGeneratorConfigurer.generatorContextId.remove(context.getId());
 			}
+			if (IdGeneratorConfigurer.timestampContextId.remove(context.getId())
+					&& IdGeneratorConfigurer.timestampContextId.isEmpty()) {
+				MessageTimestamps.setMode(MessageTimestamps.Mode.PRECISE);
+			}
 		}
 	}
 
@@ -125,6 +143,30 @@ public final class IdGeneratorConfigurer implements ApplicationListener<Applicat
 		return true;
 	}
 
+	private boolean setTimestampMode(ApplicationContext context) {
+		Properties integrationProperties = IntegrationContextUtils.getIntegrationProperties(context);
+		String modeProperty = integrationProperties.getProperty(IntegrationProperties.MESSAGE_BUILDER_TIMESTAMP);
+		if (modeProperty == null) {
+			return false;
+		}
+		MessageTimestamps.Mode mode = MessageTimestamps.Mode.valueOf(modeProperty.trim().toUpperCase());
+		if (mode == MessageTimestamps.Mode.PRECISE) {
+			return false;
+		}
+		if (!IdGeneratorConfigurer.timestampContextId.isEmpty() && MessageTimestamps.getMode() != mode) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("Message timestamp mode " + MessageTimestamps.getMode()
+						+ " has already been established; ignoring " + mode);
+			}
+			return false;
+		}
+		if (logger.isInfoEnabled()) {
+			logger.info("Message timestamps will be captured using mode " + mode);
+		}
+		MessageTimestamps.setMode(mode);
+		return true;
+	}
+
 	private void unsetIdGenerator() {
 		try {
 			Field idGeneratorField = ReflectionUtils.findField(MessageHeaders.class, "idGenerator");
@@ -1,5 +1,5 @@
 /*
- * Copyright 2013-2014 the original author or authors.
+ * Copyright 2013-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -35,9 +35,11 @@ import org.springframework.expression.BeanResolver;
 import org.springframework.expression.PropertyAccessor;
 import org.springframework.expression.TypeConverter;
 import org.springframework.expression.TypeLocator;
+import org.springframework.expression.spel.SpelCompilerMode;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.expression.spel.support.StandardTypeConverter;
 import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.expression.ExpressionCompiler;
 import org.springframework.integration.support.utils.IntegrationUtils;
 import org.springframework.util.Assert;
 
@@ -66,6 +68,11 @@ import org.springframework.util.Assert;
  * <p>
  * This factory returns a new instance for each reference - {@link #isSingleton()} returns false.
  * </p>
+ * <p>
+ * When a {@link SpelCompilerMode} other than {@code OFF} is configured, framework components
+ * evaluate expressions using the shared {@link ExpressionCompiler} returned by
+ * {@link #getExpressionCompiler()}.
+ * </p>
  *
  * @author Artem Bilan
  * @author Gary Russell
@@ -88,6 +95,10 @@ public class IntegrationEvaluationContextFactoryBean implements FactoryBean<Stan
 
 	private volatile boolean initialized;
 
+	private SpelCompilerMode compilerMode = SpelCompilerMode.OFF;
+
+	private volatile ExpressionCompiler expressionCompiler;
+
 	@Override
 	public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
 		this.applicationContext = applicationContext;
@@ -115,6 +126,28 @@ public class IntegrationEvaluationContextFactoryBean implements FactoryBean<Stan
 		this.typeLocator = typeLocator;
 	}
 
+	/**
+	 * Set the {@link SpelCompilerMode} used by framework components to evaluate
+	 * expressions; default {@link SpelCompilerMode#OFF}.
+	 * @param compilerMode the compiler mode.
+	 * @since 4.2
+	 * @see ExpressionCompiler
+	 */
+	public void setCompilerMode(SpelCompilerMode compilerMode) {
+		Assert.isTrue(!this.initialized, "'compilerMode' can't be changed after initialization.");
+		Assert.notNull(compilerMode, "'compilerMode' must not be null.");
+		this.compilerMode = compilerMode;
+	}
+
+	/**
+	 * @return the {@link ExpressionCompiler} shared by framework components, or null if
+	 * the compiler mode is {@link SpelCompilerMode#OFF}.
+	 * @since 4.2
+	 */
+	public ExpressionCompiler getExpressionCompiler() {
+		return this.expressionCompiler;
+	}
+
 
 	@Override
 	public void afterPropertiesSet() throws Exception {
@@ -160,6 +193,10 @@ public class IntegrationEvaluationContextFactoryBean implements FactoryBean<Stan
 			}
 		}
 
+		if (this.compilerMode != SpelCompilerMode.OFF) {
+			this.expressionCompiler = new ExpressionCompiler(this.compilerMode);
+		}
+
 		this.initialized = true;
 	}
 
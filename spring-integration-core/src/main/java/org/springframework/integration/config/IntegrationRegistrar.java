@@ -180,7 +180,9 @@ public class IntegrationRegistrar implements ImportBeanDefinitionRegistrar, Bean
 	private void registerIntegrationEvaluationContext(BeanDefinitionRegistry registry) {
 		if (!registry.containsBeanDefinition(IntegrationContextUtils.INTEGRATION_EVALUATION_CONTEXT_BEAN_NAME)) {
 			BeanDefinitionBuilder integrationEvaluationContextBuilder = BeanDefinitionBuilder
-					.genericBeanDefinition(IntegrationEvaluationContextFactoryBean.class);
+					.genericBeanDefinition(IntegrationEvaluationContextFactoryBean.class)
+					.addPropertyValue("compilerMode",
+							IntegrationProperties.getExpressionFor(IntegrationProperties.SPEL_COMPILER_MODE));
 			integrationEvaluationContextBuilder.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
 
 			BeanDefinitionHolder integrationEvaluationContextHolder =
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,8 @@ import java.util.Properties;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.integration.config.IntegrationConfigUtils;
+import org.springframework.integration.config.IntegrationEvaluationContextFactoryBean;
+import org.springframework.integration.expression.ExpressionCompiler;
 import org.springframework.integration.metadata.MetadataStore;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.scheduling.TaskScheduler;
@@ -120,6 +122,22 @@ public abstract class IntegrationContextUtils {
 		return getBeanOfType(beanFactory, INTEGRATION_EVALUATION_CONTEXT_BEAN_NAME, StandardEvaluationContext.class);
 	}
 
+	/**
+	 * @param beanFactory BeanFactory for lookup, must not be null.
+	 * @return the {@link ExpressionCompiler} configured on the
+	 * {@link IntegrationEvaluationContextFactoryBean}, or null if there is no such factory
+	 * bean or expression compilation is disabled.
+	 * @since 4.2
+	 */
+	public static ExpressionCompiler getExpressionCompiler(BeanFactory beanFactory) {
+		Object factoryBean = getBeanOfType(beanFactory,
+				BeanFactory.FACTORY_BEAN_PREFIX + INTEGRATION_EVALUATION_CONTEXT_BEAN_NAME, Object.class);
+		if (factoryBean instanceof IntegrationEvaluationContextFactoryBean) {
+			return ((IntegrationEvaluationContextFactoryBean) factoryBean).getExpressionCompiler();
+		}
+		return null;
+	}
+
 	private static <T> T getBeanOfType(BeanFactory beanFactory, String beanName, Class<T> type) {
 		Assert.notNull(beanFactory, "BeanFactory must not be null");
 		if (!beanFactory.containsBean(beanName)) {
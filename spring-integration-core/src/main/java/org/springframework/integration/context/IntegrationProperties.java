@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -66,6 +66,21 @@ public final class IntegrationProperties {
 	 */
 	public static final String THROW_EXCEPTION_ON_LATE_REPLY = INTEGRATION_PROPERTIES_PREFIX + "messagingTemplate.throwExceptionOnLateReply";
 
+	/**
+	 * Specifies the {@link org.springframework.expression.spel.SpelCompilerMode} used to
+	 * evaluate framework SpEL expressions ({@code OFF}, {@code IMMEDIATE} or {@code MIXED}).
+	 * @since 4.2
+	 */
+	public static final String SPEL_COMPILER_MODE = INTEGRATION_PROPERTIES_PREFIX + "spel.compilerMode";
+
+	/**
+	 * Specifies the {@link org.springframework.integration.support.MessageTimestamps.Mode}
+	 * used to capture the timestamp header of built messages ({@code PRECISE},
+	 * {@code COARSE} or {@code NONE}).
+	 * @since 4.2
+	 */
+	public static final String MESSAGE_BUILDER_TIMESTAMP = INTEGRATION_PROPERTIES_PREFIX + "messageBuilder.timestamp";
+
 	private static Properties defaults;
 
 	static {
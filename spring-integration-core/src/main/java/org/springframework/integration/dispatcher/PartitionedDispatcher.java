@@ -0,0 +1,261 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.dispatcher;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.integration.util.CallerBlocksPolicy;
+import org.springframework.integration.util.Function;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * A {@link MessageDispatcher} that hashes a key derived from each message onto one of a
+ * fixed number of partitions, each served by a single thread. Messages with
+ * the same key are therefore handled in the order they were dispatched, while messages
+ * with different keys are handled concurrently.
+ * <p>
+ * Within a partition, a message is dispatched to the handlers as it would be by a
+ * {@link UnicastingDispatcher} (with failover and an optional
+ * {@link LoadBalancingStrategy}).
+ * <p>
+ * Each partition has its own queue; by default the queues are unbounded. When a
+ * {@link #setPartitionQueueCapacity(int) capacity} is set and a partition's queue is full, the
+ * {@link #setRejectedExecutionHandler(RejectedExecutionHandler) rejected execution
+ * handler} is invoked; the default {@link CallerBlocksPolicy} blocks the sender until
+ * there is room in the queue. Note that a
+ * {@link java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy} would break the
+ * ordering guarantee.
+ * <p>
+ * The partition threads are created on demand and must be released by calling
+ * {@link #shutdown()}.
+ *
+ * @since 4.2
+ */
+public class PartitionedDispatcher extends AbstractDispatcher {
+
+	private final UnicastingDispatcher delegate = new UnicastingDispatcher();
+
+	private final Function<Message<?>, Object> partitionKeyFunction;
+
+	private final int partitionCount;
+
+	private volatile int partitionQueueCapacity = Integer.MAX_VALUE;
+
+	private volatile RejectedExecutionHandler rejectedExecutionHandler = new CallerBlocksPolicy(Long.MAX_VALUE);
+
+	private volatile ThreadFactory threadFactory;
+
+	private volatile ErrorHandler errorHandler;
+
+	private volatile ThreadPoolExecutor[] executors;
+
+	/**
+	 * Create a dispatcher with the provided number of partitions.
+	 * @param partitionCount the number of partitions (and threads).
+	 * @param partitionKeyFunction a function that returns the partition key for a message;
+	 * a {@code null} key is mapped to the first partition.
+	 */
+	public PartitionedDispatcher(int partitionCount, Function<Message<?>, Object> partitionKeyFunction) {
+		Assert.isTrue(partitionCount > 0, "'partitionCount' must be > 0");
+		Assert.notNull(partitionKeyFunction, "'partitionKeyFunction' must not be null");
+		this.partitionKeyFunction = partitionKeyFunction;
+		this.partitionCount = partitionCount;
+		this.threadFactory = new CustomizableThreadFactory("partition-");
+	}
+
+	/**
+	 * Specify whether a partition should try the next handler when a handler throws an
+	 * exception. Default true.
+	 * @param failover the failover boolean.
+	 */
+	public void setFailover(boolean failover) {
+		this.delegate.setFailover(failover);
+	}
+
+	/**
+	 * Provide a {@link LoadBalancingStrategy} to choose the handler within a partition.
+	 * @param loadBalancingStrategy the load balancing strategy.
+	 */
+	public void setLoadBalancingStrategy(LoadBalancingStrategy loadBalancingStrategy) {
+		this.delegate.setLoadBalancingStrategy(loadBalancingStrategy);
+	}
+
+	/**
+	 * Set the capacity of each partition's queue; default unbounded.
+	 * @param partitionQueueCapacity the capacity.
+	 */
+	public void setPartitionQueueCapacity(int partitionQueueCapacity) {
+		Assert.isTrue(partitionQueueCapacity > 0, "'partitionQueueCapacity' must be > 0");
+		assertNotInitialized();
+		this.partitionQueueCapacity = partitionQueueCapacity;
+	}
+
+	/**
+	 * Set the policy applied when a partition's queue is full; default
+	 * {@link CallerBlocksPolicy} with no timeout.
+	 * @param rejectedExecutionHandler the handler.
+	 */
+	public void setRejectedExecutionHandler(RejectedExecutionHandler rejectedExecutionHandler) {
+		Assert.notNull(rejectedExecutionHandler, "'rejectedExecutionHandler' must not be null");
+		assertNotInitialized();
+		this.rejectedExecutionHandler = rejectedExecutionHandler;
+	}
+
+	/**
+	 * Set the thread factory for the partition threads; by default, threads are named
+	 * {@code partition-n}.
+	 * @param threadFactory the thread factory.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		Assert.notNull(threadFactory, "'threadFactory' must not be null");
+		assertNotInitialized();
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Set an {@link ErrorHandler} to handle exceptions thrown while handling a message on
+	 * a partition thread; by default, exceptions are logged.
+	 * @param errorHandler the error handler.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+	private void assertNotInitialized() {
+		Assert.state(this.executors == null, "Partition properties cannot be changed after the first dispatch");
+	}
+
+	@Override
+	public synchronized boolean addHandler(MessageHandler handler) {
+		boolean added = super.addHandler(handler);
+		this.delegate.addHandler(handler);
+		return added;
+	}
+
+	@Override
+	public synchronized boolean removeHandler(MessageHandler handler) {
+		boolean removed = super.removeHandler(handler);
+		this.delegate.removeHandler(handler);
+		return removed;
+	}
+
+	@Override
+	public boolean dispatch(final Message<?> message) {
+		getExecutors()[partitionFor(message)].execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					PartitionedDispatcher.this.delegate.dispatch(message);
+				}
+				catch (Throwable t) {
+					ErrorHandler errorHandler = PartitionedDispatcher.this.errorHandler;
+					if (errorHandler != null) {
+						if (!(t instanceof MessagingException) || ((MessagingException) t).getFailedMessage() == null) {
+							t = new MessagingException(message, t);
+						}
+						errorHandler.handleError(t);
+					}
+					else {
+						logger.error("Failed to dispatch " + message, t);
+					}
+				}
+			}
+
+		});
+		return true;
+	}
+
+	/**
+	 * Return the partition for the message; the key's hash code is spread before
+	 * taking the modulus so that keys whose hash codes differ only in the upper bits are
+	 * distributed across partitions.
+	 * @param message the message.
+	 * @return the partition.
+	 */
+	public int partitionFor(Message<?> message) {
+		Object key = this.partitionKeyFunction.apply(message);
+		if (key == null) {
+			return 0;
+		}
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & Integer.MAX_VALUE) % this.partitionCount;
+	}
+
+	private ThreadPoolExecutor[] getExecutors() {
+		ThreadPoolExecutor[] executors = this.executors;
+		if (executors == null) {
+			synchronized (this) {
+				executors = this.executors;
+				if (executors == null) {
+					executors = new ThreadPoolExecutor[this.partitionCount];
+					for (int i = 0; i < this.partitionCount; i++) {
+						executors[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+								new LinkedBlockingQueue<Runnable>(this.partitionQueueCapacity), this.threadFactory,
+								this.rejectedExecutionHandler);
+					}
+					this.executors = executors;
+				}
+			}
+		}
+		return executors;
+	}
+
+	/**
+	 * @return the number of partitions.
+	 */
+	public int getPartitionCount() {
+		return this.partitionCount;
+	}
+
+	/**
+	 * Return the number of messages waiting in each partition's queue.
+	 * @return the queue sizes, indexed by partition.
+	 */
+	public int[] getPartitionQueueSizes() {
+		int[] sizes = new int[this.partitionCount];
+		ThreadPoolExecutor[] executors = this.executors;
+		if (executors != null) {
+			for (int i = 0; i < this.partitionCount; i++) {
+				sizes[i] = executors[i].getQueue().size();
+			}
+		}
+		return sizes;
+	}
+
+	/**
+	 * Shut down the partition threads after the queued messages have been handled.
+	 */
+	public synchronized void shutdown() {
+		if (this.executors != null) {
+			for (ThreadPoolExecutor executor : this.executors) {
+				executor.shutdown();
+			}
+		}
+	}
+
+}
@@ -219,6 +219,9 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 	private boolean doPoll() {
 		IntegrationResourceHolder holder = this.bindResourceHolderIfNecessary(
 				this.getResourceKey(), this.getResourceToBind());
+		if (this.isBatchEnabled()) {
+			return doBatchPoll(holder);
+		}
 		Message<?> message = null;
 		try {
 			message = this.receiveMessage();
@@ -254,6 +257,72 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 		return result;
 	}
 
+	private boolean doBatchPoll(IntegrationResourceHolder holder) {
+		int maxMessages = this.maxMessagesPerPoll > 0 && this.maxMessagesPerPoll < Integer.MAX_VALUE
+				? (int) this.maxMessagesPerPoll
+				: Integer.MAX_VALUE;
+		List<Message<?>> messages = null;
+		try {
+			messages = this.receiveMessages(maxMessages);
+		}
+		catch (Exception e) {
+			if (Thread.interrupted()) {
+				if (logger.isDebugEnabled()) {
+					logger.debug("Poll interrupted - during stop()? : " + e.getMessage());
+				}
+				return false;
+			}
+			else {
+				throw (RuntimeException) e;
+			}
+		}
+		if (CollectionUtils.isEmpty(messages)) {
+			if (this.logger.isDebugEnabled()){
+				this.logger.debug("Received no Messages during the poll, returning 'false'");
+			}
+			return false;
+		}
+		if (this.logger.isDebugEnabled()){
+			this.logger.debug("Poll resulted in " + messages.size() + " Message(s)");
+		}
+		if (holder != null) {
+			holder.setMessage(messages.get(0));
+		}
+		this.handleMessages(messages);
+		return true;
+	}
+
+	/**
+	 * Return true if each poll receives, and handles, a batch of messages using
+	 * {@link #receiveMessages(int)} and {@link #handleMessages(List)}, rather than a
+	 * message at a time. When true, {@code maxMessagesPerPoll} limits the size of the
+	 * batch and a bounded poll handles one batch.
+	 * @return true for batch polling; default false.
+	 * @since 4.2
+	 */
+	protected boolean isBatchEnabled() {
+		return false;
+	}
+
+	/**
+	 * Obtain the next batch of messages, when {@link #isBatchEnabled()}.
+	 * @param maxMessages the maximum number of messages.
+	 * @return the messages; may be empty or null if no messages are available.
+	 * @since 4.2
+	 */
+	protected List<Message<?>> receiveMessages(int maxMessages) {
+		throw new UnsupportedOperationException("Batch polling is not supported by " + getClass().getName());
+	}
+
+	/**
+	 * Handle a batch of messages, when {@link #isBatchEnabled()}.
+	 * @param messages the messages.
+	 * @since 4.2
+	 */
+	protected void handleMessages(List<Message<?>> messages) {
+		throw new UnsupportedOperationException("Batch polling is not supported by " + getClass().getName());
+	}
+
 	/**
 	 * Obtain the next message (if one is available). MAY return null
 	 * if no message is immediately available.
@@ -330,6 +399,10 @@ public abstract class AbstractPollingEndpoint extends AbstractEndpoint implement
 							if (!pollingTask.call()) {
 								break;
 							}
+							if (isBatchEnabled() && maxMessagesPerPoll > 0) {
+								// a single batch per poll
+								break;
+							}
 							count++;
 						}
 						catch (Exception e) {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,16 +16,28 @@
 
 package org.springframework.integration.endpoint;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.springframework.context.Lifecycle;
+import org.springframework.integration.channel.QueueChannelOperations;
+import org.springframework.integration.handler.BatchMessageHandler;
+import org.springframework.integration.transaction.IntegrationResourceHolder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.PollableChannel;
-import org.springframework.integration.transaction.IntegrationResourceHolder;
 import org.springframework.util.Assert;
 
 /**
  * Message Endpoint that connects any {@link MessageHandler} implementation
  * to a {@link PollableChannel}.
+ * <p>
+ * When the handler is a {@link BatchMessageHandler}, each poll receives up to
+ * {@code maxMessagesPerPoll} messages (all available messages if unbounded) and
+ * hands them to the handler in one call; the first message is received with the
+ * {@code receiveTimeout}, the remainder only if immediately available (using
+ * {@link QueueChannelOperations#drainTo(java.util.Collection, int)} when supported
+ * by the channel).
  *
  * @author Mark Fisher
  * @author Oleg Zhurakousky
@@ -37,6 +49,8 @@ public class PollingConsumer extends AbstractPollingEndpoint {
 
 	private final MessageHandler handler;
 
+	private final boolean batchHandler;
+
 	private volatile long receiveTimeout = 1000;
 
 	public PollingConsumer(PollableChannel inputChannel, MessageHandler handler) {
@@ -44,6 +58,7 @@ public class PollingConsumer extends AbstractPollingEndpoint {
 		Assert.notNull(handler, "handler must not be null");
 		this.inputChannel = inputChannel;
 		this.handler = handler;
+		this.batchHandler = handler instanceof BatchMessageHandler;
 	}
 
 
@@ -82,6 +97,37 @@ public class PollingConsumer extends AbstractPollingEndpoint {
 		return message;
 	}
 
+	@Override
+	protected boolean isBatchEnabled() {
+		return this.batchHandler;
+	}
+
+	@Override
+	protected List<Message<?>> receiveMessages(int maxMessages) {
+		Message<?> message = receiveMessage();
+		if (message == null) {
+			return null;
+		}
+		List<Message<?>> messages = new ArrayList<Message<?>>(Math.min(maxMessages, 64));
+		messages.add(message);
+		if (maxMessages > 1) {
+			if (this.inputChannel instanceof QueueChannelOperations) {
+				((QueueChannelOperations) this.inputChannel).drainTo(messages, maxMessages - 1);
+			}
+			else {
+				while (messages.size() < maxMessages && (message = this.inputChannel.receive(0)) != null) {
+					messages.add(message);
+				}
+			}
+		}
+		return messages;
+	}
+
+	@Override
+	protected void handleMessages(List<Message<?>> messages) {
+		((BatchMessageHandler) this.handler).handleMessages(messages);
+	}
+
 	@Override
 	protected Object getResourceToBind() {
 		return this.inputChannel;
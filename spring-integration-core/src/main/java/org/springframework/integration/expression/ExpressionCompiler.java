@@ -0,0 +1,349 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.expression;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.util.Assert;
+
+/**
+ * Evaluates SpEL expressions, compiling them to bytecode where possible, according to a
+ * {@link SpelCompilerMode}, regardless of the configuration of the parser that created
+ * them.
+ * <p>
+ * An expression is compiled after it has been interpreted (the types involved must be
+ * known before it can be compiled); expressions that cannot be compiled continue to be
+ * interpreted and compilation is attempted again after subsequent evaluations, up to a
+ * limit. With {@link SpelCompilerMode#MIXED}, if a compiled expression fails (for
+ * example, because it is evaluated against a different type), it reverts to being
+ * interpreted and is evaluated again; with {@link SpelCompilerMode#IMMEDIATE}, the
+ * failure is propagated.
+ * <p>
+ * Statistics are maintained for each expression evaluated, showing whether it is running
+ * compiled or interpreted; see {@link #getStatistics()}.
+ *
+ * @since 4.2
+ *
+ */
+public class ExpressionCompiler {
+
+	private static final int MAX_FAILED_ATTEMPTS = 100;
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	/**
+	 * Keyed by an {@link ExpressionKey} (weak on the expression only, so the statistics are
+	 * retained while the expression is in use); looked up with a {@link LookupKey}, without
+	 * locking.
+	 */
+	private final ConcurrentMap<Object, ExpressionStatistics> statistics =
+			new ConcurrentHashMap<Object, ExpressionStatistics>();
+
+	private final ReferenceQueue<Expression> collectedExpressions = new ReferenceQueue<Expression>();
+
+	private final SpelCompilerMode compilerMode;
+
+	public ExpressionCompiler(SpelCompilerMode compilerMode) {
+		Assert.notNull(compilerMode, "'compilerMode' cannot be null");
+		this.compilerMode = compilerMode;
+	}
+
+	public SpelCompilerMode getCompilerMode() {
+		return this.compilerMode;
+	}
+
+	/**
+	 * Evaluate the expression against the root object.
+	 * @param expression the expression.
+	 * @param context the evaluation context.
+	 * @param rootObject the root object.
+	 * @param expectedType the expected type (may be null).
+	 * @param <T> the expected type.
+	 * @return the result.
+	 * @see Expression#getValue(EvaluationContext, Object, Class)
+	 */
+	public <T> T getValue(Expression expression, EvaluationContext context, Object rootObject,
+			Class<T> expectedType) {
+		return getValue(expression, context, true, rootObject, expectedType);
+	}
+
+	/**
+	 * Evaluate the expression against the context's root object.
+	 * @param expression the expression.
+	 * @param context the evaluation context.
+	 * @param expectedType the expected type (may be null).
+	 * @param <T> the expected type.
+	 * @return the result.
+	 * @see Expression#getValue(EvaluationContext, Class)
+	 */
+	public <T> T getValue(Expression expression, EvaluationContext context, Class<T> expectedType) {
+		return getValue(expression, context, false, null, expectedType);
+	}
+
+	/**
+	 * @return the statistics for the expressions evaluated by this compiler (that have
+	 * not been garbage collected).
+	 */
+	public List<ExpressionStatistics> getStatistics() {
+		expungeCollectedExpressions();
+		return new ArrayList<ExpressionStatistics>(this.statistics.values());
+	}
+
+	/**
+	 * @return the number of expressions currently running compiled.
+	 */
+	public int getCompiledExpressionCount() {
+		int count = 0;
+		for (ExpressionStatistics expressionStatistics : getStatistics()) {
+			if (expressionStatistics.isCompiled()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * @return the number of expressions currently running interpreted.
+	 */
+	public int getInterpretedExpressionCount() {
+		int count = 0;
+		for (ExpressionStatistics expressionStatistics : getStatistics()) {
+			if (!expressionStatistics.isCompiled()) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private <T> T getValue(Expression expression, EvaluationContext context, boolean hasRoot, Object rootObject,
+			Class<T> expectedType) {
+		if (this.compilerMode == SpelCompilerMode.OFF || !(expression instanceof SpelExpression)) {
+			return evaluate(expression, context, hasRoot, rootObject, expectedType);
+		}
+		SpelExpression spelExpression = (SpelExpression) expression;
+		ExpressionStatistics expressionStatistics = this.statistics.get(new LookupKey(spelExpression));
+		if (expressionStatistics == null) {
+			expressionStatistics = createStatistics(spelExpression);
+		}
+		if (expressionStatistics.compiled) {
+			try {
+				T value = evaluate(expression, context, hasRoot, rootObject, expectedType);
+				expressionStatistics.compiledEvaluations.incrementAndGet();
+				return value;
+			}
+			catch (SpelEvaluationException e) {
+				if (this.compilerMode != SpelCompilerMode.MIXED
+						|| e.getMessageCode() != SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION) {
+					throw e;
+				}
+				spelExpression.revertToInterpreted();
+				expressionStatistics.compiled = false;
+				expressionStatistics.failedAttempts.incrementAndGet();
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Compiled expression failed; reverted to interpreted: '"
+							+ expressionStatistics.expressionString + "'", e);
+				}
+			}
+		}
+		T value = evaluate(expression, context, hasRoot, rootObject, expectedType);
+		expressionStatistics.interpretedEvaluations.incrementAndGet();
+		compile(spelExpression, expressionStatistics);
+		return value;
+	}
+
+	private ExpressionStatistics createStatistics(SpelExpression expression) {
+		expungeCollectedExpressions();
+		ExpressionStatistics expressionStatistics = new ExpressionStatistics(expression.getExpressionString());
+		ExpressionStatistics existing = this.statistics.putIfAbsent(
+				new ExpressionKey(expression, this.collectedExpressions), expressionStatistics);
+		return existing != null ? existing : expressionStatistics;
+	}
+
+	private void expungeCollectedExpressions() {
+		Reference<? extends Expression> key;
+		while ((key = this.collectedExpressions.poll()) != null) {
+			this.statistics.remove(key);
+		}
+	}
+
+	private void compile(SpelExpression expression, ExpressionStatistics expressionStatistics) {
+		if (expressionStatistics.compiled || expressionStatistics.failedAttempts.get() >= MAX_FAILED_ATTEMPTS
+				|| !expressionStatistics.compiling.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			if (expression.compileExpression()) {
+				expressionStatistics.compiled = true;
+				if (this.logger.isDebugEnabled()) {
+					this.logger.debug("Compiled expression: '" + expressionStatistics.expressionString + "'");
+				}
+			}
+			else if (expressionStatistics.failedAttempts.incrementAndGet() == MAX_FAILED_ATTEMPTS
+					&& this.logger.isDebugEnabled()) {
+				this.logger.debug("Expression cannot be compiled and will be interpreted: '"
+						+ expressionStatistics.expressionString + "'");
+			}
+		}
+		finally {
+			expressionStatistics.compiling.set(false);
+		}
+	}
+
+	private static <T> T evaluate(Expression expression, EvaluationContext context, boolean hasRoot,
+			Object rootObject, Class<T> expectedType) {
+		return hasRoot ? expression.getValue(context, rootObject, expectedType)
+				: expression.getValue(context, expectedType);
+	}
+
+
+	/**
+	 * The map key for an expression; compares expressions by identity and does not
+	 * prevent them from being garbage collected. Once collected, a key is only equal to
+	 * itself.
+	 */
+	private static final class ExpressionKey extends WeakReference<Expression> {
+
+		private final int hash;
+
+		private ExpressionKey(Expression expression, ReferenceQueue<Expression> queue) {
+			super(expression, queue);
+			this.hash = System.identityHashCode(expression);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (other == this) {
+				return true;
+			}
+			Expression expression = get();
+			if (expression == null) {
+				return false;
+			}
+			if (other instanceof ExpressionKey) {
+				return expression == ((ExpressionKey) other).get();
+			}
+			return other instanceof LookupKey && expression == ((LookupKey) other).expression;
+		}
+
+	}
+
+	/**
+	 * A short-lived key used to find the statistics for an expression.
+	 */
+	private static final class LookupKey {
+
+		private final Expression expression;
+
+		private LookupKey(Expression expression) {
+			this.expression = expression;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(this.expression);
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof ExpressionKey && this.expression == ((ExpressionKey) other).get();
+		}
+
+	}
+
+	/**
+	 * The statistics for an expression.
+	 */
+	public static final class ExpressionStatistics {
+
+		private final String expressionString;
+
+		private final AtomicLong compiledEvaluations = new AtomicLong();
+
+		private final AtomicLong interpretedEvaluations = new AtomicLong();
+
+		private final AtomicInteger failedAttempts = new AtomicInteger();
+
+		private final AtomicBoolean compiling = new AtomicBoolean();
+
+		private volatile boolean compiled;
+
+		private ExpressionStatistics(String expressionString) {
+			this.expressionString = expressionString;
+		}
+
+		public String getExpressionString() {
+			return this.expressionString;
+		}
+
+		/**
+		 * @return true if the expression is currently running compiled.
+		 */
+		public boolean isCompiled() {
+			return this.compiled;
+		}
+
+		public long getCompiledEvaluations() {
+			return this.compiledEvaluations.get();
+		}
+
+		public long getInterpretedEvaluations() {
+			return this.interpretedEvaluations.get();
+		}
+
+		/**
+		 * @return the number of unsuccessful attempts to compile the expression, plus the
+		 * number of times it has reverted to being interpreted.
+		 */
+		public int getFailedAttempts() {
+			return this.failedAttempts.get();
+		}
+
+		@Override
+		public String toString() {
+			return "ExpressionStatistics [expression=" + this.expressionString
+					+ ", compiled=" + this.compiled
+					+ ", compiledEvaluations=" + this.compiledEvaluations
+					+ ", interpretedEvaluations=" + this.interpretedEvaluations
+					+ ", failedAttempts=" + this.failedAttempts + "]";
+		}
+
+	}
+
+}
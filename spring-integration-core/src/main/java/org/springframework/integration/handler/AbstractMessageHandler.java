@@ -25,6 +25,7 @@ import org.springframework.integration.handler.management.MessageHandlerMetrics;
 import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.history.TrackableComponent;
 import org.springframework.integration.support.management.ConfigurableMetricsAware;
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.IntegrationManagedResource;
 import org.springframework.integration.support.management.MetricsContext;
 import org.springframework.integration.support.management.Statistics;
@@ -190,6 +191,36 @@ public abstract class AbstractMessageHandler extends IntegrationObjectSupport im
 		return this.handlerMetrics.getDuration();
 	}
 
+	@Override
+	public double getP50Duration() {
+		return this.handlerMetrics.getDurationPercentile(50);
+	}
+
+	@Override
+	public double getP99Duration() {
+		return this.handlerMetrics.getDurationPercentile(99);
+	}
+
+	@Override
+	public double getP999Duration() {
+		return this.handlerMetrics.getDurationPercentile(99.9);
+	}
+
+	@Override
+	public double getDurationPercentile(double percentile) {
+		return this.handlerMetrics.getDurationPercentile(percentile);
+	}
+
+	@Override
+	public HistogramSnapshot getDurationHistogram() {
+		return this.handlerMetrics.getDurationHistogram();
+	}
+
+	@Override
+	public HistogramSnapshot getDurationIntervalHistogram() {
+		return this.handlerMetrics.getDurationIntervalHistogram();
+	}
+
 	@Override
 	public void enableStats(boolean statsEnabled) {
 		if (statsEnabled) {
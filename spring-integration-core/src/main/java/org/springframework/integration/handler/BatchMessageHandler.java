@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler;
+
+import java.util.List;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+/**
+ * A {@link MessageHandler} that can also handle a batch of messages in one operation;
+ * for example an outbound adapter that can send the batch in a single round trip.
+ * <p>
+ * When a {@link org.springframework.integration.endpoint.PollingConsumer} is configured
+ * with such a handler, each poll receives up to {@code maxMessagesPerPoll} messages
+ * from the channel and passes them to {@link #handleMessages(List)} in one call (and,
+ * therefore, within one transaction when the poller is transactional).
+ *
+ * @since 4.2
+ */
+public interface BatchMessageHandler extends MessageHandler {
+
+	/**
+	 * Handle the messages; the messages are presented in the order they were received.
+	 * If an exception is thrown, the whole batch is considered to have failed.
+	 * @param messages the messages (never empty).
+	 * @throws MessagingException if the batch could not be handled.
+	 */
+	void handleMessages(List<Message<?>> messages) throws MessagingException;
+
+}
@@ -33,6 +33,7 @@ import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.store.LockFreeMessageStore;
 import org.springframework.integration.store.MessageGroup;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
@@ -369,6 +370,10 @@ public class DelayHandler extends AbstractReplyProducingMessageHandler implement
 					(SimpleMessageGroup) this.messageStore.getMessageGroup(this.messageGroupId);
 			return messageGroup.remove(message);
 		}
+		else if (this.messageStore instanceof LockFreeMessageStore) {
+			return ((LockFreeMessageStore) this.messageStore).removeMessageFromGroupIfPresent(this.messageGroupId,
+					message);
+		}
 		else {
 			return ((MessageStore) this.messageStore).removeMessage(message.getHeaders().getId()) != null;
 		}
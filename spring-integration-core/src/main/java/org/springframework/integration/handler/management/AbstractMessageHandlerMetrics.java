@@ -19,6 +19,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import org.springframework.integration.support.management.ConfigurableMetrics;
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.MetricsContext;
 import org.springframework.integration.support.management.Statistics;
 import org.springframework.messaging.Message;
@@ -93,4 +94,32 @@ public abstract class AbstractMessageHandlerMetrics implements ConfigurableMetri
 
 	public abstract Statistics getDuration();
 
+	/**
+	 * Implementations that maintain a duration histogram should override this method.
+	 * @return the handler duration distribution (milliseconds) since startup or the last
+	 * reset, or null if not maintained.
+	 */
+	public HistogramSnapshot getDurationHistogram() {
+		return null;
+	}
+
+	/**
+	 * Implementations that maintain a duration histogram should override this method.
+	 * @return the handler duration distribution (milliseconds) since the previous call
+	 * to this method, or null if not maintained.
+	 */
+	public HistogramSnapshot getDurationIntervalHistogram() {
+		return null;
+	}
+
+	/**
+	 * @param percentile the percentile (0-100).
+	 * @return the handler duration (milliseconds) at the percentile since startup or the
+	 * last reset, or 0 if a histogram is not maintained.
+	 */
+	public double getDurationPercentile(double percentile) {
+		HistogramSnapshot histogram = getDurationHistogram();
+		return histogram == null ? 0 : histogram.getValueAtPercentile(percentile);
+	}
+
 }
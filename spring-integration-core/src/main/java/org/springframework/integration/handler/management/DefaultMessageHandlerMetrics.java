@@ -19,6 +19,8 @@ package org.springframework.integration.handler.management;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.springframework.integration.support.management.ExponentialMovingAverage;
+import org.springframework.integration.support.management.HistogramSnapshot;
+import org.springframework.integration.support.management.LatencyHistogram;
 import org.springframework.integration.support.management.MetricsContext;
 import org.springframework.integration.support.management.Statistics;
 import org.springframework.messaging.Message;
@@ -43,6 +45,8 @@ public class DefaultMessageHandlerMetrics extends AbstractMessageHandlerMetrics
 
 	private final ExponentialMovingAverage duration;
 
+	private final LatencyHistogram durationHistogram = new LatencyHistogram(1000000.);
+
 	public DefaultMessageHandlerMetrics() {
 		this(null);
 	}
@@ -86,7 +90,9 @@ public class DefaultMessageHandlerMetrics extends AbstractMessageHandlerMetrics
 	public void afterHandle(MetricsContext context, boolean success) {
 		this.activeCount.decrementAndGet();
 		if (isFullStatsEnabled() && success) {
-			this.duration.append(System.nanoTime() - ((DefaultHandlerMetricsContext) context).start);
+			long duration = System.nanoTime() - ((DefaultHandlerMetricsContext) context).start;
+			this.duration.append(duration);
+			this.durationHistogram.record(duration);
 		}
 		else if (!success) {
 			this.errorCount.incrementAndGet();
@@ -96,6 +102,7 @@ public class DefaultMessageHandlerMetrics extends AbstractMessageHandlerMetrics
 	@Override
 	public synchronized void reset() {
 		this.duration.reset();
+		this.durationHistogram.reset();
 		this.errorCount.set(0);
 		this.handleCount.set(0);
 	}
@@ -158,6 +165,16 @@ public class DefaultMessageHandlerMetrics extends AbstractMessageHandlerMetrics
 		return this.duration.getStatistics();
 	}
 
+	@Override
+	public HistogramSnapshot getDurationHistogram() {
+		return this.durationHistogram.getSnapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getDurationIntervalHistogram() {
+		return this.durationHistogram.getIntervalSnapshot();
+	}
+
 	private static class DefaultHandlerMetricsContext implements MetricsContext {
 
 		private final long start;
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.handler.management;
+
+import org.springframework.integration.support.management.HistogramSnapshot;
+import org.springframework.integration.support.management.LatencyHistogram;
+import org.springframework.integration.support.management.LockFreeExponentialMovingAverage;
+import org.springframework.integration.support.management.MetricsContext;
+import org.springframework.integration.support.management.Statistics;
+import org.springframework.integration.support.management.StripedCounter;
+import org.springframework.messaging.Message;
+
+/**
+ * Handler metrics intended for heavily contended handlers. Counters are
+ * {@link StripedCounter}s and the duration is a {@link LockFreeExponentialMovingAverage},
+ * so the handle path neither takes a lock nor boxes samples. When full statistics are
+ * disabled, no object is allocated per message.
+ *
+ * @since 4.2
+ */
+public class LockFreeMessageHandlerMetrics extends AbstractMessageHandlerMetrics {
+
+	private static final int DEFAULT_MOVING_AVERAGE_WINDOW = 10;
+
+	private static final MetricsContext NO_STATS_CONTEXT = new LockFreeHandlerMetricsContext(0);
+
+	private final StripedCounter activeCount = new StripedCounter();
+
+	private final StripedCounter handleCount = new StripedCounter();
+
+	private final StripedCounter errorCount = new StripedCounter();
+
+	private final LockFreeExponentialMovingAverage duration;
+
+	private final LatencyHistogram durationHistogram = new LatencyHistogram(1000000.);
+
+	public LockFreeMessageHandlerMetrics() {
+		this(null);
+	}
+
+	/**
+	 * Construct an instance with the default moving average window (10).
+	 * @param name the name.
+	 */
+	public LockFreeMessageHandlerMetrics(String name) {
+		this(name, new LockFreeExponentialMovingAverage(DEFAULT_MOVING_AVERAGE_WINDOW, 1000000.));
+	}
+
+	/**
+	 * Construct an instance with the supplied {@link LockFreeExponentialMovingAverage}
+	 * calculating the duration of processing by the message handler (and any downstream
+	 * synchronous endpoints).
+	 * @param name the name.
+	 * @param duration a {@link LockFreeExponentialMovingAverage} for calculating the duration.
+	 */
+	public LockFreeMessageHandlerMetrics(String name, LockFreeExponentialMovingAverage duration) {
+		super(name);
+		this.duration = duration;
+	}
+
+	@Override
+	public MetricsContext beforeHandle(Message<?> message) {
+		if (logger.isTraceEnabled()) {
+			logger.trace("messageHandler(" + this.name + ") message(" + message + ") :");
+		}
+		this.handleCount.increment();
+		this.activeCount.increment();
+		if (isFullStatsEnabled()) {
+			return new LockFreeHandlerMetricsContext(System.nanoTime());
+		}
+		return NO_STATS_CONTEXT;
+	}
+
+	@Override
+	public void afterHandle(MetricsContext context, boolean success) {
+		this.activeCount.decrement();
+		if (isFullStatsEnabled() && success) {
+			long duration = System.nanoTime() - ((LockFreeHandlerMetricsContext) context).start;
+			this.duration.append(duration);
+			this.durationHistogram.record(duration);
+		}
+		else if (!success) {
+			this.errorCount.increment();
+		}
+	}
+
+	@Override
+	public synchronized void reset() {
+		this.duration.reset();
+		this.durationHistogram.reset();
+		this.errorCount.reset();
+		this.handleCount.reset();
+	}
+
+	@Override
+	public long getHandleCountLong() {
+		return this.handleCount.get();
+	}
+
+	@Override
+	public int getHandleCount() {
+		return (int) getHandleCountLong();
+	}
+
+	@Override
+	public int getErrorCount() {
+		return (int) this.errorCount.get();
+	}
+
+	@Override
+	public long getErrorCountLong() {
+		return this.errorCount.get();
+	}
+
+	@Override
+	public double getMeanDuration() {
+		return this.duration.getMean();
+	}
+
+	@Override
+	public double getMinDuration() {
+		return this.duration.getMin();
+	}
+
+	@Override
+	public double getMaxDuration() {
+		return this.duration.getMax();
+	}
+
+	@Override
+	public double getStandardDeviationDuration() {
+		return this.duration.getStandardDeviation();
+	}
+
+	@Override
+	public int getActiveCount() {
+		return (int) this.activeCount.get();
+	}
+
+	@Override
+	public long getActiveCountLong() {
+		return this.activeCount.get();
+	}
+
+	@Override
+	public Statistics getDuration() {
+		return this.duration.getStatistics();
+	}
+
+	@Override
+	public HistogramSnapshot getDurationHistogram() {
+		return this.durationHistogram.getSnapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getDurationIntervalHistogram() {
+		return this.durationHistogram.getIntervalSnapshot();
+	}
+
+	private static class LockFreeHandlerMetricsContext implements MetricsContext {
+
+		private final long start;
+
+		public LockFreeHandlerMetricsContext(long start) {
+			this.start = start;
+		}
+
+	}
+
+}
@@ -16,9 +16,11 @@
 
 package org.springframework.integration.handler.management;
 
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.MetricsEnablement;
 import org.springframework.integration.support.management.Statistics;
 import org.springframework.jmx.export.annotation.ManagedMetric;
+import org.springframework.jmx.export.annotation.ManagedOperation;
 import org.springframework.jmx.support.MetricType;
 
 /**
@@ -78,6 +80,35 @@ public interface MessageHandlerMetrics extends MetricsEnablement {
 	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Handler Standard Deviation Duration in Milliseconds")
 	double getStandardDeviationDuration();
 
+	/**
+	 * @return the median handler duration (milliseconds) since startup
+	 * @since 4.2
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Handler Median Duration in Milliseconds")
+	double getP50Duration();
+
+	/**
+	 * @return the 99th percentile handler duration (milliseconds) since startup
+	 * @since 4.2
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Handler 99th Percentile Duration in Milliseconds")
+	double getP99Duration();
+
+	/**
+	 * @return the 99.9th percentile handler duration (milliseconds) since startup
+	 * @since 4.2
+	 */
+	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Handler 99.9th Percentile Duration in Milliseconds")
+	double getP999Duration();
+
+	/**
+	 * @param percentile the percentile (0-100).
+	 * @return the handler duration (milliseconds) at the percentile since startup
+	 * @since 4.2
+	 */
+	@ManagedOperation
+	double getDurationPercentile(double percentile);
+
 	@ManagedMetric(metricType = MetricType.GAUGE, displayName = "Handler Active Execution Count")
 	int getActiveCount();
 
@@ -89,6 +120,20 @@ public interface MessageHandlerMetrics extends MetricsEnablement {
 	 */
 	Statistics getDuration();
 
+	/**
+	 * @return the handler duration distribution (milliseconds) since startup, or null if
+	 * the metrics do not maintain a histogram
+	 * @since 4.2
+	 */
+	HistogramSnapshot getDurationHistogram();
+
+	/**
+	 * @return the handler duration distribution (milliseconds) since the previous call to
+	 * this method, or null if the metrics do not maintain a histogram
+	 * @since 4.2
+	 */
+	HistogramSnapshot getDurationIntervalHistogram();
+
 	void setManagedName(String name);
 
 	String getManagedName();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,7 +16,9 @@
 
 package org.springframework.integration.history;
 
+import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -24,6 +26,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Properties;
+import java.util.RandomAccess;
 
 import org.springframework.integration.support.DefaultMessageBuilderFactory;
 import org.springframework.integration.support.MessageBuilderFactory;
@@ -33,12 +36,22 @@ import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 /**
+ * The components a message has passed through, stored in the {@value #HEADER_NAME}
+ * header.
+ * <p>
+ * Starting with version 4.2, the history is a persistent linked list: the history
+ * written by each component shares the entries of the previous history and adds one
+ * lightweight, immutable node; the {@link Properties} view of each entry is only created
+ * when it is accessed. The serialized form is unchanged (a list of
+ * {@link Entry Entries}).
+ *
  * @author Mark Fisher
  * @since 2.0
  */
-@SuppressWarnings("serial")
 public class MessageHistory implements List<Properties>, Serializable {
 
+	private static final long serialVersionUID = -3737724478337090745L;
+
 	public static final String HEADER_NAME = "history";
 
 	public static final String NAME_PROPERTY = "name";
@@ -66,22 +79,49 @@ public class MessageHistory implements List<Properties>, Serializable {
 			MessageBuilderFactory messageBuilderFactory) {
 		Assert.notNull(message, "Message must not be null");
 		Assert.notNull(component, "Component must not be null");
-		Properties metadata = extractMetadata(component);
-		if (!metadata.isEmpty()) {
+		String name = component.getComponentName();
+		if (name != null && !name.startsWith("org.springframework.integration")) {
 			MessageHistory previousHistory = message.getHeaders().get(HEADER_NAME, MessageHistory.class);
-			List<Properties> components = (previousHistory != null) ?
-					new ArrayList<Properties>(previousHistory) : new ArrayList<Properties>();
-			components.add(metadata);
-			MessageHistory history = new MessageHistory(components);
+			Node parent = previousHistory != null ? previousHistory.linkedComponents().last : null;
+			Node node = new Node(parent, name, component.getComponentType(), System.currentTimeMillis());
+			MessageHistory history = new MessageHistory(new LinkedComponents(node));
 			message = messageBuilderFactory.fromMessage(message).setHeader(HEADER_NAME, history).build();
 		}
 		return message;
 	}
 
+	/**
+	 * Create a history containing the provided entries; used, for example, when a
+	 * message is reconstituted from a persistent store.
+	 * @param entries the entries (each a {@link Properties} with
+	 * {@value #NAME_PROPERTY}, {@value #TYPE_PROPERTY} and {@value #TIMESTAMP_PROPERTY});
+	 * must not be empty.
+	 * @return the history.
+	 * @since 4.2
+	 */
+	public static MessageHistory fromEntries(List<Properties> entries) {
+		Assert.notNull(entries, "'entries' must not be null");
+		return new MessageHistory(entries);
+	}
+
 
 	private MessageHistory(List<Properties> components) {
 		Assert.notEmpty(components, "component list must not be empty");
-		this.components = components;
+		this.components = components instanceof LinkedComponents ? components : LinkedComponents.of(components);
+	}
+
+	private LinkedComponents linkedComponents() {
+		return this.components instanceof LinkedComponents ? (LinkedComponents) this.components
+				: LinkedComponents.of(this.components);
+	}
+
+	/**
+	 * Replace a history deserialized from its list form with one using the linked form.
+	 * @return the history.
+	 * @throws ObjectStreamException never.
+	 */
+	private Object readResolve() throws ObjectStreamException {
+		return this.components instanceof LinkedComponents ? this : new MessageHistory(this.components);
 	}
 
 
@@ -218,20 +258,106 @@ public class MessageHistory implements List<Properties>, Serializable {
 	}
 
 
-	private static Properties extractMetadata(NamedComponent component) {
-		Entry entry = new Entry();
-		String name = component.getComponentName();
-		String type = component.getComponentType();
-		if (name != null && !name.startsWith("org.springframework.integration")) {
-			entry.setName(name);
-			if (type != null) {
-				entry.setType(type);
+	/**
+	 * An immutable entry in the linked history; it refers to the entry for the previous
+	 * component.
+	 */
+	private static final class Node {
+
+		private final Node parent;
+
+		private final int size;
+
+		private final String name;
+
+		private final String type;
+
+		private final long timestamp;
+
+		private volatile Properties properties;
+
+		private Node(Node parent, String name, String type, long timestamp) {
+			this.parent = parent;
+			this.size = parent != null ? parent.size + 1 : 1;
+			this.name = name;
+			this.type = type;
+			this.timestamp = timestamp;
+		}
+
+		private Node(Node parent, Properties properties) {
+			this(parent, null, null, 0);
+			this.properties = properties;
+		}
+
+		private Properties getProperties() {
+			Properties properties = this.properties;
+			if (properties == null) {
+				Entry entry = new Entry();
+				entry.setName(this.name);
+				if (this.type != null) {
+					entry.setType(this.type);
+				}
+				entry.setTimestamp(Long.toString(this.timestamp));
+				properties = entry;
+				this.properties = properties;
+			}
+			return properties;
+		}
+
+	}
+
+	/**
+	 * An immutable list view of the linked entries, ending with {@link #last}. Entries are
+	 * copied to an array on the first indexed access. Serialized as an
+	 * {@link ArrayList}, which is how the history was serialized by earlier versions.
+	 */
+	private static final class LinkedComponents extends AbstractList<Properties>
+			implements RandomAccess, Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Node last;
+
+		private transient volatile Properties[] entries;
+
+		private LinkedComponents(Node last) {
+			this.last = last;
+		}
+
+		private static LinkedComponents of(List<Properties> components) {
+			Node node = null;
+			for (Properties properties : components) {
+				node = new Node(node, properties);
 			}
+			return new LinkedComponents(node);
 		}
-		if (!entry.isEmpty()) {
-			entry.setTimestamp(Long.toString(System.currentTimeMillis()));
+
+		@Override
+		public Properties get(int index) {
+			return entries()[index];
 		}
-		return entry;
+
+		@Override
+		public int size() {
+			return this.last.size;
+		}
+
+		private Properties[] entries() {
+			Properties[] entries = this.entries;
+			if (entries == null) {
+				entries = new Properties[this.last.size];
+				for (Node node = this.last; node != null; node = node.parent) {
+					entries[node.size - 1] = node.getProperties();
+				}
+				this.entries = entries;
+			}
+			return entries;
+		}
+
+		private Object writeReplace() throws ObjectStreamException {
+			return new ArrayList<Properties>(this);
+		}
+
 	}
 
 
@@ -240,6 +366,8 @@ public class MessageHistory implements List<Properties>, Serializable {
 	 */
 	public static class Entry extends Properties {
 
+		private static final long serialVersionUID = -8225834391885601079L;
+
 		public String getName() {
 			return this.getProperty(NAME_PROPERTY);
 		}
@@ -0,0 +1,504 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.metadata;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.util.Assert;
+
+/**
+ * An in-memory {@link ConcurrentMetadataStore} with a maximum size and, optionally, a
+ * time to live for its entries; use it instead of the {@link SimpleMetadataStore} when
+ * the number of keys is unbounded (for example, for an idempotent receiver's
+ * {@code MetadataStoreSelector}).
+ * <p>
+ * The store is divided into segments, each of which is an access-ordered map guarded by
+ * a lock, so all operations (including {@link #putIfAbsent(String, String)} and
+ * {@link #replace(String, String, String)}) are atomic. When a segment is full, its least
+ * recently used entry is evicted. Entries older than the {@link #setTimeToLive(long)
+ * time to live} (measured from when the value was last written) are never returned; they
+ * are removed when they are accessed or reach the head of their segment, or by
+ * {@link #purgeExpired()}.
+ * <p>
+ * Optionally, a bloom filter of the keys can be maintained (see
+ * {@link #setKeyFilter(boolean)}), so that lookups of keys that have never been stored
+ * do not need to lock a segment.
+ *
+ * @since 4.2
+ *
+ */
+public class BoundedMetadataStore implements ConcurrentMetadataStore {
+
+	private static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+	private final Segment[] segments;
+
+	private final int segmentMask;
+
+	private final int maxSize;
+
+	private final AtomicLong hits = new AtomicLong();
+
+	private final AtomicLong misses = new AtomicLong();
+
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final AtomicLong expirations = new AtomicLong();
+
+	private final AtomicBoolean rebuildingKeyFilter = new AtomicBoolean();
+
+	private volatile long timeToLive;
+
+	private volatile KeyFilter keyFilter;
+
+	private volatile KeyFilter nextKeyFilter;
+
+	/**
+	 * Construct a store with the provided maximum size.
+	 * @param maxSize the maximum number of entries.
+	 */
+	public BoundedMetadataStore(int maxSize) {
+		this(maxSize, DEFAULT_CONCURRENCY_LEVEL);
+	}
+
+	/**
+	 * Construct a store with the provided maximum size and concurrency level (the number
+	 * of segments, rounded down to a power of two, and no more than the maximum size).
+	 * The maximum size is divided between the segments, so the least recently used entry
+	 * of a segment may be evicted while there are older entries in other segments.
+	 * @param maxSize the maximum number of entries.
+	 * @param concurrencyLevel the concurrency level; default 16.
+	 */
+	public BoundedMetadataStore(int maxSize, int concurrencyLevel) {
+		Assert.isTrue(maxSize > 0, "'maxSize' must be > 0");
+		Assert.isTrue(concurrencyLevel > 0, "'concurrencyLevel' must be > 0");
+		int segmentCount = Integer.highestOneBit(Math.min(concurrencyLevel, maxSize));
+		this.segments = new Segment[segmentCount];
+		for (int i = 0; i < segmentCount; i++) {
+			this.segments[i] = new Segment(maxSize / segmentCount + (i < maxSize % segmentCount ? 1 : 0));
+		}
+		this.segmentMask = segmentCount - 1;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Set the time in milliseconds after which an entry expires, measured from when its
+	 * value was last written. Default 0 - entries do not expire.
+	 * @param timeToLive the time to live.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive >= 0, "'timeToLive' must be >= 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Set to true to maintain a bloom filter of the keys; lookups of keys that are not
+	 * in the filter return immediately. This is beneficial when most lookups are for
+	 * keys that have never been stored. The filter is rebuilt from the current keys
+	 * when the number of keys added since it was last built exceeds twice the maximum
+	 * size. Must be set before entries are added.
+	 * @param keyFilter true to maintain a key filter.
+	 */
+	public void setKeyFilter(boolean keyFilter) {
+		Assert.state(getSize() == 0, "The key filter cannot be changed after entries have been added");
+		this.keyFilter = keyFilter ? new KeyFilter(2 * this.maxSize) : null;
+	}
+
+	@Override
+	public void put(String key, String value) {
+		Assert.notNull(key, "'key' cannot be null");
+		Assert.notNull(value, "'value' cannot be null");
+		Segment segment = segmentFor(key);
+		segment.lock();
+		try {
+			segment.store(key, value);
+		}
+		finally {
+			segment.unlock();
+		}
+		afterStore();
+	}
+
+	@Override
+	public String get(String key) {
+		Assert.notNull(key, "'key' cannot be null");
+		String value = null;
+		if (mightContain(key)) {
+			Segment segment = segmentFor(key);
+			segment.lock();
+			try {
+				Entry entry = segment.getLive(key);
+				value = entry != null ? entry.value : null;
+			}
+			finally {
+				segment.unlock();
+			}
+		}
+		(value != null ? this.hits : this.misses).incrementAndGet();
+		return value;
+	}
+
+	@Override
+	public String remove(String key) {
+		Assert.notNull(key, "'key' cannot be null");
+		if (!mightContain(key)) {
+			return null;
+		}
+		Segment segment = segmentFor(key);
+		segment.lock();
+		try {
+			Entry entry = segment.getLive(key);
+			if (entry != null) {
+				segment.map.remove(key);
+				return entry.value;
+			}
+			return null;
+		}
+		finally {
+			segment.unlock();
+		}
+	}
+
+	@Override
+	public String putIfAbsent(String key, String value) {
+		Assert.notNull(key, "'key' cannot be null");
+		Assert.notNull(value, "'value' cannot be null");
+		String existing = null;
+		Segment segment = segmentFor(key);
+		segment.lock();
+		try {
+			// keys are added to the filter while holding the segment's lock
+			Entry entry = mightContain(key) ? segment.getLive(key) : null;
+			if (entry != null) {
+				existing = entry.value;
+			}
+			else {
+				segment.store(key, value);
+			}
+		}
+		finally {
+			segment.unlock();
+		}
+		if (existing != null) {
+			this.hits.incrementAndGet();
+		}
+		else {
+			this.misses.incrementAndGet();
+			afterStore();
+		}
+		return existing;
+	}
+
+	@Override
+	public boolean replace(String key, String oldValue, String newValue) {
+		Assert.notNull(key, "'key' cannot be null");
+		Assert.notNull(oldValue, "'oldValue' cannot be null");
+		Assert.notNull(newValue, "'newValue' cannot be null");
+		if (!mightContain(key)) {
+			return false;
+		}
+		Segment segment = segmentFor(key);
+		segment.lock();
+		try {
+			Entry entry = segment.getLive(key);
+			if (entry != null && oldValue.equals(entry.value)) {
+				segment.store(key, newValue);
+				return true;
+			}
+			return false;
+		}
+		finally {
+			segment.unlock();
+		}
+	}
+
+	/**
+	 * Remove all expired entries.
+	 * @return the number of entries removed.
+	 */
+	public int purgeExpired() {
+		if (this.timeToLive <= 0) {
+			return 0;
+		}
+		int purged = 0;
+		for (Segment segment : this.segments) {
+			segment.lock();
+			try {
+				long now = System.currentTimeMillis();
+				Iterator<Entry> iterator = segment.map.values().iterator();
+				while (iterator.hasNext()) {
+					if (isExpired(iterator.next(), now)) {
+						iterator.remove();
+						purged++;
+					}
+				}
+			}
+			finally {
+				segment.unlock();
+			}
+		}
+		this.expirations.addAndGet(purged);
+		return purged;
+	}
+
+	/**
+	 * @return the number of entries, including expired entries that have not yet been
+	 * removed.
+	 */
+	public int getSize() {
+		int size = 0;
+		for (Segment segment : this.segments) {
+			segment.lock();
+			try {
+				size += segment.map.size();
+			}
+			finally {
+				segment.unlock();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * @return the number of {@link #get(String)} and {@link #putIfAbsent(String, String)}
+	 * invocations for which the key was present.
+	 */
+	public long getHitCount() {
+		return this.hits.get();
+	}
+
+	/**
+	 * @return the number of {@link #get(String)} and {@link #putIfAbsent(String, String)}
+	 * invocations for which the key was absent (or expired).
+	 */
+	public long getMissCount() {
+		return this.misses.get();
+	}
+
+	/**
+	 * @return the number of entries evicted because the store was full.
+	 */
+	public long getEvictionCount() {
+		return this.evictions.get();
+	}
+
+	/**
+	 * @return the number of expired entries that have been removed.
+	 */
+	public long getExpirationCount() {
+		return this.expirations.get();
+	}
+
+	private Segment segmentFor(String key) {
+		return this.segments[spread(key.hashCode()) & this.segmentMask];
+	}
+
+	private boolean mightContain(String key) {
+		KeyFilter filter = this.keyFilter;
+		return filter == null || filter.mightContain(key);
+	}
+
+	private boolean isExpired(Entry entry, long now) {
+		long timeToLive = this.timeToLive;
+		return timeToLive > 0 && now - entry.timestamp >= timeToLive;
+	}
+
+	/**
+	 * Rebuild the key filter if it has become saturated. Keys added while it is rebuilt
+	 * are added to both filters (under their segment's lock), so the new filter contains
+	 * every key in the store when it replaces the current one. The next filter is
+	 * published before the scan and cleared after the swap, so a store that reads the
+	 * next filter before the current one always adds its key to the new filter.
+	 */
+	private void afterStore() {
+		KeyFilter filter = this.keyFilter;
+		if (filter == null || !filter.isSaturated() || !this.rebuildingKeyFilter.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			KeyFilter next = new KeyFilter(2 * this.maxSize);
+			this.nextKeyFilter = next;
+			for (Segment segment : this.segments) {
+				segment.lock();
+				try {
+					for (String key : segment.map.keySet()) {
+						next.add(key);
+					}
+				}
+				finally {
+					segment.unlock();
+				}
+			}
+			this.keyFilter = next;
+			this.nextKeyFilter = null;
+		}
+		finally {
+			this.rebuildingKeyFilter.set(false);
+		}
+	}
+
+	private static int spread(int hash) {
+		int h = hash * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+
+	private static final class Entry {
+
+		private final String value;
+
+		private final long timestamp;
+
+		private Entry(String value, long timestamp) {
+			this.value = value;
+			this.timestamp = timestamp;
+		}
+
+	}
+
+	private final class Segment extends ReentrantLock {
+
+		private static final long serialVersionUID = 1L;
+
+		private final LinkedHashMap<String, Entry> map = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+
+		private final int capacity;
+
+		private Segment(int capacity) {
+			this.capacity = capacity;
+		}
+
+		/**
+		 * Must be called while holding the lock.
+		 */
+		private Entry getLive(String key) {
+			Entry entry = this.map.get(key);
+			if (entry != null && isExpired(entry, System.currentTimeMillis())) {
+				this.map.remove(key);
+				BoundedMetadataStore.this.expirations.incrementAndGet();
+				return null;
+			}
+			return entry;
+		}
+
+		/**
+		 * Must be called while holding the lock.
+		 */
+		private void store(String key, String value) {
+			this.map.put(key, new Entry(value, System.currentTimeMillis()));
+			// read the next filter first; if it is null, either the rebuild has not yet
+			// scanned this segment, or the current filter is already the rebuilt one
+			KeyFilter next = BoundedMetadataStore.this.nextKeyFilter;
+			KeyFilter filter = BoundedMetadataStore.this.keyFilter;
+			if (filter != null) {
+				filter.add(key);
+				if (next != null && next != filter) {
+					next.add(key);
+				}
+			}
+			Iterator<Map.Entry<String, Entry>> iterator = this.map.entrySet().iterator();
+			long now = System.currentTimeMillis();
+			while (iterator.hasNext()) {
+				Map.Entry<String, Entry> eldest = iterator.next();
+				if (eldest.getKey().equals(key)) {
+					break;
+				}
+				if (isExpired(eldest.getValue(), now)) {
+					iterator.remove();
+					BoundedMetadataStore.this.expirations.incrementAndGet();
+				}
+				else if (this.map.size() > this.capacity) {
+					iterator.remove();
+					BoundedMetadataStore.this.evictions.incrementAndGet();
+				}
+				else {
+					break;
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * A bloom filter with 10 bits and 7 hash functions per expected key (about 1% false
+	 * positives at capacity).
+	 */
+	private static final class KeyFilter {
+
+		private static final int HASHES = 7;
+
+		private final AtomicLongArray bits;
+
+		private final int numBits;
+
+		private final int capacity;
+
+		private final AtomicInteger additions = new AtomicInteger();
+
+		private KeyFilter(int capacity) {
+			this.capacity = capacity;
+			long numBits = Math.max(64L, capacity * 10L);
+			int words = (int) Math.min(Integer.MAX_VALUE / 64, (numBits + 63) / 64);
+			this.bits = new AtomicLongArray(words);
+			this.numBits = words * 64;
+		}
+
+		private void add(String key) {
+			int h1 = spread(key.hashCode());
+			int h2 = (h1 >>> 15) | 1;
+			for (int i = 0; i < HASHES; i++) {
+				int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+				int word = bit >>> 6;
+				long mask = 1L << bit;
+				long current;
+				do {
+					current = this.bits.get(word);
+					if ((current & mask) != 0) {
+						break;
+					}
+				}
+				while (!this.bits.compareAndSet(word, current, current | mask));
+			}
+			this.additions.incrementAndGet();
+		}
+
+		private boolean mightContain(String key) {
+			int h1 = spread(key.hashCode());
+			int h2 = (h1 >>> 15) | 1;
+			for (int i = 0; i < HASHES; i++) {
+				int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % this.numBits;
+				if ((this.bits.get(bit >>> 6) & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean isSaturated() {
+			return this.additions.get() > this.capacity;
+		}
+
+	}
+
+}
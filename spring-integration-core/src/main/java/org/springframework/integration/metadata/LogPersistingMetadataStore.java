@@ -0,0 +1,661 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.metadata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.integration.support.locks.DefaultLockRegistry;
+import org.springframework.integration.support.locks.LockRegistry;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * A file-based {@link ConcurrentMetadataStore} for large numbers of keys (for example,
+ * the file names seen by a {@code FileSystemPersistentAcceptOnceFileListFilter}).
+ * <p>
+ * The entries are held in memory; each update is appended to a log file as a
+ * checksummed record, rather than rewriting the whole store. Records are written by a
+ * background thread, in batches containing all updates made since the previous batch
+ * (group commit). When the store is started, the log is replayed; an incomplete record at
+ * the end of the log (for example, after a crash while it was being written) is
+ * discarded. When the log contains more obsolete records than the
+ * {@link #setCompactionThreshold(int) compaction threshold} (and at least as many
+ * obsolete records as live entries), it is compacted by writing the current entries to a
+ * new file, which then replaces the log.
+ * <p>
+ * When the log is forced to the storage device is determined by the
+ * {@link FsyncPolicy}; with {@link FsyncPolicy#ALWAYS}, updates do not return until the
+ * batch containing them has been forced.
+ * <p>
+ * The file is named {@code metadata-store.log} (see {@link #setFileName(String)}) and
+ * written to {@code 'java.io.tmpdir' + "/spring-integration/"} by default. Only one
+ * store instance may use a file at a time.
+ *
+ * @since 4.2
+ *
+ */
+public class LogPersistingMetadataStore implements ConcurrentMetadataStore, InitializingBean, DisposableBean,
+		Closeable, Flushable {
+
+	/**
+	 * When the log file is forced to the storage device.
+	 */
+	public enum FsyncPolicy {
+
+		/**
+		 * Force each batch; updates wait until their batch has been forced.
+		 */
+		ALWAYS,
+
+		/**
+		 * Force the log at most once per {@link #setFsyncInterval(long) fsync interval};
+		 * updates do not wait.
+		 */
+		INTERVAL,
+
+		/**
+		 * Leave it to the operating system; the log is only forced when it is compacted,
+		 * flushed or closed.
+		 */
+		NEVER
+
+	}
+
+	private static final int MAGIC = 0x53494d4c; // SIML
+
+	private static final int HEADER_LENGTH = 4;
+
+	private static final int RECORD_HEADER_LENGTH = 8;
+
+	private static final byte PUT = 1;
+
+	private static final byte REMOVE = 2;
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final ConcurrentMap<String, String> metadata = new ConcurrentHashMap<String, String>();
+
+	private final LockRegistry lockRegistry = new DefaultLockRegistry();
+
+	private final BlockingQueue<Record> pending = new LinkedBlockingQueue<Record>();
+
+	private final Object enqueueMonitor = new Object();
+
+	private final Object syncMonitor = new Object();
+
+	private final CountDownLatch stopped = new CountDownLatch(1);
+
+	private String baseDirectory = System.getProperty("java.io.tmpdir") + "/spring-integration/";
+
+	private String fileName = "metadata-store.log";
+
+	private FsyncPolicy fsyncPolicy = FsyncPolicy.INTERVAL;
+
+	private long fsyncInterval = 1000;
+
+	private int maxBatchSize = 10000;
+
+	private int compactionThreshold = 100000;
+
+	private ThreadFactory threadFactory;
+
+	private File file;
+
+	private FileOutputStream fileOutputStream;
+
+	private DataOutputStream out;
+
+	private long logRecords;
+
+	private long sequence;
+
+	private volatile long syncedSequence;
+
+	private volatile boolean running;
+
+	private volatile IOException writeFailure;
+
+
+	public LogPersistingMetadataStore() {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("metadata-store-");
+		threadFactory.setDaemon(true);
+		this.threadFactory = threadFactory;
+	}
+
+	public void setBaseDirectory(String baseDirectory) {
+		Assert.hasText(baseDirectory, "'baseDirectory' must be non-empty");
+		this.baseDirectory = baseDirectory;
+	}
+
+	/**
+	 * @param fileName the name of the log file; default {@code metadata-store.log}.
+	 */
+	public void setFileName(String fileName) {
+		Assert.hasText(fileName, "'fileName' must be non-empty");
+		this.fileName = fileName;
+	}
+
+	/**
+	 * @param fsyncPolicy the fsync policy; default {@link FsyncPolicy#INTERVAL}.
+	 */
+	public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+		Assert.notNull(fsyncPolicy, "'fsyncPolicy' cannot be null");
+		this.fsyncPolicy = fsyncPolicy;
+	}
+
+	/**
+	 * @param fsyncInterval the minimum time in milliseconds between forcing the log with
+	 * {@link FsyncPolicy#INTERVAL}; default 1000.
+	 */
+	public void setFsyncInterval(long fsyncInterval) {
+		Assert.isTrue(fsyncInterval > 0, "'fsyncInterval' must be > 0");
+		this.fsyncInterval = fsyncInterval;
+	}
+
+	/**
+	 * @param maxBatchSize the maximum number of records written in one batch;
+	 * default 10000.
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		Assert.isTrue(maxBatchSize > 0, "'maxBatchSize' must be > 0");
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * @param compactionThreshold the number of obsolete records (records that have been
+	 * superseded by later updates of the same key) in the log before it is compacted;
+	 * default 100000.
+	 */
+	public void setCompactionThreshold(int compactionThreshold) {
+		Assert.isTrue(compactionThreshold > 0, "'compactionThreshold' must be > 0");
+		this.compactionThreshold = compactionThreshold;
+	}
+
+	/**
+	 * Set the thread factory used to create the thread that writes the log; by default a
+	 * daemon thread named {@code metadata-store-n}.
+	 * @param threadFactory the thread factory.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		Assert.notNull(threadFactory, "'threadFactory' must not be null");
+		this.threadFactory = threadFactory;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		File baseDir = new File(this.baseDirectory);
+		baseDir.mkdirs();
+		this.file = new File(baseDir, this.fileName);
+		try {
+			replay();
+			openLog();
+		}
+		catch (IOException e) {
+			throw new IllegalArgumentException("Failed to open metadata-store file '"
+					+ this.file.getAbsolutePath() + "'", e);
+		}
+		this.running = true;
+		this.threadFactory.newThread(new Runnable() {
+
+			@Override
+			public void run() {
+				writeLog();
+			}
+
+		}).start();
+	}
+
+	@Override
+	public void put(String key, String value) {
+		Assert.notNull(key, "'key' cannot be null");
+		Assert.notNull(value, "'value' cannot be null");
+		long sequence;
+		Lock lock = this.lockRegistry.obtain(key);
+		lock.lock();
+		try {
+			this.metadata.put(key, value);
+			sequence = append(PUT, key, value);
+		}
+		finally {
+			lock.unlock();
+		}
+		awaitSync(sequence);
+	}
+
+	@Override
+	public String get(String key) {
+		Assert.notNull(key, "'key' cannot be null");
+		return this.metadata.get(key);
+	}
+
+	@Override
+	public String remove(String key) {
+		Assert.notNull(key, "'key' cannot be null");
+		long sequence = 0;
+		String removed;
+		Lock lock = this.lockRegistry.obtain(key);
+		lock.lock();
+		try {
+			removed = this.metadata.remove(key);
+			if (removed != null) {
+				sequence = append(REMOVE, key, null);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		awaitSync(sequence);
+		return removed;
+	}
+
+	@Override
+	public String putIfAbsent(String key, String value) {
+		Assert.notNull(key, "'key' cannot be null");
+		Assert.notNull(value, "'value' cannot be null");
+		long sequence = 0;
+		String existing;
+		Lock lock = this.lockRegistry.obtain(key);
+		lock.lock();
+		try {
+			existing = this.metadata.putIfAbsent(key, value);
+			if (existing == null) {
+				sequence = append(PUT, key, value);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		awaitSync(sequence);
+		return existing;
+	}
+
+	@Override
+	public boolean replace(String key, String oldValue, String newValue) {
+		Assert.notNull(key, "'key' cannot be null");
+		Assert.notNull(oldValue, "'oldValue' cannot be null");
+		Assert.notNull(newValue, "'newValue' cannot be null");
+		long sequence = 0;
+		boolean replaced;
+		Lock lock = this.lockRegistry.obtain(key);
+		lock.lock();
+		try {
+			replaced = this.metadata.replace(key, oldValue, newValue);
+			if (replaced) {
+				sequence = append(PUT, key, newValue);
+			}
+		}
+		finally {
+			lock.unlock();
+		}
+		awaitSync(sequence);
+		return replaced;
+	}
+
+	/**
+	 * Write all updates made so far to the log and force it to the storage device,
+	 * regardless of the {@link FsyncPolicy}.
+	 */
+	@Override
+	public void flush() {
+		long sequence;
+		synchronized (this.enqueueMonitor) {
+			if (!this.running) {
+				return;
+			}
+			sequence = ++this.sequence;
+			this.pending.add(new Record(sequence, null, false));
+		}
+		doAwaitSync(sequence);
+	}
+
+	/**
+	 * Write all updates made so far to the log and close it. Subsequent updates are
+	 * rejected.
+	 */
+	@Override
+	public void close() throws IOException {
+		synchronized (this.enqueueMonitor) {
+			if (!this.running) {
+				return;
+			}
+			this.running = false;
+			this.pending.add(new Record(++this.sequence, null, true));
+		}
+		try {
+			if (!this.stopped.await(30, TimeUnit.SECONDS)) {
+				this.logger.warn("Timed out waiting for the metadata log to be written");
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		close();
+	}
+
+	private long append(byte operation, String key, String value) {
+		Record record = new Record(0, encode(operation, key, value), false);
+		synchronized (this.enqueueMonitor) {
+			Assert.state(this.running, "The metadata store is not running");
+			IOException failure = this.writeFailure;
+			if (failure != null) {
+				throw new IllegalStateException("The metadata log could not be written", failure);
+			}
+			record.sequence = ++this.sequence;
+			this.pending.add(record);
+		}
+		return record.sequence;
+	}
+
+	private void awaitSync(long sequence) {
+		if (sequence > 0 && this.fsyncPolicy == FsyncPolicy.ALWAYS) {
+			doAwaitSync(sequence);
+		}
+	}
+
+	private void doAwaitSync(long sequence) {
+		synchronized (this.syncMonitor) {
+			while (this.syncedSequence < sequence && this.writeFailure == null && this.stopped.getCount() > 0) {
+				try {
+					this.syncMonitor.wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new IllegalStateException("Interrupted while waiting for the metadata log to be written", e);
+				}
+			}
+		}
+		IOException failure = this.writeFailure;
+		if (failure != null) {
+			throw new IllegalStateException("The metadata log could not be written", failure);
+		}
+	}
+
+	private void writeLog() {
+		List<Record> batch = new ArrayList<Record>();
+		long written = this.syncedSequence;
+		long lastSync = System.currentTimeMillis();
+		boolean stop = false;
+		try {
+			while (!stop) {
+				Record first = this.pending.poll(this.fsyncInterval, TimeUnit.MILLISECONDS);
+				boolean syncRequested = false;
+				if (first != null) {
+					batch.add(first);
+					this.pending.drainTo(batch, this.maxBatchSize - 1);
+					for (Record record : batch) {
+						if (record.payload != null) {
+							writeRecord(this.out, record.payload);
+							this.logRecords++;
+						}
+						else {
+							syncRequested = true;
+							stop |= record.stop;
+						}
+						written = record.sequence;
+					}
+					batch.clear();
+					this.out.flush();
+				}
+				long now = System.currentTimeMillis();
+				long obsolete = this.logRecords - this.metadata.size();
+				if (obsolete >= this.compactionThreshold && obsolete >= this.metadata.size()) {
+					compact();
+					lastSync = now;
+					synced(written);
+				}
+				else if (written > this.syncedSequence
+						&& (syncRequested || this.fsyncPolicy == FsyncPolicy.ALWAYS
+						|| (this.fsyncPolicy == FsyncPolicy.INTERVAL && now - lastSync >= this.fsyncInterval))) {
+					this.fileOutputStream.getChannel().force(false);
+					lastSync = now;
+					synced(written);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (IOException e) {
+			this.logger.error("Failed to write the metadata log '" + this.file.getAbsolutePath()
+					+ "'; subsequent updates will be rejected", e);
+			this.writeFailure = e;
+		}
+		finally {
+			try {
+				this.out.close();
+			}
+			catch (IOException e) {
+				this.logger.warn("Failed to close the metadata log '" + this.file.getAbsolutePath() + "'", e);
+			}
+			this.stopped.countDown();
+			synchronized (this.syncMonitor) {
+				this.syncMonitor.notifyAll();
+			}
+		}
+	}
+
+	private void synced(long sequence) {
+		synchronized (this.syncMonitor) {
+			this.syncedSequence = sequence;
+			this.syncMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Write the current entries to a new file and replace the log with it. Entries
+	 * updated while the snapshot is taken may also be in the records that follow it;
+	 * replaying those records again is harmless.
+	 */
+	private void compact() throws IOException {
+		File compacted = new File(this.file.getPath() + ".compact");
+		FileOutputStream compactedOutputStream = new FileOutputStream(compacted);
+		DataOutputStream compactedOut = new DataOutputStream(new BufferedOutputStream(compactedOutputStream));
+		long records = 0;
+		try {
+			compactedOut.writeInt(MAGIC);
+			for (Map.Entry<String, String> entry : this.metadata.entrySet()) {
+				writeRecord(compactedOut, encode(PUT, entry.getKey(), entry.getValue()));
+				records++;
+			}
+			compactedOut.flush();
+			compactedOutputStream.getChannel().force(true);
+		}
+		finally {
+			compactedOut.close();
+		}
+		this.out.close();
+		if (!compacted.renameTo(this.file) && !(this.file.delete() && compacted.renameTo(this.file))) {
+			throw new IOException("Failed to replace the log with '" + compacted.getAbsolutePath() + "'");
+		}
+		openLog();
+		this.logRecords = records;
+		if (this.logger.isDebugEnabled()) {
+			this.logger.debug("Compacted the metadata log to " + records + " records");
+		}
+	}
+
+	private void openLog() throws IOException {
+		boolean empty = this.file.length() == 0;
+		this.fileOutputStream = new FileOutputStream(this.file, true);
+		this.out = new DataOutputStream(new BufferedOutputStream(this.fileOutputStream, 65536));
+		if (empty) {
+			this.out.writeInt(MAGIC);
+			this.out.flush();
+		}
+	}
+
+	private void replay() throws IOException {
+		if (!this.file.exists() || this.file.length() == 0) {
+			return;
+		}
+		long length = this.file.length();
+		long position = 0;
+		long records = 0;
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file), 65536));
+		try {
+			if (length < HEADER_LENGTH || in.readInt() != MAGIC) {
+				throw new IOException("Not a metadata log");
+			}
+			position = HEADER_LENGTH;
+			CRC32 crc = new CRC32();
+			while (position < length) {
+				if (length - position < RECORD_HEADER_LENGTH) {
+					break;
+				}
+				int payloadLength = in.readInt();
+				int checksum = in.readInt();
+				if (payloadLength <= 0 || payloadLength > length - position - RECORD_HEADER_LENGTH) {
+					break;
+				}
+				byte[] payload = new byte[payloadLength];
+				in.readFully(payload);
+				crc.reset();
+				crc.update(payload);
+				if ((int) crc.getValue() != checksum || !apply(payload)) {
+					break;
+				}
+				position += RECORD_HEADER_LENGTH + payloadLength;
+				records++;
+			}
+		}
+		catch (EOFException e) {
+			// truncated below
+		}
+		finally {
+			in.close();
+		}
+		if (position < length) {
+			this.logger.warn("Discarding an incomplete or corrupt record at offset " + position
+					+ " of the metadata log '" + this.file.getAbsolutePath() + "'");
+			RandomAccessFile truncate = new RandomAccessFile(this.file, "rw");
+			try {
+				truncate.setLength(position);
+			}
+			finally {
+				truncate.close();
+			}
+		}
+		this.logRecords = records;
+	}
+
+	private boolean apply(byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		byte operation = in.readByte();
+		String key = readString(in);
+		if (operation == PUT) {
+			this.metadata.put(key, readString(in));
+		}
+		else if (operation == REMOVE) {
+			this.metadata.remove(key);
+		}
+		else {
+			return false;
+		}
+		return true;
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static byte[] encode(byte operation, String key, String value) {
+		byte[] keyBytes = key.getBytes(UTF_8);
+		byte[] valueBytes = value != null ? value.getBytes(UTF_8) : null;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(9 + keyBytes.length
+				+ (valueBytes != null ? valueBytes.length : 0));
+		DataOutputStream out = new DataOutputStream(bytes);
+		try {
+			out.writeByte(operation);
+			out.writeInt(keyBytes.length);
+			out.write(keyBytes);
+			if (valueBytes != null) {
+				out.writeInt(valueBytes.length);
+				out.write(valueBytes);
+			}
+		}
+		catch (IOException e) {
+			// not possible with a ByteArrayOutputStream
+			throw new IllegalStateException(e);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static void writeRecord(DataOutputStream out, byte[] payload) throws IOException {
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		out.writeInt(payload.length);
+		out.writeInt((int) crc.getValue());
+		out.write(payload);
+	}
+
+
+	private static final class Record {
+
+		private final byte[] payload;
+
+		private final boolean stop;
+
+		private long sequence;
+
+		private Record(long sequence, byte[] payload, boolean stop) {
+			this.sequence = sequence;
+			this.payload = payload;
+			this.stop = stop;
+		}
+
+	}
+
+}
@@ -0,0 +1,656 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.scheduling;
+
+import java.util.Date;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.Trigger;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.support.SimpleTriggerContext;
+import org.springframework.scheduling.support.TaskUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * A {@link TaskScheduler} based on a hashed timing wheel, intended for very large
+ * numbers of short-lived, frequently cancelled timeouts such as aggregator group
+ * timeouts and delayed messages.
+ * <p>
+ * Scheduling and cancelling a task are O(1) (an enqueue onto a concurrent queue); a
+ * single worker thread advances the wheel every {@code tickDuration} milliseconds and
+ * processes only the tasks in the current bucket, so the cost of a tick does not depend
+ * on the total number of scheduled tasks. In exchange, tasks run up to one tick late.
+ * <p>
+ * By default, due tasks run on the worker thread; tasks that might block should be
+ * handed off by configuring a {@link #setTaskExecutor(Executor) taskExecutor}. For that
+ * reason, this scheduler is not a suitable replacement for the default
+ * {@code taskScheduler} bean used by pollers; rather, inject it into the components that
+ * opt in: the {@code scheduler} attribute of an aggregator, resequencer or delayer, or
+ * the {@code scheduler} of a {@code <task:scheduled-tasks/>} element that runs a
+ * {@link org.springframework.integration.store.MessageGroupStoreReaper}.
+ *
+ * @since 4.2
+ */
+public class HashedWheelTaskScheduler implements TaskScheduler, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(HashedWheelTaskScheduler.class);
+
+	public static final long DEFAULT_TICK_DURATION = 10;
+
+	public static final int DEFAULT_TICKS_PER_WHEEL = 512;
+
+	/*
+	 * Limits on the work performed by each tick, so that a burst of scheduling or
+	 * cancellation cannot delay the expiry of due tasks indefinitely.
+	 */
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	private static final int MAX_CANCELLATIONS_PER_TICK = 100000;
+
+	private static final int WORKER_INIT = 0;
+
+	private static final int WORKER_STARTED = 1;
+
+	private static final int WORKER_SHUTDOWN = 2;
+
+	private final long tickNanos;
+
+	private final Bucket[] wheel;
+
+	private final int mask;
+
+	private final Queue<WheelTask> pendingTasks = new ConcurrentLinkedQueue<WheelTask>();
+
+	private final Queue<WheelTask> cancelledTasks = new ConcurrentLinkedQueue<WheelTask>();
+
+	private final AtomicInteger workerState = new AtomicInteger(WORKER_INIT);
+
+	private final AtomicInteger scheduledTaskCount = new AtomicInteger();
+
+	private final CountDownLatch startTimeInitialized = new CountDownLatch(1);
+
+	private volatile long startTime;
+
+	private volatile ThreadFactory threadFactory;
+
+	private volatile Executor taskExecutor;
+
+	private volatile ErrorHandler errorHandler;
+
+	private volatile Thread workerThread;
+
+	/**
+	 * Create a scheduler with a tick duration of 10 milliseconds and 512 ticks per wheel.
+	 */
+	public HashedWheelTaskScheduler() {
+		this(DEFAULT_TICK_DURATION, DEFAULT_TICKS_PER_WHEEL);
+	}
+
+	/**
+	 * Create a scheduler with the provided tick duration and number of ticks per wheel.
+	 * @param tickDuration the tick duration in milliseconds; tasks run up to one tick late.
+	 * @param ticksPerWheel the number of buckets (rounded up to a power of 2); tasks whose
+	 * delay is longer than {@code tickDuration * ticksPerWheel} are examined once per
+	 * revolution of the wheel until they are due.
+	 */
+	public HashedWheelTaskScheduler(long tickDuration, int ticksPerWheel) {
+		Assert.isTrue(tickDuration > 0, "'tickDuration' must be > 0");
+		Assert.isTrue(ticksPerWheel > 0 && ticksPerWheel <= 1 << 30, "'ticksPerWheel' must be between 1 and 2^30");
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickDuration);
+		Assert.isTrue(this.tickNanos < Long.MAX_VALUE / size, "'tickDuration' is too long for the wheel size");
+		this.wheel = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			this.wheel[i] = new Bucket();
+		}
+		this.mask = size - 1;
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("wheel-scheduler-");
+		threadFactory.setDaemon(true);
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Set the thread factory used to create the worker thread; by default a daemon thread
+	 * named {@code wheel-scheduler-n}.
+	 * @param threadFactory the thread factory.
+	 */
+	public void setThreadFactory(ThreadFactory threadFactory) {
+		Assert.notNull(threadFactory, "'threadFactory' must not be null");
+		this.threadFactory = threadFactory;
+	}
+
+	/**
+	 * Set an executor to run due tasks; by default they are run on the worker thread,
+	 * which delays the processing of subsequent ticks until they complete.
+	 * @param taskExecutor the executor.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set a custom {@link ErrorHandler} for exceptions thrown by tasks. By default,
+	 * exceptions thrown by repeating tasks are logged and suppressed, and exceptions
+	 * thrown by one-shot tasks are logged and made available from the returned future.
+	 * @param errorHandler the error handler.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * @return the number of tasks that are scheduled but have not yet run (or, for
+	 * repeating tasks, have not been cancelled).
+	 */
+	public int getScheduledTaskCount() {
+		return this.scheduledTaskCount.get();
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Trigger trigger) {
+		Assert.notNull(trigger, "'trigger' must not be null");
+		SimpleTriggerContext triggerContext = new SimpleTriggerContext();
+		Date first = trigger.nextExecutionTime(triggerContext);
+		if (first == null) {
+			return null;
+		}
+		return schedule(new WheelTask(task, 0, trigger, triggerContext), first.getTime(), first);
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable task, Date startTime) {
+		Assert.notNull(startTime, "'startTime' must not be null");
+		return schedule(new WheelTask(task, 0, null, null), startTime.getTime(), null);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, Date startTime, long period) {
+		Assert.notNull(startTime, "'startTime' must not be null");
+		Assert.isTrue(period > 0, "'period' must be > 0");
+		return schedule(new WheelTask(task, TimeUnit.MILLISECONDS.toNanos(period), null, null),
+				startTime.getTime(), null);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long period) {
+		return scheduleAtFixedRate(task, new Date(), period);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, Date startTime, long delay) {
+		Assert.notNull(startTime, "'startTime' must not be null");
+		Assert.isTrue(delay > 0, "'delay' must be > 0");
+		return schedule(new WheelTask(task, -TimeUnit.MILLISECONDS.toNanos(delay), null, null),
+				startTime.getTime(), null);
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long delay) {
+		return scheduleWithFixedDelay(task, new Date(), delay);
+	}
+
+	private ScheduledFuture<?> schedule(WheelTask task, long startTime, Date scheduledExecutionTime) {
+		start();
+		task.deadline = deadlineFor(startTime);
+		task.scheduledExecutionTime = scheduledExecutionTime;
+		this.scheduledTaskCount.incrementAndGet();
+		this.pendingTasks.add(task);
+		if (this.workerState.get() == WORKER_SHUTDOWN && this.pendingTasks.remove(task)) {
+			this.scheduledTaskCount.decrementAndGet();
+			throw new RejectedExecutionException("The scheduler has been shut down");
+		}
+		return task;
+	}
+
+	private long deadlineFor(long time) {
+		long delay = Math.max(0, time - System.currentTimeMillis());
+		return System.nanoTime() - this.startTime + TimeUnit.MILLISECONDS.toNanos(delay);
+	}
+
+	private void start() {
+		switch (this.workerState.get()) {
+			case WORKER_STARTED:
+				break;
+			case WORKER_INIT:
+				if (this.workerState.compareAndSet(WORKER_INIT, WORKER_STARTED)) {
+					this.workerThread = this.threadFactory.newThread(new Worker());
+					this.workerThread.start();
+				}
+				break;
+			default:
+				throw new RejectedExecutionException("The scheduler has been shut down");
+		}
+		try {
+			this.startTimeInitialized.await();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for the scheduler to start", e);
+		}
+	}
+
+	/**
+	 * Stop the worker thread; tasks that have not yet run are discarded.
+	 */
+	@Override
+	public void destroy() {
+		if (this.workerState.getAndSet(WORKER_SHUTDOWN) == WORKER_STARTED) {
+			Thread thread = this.workerThread;
+			if (thread != null && thread != Thread.currentThread()) {
+				thread.interrupt();
+				try {
+					thread.join(TimeUnit.NANOSECONDS.toMillis(this.tickNanos) + 1000);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		else {
+			this.startTimeInitialized.countDown();
+		}
+	}
+
+	private void runTask(final WheelTask task) {
+		Executor executor = this.taskExecutor;
+		if (executor == null) {
+			task.run();
+		}
+		else {
+			try {
+				executor.execute(task);
+			}
+			catch (RejectedExecutionException e) {
+				logger.error("Task executor rejected " + task.task + "; cancelling it", e);
+				task.done(e);
+			}
+		}
+	}
+
+	private void reschedule(WheelTask task) {
+		if (this.workerState.get() == WORKER_STARTED) {
+			this.pendingTasks.add(task);
+		}
+		else {
+			task.cancel(false);
+		}
+	}
+
+
+	/**
+	 * A doubly-linked list of the tasks that hash to a tick; only accessed by the worker.
+	 */
+	private static final class Bucket {
+
+		private WheelTask head;
+
+		private WheelTask tail;
+
+		private void add(WheelTask task) {
+			task.bucket = this;
+			if (this.head == null) {
+				this.head = task;
+				this.tail = task;
+			}
+			else {
+				this.tail.next = task;
+				task.previous = this.tail;
+				this.tail = task;
+			}
+		}
+
+		private WheelTask remove(WheelTask task) {
+			WheelTask next = task.next;
+			if (task.previous != null) {
+				task.previous.next = next;
+			}
+			if (task.next != null) {
+				task.next.previous = task.previous;
+			}
+			if (task == this.head) {
+				this.head = next;
+			}
+			if (task == this.tail) {
+				this.tail = task.previous;
+			}
+			task.previous = null;
+			task.next = null;
+			task.bucket = null;
+			return next;
+		}
+
+	}
+
+
+	private final class Worker implements Runnable {
+
+		private long tick;
+
+		@Override
+		public void run() {
+			HashedWheelTaskScheduler.this.startTime = System.nanoTime();
+			HashedWheelTaskScheduler.this.startTimeInitialized.countDown();
+			while (HashedWheelTaskScheduler.this.workerState.get() == WORKER_STARTED) {
+				long now = waitForNextTick();
+				if (now > 0) {
+					processCancelledTasks();
+					transferPendingTasks();
+					expire(HashedWheelTaskScheduler.this.wheel[(int) (this.tick & HashedWheelTaskScheduler.this.mask)],
+							now);
+					this.tick++;
+				}
+			}
+			cancelRemainingTasks();
+		}
+
+		private void cancelRemainingTasks() {
+			for (Bucket bucket : HashedWheelTaskScheduler.this.wheel) {
+				WheelTask task = bucket.head;
+				while (task != null) {
+					WheelTask next = bucket.remove(task);
+					task.cancel(false);
+					task = next;
+				}
+			}
+			WheelTask task;
+			while ((task = HashedWheelTaskScheduler.this.pendingTasks.poll()) != null) {
+				task.cancel(false);
+			}
+			HashedWheelTaskScheduler.this.cancelledTasks.clear();
+		}
+
+		/**
+		 * Sleep until the start of the next tick.
+		 * @return the current time relative to the start time, or -1 if interrupted.
+		 */
+		private long waitForNextTick() {
+			long deadline = HashedWheelTaskScheduler.this.tickNanos * (this.tick + 1);
+			while (true) {
+				long now = System.nanoTime() - HashedWheelTaskScheduler.this.startTime;
+				long sleepMillis = (deadline - now + 999999) / 1000000;
+				if (sleepMillis <= 0) {
+					return now == 0 ? 1 : now;
+				}
+				try {
+					Thread.sleep(sleepMillis);
+				}
+				catch (InterruptedException e) {
+					if (HashedWheelTaskScheduler.this.workerState.get() == WORKER_SHUTDOWN) {
+						return -1;
+					}
+				}
+			}
+		}
+
+		private void processCancelledTasks() {
+			for (int i = 0; i < MAX_CANCELLATIONS_PER_TICK; i++) {
+				WheelTask task = HashedWheelTaskScheduler.this.cancelledTasks.poll();
+				if (task == null) {
+					break;
+				}
+				if (task.bucket != null) {
+					task.bucket.remove(task);
+				}
+			}
+		}
+
+		private void transferPendingTasks() {
+			long ticksPerWheel = HashedWheelTaskScheduler.this.wheel.length;
+			for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+				WheelTask task = HashedWheelTaskScheduler.this.pendingTasks.poll();
+				if (task == null) {
+					break;
+				}
+				if (task.state.get() != WheelTask.SCHEDULED) {
+					continue;
+				}
+				long calculated = task.deadline / HashedWheelTaskScheduler.this.tickNanos;
+				task.remainingRounds = (calculated - this.tick) / ticksPerWheel;
+				long ticks = Math.max(calculated, this.tick);
+				HashedWheelTaskScheduler.this.wheel[(int) (ticks & HashedWheelTaskScheduler.this.mask)].add(task);
+			}
+		}
+
+		private void expire(Bucket bucket, long now) {
+			WheelTask task = bucket.head;
+			while (task != null) {
+				if (task.state.get() != WheelTask.SCHEDULED) {
+					task = bucket.remove(task);
+				}
+				else if (task.remainingRounds <= 0 && task.deadline <= now) {
+					WheelTask next = bucket.remove(task);
+					if (task.state.compareAndSet(WheelTask.SCHEDULED, WheelTask.RUNNING)) {
+						runTask(task);
+					}
+					task = next;
+				}
+				else {
+					task.remainingRounds--;
+					task = task.next;
+				}
+			}
+		}
+
+	}
+
+
+	/**
+	 * A scheduled task, which is also the future returned to the caller; repeating tasks
+	 * are rescheduled using the same instance.
+	 */
+	private final class WheelTask implements ScheduledFuture<Object>, Runnable {
+
+		private static final int SCHEDULED = 0;
+
+		private static final int RUNNING = 1;
+
+		private static final int DONE = 2;
+
+		private static final int CANCELLED = 3;
+
+		private final AtomicInteger state = new AtomicInteger(SCHEDULED);
+
+		private final CountDownLatch completed = new CountDownLatch(1);
+
+		private final Runnable task;
+
+		/*
+		 * > 0 for fixed rate, < 0 for fixed delay, 0 for one-shot and trigger tasks.
+		 */
+		private final long period;
+
+		private final Trigger trigger;
+
+		private final SimpleTriggerContext triggerContext;
+
+		private final ErrorHandler errorHandler;
+
+		private volatile long deadline;
+
+		private volatile Date scheduledExecutionTime;
+
+		private volatile Throwable failure;
+
+		private long remainingRounds;
+
+		private Bucket bucket;
+
+		private WheelTask previous;
+
+		private WheelTask next;
+
+		private WheelTask(Runnable task, long period, Trigger trigger, SimpleTriggerContext triggerContext) {
+			Assert.notNull(task, "'task' must not be null");
+			this.task = task;
+			this.period = period;
+			this.trigger = trigger;
+			this.triggerContext = triggerContext;
+			ErrorHandler errorHandler = HashedWheelTaskScheduler.this.errorHandler;
+			this.errorHandler = errorHandler != null ? errorHandler
+					: TaskUtils.getDefaultErrorHandler(period != 0 || trigger != null);
+		}
+
+		@Override
+		public void run() {
+			Date actualExecutionTime = new Date();
+			try {
+				this.task.run();
+			}
+			catch (Throwable t) {
+				try {
+					this.errorHandler.handleError(t);
+				}
+				catch (Throwable propagated) {
+					done(propagated);
+					return;
+				}
+			}
+			if (!isRepeating()) {
+				done(null);
+				return;
+			}
+			if (this.trigger != null) {
+				this.triggerContext.update(this.scheduledExecutionTime, actualExecutionTime, new Date());
+				Date nextExecutionTime = this.trigger.nextExecutionTime(this.triggerContext);
+				if (nextExecutionTime == null) {
+					done(null);
+					return;
+				}
+				this.scheduledExecutionTime = nextExecutionTime;
+				this.deadline = deadlineFor(nextExecutionTime.getTime());
+			}
+			else if (this.period > 0) {
+				this.deadline += this.period;
+			}
+			else {
+				this.deadline = System.nanoTime() - HashedWheelTaskScheduler.this.startTime - this.period;
+			}
+			if (this.state.compareAndSet(RUNNING, SCHEDULED)) {
+				reschedule(this);
+			}
+		}
+
+		private boolean isRepeating() {
+			return this.period != 0 || this.trigger != null;
+		}
+
+		private void done(Throwable failure) {
+			this.failure = failure;
+			if (this.state.compareAndSet(RUNNING, DONE)) {
+				HashedWheelTaskScheduler.this.scheduledTaskCount.decrementAndGet();
+			}
+			this.completed.countDown();
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			while (true) {
+				int current = this.state.get();
+				if (current == DONE || current == CANCELLED) {
+					return false;
+				}
+				if (this.state.compareAndSet(current, CANCELLED)) {
+					HashedWheelTaskScheduler.this.scheduledTaskCount.decrementAndGet();
+					if (current == SCHEDULED) {
+						HashedWheelTaskScheduler.this.cancelledTasks.add(this);
+					}
+					this.completed.countDown();
+					return true;
+				}
+			}
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return this.state.get() == CANCELLED;
+		}
+
+		@Override
+		public boolean isDone() {
+			int current = this.state.get();
+			return current == DONE || current == CANCELLED;
+		}
+
+		@Override
+		public Object get() throws InterruptedException, ExecutionException {
+			this.completed.await();
+			return result();
+		}
+
+		@Override
+		public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException,
+				TimeoutException {
+			if (!this.completed.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return result();
+		}
+
+		private Object result() throws ExecutionException {
+			if (this.state.get() == CANCELLED) {
+				throw new CancellationException();
+			}
+			if (this.failure != null) {
+				throw new ExecutionException(this.failure);
+			}
+			return null;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(this.deadline - (System.nanoTime() - HashedWheelTaskScheduler.this.startTime),
+					TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other == this) {
+				return 0;
+			}
+			long difference = getDelay(TimeUnit.NANOSECONDS) - other.getDelay(TimeUnit.NANOSECONDS);
+			return difference < 0 ? -1 : (difference > 0 ? 1 : 0);
+		}
+
+		@Override
+		public String toString() {
+			return "WheelTask [task=" + this.task + ", delay=" + getDelay(TimeUnit.MILLISECONDS) + "ms]";
+		}
+
+	}
+
+}
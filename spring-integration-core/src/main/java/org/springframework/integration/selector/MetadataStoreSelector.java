@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,7 +29,8 @@ import org.springframework.util.Assert;
  * <p>
  * The {@link #accept} method extracts {@code metadataKey} from the provided {@code message}
  * using {@link MessageProcessor} and uses the {@code timestamp} header as the {@code value}
- * (hex) by default. The {@link #valueStrategy} can be provided to override the default behaviour.
+ * (hex) by default, or the current time if the message has no {@code timestamp} header.
+ * The {@link #valueStrategy} can be provided to override the default behaviour.
  * <p>
  * The successful result of the {@link #accept} method is based on the
  * {@link ConcurrentMetadataStore#putIfAbsent} return value. {@code true} is returned
@@ -81,9 +82,14 @@ public class MetadataStoreSelector implements MessageSelector {
 	@Override
 	public boolean accept(Message<?> message) {
 		String key = this.keyStrategy.processMessage(message);
-		String value = (this.valueStrategy != null)
-				? this.valueStrategy.processMessage(message)
-				: Long.toString(message.getHeaders().getTimestamp());
+		String value;
+		if (this.valueStrategy != null) {
+			value = this.valueStrategy.processMessage(message);
+		}
+		else {
+			Long timestamp = message.getHeaders().getTimestamp();
+			value = Long.toString(timestamp != null ? timestamp : System.currentTimeMillis());
+		}
 
 		return this.metadataStore.putIfAbsent(key, value) == null;
 	}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors
+ * Copyright 2002-2015 the original author or authors
  *
  *     Licensed under the Apache License, Version 2.0 (the "License");
  *     you may not use this file except in compliance with the License.
@@ -18,13 +18,16 @@ package org.springframework.integration.store;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 
 import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
@@ -32,6 +35,16 @@ import org.springframework.util.Assert;
 
 /**
  * Base class for implementations of Key/Value style {@link MessageGroupStore} and {@link MessageStore}
+ * <p>
+ * Each group is stored as a small header ({@link MessageGroupMetadata} without the message
+ * ids) and a separate list of the ids of its messages (the group's members), so that
+ * adding a message to a group, removing a message and getting the size of a group do not
+ * retrieve the group's other messages; the messages are retrieved only when
+ * {@link MessageGroup#getMessages()} is invoked.
+ * <p>
+ * Stores that can maintain a sorted index of the groups override the
+ * {@code do*ExpiryIndex} methods, so that {@link #expireMessageGroups(long)} only
+ * examines the groups that are due to expire.
  *
  * @author Oleg Zhurakousky
  * @since 2.1
@@ -42,8 +55,22 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	protected static final String MESSAGE_GROUP_KEY_PREFIX = "MESSAGE_GROUP_";
 
+	/**
+	 * The prefix of the keys holding the ids of the messages in each group.
+	 * @since 4.2
+	 */
+	protected static final String MESSAGE_GROUP_MEMBERS_KEY_PREFIX = "GROUP_MEMBERS_";
+
+	/**
+	 * The key of the expiry index, for stores that maintain one.
+	 * @since 4.2
+	 */
+	protected static final String MESSAGE_GROUP_EXPIRY_INDEX_KEY = "GROUP_EXPIRY_INDEX";
+
 	protected static final String CREATED_DATE = "CREATED_DATE";
 
+	private volatile boolean expiryIndexPopulated;
+
 	// MessageStore methods
 
 	@Override
@@ -88,42 +115,51 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	// MessageGroupStore methods
 
 	/**
-	 * Will create a new instance of SimpleMessageGroup if necessary.
+	 * Return the group with the provided id; the group's messages are not retrieved from
+	 * the store until {@link MessageGroup#getMessages()} is invoked. Will create a new
+	 * instance of SimpleMessageGroup if necessary.
 	 */
 	@Override
 	public MessageGroup getMessageGroup(Object groupId) {
-		return this.buildMessageGroup(groupId, false);
+		Assert.notNull(groupId, "'groupId' must not be null");
+		MessageGroupMetadata header = this.getGroupHeader(groupId);
+		if (header == null) {
+			return new SimpleMessageGroup(groupId);
+		}
+		return new PersistentMessageGroup(groupId, header);
 	}
 
-
 	/**
-	 * Add a Message to the group with the provided group ID.
+	 * Add a Message to the group with the provided group ID. Only the message, the id
+	 * of the message (appended to the group's members) and the group's header are
+	 * written; the other messages in the group are not retrieved.
 	 */
 	@Override
 	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
 		Assert.notNull(groupId, "'groupId' must not be null");
 		Assert.notNull(message, "'message' must not be null");
-
-		// add message as is to the MG accessible by the caller
-		SimpleMessageGroup messageGroup = this.getSimpleMessageGroup(this.getMessageGroup(groupId));
-
-		messageGroup.add(message);
+		MessageGroupMetadata header = this.getGroupHeader(groupId);
+		UUID messageId = message.getHeaders().getId();
+		String membersKey = MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId;
+		if (header == null) {
+			// discard any members left over from a group that was not completely removed
+			this.doRemoveGroupMembers(membersKey);
+		}
 
 		// enrich Message with additional headers and add it to MS
-		Message<?> enrichedMessage = this.enrichMessage(message);
-
-		this.addMessage(enrichedMessage);
-
-		// build raw MessageGroup and add enriched Message to it
-		SimpleMessageGroup rawGroup = this.buildMessageGroup(groupId, true);
-		rawGroup.setLastModified(System.currentTimeMillis());
-		rawGroup.add(enrichedMessage);
-
-		// store MessageGroupMetadata built from enriched MG
-		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, new MessageGroupMetadata(rawGroup));
+		this.doStore(MESSAGE_KEY_PREFIX + messageId, this.enrichMessage(message));
+		this.doAddToGroupMembers(membersKey, messageId);
 
-		// return clean MG
-		return this.getMessageGroup(groupId);
+		long now = System.currentTimeMillis();
+		if (header == null) {
+			header = this.storeGroupHeader(groupId, now, now, false, 0);
+			this.doAddToExpiryIndex(groupId, now);
+		}
+		else {
+			header = this.storeGroupHeader(groupId, header.getTimestamp(), now, header.isComplete(),
+					header.getLastReleasedMessageSequenceNumber());
+		}
+		return new PersistentMessageGroup(groupId, header);
 	}
 
 	/**
@@ -133,35 +169,34 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 	public MessageGroup removeMessageFromGroup(Object groupId, Message<?> messageToRemove) {
 		Assert.notNull(groupId, "'groupId' must not be null");
 		Assert.notNull(messageToRemove, "'messageToRemove' must not be null");
-
-		// build raw MG
-		SimpleMessageGroup rawGroup = this.buildMessageGroup(groupId, true);
-
-		// create a clean instance of
-		SimpleMessageGroup messageGroup = this.normalizeSimpleMessageGroup(rawGroup);
-
-		for (Message<?> message : rawGroup.getMessages()) {
-			if (message.getHeaders().getId().equals(messageToRemove.getHeaders().getId())){
-				rawGroup.remove(message);
-			}
+		MessageGroupMetadata header = this.getGroupHeader(groupId);
+		UUID messageId = messageToRemove.getHeaders().getId();
+		this.doRemoveFromGroupMembers(MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId, messageId);
+		this.removeMessage(messageId);
+		long now = System.currentTimeMillis();
+		if (header == null) {
+			header = this.storeGroupHeader(groupId, now, now, false, 0);
+			this.doAddToExpiryIndex(groupId, now);
 		}
-		this.removeMessage(messageToRemove.getHeaders().getId());
-		rawGroup.setLastModified(System.currentTimeMillis());
-
-		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, new MessageGroupMetadata(rawGroup));
-		messageGroup = this.getSimpleMessageGroup(this.getMessageGroup(groupId));
-
-		return messageGroup;
+		else {
+			header = this.storeGroupHeader(groupId, header.getTimestamp(), now, header.isComplete(),
+					header.getLastReleasedMessageSequenceNumber());
+		}
+		return new PersistentMessageGroup(groupId, header);
 	}
 
-
 	@Override
 	public void completeGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		SimpleMessageGroup messageGroup = this.buildMessageGroup(groupId, true);
-		messageGroup.complete();
-		messageGroup.setLastModified(System.currentTimeMillis());
-		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, new MessageGroupMetadata(messageGroup));
+		MessageGroupMetadata header = this.getGroupHeader(groupId);
+		long now = System.currentTimeMillis();
+		if (header == null) {
+			this.storeGroupHeader(groupId, now, now, true, 0);
+		}
+		else {
+			this.storeGroupHeader(groupId, header.getTimestamp(), now, true,
+					header.getLastReleasedMessageSequenceNumber());
+		}
 	}
 
 	/**
@@ -174,42 +209,70 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 		if (mgm != null) {
 			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
 			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
-
-			Iterator<UUID> messageIds = messageGroupMetadata.messageIdIterator();
-			while (messageIds.hasNext()){
-				this.removeMessage(messageIds.next());
+			if (messageGroupMetadata.hasMessageIds()) {
+				Iterator<UUID> messageIds = messageGroupMetadata.messageIdIterator();
+				while (messageIds.hasNext()) {
+					this.removeMessage(messageIds.next());
+				}
 			}
 		}
+		String membersKey = MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId;
+		for (UUID messageId : this.doGetGroupMembers(membersKey)) {
+			this.removeMessage(messageId);
+		}
+		this.doRemoveGroupMembers(membersKey);
+		this.doRemoveFromExpiryIndex(groupId);
 	}
 
 	@Override
 	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		SimpleMessageGroup messageGroup = this.buildMessageGroup(groupId, true);
-		messageGroup.setLastReleasedMessageSequenceNumber(sequenceNumber);
-		messageGroup.setLastModified(System.currentTimeMillis());
-		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, new MessageGroupMetadata(messageGroup));
+		MessageGroupMetadata header = this.getGroupHeader(groupId);
+		long now = System.currentTimeMillis();
+		if (header == null) {
+			this.storeGroupHeader(groupId, now, now, false, sequenceNumber);
+		}
+		else {
+			this.storeGroupHeader(groupId, header.getTimestamp(), now, header.isComplete(), sequenceNumber);
+		}
 	}
 
 	@Override
 	public Message<?> pollMessageFromGroup(Object groupId) {
 		Assert.notNull(groupId, "'groupId' must not be null");
-		Object mgm = this.doRetrieve(MESSAGE_GROUP_KEY_PREFIX + groupId);
-		if (mgm != null) {
-			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
-			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
-
-			UUID firstId = messageGroupMetadata.firstId();
-			if (firstId != null){
-				messageGroupMetadata.remove(firstId);
-				messageGroupMetadata.setLastModified(System.currentTimeMillis());
-				this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, messageGroupMetadata);
+		MessageGroupMetadata header = this.getGroupHeader(groupId);
+		if (header != null) {
+			UUID firstId = this.doPollGroupMembers(MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId);
+			if (firstId != null) {
+				this.storeGroupHeader(groupId, header.getTimestamp(), System.currentTimeMillis(),
+						header.isComplete(), header.getLastReleasedMessageSequenceNumber());
 				return this.removeMessage(firstId);
 			}
 		}
 		return null;
 	}
 
+	@Override
+	public MessageGroupMetadata getGroupMetadata(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		MessageGroupMetadata header = this.getGroupHeader(groupId);
+		if (header == null) {
+			return new MessageGroupMetadata(new SimpleMessageGroup(groupId));
+		}
+		return new MessageGroupMetadata(new PersistentMessageGroup(groupId, header), false,
+				this.doPeekGroupMembers(MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId));
+	}
+
+	@Override
+	public Message<?> getOneMessageFromGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		if (this.getGroupHeader(groupId) == null) {
+			return null;
+		}
+		UUID firstId = this.doPeekGroupMembers(MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId);
+		return firstId != null ? this.getMessage(firstId) : null;
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	public Iterator<MessageGroup> iterator() {
@@ -236,13 +299,11 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	@Override
 	public int messageGroupSize(Object groupId) {
-		Object mgm = this.doRetrieve(MESSAGE_GROUP_KEY_PREFIX + groupId);
-		if (mgm != null) {
-			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
-			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
-			return messageGroupMetadata.size();
+		Assert.notNull(groupId, "'groupId' must not be null");
+		if (this.getGroupHeader(groupId) == null) {
+			return 0;
 		}
-		return 0;
+		return this.doGetGroupMembersSize(MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId);
 	}
 
 	protected abstract Object doRetrieve(Object id);
@@ -253,6 +314,204 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 
 	protected abstract Collection<?> doListKeys(String keyPattern);
 
+	/**
+	 * Append the message id to the members of a group. This implementation stores the
+	 * ids as a single list value; subclasses should override the {@code do*GroupMembers}
+	 * methods when the underlying store supports appending to a list in place.
+	 * @param membersKey the key of the group's members.
+	 * @param messageId the message id.
+	 * @since 4.2
+	 */
+	protected void doAddToGroupMembers(String membersKey, UUID messageId) {
+		List<UUID> messageIds = this.retrieveGroupMembers(membersKey);
+		messageIds.add(messageId);
+		this.doStore(membersKey, messageIds);
+	}
+
+	/**
+	 * Remove the message id from the members of a group.
+	 * @param membersKey the key of the group's members.
+	 * @param messageId the message id.
+	 * @return true if the id was removed.
+	 * @since 4.2
+	 */
+	protected boolean doRemoveFromGroupMembers(String membersKey, UUID messageId) {
+		List<UUID> messageIds = this.retrieveGroupMembers(membersKey);
+		boolean removed = messageIds.remove(messageId);
+		if (removed) {
+			this.doStore(membersKey, messageIds);
+		}
+		return removed;
+	}
+
+	/**
+	 * Remove and return the first message id from the members of a group.
+	 * @param membersKey the key of the group's members.
+	 * @return the id, or null if the group has no members.
+	 * @since 4.2
+	 */
+	protected UUID doPollGroupMembers(String membersKey) {
+		List<UUID> messageIds = this.retrieveGroupMembers(membersKey);
+		if (messageIds.isEmpty()) {
+			return null;
+		}
+		UUID messageId = messageIds.remove(0);
+		this.doStore(membersKey, messageIds);
+		return messageId;
+	}
+
+	/**
+	 * Return the first message id from the members of a group.
+	 * @param membersKey the key of the group's members.
+	 * @return the id, or null if the group has no members.
+	 * @since 4.2
+	 */
+	protected UUID doPeekGroupMembers(String membersKey) {
+		List<UUID> messageIds = this.retrieveGroupMembers(membersKey);
+		return messageIds.isEmpty() ? null : messageIds.get(0);
+	}
+
+	/**
+	 * Return the number of members of a group.
+	 * @param membersKey the key of the group's members.
+	 * @return the size.
+	 * @since 4.2
+	 */
+	protected int doGetGroupMembersSize(String membersKey) {
+		return this.retrieveGroupMembers(membersKey).size();
+	}
+
+	/**
+	 * Return the message ids of the members of a group, in the order they were added.
+	 * @param membersKey the key of the group's members.
+	 * @return the ids.
+	 * @since 4.2
+	 */
+	protected List<UUID> doGetGroupMembers(String membersKey) {
+		return this.retrieveGroupMembers(membersKey);
+	}
+
+	/**
+	 * Remove the members of a group.
+	 * @param membersKey the key of the group's members.
+	 * @since 4.2
+	 */
+	protected void doRemoveGroupMembers(String membersKey) {
+		this.doRemove(membersKey);
+	}
+
+	/**
+	 * Add the group to the expiry index with the provided timestamp (or move it, if it is
+	 * already indexed). This implementation does nothing; override it, together with
+	 * {@link #doRemoveFromExpiryIndex(Object)} and {@link #doGetExpiryIndexRange(long)},
+	 * when the underlying store supports a sorted index.
+	 * @param groupId the group id.
+	 * @param timestamp the timestamp.
+	 * @since 4.2
+	 */
+	protected void doAddToExpiryIndex(Object groupId, long timestamp) {
+	}
+
+	/**
+	 * Remove the group from the expiry index.
+	 * @param groupId the group id.
+	 * @since 4.2
+	 */
+	protected void doRemoveFromExpiryIndex(Object groupId) {
+	}
+
+	/**
+	 * Return the ids of the groups in the expiry index with a timestamp less than or
+	 * equal to the threshold.
+	 * @param threshold the threshold.
+	 * @return the group ids, or null if the store has no expiry index (the default).
+	 * @since 4.2
+	 */
+	protected Collection<?> doGetExpiryIndexRange(long threshold) {
+		return null;
+	}
+
+	@Override
+	protected Iterable<MessageGroup> getExpiryCandidates(long threshold) {
+		Collection<?> groupIds = this.doGetExpiryIndexRange(threshold);
+		if (groupIds == null) {
+			return null;
+		}
+		if (!this.expiryIndexPopulated) {
+			/*
+			 * Examine all groups the first time, so that groups stored before the
+			 * index was maintained are added to it.
+			 */
+			this.expiryIndexPopulated = true;
+			return null;
+		}
+		List<MessageGroup> candidates = new ArrayList<MessageGroup>();
+		for (Object groupId : groupIds) {
+			MessageGroupMetadata header = this.getGroupHeader(groupId);
+			if (header == null) {
+				this.doRemoveFromExpiryIndex(groupId);
+			}
+			else {
+				candidates.add(new PersistentMessageGroup(groupId, header));
+			}
+		}
+		return candidates;
+	}
+
+	@Override
+	protected void updateExpiryIndex(Object groupId, long timestamp) {
+		this.doAddToExpiryIndex(groupId, timestamp);
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<UUID> retrieveGroupMembers(String membersKey) {
+		Object messageIds = this.doRetrieve(membersKey);
+		if (messageIds == null) {
+			return new ArrayList<UUID>();
+		}
+		Assert.isInstanceOf(List.class, messageIds);
+		return (List<UUID>) messageIds;
+	}
+
+	/**
+	 * Retrieve the group's header; the header of a group stored by an earlier version
+	 * holds the ids of the group's messages - these are moved to the group's members.
+	 */
+	private MessageGroupMetadata getGroupHeader(Object groupId) {
+		Object mgm = this.doRetrieve(MESSAGE_GROUP_KEY_PREFIX + groupId);
+		if (mgm == null) {
+			return null;
+		}
+		Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
+		MessageGroupMetadata header = (MessageGroupMetadata) mgm;
+		if (header.hasMessageIds()) {
+			String membersKey = MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId;
+			this.doRemoveGroupMembers(membersKey);
+			Iterator<UUID> messageIds = header.messageIdIterator();
+			while (messageIds.hasNext()) {
+				this.doAddToGroupMembers(membersKey, messageIds.next());
+			}
+			header = this.storeGroupHeader(groupId, header.getTimestamp(), header.getLastModified(),
+					header.isComplete(), header.getLastReleasedMessageSequenceNumber());
+		}
+		return header;
+	}
+
+	/**
+	 * Store the group's header - a {@link MessageGroupMetadata} without the message ids
+	 * (and with a size of zero - the size is that of the group's members).
+	 */
+	private MessageGroupMetadata storeGroupHeader(Object groupId, long timestamp, long lastModified,
+			boolean complete, int lastReleasedMessageSequenceNumber) {
+		SimpleMessageGroup group = new SimpleMessageGroup(Collections.<Message<?>>emptyList(), groupId, timestamp,
+				complete);
+		group.setLastModified(lastModified);
+		group.setLastReleasedMessageSequenceNumber(lastReleasedMessageSequenceNumber);
+		MessageGroupMetadata header = new MessageGroupMetadata(group, false, null);
+		this.doStore(MESSAGE_GROUP_KEY_PREFIX + groupId, header);
+		return header;
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	private Message<?> normalizeMessage(Message<?> message){
 		Message<?> normalizedMessage = this.getMessageBuilderFactory().fromMessage(message)
@@ -260,10 +519,21 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 				.build();
 		Map innerMap = (Map) new DirectFieldAccessor(normalizedMessage.getHeaders()).getPropertyValue("headers");
 		innerMap.put(MessageHeaders.ID, message.getHeaders().getId());
-		innerMap.put(MessageHeaders.TIMESTAMP, message.getHeaders().getTimestamp());
+		restoreTimestamp(innerMap, message);
 		return normalizedMessage;
 	}
 
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static void restoreTimestamp(Map innerMap, Message<?> message) {
+		Long timestamp = message.getHeaders().getTimestamp();
+		if (timestamp != null) {
+			innerMap.put(MessageHeaders.TIMESTAMP, timestamp);
+		}
+		else {
+			innerMap.remove(MessageHeaders.TIMESTAMP);
+		}
+	}
+
 	/**
 	 * Will enrich Message with additional meta headers
 	 */
@@ -274,57 +544,10 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 				.build();
 		Map innerMap = (Map) new DirectFieldAccessor(enrichedMessage.getHeaders()).getPropertyValue("headers");
 		innerMap.put(MessageHeaders.ID, message.getHeaders().getId());
-		innerMap.put(MessageHeaders.TIMESTAMP, message.getHeaders().getTimestamp());
+		restoreTimestamp(innerMap, message);
 		return enrichedMessage;
 	}
 
-	private SimpleMessageGroup buildMessageGroup(Object groupId, boolean raw){
-		Assert.notNull(groupId, "'groupId' must not be null");
-		Object mgm = this.doRetrieve(MESSAGE_GROUP_KEY_PREFIX + groupId);
-		if (mgm != null) {
-			Assert.isInstanceOf(MessageGroupMetadata.class, mgm);
-			MessageGroupMetadata messageGroupMetadata = (MessageGroupMetadata) mgm;
-			ArrayList<Message<?>> messages = new ArrayList<Message<?>>();
-
-			Iterator<UUID> messageIds = messageGroupMetadata.messageIdIterator();
-			while (messageIds.hasNext()){
-				if (raw){
-					messages.add(this.getRawMessage(messageIds.next()));
-				}
-				else {
-					messages.add(this.getMessage(messageIds.next()));
-				}
-			}
-
-			SimpleMessageGroup messageGroup = new SimpleMessageGroup(messages,
-						groupId, messageGroupMetadata.getTimestamp(), messageGroupMetadata.isComplete());
-			messageGroup.setLastModified(messageGroupMetadata.getLastModified());
-			messageGroup.setLastReleasedMessageSequenceNumber(messageGroupMetadata.getLastReleasedMessageSequenceNumber());
-			return messageGroup;
-		}
-		else {
-			return new SimpleMessageGroup(groupId);
-		}
-	}
-
-	private SimpleMessageGroup getSimpleMessageGroup(MessageGroup messageGroup){
-		if (messageGroup instanceof SimpleMessageGroup){
-			return (SimpleMessageGroup) messageGroup;
-		}
-		else {
-			return new SimpleMessageGroup(messageGroup);
-		}
-	}
-
-	private SimpleMessageGroup normalizeSimpleMessageGroup(SimpleMessageGroup messageGroup){
-		SimpleMessageGroup normalizedGroup = new SimpleMessageGroup(messageGroup.getGroupId());
-		for (Message<?> message : messageGroup.getMessages()) {
-			Message<?> normailizedMessage = this.normalizeMessage(message);
-			normalizedGroup.add(normailizedMessage);
-		}
-		return normalizedGroup;
-	}
-
 	private Message<?> getRawMessage(UUID id) {
 		Assert.notNull(id, "'id' must not be null");
 		Object message = this.doRetrieve(MESSAGE_KEY_PREFIX + id);
@@ -355,4 +578,130 @@ public abstract class AbstractKeyValueMessageStore extends AbstractMessageGroupS
 			throw new UnsupportedOperationException();
 		}
 	}
+
+	/**
+	 * A {@link MessageGroup} that retrieves its size, and its messages, from the store
+	 * only when first requested.
+	 */
+	private class PersistentMessageGroup implements MessageGroup {
+
+		private final Object groupId;
+
+		private final String membersKey;
+
+		private final long timestamp;
+
+		private final long lastModified;
+
+		private final int lastReleasedMessageSequenceNumber;
+
+		private volatile boolean complete;
+
+		private volatile Integer size;
+
+		private volatile Collection<Message<?>> messages;
+
+		private volatile Message<?> one;
+
+		private volatile boolean oneRetrieved;
+
+		private PersistentMessageGroup(Object groupId, MessageGroupMetadata header) {
+			this.groupId = groupId;
+			this.membersKey = MESSAGE_GROUP_MEMBERS_KEY_PREFIX + groupId;
+			this.timestamp = header.getTimestamp();
+			this.lastModified = header.getLastModified();
+			this.lastReleasedMessageSequenceNumber = header.getLastReleasedMessageSequenceNumber();
+			this.complete = header.isComplete();
+		}
+
+		@Override
+		public boolean canAdd(Message<?> message) {
+			return true;
+		}
+
+		@Override
+		public Collection<Message<?>> getMessages() {
+			if (this.messages == null) {
+				List<Message<?>> messages = new ArrayList<Message<?>>();
+				for (UUID messageId : doGetGroupMembers(this.membersKey)) {
+					Message<?> message = getMessage(messageId);
+					if (message != null) {
+						messages.add(message);
+					}
+				}
+				this.size = messages.size();
+				this.messages = Collections.unmodifiableList(messages);
+			}
+			return this.messages;
+		}
+
+		@Override
+		public Object getGroupId() {
+			return this.groupId;
+		}
+
+		@Override
+		public int getLastReleasedMessageSequenceNumber() {
+			return this.lastReleasedMessageSequenceNumber;
+		}
+
+		@Override
+		public boolean isComplete() {
+			return this.complete;
+		}
+
+		@Override
+		public void complete() {
+			this.complete = true;
+		}
+
+		@Override
+		public int getSequenceSize() {
+			Message<?> one = getOne();
+			return one == null ? 0 : new IntegrationMessageHeaderAccessor(one).getSequenceSize();
+		}
+
+		@Override
+		public int size() {
+			if (this.size == null) {
+				this.size = doGetGroupMembersSize(this.membersKey);
+			}
+			return this.size;
+		}
+
+		@Override
+		public Message<?> getOne() {
+			Collection<Message<?>> messages = this.messages;
+			if (messages != null) {
+				return messages.isEmpty() ? null : messages.iterator().next();
+			}
+			if (!this.oneRetrieved) {
+				UUID firstId = doPeekGroupMembers(this.membersKey);
+				this.one = firstId != null ? getMessage(firstId) : null;
+				this.oneRetrieved = true;
+			}
+			return this.one;
+		}
+
+		@Override
+		public long getTimestamp() {
+			return this.timestamp;
+		}
+
+		@Override
+		public long getLastModified() {
+			return this.lastModified;
+		}
+
+		@Override
+		public String toString() {
+			return "PersistentMessageGroup{" +
+					"groupId=" + this.groupId +
+					", timestamp=" + this.timestamp +
+					", lastModified=" + this.lastModified +
+					'}';
+		}
+
+	}
+
 }
@@ -107,17 +107,29 @@ public abstract class AbstractMessageGroupStore implements MessageGroupStore, It
 		expiryCallbacks.add(callback);
 	}
 
+	/**
+	 * Expire the groups whose timestamp (or last modified time, when
+	 * {@link #setTimeoutOnIdle(boolean) timeoutOnIdle}) is older than the timeout. When
+	 * the store maintains an expiry index (see {@link #getExpiryCandidates(long)}), only
+	 * the groups that are due, according to the index, are examined; otherwise all the
+	 * groups in the store are examined.
+	 */
 	@Override
 	public int expireMessageGroups(long timeout) {
 		int count = 0;
 		long threshold = System.currentTimeMillis() - timeout;
-		for (MessageGroup group : this) {
+		Iterable<MessageGroup> candidates = getExpiryCandidates(threshold);
+		if (candidates == null) {
+			candidates = this;
+		}
+		for (MessageGroup group : candidates) {
 
 			long timestamp = group.getTimestamp();
 			if (this.isTimeoutOnIdle() && group.getLastModified() > 0) {
 			    timestamp = group.getLastModified();
 			}
 
+			updateExpiryIndex(group.getGroupId(), timestamp);
 			if (timestamp <= threshold) {
 				count++;
 				expire(copy(group));
@@ -126,6 +138,35 @@ public abstract class AbstractMessageGroupStore implements MessageGroupStore, It
 		return count;
 	}
 
+	/**
+	 * Return the groups that may be expired with the threshold, according to an expiry
+	 * index maintained by the store. The index may be approximate (for example, a group
+	 * may be indexed with its creation time when the {@link #setTimeoutOnIdle(boolean)
+	 * timeoutOnIdle} is true); each candidate is checked before it is expired and
+	 * {@link #updateExpiryIndex(Object, long)} is invoked with its actual timestamp.
+	 * <p>
+	 * The default implementation returns null, meaning the store has no expiry index
+	 * and all groups are examined.
+	 * @param threshold the threshold; groups with an older timestamp are expired.
+	 * @return the candidate groups, or null.
+	 * @since 4.2
+	 */
+	protected Iterable<MessageGroup> getExpiryCandidates(long threshold) {
+		return null;
+	}
+
+	/**
+	 * Invoked for each group examined by {@link #expireMessageGroups(long)} (before it
+	 * is expired), with the timestamp from which its timeout is measured, so that a store
+	 * maintaining an expiry index can correct its entry for the group. The default
+	 * implementation does nothing.
+	 * @param groupId the group id.
+	 * @param timestamp the timestamp.
+	 * @since 4.2
+	 */
+	protected void updateExpiryIndex(Object groupId, long timestamp) {
+	}
+
 	/**
 	 * Used by expireMessageGroups. We need to return a snapshot of the group
 	 * at the time the reaper runs, so we can properly detect if the
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.messaging.Message;
+
+/**
+ * An immutable {@link MessageGroup} snapshot used by {@link LockFreeMessageStore}.
+ * Each mutation returns a new instance that shares structure with the original: the
+ * messages are held in a persistent queue (a front list in arrival order and a rear list
+ * in reverse arrival order), so appending a message or removing the oldest message does
+ * not copy the group. A snapshot can therefore be handed to readers (aggregators,
+ * release strategies, the reaper) without copying and without being affected by
+ * concurrent updates.
+ *
+ * @since 4.2
+ */
+public final class ImmutableMessageGroup implements MessageGroup {
+
+	private final Object groupId;
+
+	private final Node front;
+
+	private final Node rear;
+
+	private final int size;
+
+	private final long timestamp;
+
+	private final long lastModified;
+
+	private final boolean complete;
+
+	private final int lastReleasedMessageSequence;
+
+	private volatile List<Message<?>> messages;
+
+	public ImmutableMessageGroup(Object groupId) {
+		this(groupId, null, null, 0, System.currentTimeMillis(), 0, false, 0);
+	}
+
+	private ImmutableMessageGroup(Object groupId, Node front, Node rear, int size, long timestamp, long lastModified,
+			boolean complete, int lastReleasedMessageSequence) {
+		this.groupId = groupId;
+		this.front = front;
+		this.rear = rear;
+		this.size = size;
+		this.timestamp = timestamp;
+		this.lastModified = lastModified;
+		this.complete = complete;
+		this.lastReleasedMessageSequence = lastReleasedMessageSequence;
+	}
+
+	/**
+	 * @param message the message to append.
+	 * @param lastModified the modification time of the new snapshot.
+	 * @return a new snapshot with the message appended.
+	 */
+	public ImmutableMessageGroup withMessage(Message<?> message, long lastModified) {
+		if (this.front == null) {
+			return new ImmutableMessageGroup(this.groupId, new Node(message, null), null, 1, this.timestamp,
+					lastModified, this.complete, this.lastReleasedMessageSequence);
+		}
+		return new ImmutableMessageGroup(this.groupId, this.front, new Node(message, this.rear), this.size + 1,
+				this.timestamp, lastModified, this.complete, this.lastReleasedMessageSequence);
+	}
+
+	/**
+	 * @param lastModified the modification time of the new snapshot.
+	 * @return a new snapshot without the oldest message, or this snapshot if it is empty.
+	 */
+	public ImmutableMessageGroup withoutFirst(long lastModified) {
+		if (this.front == null) {
+			return this;
+		}
+		Node front = this.front.next;
+		Node rear = this.rear;
+		if (front == null) {
+			front = reverse(rear);
+			rear = null;
+		}
+		return new ImmutableMessageGroup(this.groupId, front, rear, this.size - 1, this.timestamp, lastModified,
+				this.complete, this.lastReleasedMessageSequence);
+	}
+
+	/**
+	 * Remove the first message that is {@code equal} to the supplied message; this
+	 * rebuilds the group.
+	 * @param message the message to remove.
+	 * @param lastModified the modification time of the new snapshot.
+	 * @return a new snapshot without the message, or this snapshot if the message is
+	 * not present.
+	 */
+	public ImmutableMessageGroup withoutMessage(Message<?> message, long lastModified) {
+		List<Message<?>> messages = new ArrayList<Message<?>>(getMessageList());
+		if (!messages.remove(message)) {
+			return this;
+		}
+		Node front = null;
+		for (int i = messages.size() - 1; i >= 0; i--) {
+			front = new Node(messages.get(i), front);
+		}
+		return new ImmutableMessageGroup(this.groupId, front, null, messages.size(), this.timestamp, lastModified,
+				this.complete, this.lastReleasedMessageSequence);
+	}
+
+	/**
+	 * @param lastModified the modification time of the new snapshot.
+	 * @return a new snapshot marked as complete.
+	 */
+	public ImmutableMessageGroup asComplete(long lastModified) {
+		return new ImmutableMessageGroup(this.groupId, this.front, this.rear, this.size, this.timestamp, lastModified,
+				true, this.lastReleasedMessageSequence);
+	}
+
+	/**
+	 * @param sequenceNumber the last released sequence number.
+	 * @param lastModified the modification time of the new snapshot.
+	 * @return a new snapshot with the last released sequence number.
+	 */
+	public ImmutableMessageGroup withLastReleasedMessageSequenceNumber(int sequenceNumber, long lastModified) {
+		return new ImmutableMessageGroup(this.groupId, this.front, this.rear, this.size, this.timestamp, lastModified,
+				this.complete, sequenceNumber);
+	}
+
+	@Override
+	public boolean canAdd(Message<?> message) {
+		return true;
+	}
+
+	@Override
+	public Collection<Message<?>> getMessages() {
+		return getMessageList();
+	}
+
+	private List<Message<?>> getMessageList() {
+		List<Message<?>> messages = this.messages;
+		if (messages == null) {
+			List<Message<?>> list = new ArrayList<Message<?>>(this.size);
+			for (Node node = this.front; node != null; node = node.next) {
+				list.add(node.message);
+			}
+			for (Node node = reverse(this.rear); node != null; node = node.next) {
+				list.add(node.message);
+			}
+			messages = Collections.unmodifiableList(list);
+			this.messages = messages;
+		}
+		return messages;
+	}
+
+	@Override
+	public Object getGroupId() {
+		return this.groupId;
+	}
+
+	@Override
+	public int getLastReleasedMessageSequenceNumber() {
+		return this.lastReleasedMessageSequence;
+	}
+
+	@Override
+	public boolean isComplete() {
+		return this.complete;
+	}
+
+	/**
+	 * Not supported; this group is immutable - use
+	 * {@link MessageGroupStore#completeGroup(Object)}.
+	 */
+	@Override
+	public void complete() {
+		throw new UnsupportedOperationException("ImmutableMessageGroup cannot be modified; "
+				+ "use MessageGroupStore.completeGroup() instead");
+	}
+
+	@Override
+	public int getSequenceSize() {
+		if (this.size == 0) {
+			return 0;
+		}
+		return new IntegrationMessageHeaderAccessor(getOne()).getSequenceSize();
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public Message<?> getOne() {
+		return this.front == null ? null : this.front.message;
+	}
+
+	@Override
+	public long getTimestamp() {
+		return this.timestamp;
+	}
+
+	@Override
+	public long getLastModified() {
+		return this.lastModified;
+	}
+
+	private static Node reverse(Node node) {
+		Node reversed = null;
+		while (node != null) {
+			reversed = new Node(node.message, reversed);
+			node = node.next;
+		}
+		return reversed;
+	}
+
+	@Override
+	public String toString() {
+		return "ImmutableMessageGroup{" +
+				"groupId=" + this.groupId +
+				", messages=" + getMessageList() +
+				", timestamp=" + this.timestamp +
+				", lastModified=" + this.lastModified +
+				'}';
+	}
+
+	private static final class Node {
+
+		private final Message<?> message;
+
+		private final Node next;
+
+		private Node(Message<?> message, Node next) {
+			this.message = message;
+			this.next = next;
+		}
+
+	}
+
+}
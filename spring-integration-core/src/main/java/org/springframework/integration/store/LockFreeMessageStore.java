@@ -0,0 +1,268 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.integration.util.UpperBound;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+
+/**
+ * In-memory implementation of {@link MessageStore} and {@link MessageGroupStore} intended
+ * for a large number of concurrently updated groups (e.g. aggregators with thousands of
+ * open correlation groups).
+ * <p>
+ * Unlike the {@link SimpleMessageStore}, no {@link org.springframework.integration.support.locks.LockRegistry}
+ * is used; each group is held as an {@link ImmutableMessageGroup} snapshot and updates
+ * are applied with a compare-and-swap of the snapshot in a {@link ConcurrentMap}, retrying
+ * on conflict. Since snapshots are immutable, {@link #getMessageGroup(Object)} returns a
+ * consistent view of the group without copying, and the snapshot is unaffected by
+ * subsequent updates. Appending a message, or polling the oldest message, does not copy
+ * the group.
+ * <p>
+ * As with the {@link SimpleMessageStore}, capacity limits can be applied independently
+ * to individual messages and to grouped messages.
+ *
+ * @since 4.2
+ */
+public class LockFreeMessageStore extends AbstractMessageGroupStore implements MessageStore, ChannelMessageStore {
+
+	private final ConcurrentMap<UUID, Message<?>> idToMessage = new ConcurrentHashMap<UUID, Message<?>>();
+
+	private final ConcurrentMap<Object, ImmutableMessageGroup> groupIdToMessageGroup =
+			new ConcurrentHashMap<Object, ImmutableMessageGroup>();
+
+	private final UpperBound individualUpperBound;
+
+	private final UpperBound groupUpperBound;
+
+	/**
+	 * Creates a LockFreeMessageStore with a maximum size limited by the given capacities,
+	 * or unlimited size if a capacity is less than 1. See
+	 * {@link SimpleMessageStore#SimpleMessageStore(int, int)}.
+	 * @param individualCapacity The message capacity.
+	 * @param groupCapacity The capacity of each group.
+	 */
+	public LockFreeMessageStore(int individualCapacity, int groupCapacity) {
+		this.individualUpperBound = new UpperBound(individualCapacity);
+		this.groupUpperBound = new UpperBound(groupCapacity);
+	}
+
+	/**
+	 * Creates a LockFreeMessageStore with the same capacity for individual and grouped
+	 * messages.
+	 * @param capacity The capacity.
+	 */
+	public LockFreeMessageStore(int capacity) {
+		this(capacity, capacity);
+	}
+
+	/**
+	 * Creates a LockFreeMessageStore with unlimited capacity.
+	 */
+	public LockFreeMessageStore() {
+		this(0);
+	}
+
+	@Override
+	@ManagedAttribute
+	public long getMessageCount() {
+		return this.idToMessage.size();
+	}
+
+	@Override
+	public <T> Message<T> addMessage(Message<T> message) {
+		if (!this.individualUpperBound.tryAcquire(0)) {
+			throw new MessagingException(this.getClass().getSimpleName()
+					+ " was out of capacity at, try constructing it with a larger capacity.");
+		}
+		this.idToMessage.put(message.getHeaders().getId(), message);
+		return message;
+	}
+
+	@Override
+	public Message<?> getMessage(UUID key) {
+		return (key != null) ? this.idToMessage.get(key) : null;
+	}
+
+	@Override
+	public Message<?> removeMessage(UUID key) {
+		if (key != null) {
+			Message<?> removed = this.idToMessage.remove(key);
+			if (removed != null) {
+				this.individualUpperBound.release();
+			}
+			return removed;
+		}
+		else {
+			return null;
+		}
+	}
+
+	@Override
+	public MessageGroup getMessageGroup(Object groupId) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		ImmutableMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+		return group != null ? group : new ImmutableMessageGroup(groupId);
+	}
+
+	@Override
+	public MessageGroup addMessageToGroup(Object groupId, Message<?> message) {
+		Assert.notNull(groupId, "'groupId' must not be null");
+		if (!this.groupUpperBound.tryAcquire(0)) {
+			throw new MessagingException(this.getClass().getSimpleName()
+					+ " was out of capacity at, try constructing it with a larger capacity.");
+		}
+		while (true) {
+			ImmutableMessageGroup current = this.groupIdToMessageGroup.get(groupId);
+			if (current == null) {
+				ImmutableMessageGroup created = new ImmutableMessageGroup(groupId)
+						.withMessage(message, System.currentTimeMillis());
+				if (this.groupIdToMessageGroup.putIfAbsent(groupId, created) == null) {
+					return created;
+				}
+			}
+			else {
+				ImmutableMessageGroup updated = current.withMessage(message, System.currentTimeMillis());
+				if (this.groupIdToMessageGroup.replace(groupId, current, updated)) {
+					return updated;
+				}
+			}
+		}
+	}
+
+	@Override
+	public void removeMessageGroup(Object groupId) {
+		ImmutableMessageGroup removed = this.groupIdToMessageGroup.remove(groupId);
+		if (removed != null) {
+			this.groupUpperBound.release(removed.size());
+		}
+	}
+
+	@Override
+	public MessageGroup removeMessageFromGroup(Object groupId, Message<?> messageToRemove) {
+		while (true) {
+			ImmutableMessageGroup current = this.groupIdToMessageGroup.get(groupId);
+			Assert.notNull(current, "MessageGroup for groupId '" + groupId + "' " +
+					"can not be located while attempting to remove Message from the MessageGroup");
+			ImmutableMessageGroup updated = current.withoutMessage(messageToRemove, System.currentTimeMillis());
+			if (updated == current) {
+				return current;
+			}
+			if (this.groupIdToMessageGroup.replace(groupId, current, updated)) {
+				this.groupUpperBound.release();
+				return updated;
+			}
+		}
+	}
+
+	/**
+	 * Remove the message from the group if it is present.
+	 * @param groupId the group id.
+	 * @param messageToRemove the message.
+	 * @return true if this call removed the message; false if the group or message was not
+	 * present (e.g. it was removed by another thread).
+	 */
+	public boolean removeMessageFromGroupIfPresent(Object groupId, Message<?> messageToRemove) {
+		while (true) {
+			ImmutableMessageGroup current = this.groupIdToMessageGroup.get(groupId);
+			if (current == null) {
+				return false;
+			}
+			ImmutableMessageGroup updated = current.withoutMessage(messageToRemove, System.currentTimeMillis());
+			if (updated == current) {
+				return false;
+			}
+			if (this.groupIdToMessageGroup.replace(groupId, current, updated)) {
+				this.groupUpperBound.release();
+				return true;
+			}
+		}
+	}
+
+	@Override
+	public Iterator<MessageGroup> iterator() {
+		return new ArrayList<MessageGroup>(this.groupIdToMessageGroup.values()).iterator();
+	}
+
+	@Override
+	public void setLastReleasedSequenceNumberForGroup(Object groupId, int sequenceNumber) {
+		while (true) {
+			ImmutableMessageGroup current = this.groupIdToMessageGroup.get(groupId);
+			Assert.notNull(current, "MessageGroup for groupId '" + groupId + "' " +
+					"can not be located while attempting to set 'lastReleasedSequenceNumber'");
+			ImmutableMessageGroup updated = current.withLastReleasedMessageSequenceNumber(sequenceNumber,
+					System.currentTimeMillis());
+			if (this.groupIdToMessageGroup.replace(groupId, current, updated)) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void completeGroup(Object groupId) {
+		while (true) {
+			ImmutableMessageGroup current = this.groupIdToMessageGroup.get(groupId);
+			Assert.notNull(current, "MessageGroup for groupId '" + groupId + "' " +
+					"can not be located while attempting to complete the MessageGroup");
+			ImmutableMessageGroup updated = current.asComplete(System.currentTimeMillis());
+			if (this.groupIdToMessageGroup.replace(groupId, current, updated)) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public Message<?> pollMessageFromGroup(Object groupId) {
+		while (true) {
+			ImmutableMessageGroup current = this.groupIdToMessageGroup.get(groupId);
+			if (current == null || current.size() == 0) {
+				return null;
+			}
+			ImmutableMessageGroup updated = current.withoutFirst(System.currentTimeMillis());
+			if (this.groupIdToMessageGroup.replace(groupId, current, updated)) {
+				this.groupUpperBound.release();
+				return current.getOne();
+			}
+		}
+	}
+
+	@Override
+	public int messageGroupSize(Object groupId) {
+		ImmutableMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+		return group != null ? group.size() : 0;
+	}
+
+	@Override
+	public MessageGroupMetadata getGroupMetadata(Object groupId) {
+		return new MessageGroupMetadata(getMessageGroup(groupId));
+	}
+
+	@Override
+	public Message<?> getOneMessageFromGroup(Object groupId) {
+		ImmutableMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+		return group != null ? group.getOne() : null;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -105,6 +105,14 @@ public class MessageGroupMetadata implements Serializable {
 		return this.size;
 	}
 
+	/**
+	 * @return true if this metadata holds the ids of the messages in the group.
+	 * @since 4.2
+	 */
+	boolean hasMessageIds() {
+		return this.hasMessages;
+	}
+
 	public UUID firstId(){
 		if (this.first != null) {
 			return this.first;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -200,12 +200,14 @@ public class MessageGroupQueue extends AbstractQueue<Message<?>> implements Bloc
 		try {
 			storeLock.lockInterruptibly();
 			try {
-				Message<?> message = this.messageGroupStore.pollMessageFromGroup(groupId);
-				for (int i = 0; i < maxElements && message != null; i++) {
+				Message<?> message;
+				while (list.size() < maxElements
+						&& (message = this.messageGroupStore.pollMessageFromGroup(groupId)) != null) {
 					list.add(message);
-					message = this.messageGroupStore.pollMessageFromGroup(groupId);
 				}
-				this.messageStoreNotFull.signal();
+				if (list.size() > 0) {
+					this.messageStoreNotFull.signalAll();
+				}
 			}
 			finally {
 				storeLock.unlock();
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -13,12 +13,16 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
 
 import org.springframework.integration.support.locks.DefaultLockRegistry;
@@ -33,6 +37,9 @@ import org.springframework.util.CollectionUtils;
 /**
  * Map-based in-memory implementation of {@link MessageStore} and {@link MessageGroupStore}. Enforces a maximum capacity for the
  * store.
+ * <p>
+ * Groups are indexed by their creation time so that {@link #expireMessageGroups(long)} only examines
+ * the groups that are due to expire.
  *
  * @author Iwein Fuld
  * @author Mark Fisher
@@ -51,6 +58,12 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 
 	private final ConcurrentMap<Object, SimpleMessageGroup> groupIdToMessageGroup;
 
+	private final ConcurrentSkipListMap<ExpiryKey, Object> expiryIndex = new ConcurrentSkipListMap<ExpiryKey, Object>();
+
+	private final ConcurrentMap<Object, ExpiryKey> expiryKeys = new ConcurrentHashMap<Object, ExpiryKey>();
+
+	private final AtomicLong expirySequence = new AtomicLong();
+
 	private final UpperBound individualUpperBound;
 
 	private final UpperBound groupUpperBound;
@@ -208,6 +221,7 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 				if (group == null) {
 					group = new SimpleMessageGroup(groupId);
 					this.groupIdToMessageGroup.putIfAbsent(groupId, group);
+					indexForExpiry(groupId, group.getTimestamp());
 				}
 				group.add(message);
 				this.groupIdToMessageGroup.get(groupId).setLastModified(System.currentTimeMillis());
@@ -235,6 +249,10 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 
 				groupUpperBound.release(groupIdToMessageGroup.get(groupId).size());
 				groupIdToMessageGroup.remove(groupId);
+				ExpiryKey expiryKey = this.expiryKeys.remove(groupId);
+				if (expiryKey != null) {
+					this.expiryIndex.remove(expiryKey);
+				}
 			}
 			finally {
 				lock.unlock();
@@ -269,6 +287,53 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		}
 	}
 
+	@Override
+	protected Iterable<MessageGroup> getExpiryCandidates(long threshold) {
+		List<MessageGroup> candidates = new ArrayList<MessageGroup>();
+		for (Object groupId : this.expiryIndex.headMap(new ExpiryKey(threshold, Long.MAX_VALUE)).values()) {
+			SimpleMessageGroup group = this.groupIdToMessageGroup.get(groupId);
+			if (group != null) {
+				candidates.add(group);
+			}
+		}
+		return candidates;
+	}
+
+	@Override
+	protected void updateExpiryIndex(Object groupId, long timestamp) {
+		Lock lock = this.lockRegistry.obtain(groupId);
+		try {
+			lock.lockInterruptibly();
+			try {
+				ExpiryKey expiryKey = this.expiryKeys.get(groupId);
+				if (this.groupIdToMessageGroup.containsKey(groupId)
+						&& (expiryKey == null || expiryKey.timestamp != timestamp)) {
+					indexForExpiry(groupId, timestamp);
+				}
+			}
+			finally {
+				lock.unlock();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted while obtaining lock", e);
+		}
+	}
+
+	/**
+	 * Add (or move) the group's entry in the expiry index; must be called while holding
+	 * the group's lock.
+	 */
+	private void indexForExpiry(Object groupId, long timestamp) {
+		ExpiryKey expiryKey = new ExpiryKey(timestamp, this.expirySequence.incrementAndGet());
+		ExpiryKey previous = this.expiryKeys.put(groupId, expiryKey);
+		if (previous != null) {
+			this.expiryIndex.remove(previous);
+		}
+		this.expiryIndex.put(expiryKey, groupId);
+	}
+
 	@Override
 	public Iterator<MessageGroup> iterator() {
 		return new HashSet<MessageGroup>(groupIdToMessageGroup.values()).iterator();
@@ -346,4 +411,26 @@ public class SimpleMessageStore extends AbstractMessageGroupStore
 		return this.getMessageGroup(groupId).getOne();
 	}
 
+
+	private static final class ExpiryKey implements Comparable<ExpiryKey> {
+
+		private final long timestamp;
+
+		private final long sequence;
+
+		private ExpiryKey(long timestamp, long sequence) {
+			this.timestamp = timestamp;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public int compareTo(ExpiryKey other) {
+			if (this.timestamp != other.timestamp) {
+				return this.timestamp < other.timestamp ? -1 : 1;
+			}
+			return this.sequence < other.sequence ? -1 : (this.sequence == other.sequence ? 0 : 1);
+		}
+
+	}
+
 }
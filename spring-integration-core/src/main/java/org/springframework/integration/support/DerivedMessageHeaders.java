@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.messaging.MessageHeaders;
+
+/**
+ * Immutable {@link MessageHeaders} for a message built from another message; the
+ * parent's headers and the changes recorded by a {@link LayeredMessageHeaderAccessor}
+ * are combined with a single copy, instead of copying the parent's headers into the
+ * accessor, then into a map, and then into the new headers.
+ * <p>
+ * These are otherwise standard headers (all the headers are held in the superclass map),
+ * so they can be compared with, and modified by message stores in the same way as,
+ * any other {@link MessageHeaders}. They are serialized as standard
+ * {@link MessageHeaders}, so readers (for example, other members of a cluster sharing a
+ * message store) do not need this class.
+ *
+ * @since 4.2
+ *
+ */
+final class DerivedMessageHeaders extends MessageHeaders {
+
+	private static final long serialVersionUID = -5428167215405617218L;
+
+	/**
+	 * Only derive from parents with at least this number of headers; for smaller maps, the
+	 * saving does not justify the additional builder state.
+	 */
+	static final int MIN_PARENT_SIZE = 8;
+
+	/**
+	 * Construct an instance with a new id and a timestamp according to the
+	 * {@link MessageTimestamps} mode.
+	 * @param parent the parent headers.
+	 * @param changes new or changed headers (not including id and timestamp).
+	 * @param removed headers removed from the parent.
+	 */
+	DerivedMessageHeaders(MessageHeaders parent, Map<String, Object> changes, Set<String> removed) {
+		super(parent, ID_VALUE_NONE, -1L);
+		Map<String, Object> headers = getRawHeaders();
+		for (String name : removed) {
+			headers.remove(name);
+		}
+		headers.putAll(changes);
+		headers.put(ID, getIdGenerator().generateId());
+		long timestamp = MessageTimestamps.currentTimestamp();
+		if (timestamp >= 0) {
+			headers.put(TIMESTAMP, timestamp);
+		}
+	}
+
+	/**
+	 * @param headers the candidate parent headers.
+	 * @return true if the headers are immutable and large enough to derive from.
+	 */
+	static boolean canDerive(MessageHeaders headers) {
+		return (headers.getClass() == MessageHeaders.class || headers instanceof DerivedMessageHeaders
+				|| headers instanceof MessageTimestamps.TimestampedMessageHeaders)
+				&& headers.size() >= MIN_PARENT_SIZE;
+	}
+
+	private Object writeReplace() {
+		return standardHeaders(getRawHeaders());
+	}
+
+	/**
+	 * Create standard {@link MessageHeaders} containing exactly the provided headers,
+	 * including the id and timestamp (if present).
+	 * @param rawHeaders the headers.
+	 * @return the message headers.
+	 */
+	@SuppressWarnings("unchecked")
+	static MessageHeaders standardHeaders(Map<String, Object> rawHeaders) {
+		MessageHeaders headers = new MessageHeaders(rawHeaders);
+		// the constructor generates a new id and timestamp; restore the originals
+		Map<String, Object> standardRawHeaders =
+				(Map<String, Object>) new DirectFieldAccessor(headers).getPropertyValue("headers");
+		standardRawHeaders.clear();
+		standardRawHeaders.putAll(rawHeaders);
+		return headers;
+	}
+
+}
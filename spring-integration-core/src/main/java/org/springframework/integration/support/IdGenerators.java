@@ -1,5 +1,5 @@
 /*
- * Copyright 2013 the original author or authors.
+ * Copyright 2013-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,9 +16,12 @@
 
 package org.springframework.integration.support;
 
+import java.security.SecureRandom;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.util.Assert;
 import org.springframework.util.IdGenerator;
 
 
@@ -64,4 +67,120 @@ public class IdGenerators {
         }
 
     }
+
+	/**
+	 * Generates time-ordered ids, in the layout of a version 7 UUID, without contention
+	 * between threads: 48 bits of epoch milliseconds, followed by a 36 bit per-thread
+	 * sequence, a 16 bit node id and a 22 bit per-thread slot. Ids generated by each
+	 * thread are strictly increasing, even if the clock moves backwards, and ids are
+	 * unique across generators with different node ids (as long as fewer than 2^22
+	 * threads have used the generator).
+	 * <p>
+	 * When ids must be unique across a cluster, configure each instance with a distinct
+	 * node id; by default, a random node id is chosen.
+	 * @since 4.2
+	 */
+	public static class TimeOrderedIdGenerator implements IdGenerator {
+
+		private static final int MAX_NODE_ID = 0xffff;
+
+		private static final long MAX_SEQUENCE = (1L << 36) - 1;
+
+		private static final long VERSION = 0x7000L;
+
+		private static final long VARIANT = 0x8000000000000000L;
+
+		private final AtomicInteger threadSlots = new AtomicInteger();
+
+		private final ThreadLocal<Sequence> sequence = new ThreadLocal<Sequence>() {
+
+			@Override
+			protected Sequence initialValue() {
+				return new Sequence(((long) TimeOrderedIdGenerator.this.threadSlots.getAndIncrement() & 0x3fffff) << 24);
+			}
+
+		};
+
+		private final int nodeId;
+
+		private final long nodeBits;
+
+		public TimeOrderedIdGenerator() {
+			this(new SecureRandom().nextInt(MAX_NODE_ID + 1));
+		}
+
+		/**
+		 * @param nodeId the node id (0-65535), unique within the cluster.
+		 */
+		public TimeOrderedIdGenerator(int nodeId) {
+			Assert.isTrue(nodeId >= 0 && nodeId <= MAX_NODE_ID, "'nodeId' must be between 0 and " + MAX_NODE_ID);
+			this.nodeId = nodeId;
+			this.nodeBits = (long) nodeId << 46;
+		}
+
+		public int getNodeId() {
+			return this.nodeId;
+		}
+
+		@Override
+		public UUID generateId() {
+			Sequence sequence = this.sequence.get();
+			long now = System.currentTimeMillis();
+			if (now > sequence.millis) {
+				sequence.millis = now;
+				sequence.value = 0;
+			}
+			else if (++sequence.value > MAX_SEQUENCE) {
+				sequence.millis++;
+				sequence.value = 0;
+			}
+			long value = sequence.value;
+			return new UUID(sequence.millis << 16 | VERSION | value >>> 24,
+					VARIANT | this.nodeBits | sequence.threadBits | (value & 0xffffff));
+		}
+
+		private static final class Sequence {
+
+			private final long threadBits;
+
+			private long millis;
+
+			private long value;
+
+			private Sequence(long threadBits) {
+				this.threadBits = threadBits;
+			}
+
+		}
+
+	}
+
+	/**
+	 * The cheapest ids that are still unique within the JVM (as required by message
+	 * stores, aggregators etc.): a per-thread slot and a per-thread counter, with no
+	 * randomness, clock access or contention between threads. Use when ids are not
+	 * otherwise needed; they are not unique across JVMs.
+	 * @since 4.2
+	 */
+	public static class ThreadLocalIncrementingIdGenerator implements IdGenerator {
+
+		private final AtomicLong threadSlots = new AtomicLong();
+
+		private final ThreadLocal<long[]> counter = new ThreadLocal<long[]>() {
+
+			@Override
+			protected long[] initialValue() {
+				return new long[] { ThreadLocalIncrementingIdGenerator.this.threadSlots.incrementAndGet(), 0 };
+			}
+
+		};
+
+		@Override
+		public UUID generateId() {
+			long[] counter = this.counter.get();
+			return new UUID(counter[0], ++counter[1]);
+		}
+
+	}
+
 }
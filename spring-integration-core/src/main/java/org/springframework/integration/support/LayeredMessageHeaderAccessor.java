@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.PatternMatchUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * An {@link IntegrationMessageHeaderAccessor} that records changes to the headers of a
+ * parent {@link MessageHeaders}, without copying them, so that the new message can be
+ * built with {@link DerivedMessageHeaders}. Only the methods used by
+ * {@link MessageBuilder} are supported.
+ *
+ * @since 4.2
+ *
+ */
+class LayeredMessageHeaderAccessor extends IntegrationMessageHeaderAccessor {
+
+	private final MessageHeaders parent;
+
+	private final Set<String> removed = new HashSet<String>();
+
+	LayeredMessageHeaderAccessor(MessageHeaders parent) {
+		super(null);
+		this.parent = parent;
+	}
+
+	@Override
+	public Object getHeader(String headerName) {
+		Object value = super.getHeader(headerName);
+		if (value != null || isReadOnly(headerName) || this.removed.contains(headerName)) {
+			return value;
+		}
+		return this.parent.get(headerName);
+	}
+
+	@Override
+	public void setHeader(String name, Object value) {
+		if (value != null) {
+			super.setHeader(name, value);
+			this.removed.remove(name);
+		}
+		else {
+			boolean inParent = !isReadOnly(name) && !this.removed.contains(name) && this.parent.containsKey(name);
+			super.setHeader(name, null);
+			if (inParent) {
+				this.removed.add(name);
+			}
+		}
+	}
+
+	@Override
+	public void removeHeaders(String... headerPatterns) {
+		List<String> headersToRemove = new ArrayList<String>();
+		for (String pattern : headerPatterns) {
+			if (StringUtils.hasLength(pattern)) {
+				if (pattern.contains("*")) {
+					for (String headerName : getHeaderNames()) {
+						if (PatternMatchUtils.simpleMatch(pattern, headerName)) {
+							headersToRemove.add(headerName);
+						}
+					}
+				}
+				else {
+					headersToRemove.add(pattern);
+				}
+			}
+		}
+		for (String headerToRemove : headersToRemove) {
+			removeHeader(headerToRemove);
+		}
+	}
+
+	@Override
+	public Map<String, Object> toMap() {
+		Map<String, Object> map = new HashMap<String, Object>(this.parent);
+		map.remove(MessageHeaders.ID);
+		map.remove(MessageHeaders.TIMESTAMP);
+		map.keySet().removeAll(this.removed);
+		map.putAll(super.toMap());
+		return map;
+	}
+
+	/**
+	 * Build immutable headers, with a new id and timestamp, from the parent and the changes.
+	 * @return the headers.
+	 */
+	MessageHeaders toDerivedMessageHeaders() {
+		return new DerivedMessageHeaders(this.parent, super.toMap(), this.removed);
+	}
+
+	private Set<String> getHeaderNames() {
+		Set<String> headerNames = new LinkedHashSet<String>(this.parent.keySet());
+		headerNames.remove(MessageHeaders.ID);
+		headerNames.remove(MessageHeaders.TIMESTAMP);
+		headerNames.removeAll(this.removed);
+		headerNames.addAll(super.toMap().keySet());
+		return headerNames;
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -32,6 +32,13 @@ import org.springframework.util.Assert;
  * The default message builder; creates immutable {@link GenericMessage}s.
  * Named MessageBuilder instead of DefaultMessageBuilder for backwards
  * compatibility.
+ * <p>
+ * When a message is built from another message (or with all the headers of another
+ * message copied to a new builder) that has a large number of headers, the builder
+ * records only the changes, and the original headers are copied once, when the message
+ * is built.
+ * <p>
+ * The timestamp header is captured according to the {@link MessageTimestamps} mode.
  *
  * @author Arjen Poutsma
  * @author Mark Fisher
@@ -43,7 +50,7 @@ public final class MessageBuilder<T> extends AbstractIntegrationMessageBuilder<T
 
 	private final T payload;
 
-	private final IntegrationMessageHeaderAccessor headerAccessor;
+	private volatile IntegrationMessageHeaderAccessor headerAccessor;
 
 	private final Message<T> originalMessage;
 
@@ -56,7 +63,9 @@ public final class MessageBuilder<T> extends AbstractIntegrationMessageBuilder<T
 		Assert.notNull(payload, "payload must not be null");
 		this.payload = payload;
 		this.originalMessage = originalMessage;
-		this.headerAccessor = new IntegrationMessageHeaderAccessor(originalMessage);
+		this.headerAccessor = originalMessage != null && DerivedMessageHeaders.canDerive(originalMessage.getHeaders())
+				? new LayeredMessageHeaderAccessor(originalMessage.getHeaders())
+				: new IntegrationMessageHeaderAccessor(originalMessage);
 		if (originalMessage != null) {
 			this.modified = (!this.payload.equals(originalMessage.getPayload()));
 		}
@@ -151,6 +160,12 @@ public final class MessageBuilder<T> extends AbstractIntegrationMessageBuilder<T
 	 */
 	@Override
 	public MessageBuilder<T> copyHeaders(Map<String, ?> headersToCopy) {
+		if (this.originalMessage == null && headersToCopy instanceof MessageHeaders
+				&& !(this.headerAccessor instanceof LayeredMessageHeaderAccessor) && !this.headerAccessor.isModified()
+				&& DerivedMessageHeaders.canDerive((MessageHeaders) headersToCopy)) {
+			this.headerAccessor = new LayeredMessageHeaderAccessor((MessageHeaders) headersToCopy);
+			return this;
+		}
 		this.headerAccessor.copyHeaders(headersToCopy);
 		return this;
 	}
@@ -271,10 +286,13 @@ public final class MessageBuilder<T> extends AbstractIntegrationMessageBuilder<T
 		if (!this.modified && !this.headerAccessor.isModified() && this.originalMessage != null) {
 			return this.originalMessage;
 		}
+		MessageHeaders headers = this.headerAccessor instanceof LayeredMessageHeaderAccessor
+				? ((LayeredMessageHeaderAccessor) this.headerAccessor).toDerivedMessageHeaders()
+				: MessageTimestamps.createHeaders(this.headerAccessor.toMap());
 		if (this.payload instanceof Throwable) {
-			return (Message<T>) new ErrorMessage((Throwable) this.payload, this.headerAccessor.toMap());
+			return (Message<T>) new ErrorMessage((Throwable) this.payload, headers);
 		}
-		return new GenericMessage<T>(this.payload, this.headerAccessor.toMap());
+		return new GenericMessage<T>(this.payload, headers);
 	}
 
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.Assert;
+
+/**
+ * Controls how the {@link MessageHeaders#TIMESTAMP} header is captured for messages
+ * created by the default {@link MessageBuilder}. Like the id generation strategy, the
+ * mode applies to all messages built in the classloader.
+ *
+ * @since 4.2
+ *
+ */
+public final class MessageTimestamps {
+
+	/**
+	 * The resolution, in milliseconds, of timestamps in {@link Mode#COARSE} mode.
+	 */
+	public static final long COARSE_RESOLUTION = 10;
+
+	private static volatile Mode mode = Mode.PRECISE;
+
+	private static volatile CoarseClock coarseClock;
+
+	private MessageTimestamps() {
+	}
+
+	/**
+	 * Set the timestamp mode.
+	 * @param mode the mode; default {@link Mode#PRECISE}.
+	 */
+	public static synchronized void setMode(Mode mode) {
+		Assert.notNull(mode, "'mode' cannot be null");
+		if (mode == Mode.COARSE && coarseClock == null) {
+			coarseClock = new CoarseClock();
+		}
+		else if (mode != Mode.COARSE && coarseClock != null) {
+			coarseClock.stop();
+			coarseClock = null;
+		}
+		MessageTimestamps.mode = mode;
+	}
+
+	public static Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * @return the timestamp for a new message according to the mode, or -1 if
+	 * timestamps are disabled.
+	 */
+	public static long currentTimestamp() {
+		switch (mode) {
+			case NONE:
+				return -1;
+			case COARSE:
+				CoarseClock clock = coarseClock;
+				if (clock != null) {
+					return clock.now;
+				}
+				return System.currentTimeMillis();
+			default:
+				return System.currentTimeMillis();
+		}
+	}
+
+	/**
+	 * Create immutable headers with a new id and a timestamp according to the mode.
+	 * @param headers the headers.
+	 * @return the message headers.
+	 */
+	static MessageHeaders createHeaders(Map<String, Object> headers) {
+		if (mode == Mode.PRECISE) {
+			return new MessageHeaders(headers);
+		}
+		return createHeaders(headers, null, currentTimestamp());
+	}
+
+	/**
+	 * Create immutable headers.
+	 * @param headers the headers.
+	 * @param id the id; null to generate one.
+	 * @param timestamp the timestamp; negative for none.
+	 * @return the message headers.
+	 */
+	static MessageHeaders createHeaders(Map<String, Object> headers, UUID id, long timestamp) {
+		return new TimestampedMessageHeaders(headers, id, timestamp);
+	}
+
+
+	/**
+	 * The timestamp modes.
+	 */
+	public enum Mode {
+
+		/**
+		 * Use {@link System#currentTimeMillis()} for each message.
+		 */
+		PRECISE,
+
+		/**
+		 * Use a time that is updated by a background thread every
+		 * {@link MessageTimestamps#COARSE_RESOLUTION} milliseconds.
+		 */
+		COARSE,
+
+		/**
+		 * Do not add a timestamp header.
+		 */
+		NONE
+
+	}
+
+
+	/**
+	 * Immutable {@link MessageHeaders} with a timestamp that is not captured by the
+	 * {@link MessageHeaders} constructor itself. Serialized as standard
+	 * {@link MessageHeaders}, so readers do not need this class.
+	 */
+	static final class TimestampedMessageHeaders extends MessageHeaders {
+
+		private static final long serialVersionUID = 2263938318385375409L;
+
+		private TimestampedMessageHeaders(Map<String, Object> headers, UUID id, long timestamp) {
+			super(headers, id, timestamp);
+		}
+
+		private Object writeReplace() {
+			return DerivedMessageHeaders.standardHeaders(getRawHeaders());
+		}
+
+	}
+
+
+	private static final class CoarseClock implements Runnable {
+
+		private final Thread thread;
+
+		private volatile long now = System.currentTimeMillis();
+
+		private volatile boolean running = true;
+
+		private CoarseClock() {
+			this.thread = new Thread(this, "message-timestamp-clock");
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		@Override
+		public void run() {
+			while (this.running) {
+				this.now = System.currentTimeMillis();
+				LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(COARSE_RESOLUTION));
+			}
+		}
+
+		private void stop() {
+			this.running = false;
+			LockSupport.unpark(this.thread);
+		}
+
+	}
+
+}
@@ -29,6 +29,12 @@ import org.springframework.util.StringUtils;
 
 
 /**
+ * Builds {@link MutableMessage}s. A builder created from a {@link MutableMessage}
+ * modifies that message's headers in place, so the headers are not copied at all; a
+ * builder created from any other message copies its headers once. Unlike the
+ * {@link MessageBuilder}, this builder therefore does not derive new headers from the
+ * original message's headers.
+ *
  * @author Gary Russell
  * @since 4.0
  *
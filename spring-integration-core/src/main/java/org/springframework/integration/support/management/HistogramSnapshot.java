@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+import org.springframework.util.Assert;
+
+/**
+ * An immutable view of the distribution recorded by a {@link LatencyHistogram} over
+ * an interval. Reported values are scaled by the histogram's factor and are accurate to
+ * within the histogram's precision; percentiles report the highest value equivalent to
+ * the bucket containing the requested rank.
+ *
+ * @since 4.2
+ */
+public class HistogramSnapshot {
+
+	private final LatencyHistogram histogram;
+
+	private final long[] counts;
+
+	private final long count;
+
+	private final long startTime;
+
+	private final long endTime;
+
+	HistogramSnapshot(LatencyHistogram histogram, long[] counts, long startTime, long endTime) {
+		this.histogram = histogram;
+		this.counts = counts;
+		long count = 0;
+		for (long bucketCount : counts) {
+			count += bucketCount;
+		}
+		this.count = count;
+		this.startTime = startTime;
+		this.endTime = endTime;
+	}
+
+	/**
+	 * @return the number of values in this snapshot.
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * @return the start of the interval covered by this snapshot ({@code System.currentTimeMillis()}).
+	 */
+	public long getStartTime() {
+		return this.startTime;
+	}
+
+	/**
+	 * @return the end of the interval covered by this snapshot ({@code System.currentTimeMillis()}).
+	 */
+	public long getEndTime() {
+		return this.endTime;
+	}
+
+	/**
+	 * @param percentile the percentile (0-100), e.g. 99.9.
+	 * @return the value at the percentile, or 0 if no values were recorded.
+	 */
+	public double getValueAtPercentile(double percentile) {
+		Assert.isTrue(percentile >= 0 && percentile <= 100, "'percentile' must be between 0 and 100");
+		if (this.count == 0) {
+			return 0;
+		}
+		long rank = (long) Math.ceil(percentile / 100. * this.count);
+		if (rank < 1) {
+			rank = 1;
+		}
+		long seen = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			seen += this.counts[i];
+			if (seen >= rank) {
+				return this.histogram.highestValueAt(i) / this.histogram.getFactor();
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * @return the lowest recorded value (within the histogram's precision).
+	 */
+	public double getMin() {
+		for (int i = 0; i < this.counts.length; i++) {
+			if (this.counts[i] > 0) {
+				return this.histogram.lowestValueAt(i) / this.histogram.getFactor();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the highest recorded value (within the histogram's precision).
+	 */
+	public double getMax() {
+		for (int i = this.counts.length - 1; i >= 0; i--) {
+			if (this.counts[i] > 0) {
+				return this.histogram.highestValueAt(i) / this.histogram.getFactor();
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the mean value (using the mid point of each bucket).
+	 */
+	public double getMean() {
+		if (this.count == 0) {
+			return 0;
+		}
+		double total = 0;
+		for (int i = 0; i < this.counts.length; i++) {
+			if (this.counts[i] > 0) {
+				double mid = (this.histogram.lowestValueAt(i) / 2.) + (this.histogram.highestValueAt(i) / 2.);
+				total += mid * this.counts[i];
+			}
+		}
+		return total / this.count / this.histogram.getFactor();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[N=%d, min=%f, p50=%f, p90=%f, p99=%f, p99.9=%f, max=%f]", this.count, getMin(),
+				getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99),
+				getValueAtPercentile(99.9), getMax());
+	}
+
+}
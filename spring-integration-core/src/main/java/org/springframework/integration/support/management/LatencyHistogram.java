@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * A log-linear bucketed histogram (in the style of HdrHistogram) for recording latencies.
+ * Values below {@code 2^precisionBits} are recorded exactly; larger values are recorded
+ * in one of {@code 2^(precisionBits - 1)} linear sub-buckets per power of 2, bounding the
+ * relative error to {@code 1 / 2^(precisionBits - 1)}. Recording is a single atomic
+ * increment of a pre-allocated counter; there is no allocation and no lock.
+ * <p>
+ * {@link #getSnapshot()} returns the distribution since construction (or the last
+ * {@link #reset()}). {@link #getIntervalSnapshot()} returns the distribution recorded
+ * since the previous call to that method (reset-on-read) without disturbing the
+ * cumulative distribution.
+ * <p>
+ * Raw values (typically {@code System.nanoTime()} deltas) are divided by the
+ * {@code factor} when reported by a {@link HistogramSnapshot}.
+ *
+ * @since 4.2
+ */
+public class LatencyHistogram {
+
+	public static final int DEFAULT_PRECISION_BITS = 6;
+
+	private final int precisionBits;
+
+	private final int subBucketCount;
+
+	private final int halfSubBucketCount;
+
+	private final double factor;
+
+	private final AtomicLongArray counts;
+
+	private long[] lastIntervalCounts;
+
+	private long lastIntervalTime = System.currentTimeMillis();
+
+	private volatile long startTime = System.currentTimeMillis();
+
+	/**
+	 * Construct a histogram with the {@link #DEFAULT_PRECISION_BITS} (6 - about 3% relative
+	 * error) and no scaling factor.
+	 */
+	public LatencyHistogram() {
+		this(1);
+	}
+
+	/**
+	 * Construct a histogram with the {@link #DEFAULT_PRECISION_BITS} (6 - about 3% relative
+	 * error).
+	 * @param factor a factor by which raw values are reduced when reported; e.g. to report in
+	 * ms and raw values are ns, set the factor to 1000000.0.
+	 */
+	public LatencyHistogram(double factor) {
+		this(DEFAULT_PRECISION_BITS, factor);
+	}
+
+	/**
+	 * Construct a histogram with the supplied precision.
+	 * @param precisionBits the number of significant bits retained for each value (2-16).
+	 * @param factor a factor by which raw values are reduced when reported; e.g. to report in
+	 * ms and raw values are ns, set the factor to 1000000.0.
+	 */
+	public LatencyHistogram(int precisionBits, double factor) {
+		Assert.isTrue(precisionBits >= 2 && precisionBits <= 16, "'precisionBits' must be between 2 and 16");
+		Assert.isTrue(factor > 0, "'factor' must be > 0");
+		this.precisionBits = precisionBits;
+		this.subBucketCount = 1 << precisionBits;
+		this.halfSubBucketCount = this.subBucketCount >> 1;
+		this.factor = factor;
+		this.counts = new AtomicLongArray(indexFor(Long.MAX_VALUE) + 1);
+		this.lastIntervalCounts = new long[this.counts.length()];
+	}
+
+	/**
+	 * Record a value; negative values are recorded as 0.
+	 * @param value the value.
+	 */
+	public void record(long value) {
+		this.counts.incrementAndGet(indexFor(value < 0 ? 0 : value));
+	}
+
+	/**
+	 * @return a snapshot of all values recorded since construction or the last
+	 * {@link #reset()}.
+	 */
+	public HistogramSnapshot getSnapshot() {
+		long[] copy = new long[this.counts.length()];
+		for (int i = 0; i < copy.length; i++) {
+			copy[i] = this.counts.get(i);
+		}
+		return new HistogramSnapshot(this, copy, this.startTime, System.currentTimeMillis());
+	}
+
+	/**
+	 * @return a snapshot of the values recorded since the previous call to this method
+	 * (or construction/{@link #reset()}).
+	 */
+	public synchronized HistogramSnapshot getIntervalSnapshot() {
+		long[] current = new long[this.counts.length()];
+		long[] interval = new long[current.length];
+		for (int i = 0; i < current.length; i++) {
+			current[i] = this.counts.get(i);
+			interval[i] = Math.max(0, current[i] - this.lastIntervalCounts[i]);
+		}
+		long now = System.currentTimeMillis();
+		HistogramSnapshot snapshot = new HistogramSnapshot(this, interval, this.lastIntervalTime, now);
+		this.lastIntervalCounts = current;
+		this.lastIntervalTime = now;
+		return snapshot;
+	}
+
+	/**
+	 * Clear all recorded values.
+	 */
+	public synchronized void reset() {
+		for (int i = 0; i < this.counts.length(); i++) {
+			this.counts.set(i, 0);
+		}
+		this.lastIntervalCounts = new long[this.counts.length()];
+		this.startTime = System.currentTimeMillis();
+		this.lastIntervalTime = this.startTime;
+	}
+
+	double getFactor() {
+		return this.factor;
+	}
+
+	int indexFor(long value) {
+		if (value < this.subBucketCount) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - this.precisionBits + 1;
+		int subBucket = (int) (value >>> shift);
+		return this.subBucketCount + (magnitude - this.precisionBits) * this.halfSubBucketCount
+				+ (subBucket - this.halfSubBucketCount);
+	}
+
+	long lowestValueAt(int index) {
+		if (index < this.subBucketCount) {
+			return index;
+		}
+		int offset = index - this.subBucketCount;
+		int shift = offset / this.halfSubBucketCount + 1;
+		long subBucket = offset % this.halfSubBucketCount + this.halfSubBucketCount;
+		return subBucket << shift;
+	}
+
+	long highestValueAt(int index) {
+		if (index < this.subBucketCount) {
+			return index;
+		}
+		int shift = (index - this.subBucketCount) / this.halfSubBucketCount + 1;
+		long highest = lowestValueAt(index) + (1L << shift) - 1;
+		return highest < 0 ? Long.MAX_VALUE : highest;
+	}
+
+	@Override
+	public String toString() {
+		return getSnapshot().toString();
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A variant of {@link ExponentialMovingAverage} that records measurements without
+ * locking or allocating. Samples are kept in a fixed size primitive ring buffer
+ * ({@code window * 5} slots); a writer claims a slot with a single atomic increment and
+ * then stores the raw value, stamped with its sequence number. The statistics are
+ * calculated on retrieval from a snapshot of the ring; the minimum and maximum are
+ * maintained as each sample is appended.
+ * <p>
+ * Since writers are not serialized, a snapshot taken while writes are in progress
+ * skips slots that have been claimed but not yet written; those samples are included in
+ * the count but not (yet) in the mean and standard deviation. This is an acceptable
+ * approximation for monitoring purposes.
+ *
+ * @since 4.2
+ */
+public class LockFreeExponentialMovingAverage {
+
+	private static final long INITIAL_MIN = Double.doubleToRawLongBits(Double.MAX_VALUE);
+
+	private static final long INITIAL_MAX = Double.doubleToRawLongBits(0);
+
+	private final SampleRing samples;
+
+	private final int window;
+
+	private final double factor;
+
+	/**
+	 * The raw bits of the minimum raw value.
+	 */
+	private final AtomicLong min = new AtomicLong(INITIAL_MIN);
+
+	/**
+	 * The raw bits of the maximum raw value.
+	 */
+	private final AtomicLong max = new AtomicLong(INITIAL_MAX);
+
+	/**
+	 * Create a moving average accumulator with decay lapse window provided. Measurements older than this will have
+	 * smaller weight than <code>1/e</code>.
+	 * @param window the exponential lapse window (number of measurements)
+	 */
+	public LockFreeExponentialMovingAverage(int window) {
+		this(window, 1);
+	}
+
+	/**
+	 * Create a moving average accumulator with decay lapse window provided. Measurements older than this will have
+	 * smaller weight than <code>1/e</code>.
+	 * @param window the exponential lapse window (number of measurements)
+	 * @param factor a factor by which raw values are reduced during analysis; e.g. to analyze in ms and
+	 * raw values are ns, set the factor to 1000000.0.
+	 */
+	public LockFreeExponentialMovingAverage(int window, double factor) {
+		this.window = window;
+		this.factor = factor;
+		this.samples = new SampleRing(window * 5);// last retained value contributes just 0.5% to the sum
+	}
+
+	public synchronized void reset() {
+		this.samples.reset();
+		this.min.set(INITIAL_MIN);
+		this.max.set(INITIAL_MAX);
+	}
+
+	/**
+	 * Add a new measurement to the series.
+	 * @param value the measurement to append
+	 */
+	public void append(double value) {
+		long bits = Double.doubleToRawLongBits(value);
+		this.samples.append(bits);
+		long current = this.min.get();
+		while (value < Double.longBitsToDouble(current) && !this.min.compareAndSet(current, bits)) {
+			current = this.min.get();
+		}
+		current = this.max.get();
+		while (value > Double.longBitsToDouble(current) && !this.max.compareAndSet(current, bits)) {
+			current = this.max.get();
+		}
+	}
+
+	private Statistics calc() {
+		long count = this.samples.count();
+		long[] snapshot = this.samples.snapshot();
+		double sum = 0;
+		double decay = 1 - 1. / this.window;
+		double sumSquares = 0;
+		double weight = 0;
+		for (long bits : snapshot) {
+			double value = Double.longBitsToDouble(bits) / this.factor;
+			sum = decay * sum + value;
+			sumSquares = decay * sumSquares + value * value;
+			weight = decay * weight + 1;
+		}
+		double min = Double.longBitsToDouble(this.min.get());
+		double max = Double.longBitsToDouble(this.max.get()) / this.factor;
+		double mean = weight > 0 ? sum / weight : 0.;
+		double var = weight > 0 ? sumSquares / weight - mean * mean : 0.;
+		double standardDeviation =  var > 0 ? Math.sqrt(var) : 0;
+		return new Statistics(count, min == Double.MAX_VALUE ? 0 : min / this.factor, max, mean,
+				standardDeviation);
+	}
+
+	/**
+	 * @return the number of measurements recorded
+	 */
+	public int getCount() {
+		return (int) this.samples.count();
+	}
+
+	/**
+	 * @return the number of measurements recorded
+	 */
+	public long getCountLong() {
+		return this.samples.count();
+	}
+
+	/**
+	 * @return the mean value
+	 */
+	public double getMean() {
+		return calc().getMean();
+	}
+
+	/**
+	 * @return the approximate standard deviation
+	 */
+	public double getStandardDeviation() {
+		return calc().getStandardDeviation();
+	}
+
+	/**
+	 * @return the maximum value recorded (not weighted)
+	 */
+	public double getMax() {
+		return calc().getMax();
+	}
+
+	/**
+	 * @return the minimum value recorded (not weighted)
+	 */
+	public double getMin() {
+		return calc().getMin();
+	}
+
+	/**
+	 * @return summary statistics (count, mean, standard deviation etc.)
+	 */
+	public Statistics getStatistics() {
+		return calc();
+	}
+
+	@Override
+	public String toString() {
+		return getStatistics().toString();
+	}
+
+}
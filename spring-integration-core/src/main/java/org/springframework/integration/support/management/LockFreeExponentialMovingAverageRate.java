@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+/**
+ * A variant of {@link ExponentialMovingAverageRate} that records events without locking
+ * or allocating. Event times are kept in a fixed size primitive ring buffer
+ * ({@code window * 5} slots); see {@link LockFreeExponentialMovingAverage} for the
+ * consistency guarantees of the ring. The statistics are calculated on retrieval.
+ *
+ * @since 4.2
+ */
+public class LockFreeExponentialMovingAverageRate {
+
+	private final SampleRing times;
+
+	private final double lapse;
+
+	private final double period;
+
+	private final int retention;
+
+	private final int window;
+
+	private final double factor;
+
+	private volatile double t0;
+
+	private volatile double min = Double.MAX_VALUE;
+
+	private volatile double max;
+
+	/**
+	 * @param period the period to base the rate measurement (in seconds)
+	 * @param lapsePeriod the exponential lapse rate for the rate average (in seconds)
+	 * @param window the exponential lapse window (number of measurements)
+	 */
+	public LockFreeExponentialMovingAverageRate(double period, double lapsePeriod, int window) {
+		this(period, lapsePeriod, window, false);
+	}
+
+	/**
+	 * @param period the period to base the rate measurement (in seconds)
+	 * @param lapsePeriod the exponential lapse rate for the rate average (in seconds)
+	 * @param window the exponential lapse window (number of measurements)
+	 * @param millis when true, analyze the data as milliseconds instead of the native nanoseconds
+	 */
+	public LockFreeExponentialMovingAverageRate(double period, double lapsePeriod, int window, boolean millis) {
+		this.lapse = lapsePeriod > 0 ? 0.001 / lapsePeriod : 0; // convert to milliseconds
+		this.period = period * 1000; // convert to milliseconds
+		this.window = window;
+		this.retention = window * 5;
+		this.factor = millis ? 1000000 : 1;
+		this.times = new SampleRing(this.retention);
+		this.t0 = System.nanoTime() / this.factor;
+	}
+
+	public synchronized void reset() {
+		this.times.reset();
+		this.min = Double.MAX_VALUE;
+		this.max = 0;
+		this.t0 = System.nanoTime() / this.factor;
+	}
+
+	/**
+	 * Add a new event to the series.
+	 */
+	public void increment() {
+		increment(System.nanoTime());
+	}
+
+	/**
+	 * Add a new event to the series at time t.
+	 * @param t a new event to the series (System.nanoTime()).
+	 */
+	public void increment(long t) {
+		this.times.append(t);
+	}
+
+	private Statistics calc() {
+		long count = this.times.count();
+		long[] snapshot = this.times.snapshot();
+		int size = snapshot.length;
+		LockFreeExponentialMovingAverage rates = new LockFreeExponentialMovingAverage(this.window);
+		double t0 = 0;
+		double sum = 0;
+		double weight = 0;
+		double min = this.min;
+		double max = this.max;
+		for (long time : snapshot) {
+			double t = time / this.factor;
+			if (size == 1) {
+				t0 = this.t0;
+			}
+			else if (t0 == 0) {
+				t0 = t;
+				continue;
+			}
+			double delta = t - t0;
+			double value = delta > 0 ? delta / this.period : 0;
+			if (value > max) {
+				max = value;
+			}
+			if (value < min) {
+				min = value;
+			}
+			double alpha = Math.exp(-delta * this.lapse);
+			t0 = t;
+			sum = alpha * sum + value;
+			weight = alpha * weight + 1;
+			rates.append(sum > 0 ? weight / sum : 0);
+		}
+		synchronized (this) {
+			if (max > this.max) {
+				this.max = max;
+			}
+			if (min < this.min) {
+				this.min = min;
+			}
+		}
+		Statistics statistics = rates.getStatistics();
+		return new Statistics(count, min < Double.MAX_VALUE ? min : 0, max, statistics.getMean(),
+				statistics.getStandardDeviation());
+	}
+
+	/**
+	 * @return the number of measurements recorded
+	 */
+	public int getCount() {
+		return (int) this.times.count();
+	}
+
+	/**
+	 * @return the number of measurements recorded
+	 */
+	public long getCountLong() {
+		return this.times.count();
+	}
+
+	/**
+	 * @return the time in seconds since the last measurement
+	 */
+	public double getTimeSinceLastMeasurement() {
+		double t0 = lastTime();
+		return (System.nanoTime() / this.factor - t0);
+	}
+
+	/**
+	 * @return the mean value
+	 */
+	public double getMean() {
+		long count = this.times.count();
+		count = count > this.retention ? this.retention : count;
+		if (count == 0) {
+			return 0;
+		}
+		double t0 = lastTime();
+		double t = System.nanoTime() / this.factor;
+		double value = t > t0 ? (t - t0) / this.period : 0;
+		return count / (count / calc().getMean() + value);
+	}
+
+	private double lastTime() {
+		long t = this.times.last(Long.MIN_VALUE);
+		if (t != Long.MIN_VALUE) {
+			return t / this.factor;
+		}
+		else {
+			return this.t0;
+		}
+	}
+
+	/**
+	 * @return the approximate standard deviation
+	 */
+	public double getStandardDeviation() {
+		return calc().getStandardDeviation();
+	}
+
+	/**
+	 * @return the maximum value recorded (not weighted)
+	 */
+	public double getMax() {
+		double min = calc().getMin();
+		return min > 0 ? 1 / min : 0;
+	}
+
+	/**
+	 * @return the minimum value recorded (not weighted)
+	 */
+	public double getMin() {
+		double max = calc().getMax();
+		return max > 0 ? 1 / max : 0;
+	}
+
+	/**
+	 * @return summary statistics (count, mean, standard deviation etc.)
+	 */
+	public Statistics getStatistics() {
+		return calc();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%s, timeSinceLast=%f]", getStatistics(), getTimeSinceLastMeasurement());
+	}
+
+}
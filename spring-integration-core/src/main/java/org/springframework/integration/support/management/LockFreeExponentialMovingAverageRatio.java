@@ -0,0 +1,232 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+/**
+ * A variant of {@link ExponentialMovingAverageRatio} that records outcomes without
+ * locking or allocating. Each event is stored in a single slot of a fixed size primitive
+ * ring buffer ({@code window * 5} slots), with the outcome encoded in the low order bit
+ * of the (shifted) event time so that time and outcome are always read consistently; see
+ * {@link LockFreeExponentialMovingAverage} for the consistency guarantees of the ring.
+ * The statistics are calculated on retrieval.
+ *
+ * @since 4.2
+ */
+public class LockFreeExponentialMovingAverageRatio {
+
+	private final SampleRing events;
+
+	private final double lapse;
+
+	private final int window;
+
+	private final double factor;
+
+	private volatile double t0;
+
+	private volatile double min = Double.MAX_VALUE;
+
+	private volatile double max;
+
+	/**
+	 * @param lapsePeriod the exponential lapse rate for the rate average (in seconds)
+	 * @param window the exponential lapse window (number of measurements)
+	 */
+	public LockFreeExponentialMovingAverageRatio(double lapsePeriod, int window) {
+		this(lapsePeriod, window, false);
+	}
+
+	/**
+	 * @param lapsePeriod the exponential lapse rate for the rate average (in seconds)
+	 * @param window the exponential lapse window (number of measurements)
+	 * @param millis when true, analyze the data as milliseconds instead of the native nanoseconds
+	 */
+	public LockFreeExponentialMovingAverageRatio(double lapsePeriod, int window, boolean millis) {
+		this.lapse = lapsePeriod > 0 ? 0.001 / lapsePeriod : 0; // convert to milliseconds
+		this.window = window;
+		this.factor = millis ? 1000000 : 1;
+		this.events = new SampleRing(window * 5);
+		this.t0 = System.nanoTime() / this.factor;
+	}
+
+	/**
+	 * Add a new event with successful outcome.
+	 */
+	public void success() {
+		append(1, System.nanoTime());
+	}
+
+	/**
+	 * Add a new event with successful outcome at time t.
+	 * @param t the System.nanoTime().
+	 */
+	public void success(long t) {
+		append(1, t);
+	}
+
+	/**
+	 * Add a new event with failed outcome.
+	 */
+	public void failure() {
+		append(0, System.nanoTime());
+	}
+
+	/**
+	 * Add a new event with failed outcome at time t.
+	 * @param t the System.nanoTime().
+	 */
+	public void failure(long t) {
+		append(0, t);
+	}
+
+	public synchronized void reset() {
+		this.events.reset();
+		this.min = Double.MAX_VALUE;
+		this.max = 0;
+		this.t0 = System.nanoTime() / this.factor;
+	}
+
+	private void append(int value, long t) {
+		this.events.append((t << 1) | value);
+	}
+
+	private Statistics calc() {
+		long count = this.events.count();
+		long[] snapshot = this.events.snapshot();
+		int size = snapshot.length;
+		LockFreeExponentialMovingAverage cumulative = new LockFreeExponentialMovingAverage(this.window);
+		double t0 = 0;
+		double sum = 0;
+		double weight = 0;
+		double min = this.min;
+		double max = this.max;
+		for (long event : snapshot) {
+			double t = (event >> 1) / this.factor;
+			if (size == 1) {
+				t0 = this.t0;
+			}
+			else if (t0 == 0) {
+				t0 = t;
+				continue;
+			}
+			double alpha = Math.exp((t0 - t) * this.lapse);
+			t0 = t;
+			sum = alpha * sum + (event & 1);
+			weight = alpha * weight + 1;
+			double value = sum / weight;
+			if (value > max) {
+				max = value;
+			}
+			if (value < min) {
+				min = value;
+			}
+			cumulative.append(value);
+		}
+		synchronized (this) {
+			if (max > this.max) {
+				this.max = max;
+			}
+			if (min < this.min) {
+				this.min = min;
+			}
+		}
+		Statistics statistics = cumulative.getStatistics();
+		return new Statistics(count, min < Double.MAX_VALUE ? min : 0, max, statistics.getMean(),
+				statistics.getStandardDeviation());
+	}
+
+	/**
+	 * @return the number of measurements recorded
+	 */
+	public int getCount() {
+		return (int) this.events.count();
+	}
+
+	/**
+	 * @return the number of measurements recorded
+	 */
+	public long getCountLong() {
+		return this.events.count();
+	}
+
+	/**
+	 * @return the time in seconds since the last measurement
+	 */
+	public double getTimeSinceLastMeasurement() {
+		double delta = System.nanoTime() - lastTime();
+		return delta / 1000. / this.factor;
+	}
+
+	/**
+	 * @return the mean success rate
+	 */
+	public double getMean() {
+		if (this.events.count() == 0) {
+			// Optimistic to start: success rate is 100%
+			return 1;
+		}
+		Statistics statistics = calc();
+		double t = System.nanoTime() / this.factor;
+		double mean = statistics.getMean();
+		double alpha = Math.exp((lastTime() / this.factor - t) * this.lapse);
+		return alpha * mean + 1 - alpha;
+	}
+
+	private double lastTime() {
+		long event = this.events.last(Long.MIN_VALUE);
+		if (event != Long.MIN_VALUE) {
+			return event >> 1;
+		}
+		else {
+			return this.t0 * this.factor;
+		}
+	}
+
+	/**
+	 * @return the approximate standard deviation of the success rate measurements
+	 */
+	public double getStandardDeviation() {
+		return calc().getStandardDeviation();
+	}
+
+	/**
+	 * @return the maximum value recorded of the exponential weighted average (per measurement) success rate
+	 */
+	public double getMax() {
+		return calc().getMax();
+	}
+
+	/**
+	 * @return the minimum value recorded of the exponential weighted average (per measurement) success rate
+	 */
+	public double getMin() {
+		return calc().getMin();
+	}
+
+	/**
+	 * @return summary statistics (count, mean, standard deviation etc.)
+	 */
+	public Statistics getStatistics() {
+		return calc();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("[%s, timeSinceLast=%f]", getStatistics(), getTimeSinceLastMeasurement());
+	}
+
+}
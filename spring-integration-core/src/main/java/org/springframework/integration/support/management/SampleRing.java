@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size ring buffer of {@code long} samples that can be appended to without
+ * locking or allocating; used by the lock-free moving averages.
+ * <p>
+ * A writer claims a sequence number with a single atomic increment and then writes its
+ * slot; each slot carries a stamp with the sequence number of the sample it holds. The
+ * stamp is cleared before the sample is written and set again afterwards, so a reader
+ * only uses a sample if the stamp matches the expected sequence both before and after
+ * reading it; slots that have been claimed but not yet published (or that are being
+ * overwritten) are skipped.
+ *
+ * @since 4.2
+ */
+final class SampleRing {
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private final AtomicLongArray samples;
+
+	/**
+	 * The sequence number (plus one) of the sample in each slot; 0 while it is written.
+	 */
+	private final AtomicLongArray stamps;
+
+	private final int size;
+
+	/**
+	 * The sequence number of the first sample since the last reset.
+	 */
+	private volatile long base;
+
+	SampleRing(int size) {
+		this.size = size;
+		this.samples = new AtomicLongArray(size);
+		this.stamps = new AtomicLongArray(size);
+	}
+
+	/**
+	 * Append a sample, overwriting the oldest if the ring is full.
+	 * @param sample the sample.
+	 */
+	void append(long sample) {
+		long sequence = this.sequence.getAndIncrement();
+		int slot = (int) (sequence % this.size);
+		this.stamps.set(slot, 0);
+		this.samples.set(slot, sample);
+		this.stamps.set(slot, sequence + 1);
+	}
+
+	/**
+	 * @return the number of samples appended since the last reset, including any that
+	 * are not yet published.
+	 */
+	long count() {
+		long base = this.base;
+		return this.sequence.get() - base;
+	}
+
+	/**
+	 * Discard the samples; they are excluded from subsequent snapshots without
+	 * touching the slots, so a writer racing with the reset cannot have its sample
+	 * attributed to the wrong sequence.
+	 */
+	void reset() {
+		this.base = this.sequence.get();
+	}
+
+	/**
+	 * @return the published samples currently retained, oldest first.
+	 */
+	long[] snapshot() {
+		long base = this.base;
+		long end = this.sequence.get();
+		long start = Math.max(base, end - this.size);
+		long[] snapshot = new long[(int) (end - start)];
+		int n = 0;
+		for (long i = start; i < end; i++) {
+			int slot = (int) (i % this.size);
+			long stamp = this.stamps.get(slot);
+			long sample = this.samples.get(slot);
+			if (stamp == i + 1 && this.stamps.get(slot) == stamp) {
+				snapshot[n++] = sample;
+			}
+		}
+		return n == snapshot.length ? snapshot : Arrays.copyOf(snapshot, n);
+	}
+
+	/**
+	 * @param defaultValue the value to return if there is no published sample.
+	 * @return the most recent published sample.
+	 */
+	long last(long defaultValue) {
+		long base = this.base;
+		long end = this.sequence.get();
+		long start = Math.max(base, end - this.size);
+		for (long i = end - 1; i >= start; i--) {
+			int slot = (int) (i % this.size);
+			long stamp = this.stamps.get(slot);
+			long sample = this.samples.get(slot);
+			if (stamp == i + 1 && this.stamps.get(slot) == stamp) {
+				return sample;
+			}
+		}
+		return defaultValue;
+	}
+
+}
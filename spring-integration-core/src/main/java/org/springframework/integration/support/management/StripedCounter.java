@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * A counter that spreads updates over a number of cells (stripes) so that concurrent
+ * writers rarely contend on the same memory location; similar in spirit to the JDK 8
+ * {@code LongAdder} but usable on earlier JVMs. Each thread is mapped to a cell by its
+ * id; cells are padded to avoid false sharing. {@link #get()} sums all cells and is
+ * therefore more expensive than an update - it is intended for infrequent reads
+ * (e.g. via JMX).
+ * <p>
+ * {@link #reset()} is not atomic with respect to concurrent updates; an update that
+ * races with a reset may or may not be retained.
+ *
+ * @since 4.2
+ */
+public class StripedCounter {
+
+	/**
+	 * Number of longs per cell; 8 * 8 bytes fills a typical 64 byte cache line.
+	 */
+	private static final int PADDING = 8;
+
+	private static final int DEFAULT_STRIPES = defaultStripes();
+
+	private final AtomicLongArray cells;
+
+	private final int mask;
+
+	/**
+	 * Construct a counter with a number of stripes derived from the number of available
+	 * processors.
+	 */
+	public StripedCounter() {
+		this(DEFAULT_STRIPES);
+	}
+
+	/**
+	 * Construct a counter with the supplied number of stripes; it will be rounded up to
+	 * the next power of 2.
+	 * @param stripes the number of stripes.
+	 */
+	public StripedCounter(int stripes) {
+		Assert.isTrue(stripes > 0, "'stripes' must be > 0");
+		int size = 1;
+		while (size < stripes) {
+			size <<= 1;
+		}
+		this.mask = size - 1;
+		this.cells = new AtomicLongArray(size * PADDING);
+	}
+
+	/**
+	 * Increment the counter.
+	 */
+	public void increment() {
+		add(1);
+	}
+
+	/**
+	 * Decrement the counter.
+	 */
+	public void decrement() {
+		add(-1);
+	}
+
+	/**
+	 * Add the delta to the counter.
+	 * @param delta the delta.
+	 */
+	public void add(long delta) {
+		this.cells.getAndAdd(cellIndex(), delta);
+	}
+
+	/**
+	 * @return the current sum of all stripes.
+	 */
+	public long get() {
+		long sum = 0;
+		for (int i = 0; i < this.cells.length(); i += PADDING) {
+			sum += this.cells.get(i);
+		}
+		return sum;
+	}
+
+	/**
+	 * Reset all stripes to zero.
+	 */
+	public void reset() {
+		for (int i = 0; i < this.cells.length(); i += PADDING) {
+			this.cells.set(i, 0);
+		}
+	}
+
+	private int cellIndex() {
+		long id = Thread.currentThread().getId();
+		int hash = (int) (id ^ (id >>> 32));
+		hash ^= (hash >>> 16);
+		return (hash & this.mask) * PADDING;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(get());
+	}
+
+	private static int defaultStripes() {
+		int processors = Runtime.getRuntime().availableProcessors();
+		return processors > 64 ? 64 : processors;
+	}
+
+}
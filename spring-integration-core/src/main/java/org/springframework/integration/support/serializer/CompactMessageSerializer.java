@@ -0,0 +1,534 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.serializer.DefaultDeserializer;
+import org.springframework.core.serializer.DefaultSerializer;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.history.MessageHistory;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link Serializer} and {@link Deserializer} for messages that uses a compact,
+ * versioned binary format instead of Java serialization; it can be used with any of
+ * the persistent message stores.
+ * <p>
+ * Header names used by the framework ({@code id}, {@code timestamp},
+ * {@code correlationId}, {@code sequenceNumber}, {@code history} etc.) are written as a
+ * single byte; common value types ({@link String}, {@code byte[]}, {@link Integer},
+ * {@link Long}, {@link Boolean}, {@link Double}, {@link UUID} and
+ * {@link MessageHistory}) are written without class descriptors. Other types can be
+ * {@link #registerType(int, Class, Serializer, Deserializer) registered} with their own
+ * serializer; any remaining values are written using the fallback serializer (Java
+ * serialization by default). As with Java serialization, header values that are not
+ * {@link Serializable} (and have no registered serializer) are not written.
+ * <p>
+ * Only {@link GenericMessage} and {@link ErrorMessage} are written in the compact format;
+ * other message implementations are written using the fallback serializer.
+ * <p>
+ * When deserializing, data written by Java serialization (for example rows or keys
+ * written before this serializer was configured) is detected and read using the
+ * fallback deserializer, so a store can be switched to this serializer without
+ * migrating existing data.
+ *
+ * @since 4.2
+ *
+ */
+public class CompactMessageSerializer implements Serializer<Message<?>>, Deserializer<Message<?>> {
+
+	/**
+	 * The current version of the format.
+	 */
+	public static final int FORMAT_VERSION = 1;
+
+	private static final Log logger = LogFactory.getLog(CompactMessageSerializer.class);
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int MAGIC_0 = 0xC5;
+
+	private static final int MAGIC_1 = 0x49;
+
+	private static final int KIND_GENERIC = 0;
+
+	private static final int KIND_ERROR = 1;
+
+	private static final int TAG_NULL = 0;
+
+	private static final int TAG_STRING = 1;
+
+	private static final int TAG_BYTES = 2;
+
+	private static final int TAG_INTEGER = 3;
+
+	private static final int TAG_LONG = 4;
+
+	private static final int TAG_TRUE = 5;
+
+	private static final int TAG_FALSE = 6;
+
+	private static final int TAG_UUID = 7;
+
+	private static final int TAG_DOUBLE = 8;
+
+	private static final int TAG_HISTORY = 9;
+
+	private static final int TAG_REGISTERED = 10;
+
+	private static final int TAG_FALLBACK = 11;
+
+	/*
+	 * Header names written as a token (index + 1); new names must only be appended
+	 * (and the format version incremented).
+	 */
+	private static final String[] WELL_KNOWN_HEADERS = {
+		MessageHeaders.ID,
+		MessageHeaders.TIMESTAMP,
+		IntegrationMessageHeaderAccessor.CORRELATION_ID,
+		IntegrationMessageHeaderAccessor.SEQUENCE_NUMBER,
+		IntegrationMessageHeaderAccessor.SEQUENCE_SIZE,
+		IntegrationMessageHeaderAccessor.SEQUENCE_DETAILS,
+		MessageHistory.HEADER_NAME,
+		IntegrationMessageHeaderAccessor.EXPIRATION_DATE,
+		IntegrationMessageHeaderAccessor.PRIORITY,
+		IntegrationMessageHeaderAccessor.DUPLICATE_MESSAGE,
+		IntegrationMessageHeaderAccessor.ROUTING_SLIP,
+		MessageHeaders.REPLY_CHANNEL,
+		MessageHeaders.ERROR_CHANNEL,
+		MessageHeaders.CONTENT_TYPE
+	};
+
+	private static final Map<String, Integer> WELL_KNOWN_HEADER_TOKENS = new HashMap<String, Integer>();
+
+	static {
+		for (int i = 0; i < WELL_KNOWN_HEADERS.length; i++) {
+			WELL_KNOWN_HEADER_TOKENS.put(WELL_KNOWN_HEADERS[i], i + 1);
+		}
+	}
+
+	private final Map<Class<?>, TypeRegistration> registrationsByType =
+			new ConcurrentHashMap<Class<?>, TypeRegistration>();
+
+	private final Map<Integer, TypeRegistration> registrationsById = new ConcurrentHashMap<Integer, TypeRegistration>();
+
+	private volatile Serializer<Object> fallbackSerializer = new DefaultSerializer();
+
+	private volatile Deserializer<Object> fallbackDeserializer = new DefaultDeserializer();
+
+	/**
+	 * Set the serializer used for values (and messages) that have no compact
+	 * representation; default Java serialization.
+	 * @param fallbackSerializer the serializer.
+	 */
+	public void setFallbackSerializer(Serializer<Object> fallbackSerializer) {
+		Assert.notNull(fallbackSerializer, "'fallbackSerializer' must not be null");
+		this.fallbackSerializer = fallbackSerializer;
+	}
+
+	/**
+	 * Set the deserializer used for values (and messages) written by the fallback
+	 * serializer; default Java serialization. This deserializer is also used to read
+	 * data that was not written by this serializer.
+	 * @param fallbackDeserializer the deserializer.
+	 */
+	public void setFallbackDeserializer(Deserializer<Object> fallbackDeserializer) {
+		Assert.notNull(fallbackDeserializer, "'fallbackDeserializer' must not be null");
+		this.fallbackDeserializer = fallbackDeserializer;
+	}
+
+	/**
+	 * Register a serializer and deserializer for payloads and header values of the
+	 * provided type (the class must match exactly, subclasses are not matched). The
+	 * type id is written with each value and must therefore be the same (and must not
+	 * be reused for a different type) everywhere the data is read.
+	 * @param typeId the type id (&gt;= 0).
+	 * @param type the type.
+	 * @param serializer the serializer.
+	 * @param deserializer the deserializer.
+	 * @param <T> the type.
+	 */
+	public <T> void registerType(int typeId, Class<T> type, Serializer<? super T> serializer,
+			Deserializer<? extends T> deserializer) {
+		Assert.isTrue(typeId >= 0, "'typeId' must be >= 0");
+		Assert.notNull(type, "'type' must not be null");
+		Assert.notNull(serializer, "'serializer' must not be null");
+		Assert.notNull(deserializer, "'deserializer' must not be null");
+		synchronized (this.registrationsById) {
+			Assert.isTrue(!this.registrationsById.containsKey(typeId),
+					"A type is already registered with id " + typeId);
+			Assert.isTrue(!this.registrationsByType.containsKey(type), type + " is already registered");
+			@SuppressWarnings("unchecked")
+			TypeRegistration registration = new TypeRegistration(typeId, (Serializer<Object>) serializer,
+					deserializer);
+			this.registrationsById.put(typeId, registration);
+			this.registrationsByType.put(type, registration);
+		}
+	}
+
+	@Override
+	public void serialize(Message<?> message, OutputStream outputStream) throws IOException {
+		int kind;
+		if (GenericMessage.class.equals(message.getClass())) {
+			kind = KIND_GENERIC;
+		}
+		else if (ErrorMessage.class.equals(message.getClass())) {
+			kind = KIND_ERROR;
+		}
+		else {
+			this.fallbackSerializer.serialize(message, outputStream);
+			return;
+		}
+		DataOutputStream out = new DataOutputStream(outputStream);
+		out.write(MAGIC_0);
+		out.write(MAGIC_1);
+		out.write(FORMAT_VERSION);
+		out.write(kind);
+		List<Entry<String, Object>> headers = new ArrayList<Entry<String, Object>>(message.getHeaders().size());
+		for (Entry<String, Object> header : message.getHeaders().entrySet()) {
+			Object value = header.getValue();
+			if (value == null || value instanceof Serializable
+					|| this.registrationsByType.containsKey(value.getClass())) {
+				headers.add(header);
+			}
+			else if (logger.isDebugEnabled()) {
+				logger.debug("Removing non-serializable header: " + header.getKey());
+			}
+		}
+		writeVarInt(out, headers.size());
+		for (Entry<String, Object> header : headers) {
+			Integer token = WELL_KNOWN_HEADER_TOKENS.get(header.getKey());
+			if (token != null) {
+				writeVarInt(out, token);
+			}
+			else {
+				writeVarInt(out, 0);
+				writeString(out, header.getKey());
+			}
+			writeValue(out, header.getValue());
+		}
+		writeValue(out, message.getPayload());
+		out.flush();
+	}
+
+	@Override
+	public Message<?> deserialize(InputStream inputStream) throws IOException {
+		int b0 = inputStream.read();
+		int b1 = inputStream.read();
+		if (b1 < 0) {
+			throw new EOFException();
+		}
+		if (b0 == MAGIC_0 && b1 == MAGIC_1) {
+			return readMessage(new DataInputStream(inputStream));
+		}
+		InputStream stream = new SequenceInputStream(new ByteArrayInputStream(new byte[] { (byte) b0, (byte) b1 }),
+				inputStream);
+		Object object = this.fallbackDeserializer.deserialize(stream);
+		if (!(object instanceof Message)) {
+			throw new IOException("Expected a Message, but deserialized a "
+					+ (object == null ? "null" : object.getClass().getName()));
+		}
+		return (Message<?>) object;
+	}
+
+	/**
+	 * Return true if the data starts with the signature of this serializer's format.
+	 * @param bytes the data.
+	 * @return true if the data was written in the compact format.
+	 */
+	public static boolean isCompactFormat(byte[] bytes) {
+		return bytes != null && bytes.length > 1 && (bytes[0] & 0xff) == MAGIC_0 && (bytes[1] & 0xff) == MAGIC_1;
+	}
+
+	private Message<?> readMessage(DataInputStream in) throws IOException {
+		int version = in.readUnsignedByte();
+		if (version < 1 || version > FORMAT_VERSION) {
+			throw new IOException("Unsupported message format version: " + version);
+		}
+		int kind = in.readUnsignedByte();
+		int count = readVarInt(in);
+		Map<String, Object> headers = new HashMap<String, Object>();
+		UUID id = MessageHeaders.ID_VALUE_NONE;
+		Long timestamp = -1L;
+		for (int i = 0; i < count; i++) {
+			int token = readVarInt(in);
+			String name;
+			if (token == 0) {
+				name = readString(in);
+			}
+			else if (token <= WELL_KNOWN_HEADERS.length) {
+				name = WELL_KNOWN_HEADERS[token - 1];
+			}
+			else {
+				throw new IOException("Unknown header token: " + token);
+			}
+			Object value = readValue(in);
+			if (MessageHeaders.ID.equals(name)) {
+				id = (UUID) value;
+			}
+			else if (MessageHeaders.TIMESTAMP.equals(name)) {
+				timestamp = (Long) value;
+			}
+			else {
+				headers.put(name, value);
+			}
+		}
+		Object payload = readValue(in);
+		MessageHeaders messageHeaders = new RestoredMessageHeaders(headers, id, timestamp);
+		switch (kind) {
+			case KIND_GENERIC:
+				return new GenericMessage<Object>(payload, messageHeaders);
+			case KIND_ERROR:
+				return new ErrorMessage((Throwable) payload, messageHeaders);
+			default:
+				throw new IOException("Unknown message kind: " + kind);
+		}
+	}
+
+	private void writeValue(DataOutputStream out, Object value) throws IOException {
+		if (value == null) {
+			out.write(TAG_NULL);
+		}
+		else if (value instanceof String) {
+			out.write(TAG_STRING);
+			writeString(out, (String) value);
+		}
+		else if (value instanceof byte[]) {
+			out.write(TAG_BYTES);
+			writeBytes(out, (byte[]) value);
+		}
+		else if (value instanceof Integer) {
+			out.write(TAG_INTEGER);
+			int intValue = (Integer) value;
+			writeVarInt(out, (intValue << 1) ^ (intValue >> 31));
+		}
+		else if (value instanceof Long) {
+			out.write(TAG_LONG);
+			long longValue = (Long) value;
+			writeVarLong(out, (longValue << 1) ^ (longValue >> 63));
+		}
+		else if (value instanceof Boolean) {
+			out.write((Boolean) value ? TAG_TRUE : TAG_FALSE);
+		}
+		else if (value instanceof UUID) {
+			out.write(TAG_UUID);
+			out.writeLong(((UUID) value).getMostSignificantBits());
+			out.writeLong(((UUID) value).getLeastSignificantBits());
+		}
+		else if (value instanceof Double) {
+			out.write(TAG_DOUBLE);
+			out.writeDouble((Double) value);
+		}
+		else if (value instanceof MessageHistory) {
+			out.write(TAG_HISTORY);
+			MessageHistory history = (MessageHistory) value;
+			writeVarInt(out, history.size());
+			for (Properties entry : history) {
+				writeVarInt(out, entry.size());
+				for (String name : entry.stringPropertyNames()) {
+					writeString(out, name);
+					writeString(out, entry.getProperty(name));
+				}
+			}
+		}
+		else {
+			TypeRegistration registration = this.registrationsByType.get(value.getClass());
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			if (registration != null) {
+				out.write(TAG_REGISTERED);
+				writeVarInt(out, registration.typeId);
+				registration.serializer.serialize(value, bytes);
+			}
+			else {
+				out.write(TAG_FALLBACK);
+				this.fallbackSerializer.serialize(value, bytes);
+			}
+			writeBytes(out, bytes.toByteArray());
+		}
+	}
+
+	private Object readValue(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+			case TAG_NULL:
+				return null;
+			case TAG_STRING:
+				return readString(in);
+			case TAG_BYTES:
+				return readBytes(in);
+			case TAG_INTEGER:
+				int intValue = readVarInt(in);
+				return (intValue >>> 1) ^ -(intValue & 1);
+			case TAG_LONG:
+				long longValue = readVarLong(in);
+				return (longValue >>> 1) ^ -(longValue & 1);
+			case TAG_TRUE:
+				return Boolean.TRUE;
+			case TAG_FALSE:
+				return Boolean.FALSE;
+			case TAG_UUID:
+				return new UUID(in.readLong(), in.readLong());
+			case TAG_DOUBLE:
+				return in.readDouble();
+			case TAG_HISTORY:
+				int entryCount = readVarInt(in);
+				List<Properties> entries = new ArrayList<Properties>(entryCount);
+				for (int i = 0; i < entryCount; i++) {
+					MessageHistory.Entry entry = new MessageHistory.Entry();
+					int propertyCount = readVarInt(in);
+					for (int j = 0; j < propertyCount; j++) {
+						entry.setProperty(readString(in), readString(in));
+					}
+					entries.add(entry);
+				}
+				return MessageHistory.fromEntries(entries);
+			case TAG_REGISTERED:
+				int typeId = readVarInt(in);
+				TypeRegistration registration = this.registrationsById.get(typeId);
+				if (registration == null) {
+					throw new IOException("No type is registered with id " + typeId);
+				}
+				return registration.deserializer.deserialize(new ByteArrayInputStream(readBytes(in)));
+			case TAG_FALLBACK:
+				return this.fallbackDeserializer.deserialize(new ByteArrayInputStream(readBytes(in)));
+			default:
+				throw new IOException("Unknown value tag: " + tag);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		writeBytes(out, value.getBytes(UTF_8));
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		return new String(readBytes(in), UTF_8);
+	}
+
+	private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static byte[] readBytes(DataInputStream in) throws IOException {
+		int length = readVarInt(in);
+		if (length < 0) {
+			throw new IOException("Invalid length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return bytes;
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+		while ((value & ~0x7fL) != 0) {
+			out.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 70; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7f) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed variable length integer");
+	}
+
+
+	private static final class TypeRegistration {
+
+		private final int typeId;
+
+		private final Serializer<Object> serializer;
+
+		private final Deserializer<?> deserializer;
+
+		private TypeRegistration(int typeId, Serializer<Object> serializer, Deserializer<?> deserializer) {
+			this.typeId = typeId;
+			this.serializer = serializer;
+			this.deserializer = deserializer;
+		}
+
+	}
+
+	/**
+	 * Headers reconstituted with their original id and timestamp.
+	 */
+	private static final class RestoredMessageHeaders extends MessageHeaders {
+
+		private static final long serialVersionUID = 5356262468133467049L;
+
+		private RestoredMessageHeaders(Map<String, Object> headers, UUID id, Long timestamp) {
+			super(headers, id, timestamp);
+		}
+
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides classes supporting message serialization.
+ */
+package org.springframework.integration.support.serializer;
@@ -26,6 +26,8 @@ import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.expression.ExpressionCompiler;
 import org.springframework.integration.expression.ExpressionUtils;
 import org.springframework.integration.support.DefaultMessageBuilderFactory;
 import org.springframework.integration.support.MessageBuilderFactory;
@@ -56,6 +58,10 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 
 	private volatile MessageBuilderFactory messageBuilderFactory = new DefaultMessageBuilderFactory();
 
+	private volatile ExpressionCompiler expressionCompiler;
+
+	private volatile boolean expressionCompilerSet;
+
 	/**
 	 * Specify a BeanFactory in order to enable resolution via <code>@beanName</code> in the expression.
 	 */
@@ -80,6 +86,18 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 		}
 	}
 
+	/**
+	 * Set the {@link ExpressionCompiler} used to evaluate expressions, overriding the one
+	 * configured on the {@code IntegrationEvaluationContextFactoryBean}; null to always
+	 * interpret expressions.
+	 * @param expressionCompiler the expression compiler.
+	 * @since 4.2
+	 */
+	public void setExpressionCompiler(ExpressionCompiler expressionCompiler) {
+		this.expressionCompiler = expressionCompiler;
+		this.expressionCompilerSet = true;
+	}
+
 	protected MessageBuilderFactory getMessageBuilderFactory() {
 		return this.messageBuilderFactory;
 	}
@@ -115,6 +133,9 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 				if (conversionService != null) {
 					this.typeConverter.setConversionService(conversionService);
 				}
+				if (!this.expressionCompilerSet) {
+					this.expressionCompiler = IntegrationContextUtils.getExpressionCompiler(this.beanFactory);
+				}
 			}
 		}
 		return this.evaluationContext;
@@ -155,15 +176,25 @@ public abstract class AbstractExpressionEvaluator implements BeanFactoryAware, I
 	}
 
 	protected <T> T evaluateExpression(Expression expression, Class<T> expectedType) {
-		return expression.getValue(this.getEvaluationContext(), expectedType);
+		StandardEvaluationContext evaluationContext = this.getEvaluationContext();
+		ExpressionCompiler expressionCompiler = this.expressionCompiler;
+		if (expressionCompiler != null) {
+			return expressionCompiler.getValue(expression, evaluationContext, expectedType);
+		}
+		return expression.getValue(evaluationContext, expectedType);
 	}
 
 	protected Object evaluateExpression(Expression expression) {
-		return expression.getValue(this.getEvaluationContext());
+		return this.evaluateExpression(expression, (Class<Object>) null);
 	}
 
 	protected <T> T evaluateExpression(Expression expression, Object input, Class<T> expectedType) {
-		return expression.getValue(this.getEvaluationContext(), input, expectedType);
+		StandardEvaluationContext evaluationContext = this.getEvaluationContext();
+		ExpressionCompiler expressionCompiler = this.expressionCompiler;
+		if (expressionCompiler != null) {
+			return expressionCompiler.getValue(expression, evaluationContext, input, expectedType);
+		}
+		return expression.getValue(evaluationContext, input, expectedType);
 	}
 
 }
@@ -17,6 +17,7 @@
 package org.springframework.integration.util;
 
 import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
@@ -33,6 +34,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
@@ -75,6 +77,11 @@ import org.springframework.util.StringUtils;
  * the method-selection will be dynamic, based on the underlying SpEL method resolution.
  * Alternatively, an annotation type may be provided so that the candidates for SpEL's
  * method resolution are determined by the presence of that annotation rather than the method name.
+ * <p>
+ * When the arguments for the selected method can be obtained from the message without
+ * conversion (for example, the payload is an instance of the parameter type), the method
+ * is invoked directly instead of evaluating the SpEL expression; the method selected for
+ * each payload type is cached.
  *
  * @author Mark Fisher
  * @author Oleg Zhurakousky
@@ -92,6 +99,11 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 	private static final String CANDIDATE_MESSAGE_METHODS = "CANDIDATE_MESSAGE_METHODS";
 
+	/**
+	 * The maximum number of payload types for which the resolved handler method is cached.
+	 */
+	private static final int MAX_CACHED_PAYLOAD_TYPES = 256;
+
 	private final Log logger = LogFactory.getLog(this.getClass());
 
 	private final Object targetObject;
@@ -108,6 +120,8 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 	private final HandlerMethod handlerMethod;
 
+	private final Map<Class<?>, HandlerMethod> handlerMethodCache = new ConcurrentHashMap<Class<?>, HandlerMethod>();
+
 	private final Class<?> expectedType;
 
 	private final boolean canProcessMessageList;
@@ -282,6 +296,16 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 			context.registerMethodFilter(targetType, filter);
 		}
 		context.setVariable("target", this.targetObject);
+		if (this.handlerMethod != null) {
+			this.handlerMethod.prepareDirectInvocation(this.targetObject);
+		}
+		else {
+			for (Map<Class<?>, HandlerMethod> handlerMethods : this.handlerMethodsList) {
+				for (HandlerMethod handlerMethod : handlerMethods.values()) {
+					handlerMethod.prepareDirectInvocation(this.targetObject);
+				}
+			}
+		}
 	}
 
 	private boolean canReturnExpectedType(AnnotatedMethodFilter filter, Class<?> targetType,
@@ -310,11 +334,13 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 		}
 		HandlerMethod candidate = this.findHandlerMethodForParameters(parameters);
 		Assert.notNull(candidate, "No candidate methods found for messages.");
-		Expression expression = candidate.getExpression();
 		Class<?> expectedType = this.expectedType != null ? this.expectedType : candidate.method.getReturnType();
 		try {
+			Object[] arguments = candidate.resolveArguments(parameters);
 			@SuppressWarnings("unchecked")
-			T result = (T) this.evaluateExpression(expression, parameters, expectedType);
+			T result = (T) (arguments != null
+					? this.invokeDirectly(candidate, arguments, expectedType)
+					: this.evaluateExpression(candidate.getExpression(), parameters, expectedType));
 			if (this.requiresReply) {
 				Assert.notNull(result,
 						"Expression evaluation result was null, but this processor requires a reply.");
@@ -335,6 +361,27 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 		}
 	}
 
+	private Object invokeDirectly(HandlerMethod candidate, Object[] arguments, Class<?> expectedType)
+			throws Exception {
+		Object result;
+		try {
+			result = candidate.invocableMethod.invoke(this.targetObject, arguments);
+		}
+		catch (InvocationTargetException e) {
+			Throwable targetException = e.getTargetException();
+			if (targetException instanceof Exception) {
+				throw (Exception) targetException;
+			}
+			throw new IllegalStateException("Cannot process message", targetException);
+		}
+		if (result != null && expectedType != null
+				&& !org.springframework.util.ClassUtils.isAssignableValue(expectedType, result)) {
+			result = getEvaluationContext().getTypeConverter().convertValue(result, TypeDescriptor.forObject(result),
+					TypeDescriptor.valueOf(expectedType));
+		}
+		return result;
+	}
+
 	private Map<String, Map<Class<?>, HandlerMethod>> findHandlerMethodsForTarget(final Object targetObject,
 			final Class<? extends Annotation> annotationType, final String methodName, final boolean requiresReply) {
 
@@ -534,19 +581,24 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 		final Class<?> payloadType = parameters.getFirstParameterType();
 
-		HandlerMethod closestMatch = this.findClosestMatch(payloadType);
-		if (closestMatch != null) {
-			return closestMatch;
-
+		HandlerMethod candidate = this.handlerMethodCache.get(payloadType);
+		if (candidate != null) {
+			return candidate;
 		}
 
-		if (Iterable.class.isAssignableFrom(payloadType) && this.handlerMethods.containsKey(Iterator.class)) {
-			return this.handlerMethods.get(Iterator.class);
+		candidate = this.findClosestMatch(payloadType);
+		if (candidate == null) {
+			if (Iterable.class.isAssignableFrom(payloadType) && this.handlerMethods.containsKey(Iterator.class)) {
+				candidate = this.handlerMethods.get(Iterator.class);
+			}
+			else {
+				candidate = this.handlerMethods.get(Void.class);
+			}
 		}
-		else {
-			return this.handlerMethods.get(Void.class);
+		if (candidate != null && this.handlerMethodCache.size() < MAX_CACHED_PAYLOAD_TYPES) {
+			this.handlerMethodCache.put(payloadType, candidate);
 		}
-
+		return candidate;
 	}
 
 	private HandlerMethod findClosestMatch(Class<?> payloadType) {
@@ -579,7 +631,8 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 	/**
 	 * Helper class for generating and exposing metadata for a candidate handler method. The metadata includes the SpEL
-	 * expression and the expected payload type.
+	 * expression, the expected payload type and, if the arguments can be resolved without SpEL, how to obtain
+	 * them for direct invocation.
 	 */
 	private static class HandlerMethod {
 
@@ -598,6 +651,8 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 		@SuppressWarnings("unused")
 		private static final Collection<Message<?>> dummyMessages = Collections.emptyList();
 
+		private static final Object[] NO_ARGUMENTS = new Object[0];
+
 
 		private final Method method;
 
@@ -611,6 +666,10 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 
 		private volatile boolean messageMethod;
 
+		private volatile DirectArgument[] directArguments;
+
+		private volatile Method invocableMethod;
+
 		HandlerMethod(Method method, boolean canProcessMessageList) {
 			this.method = method;
 			this.canProcessMessageList = canProcessMessageList;
@@ -630,6 +689,59 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 			return messageMethod;
 		}
 
+		/**
+		 * Enable direct invocation of the method on the target, if all its arguments can be
+		 * resolved without SpEL.
+		 * @param targetObject the target.
+		 */
+		void prepareDirectInvocation(Object targetObject) {
+			if (this.directArguments == null) {
+				return;
+			}
+			Method invocableMethod = this.method;
+			if (!invocableMethod.getDeclaringClass().isInstance(targetObject)) {
+				if (!AopUtils.isJdkDynamicProxy(targetObject)) {
+					return;
+				}
+				invocableMethod = ReflectionUtils.findMethod(targetObject.getClass(), this.method.getName(),
+						this.method.getParameterTypes());
+				if (invocableMethod == null) {
+					return;
+				}
+			}
+			try {
+				ReflectionUtils.makeAccessible(invocableMethod);
+				this.invocableMethod = invocableMethod;
+			}
+			catch (SecurityException e) {
+				// invoke via the expression
+			}
+		}
+
+		/**
+		 * Resolve the arguments for direct invocation.
+		 * @param parameters the parameters.
+		 * @return the arguments, or null if the method must be invoked by evaluating the expression.
+		 */
+		Object[] resolveArguments(MessagingMethodInvokerHelper<?>.ParametersWrapper parameters) {
+			if (this.invocableMethod == null) {
+				return null;
+			}
+			DirectArgument[] directArguments = this.directArguments;
+			if (directArguments.length == 0) {
+				return NO_ARGUMENTS;
+			}
+			Object[] arguments = new Object[directArguments.length];
+			for (int i = 0; i < directArguments.length; i++) {
+				Object argument = directArguments[i].resolve(parameters);
+				if (argument == DirectArgument.UNRESOLVED) {
+					return null;
+				}
+				arguments[i] = argument;
+			}
+			return arguments;
+		}
+
 		@Override
 		public String toString() {
 			return this.method.toString();
@@ -640,6 +752,7 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 			StringBuilder sb = new StringBuilder("#target." + method.getName() + "(");
 			Class<?>[] parameterTypes = method.getParameterTypes();
 			Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+			DirectArgument[] directArguments = new DirectArgument[parameterTypes.length];
 			boolean hasUnqualifiedMapParameter = false;
 			for (int i = 0; i < parameterTypes.length; i++) {
 				if (i != 0) {
@@ -661,6 +774,8 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 						}
 						if (!StringUtils.hasText(qualifierExpression)) {
 							this.setExclusiveTargetParameterType(parameterTypeDescriptor, methodParameter);
+							directArguments[i] = DirectArgument.create(DirectArgument.Source.PAYLOAD,
+									parameterTypeDescriptor, methodParameter, null, false);
 						}
 					}
 					if (annotationType.equals(Payloads.class)) {
@@ -679,16 +794,21 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 						Assert.isTrue(Map.class.isAssignableFrom(parameterType),
 								"The @Headers annotation can only be applied to a Map-typed parameter.");
 						sb.append("headers");
+						directArguments[i] = DirectArgument.create(DirectArgument.Source.HEADERS,
+								parameterTypeDescriptor, methodParameter, null, false);
 					}
 					else if (annotationType.equals(org.springframework.integration.annotation.Header.class)
 							|| annotationType.equals(Header.class)) {
-						sb.append(this.determineHeaderExpression(mappingAnnotation, methodParameter));
+						sb.append(this.determineHeaderExpression(mappingAnnotation, methodParameter,
+								parameterTypeDescriptor, directArguments));
 					}
 				}
 				else if (parameterTypeDescriptor.isAssignableTo(messageTypeDescriptor)) {
 					this.messageMethod = true;
 					sb.append("message");
 					this.setExclusiveTargetParameterType(parameterTypeDescriptor, methodParameter);
+					directArguments[i] = DirectArgument.create(DirectArgument.Source.MESSAGE,
+							parameterTypeDescriptor, methodParameter, null, false);
 				}
 				else if ((parameterTypeDescriptor.isAssignableTo(messageListTypeDescriptor)
 						|| parameterTypeDescriptor.isAssignableTo(messageArrayTypeDescriptor))) {
@@ -733,6 +853,8 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 					}
 					else {
 						sb.append("(payload instanceof T(java.util.Map) ? payload : headers)");
+						directArguments[i] = DirectArgument.create(DirectArgument.Source.PAYLOAD_OR_HEADERS,
+								parameterTypeDescriptor, methodParameter, null, false);
 					}
 					Assert.isTrue(!hasUnqualifiedMapParameter,
 							"Found more than one Map typed parameter without any qualification. "
@@ -742,6 +864,8 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 				else {
 					sb.append("payload");
 					this.setExclusiveTargetParameterType(parameterTypeDescriptor, methodParameter);
+					directArguments[i] = DirectArgument.create(DirectArgument.Source.PAYLOAD,
+							parameterTypeDescriptor, methodParameter, null, false);
 				}
 			}
 			if (hasUnqualifiedMapParameter) {
@@ -755,10 +879,14 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 			if (this.targetParameterTypeDescriptor == null) {
 				this.targetParameterTypeDescriptor = TypeDescriptor.valueOf(Void.class);
 			}
+			if (!ObjectUtils.containsElement(directArguments, null)) {
+				this.directArguments = directArguments;
+			}
 			return EXPRESSION_PARSER.parseExpression(sb.toString());
 		}
 
-		private String determineHeaderExpression(Annotation headerAnnotation, MethodParameter methodParameter) {
+		private String determineHeaderExpression(Annotation headerAnnotation, MethodParameter methodParameter,
+				TypeDescriptor parameterTypeDescriptor, DirectArgument[] directArguments) {
 			methodParameter.initParameterNameDiscovery(PARAMETER_NAME_DISCOVERER);
 			String headerName = null;
 			String relativeExpression = "";
@@ -782,11 +910,16 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 					+ "disabled or header name is not explicitly provided via @Header annotation.");
 			String headerRetrievalExpression = "headers['" + headerName + "']";
 			String fullHeaderExpression = headerRetrievalExpression + relativeExpression;
-			String fallbackExpression = (annotationAttributes.getBoolean("required")
-					&& !methodParameter.getParameterType().getName().equals("java.util.Optional"))
+			boolean required = annotationAttributes.getBoolean("required")
+					&& !methodParameter.getParameterType().getName().equals("java.util.Optional");
+			String fallbackExpression = required
 					? "T(org.springframework.util.Assert).isTrue(false, 'required header not available: "
 					+ headerName + "')"
 					: "null";
+			if (relativeExpression.length() == 0) {
+				directArguments[methodParameter.getParameterIndex()] = DirectArgument.create(
+						DirectArgument.Source.HEADER, parameterTypeDescriptor, methodParameter, headerName, !required);
+			}
 			return headerRetrievalExpression + " != null ? " + fullHeaderExpression + " : " + fallbackExpression;
 		}
 
@@ -808,6 +941,96 @@ public class MessagingMethodInvokerHelper<T> extends AbstractExpressionEvaluator
 		}
 	}
 
+	/**
+	 * The source of an argument that can be passed to the method without conversion.
+	 */
+	private static final class DirectArgument {
+
+		private enum Source {
+
+			PAYLOAD, MESSAGE, HEADERS, HEADER, PAYLOAD_OR_HEADERS
+
+		}
+
+		private static final Object UNRESOLVED = new Object();
+
+		private final Source source;
+
+		private final Class<?> type;
+
+		private final String headerName;
+
+		private final boolean nullable;
+
+		private DirectArgument(Source source, Class<?> type, String headerName, boolean nullable) {
+			this.source = source;
+			this.type = type;
+			this.headerName = headerName;
+			this.nullable = nullable;
+		}
+
+		/**
+		 * @return the argument, or null if resolving the parameter might involve a conversion that
+		 * only SpEL performs (a typed collection or map, or a null header for a primitive or
+		 * {@code Optional} parameter).
+		 */
+		static DirectArgument create(Source source, TypeDescriptor typeDescriptor, MethodParameter methodParameter,
+				String headerName, boolean nullable) {
+			boolean untyped;
+			if (typeDescriptor.isMap()) {
+				TypeDescriptor keyType = typeDescriptor.getMapKeyTypeDescriptor();
+				untyped = (isObject(keyType) || (source != Source.PAYLOAD && String.class.equals(keyType.getType())))
+						&& isObject(typeDescriptor.getMapValueTypeDescriptor());
+			}
+			else if (typeDescriptor.isCollection() || typeDescriptor.isArray()) {
+				untyped = isObject(typeDescriptor.getElementTypeDescriptor());
+			}
+			else {
+				untyped = true;
+			}
+			if (!untyped) {
+				return null;
+			}
+			Class<?> type = methodParameter.getParameterType();
+			return new DirectArgument(source, type, headerName,
+					nullable && !type.isPrimitive() && !type.getName().equals("java.util.Optional"));
+		}
+
+		private static boolean isObject(TypeDescriptor typeDescriptor) {
+			return typeDescriptor == null || Object.class.equals(typeDescriptor.getType());
+		}
+
+		Object resolve(MessagingMethodInvokerHelper<?>.ParametersWrapper parameters) {
+			Object value;
+			switch (this.source) {
+				case PAYLOAD:
+					value = parameters.payload;
+					break;
+				case MESSAGE:
+					value = parameters.message;
+					break;
+				case HEADERS:
+					value = parameters.headers;
+					break;
+				case PAYLOAD_OR_HEADERS:
+					value = parameters.payload;
+					if (value != null && !(value instanceof Map)) {
+						value = parameters.headers;
+					}
+					break;
+				default:
+					value = parameters.headers != null ? parameters.headers.get(this.headerName) : null;
+					if (value == null) {
+						return this.nullable ? null : UNRESOLVED;
+					}
+			}
+			return value != null && org.springframework.util.ClassUtils.isAssignableValue(this.type, value)
+					? value
+					: UNRESOLVED;
+		}
+
+	}
+
 	public class ParametersWrapper {
 
 		private final Object payload;
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.aggregator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.IntegrationMessageHeaderAccessor;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.store.MessageGroup;
+import org.springframework.integration.store.SimpleMessageGroup;
+import org.springframework.integration.store.SimpleMessageStore;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+/**
+ * @since 4.2
+ *
+ */
+public class CorrelationStateTests {
+
+	@Test
+	public void testStateTracksGroup() {
+		Message<?> message3 = createMessage(3, 5);
+		SimpleMessageGroup group = new SimpleMessageGroup(Arrays.<Message<?>>asList(message3), "foo");
+		CorrelationState state = new CorrelationState(group, true);
+		assertEquals(1, state.getCount());
+		assertEquals(5, state.getSequenceSize());
+		assertEquals(3, state.getMinSequenceNumber());
+		assertTrue(state.isCurrent(group));
+
+		Message<?> message1 = createMessage(1, 5);
+		Message<?> message2 = createMessage(2, 5);
+		assertTrue(state.canAdd(message1));
+		assertFalse(state.canAdd(createMessage(3, 5)));
+		assertFalse(state.canAdd(createMessage(4, 6)));
+		group.add(message1);
+		assertFalse(state.isCurrent(group));
+		state.added(message1, group);
+		group.add(message2);
+		state.added(message2, group);
+		assertTrue(state.isCurrent(group));
+		assertEquals(3, state.getCount());
+		assertTrue(state.containsSequenceNumber(2));
+		assertFalse(state.containsSequenceNumber(4));
+		assertEquals(1, state.getMinSequenceNumber());
+		assertEquals(message3.getHeaders().getTimestamp().longValue(), state.getEarliestTimestamp());
+		List<Message<?>> contiguous = state.getContiguousMessages();
+		assertEquals(Arrays.asList(message1, message2, message3), contiguous);
+
+		group.remove(message1);
+		group.remove(message2);
+		group.setLastReleasedMessageSequenceNumber(2);
+		assertTrue(state.released(Arrays.<Message<?>>asList(message1, message2)));
+		assertTrue(state.isCurrent(group));
+		assertEquals(3, state.getMinSequenceNumber());
+		assertEquals(2, state.getLastReleasedSequenceNumber());
+		assertEquals(message3.getHeaders().getTimestamp().longValue(), state.getEarliestTimestamp());
+
+		Message<?> unsequenced = MessageBuilder.withPayload("foo").build();
+		group.add(unsequenced);
+		state.added(unsequenced, group);
+		assertEquals(0, state.getMinSequenceNumber());
+		assertNull(state.getContiguousMessages());
+		assertFalse(state.released(Arrays.<Message<?>>asList(message3)));
+	}
+
+	@Test
+	public void testStrategiesUseBoundState() {
+		MessageGroup group = mock(MessageGroup.class);
+		when(group.size()).thenReturn(2);
+		when(group.getLastReleasedMessageSequenceNumber()).thenReturn(0);
+		when(group.getMessages()).thenThrow(new IllegalStateException("messages should not be retrieved"));
+		Message<?> message1 = createMessage(1, 3);
+		Message<?> message2 = createMessage(2, 3);
+		CorrelationState state = new CorrelationState(new SimpleMessageGroup("foo"), true);
+		state.added(message2, new SimpleMessageGroup(Arrays.<Message<?>>asList(message2), "foo"));
+		state.added(message1, new SimpleMessageGroup(Arrays.<Message<?>>asList(message1, message2), "foo"));
+
+		assertNull(CorrelationState.of(group));
+		CorrelationState previous = state.bind(group);
+		try {
+			assertSame(state, CorrelationState.of(group));
+			assertNull(CorrelationState.of(mock(MessageGroup.class)));
+			assertTrue(new SequenceSizeReleaseStrategy(true).canRelease(group));
+			assertFalse(new TimeoutCountSequenceSizeReleaseStrategy(3, 60000).canRelease(group));
+			assertTrue(new TimeoutCountSequenceSizeReleaseStrategy(3, -1).canRelease(group));
+			assertEquals(Arrays.asList(message1, message2),
+					new ResequencingMessageGroupProcessor().processMessageGroup(group));
+		}
+		finally {
+			state.unbind(previous);
+		}
+		assertNull(CorrelationState.of(group));
+	}
+
+	@Test
+	public void testResequencerRebuildsStateForExistingGroup() {
+		SimpleMessageStore store = new SimpleMessageStore();
+		// messages stored before a restart
+		store.addMessageToGroup("foo", createMessage(3, 0));
+		store.addMessageToGroup("foo", createMessage(2, 0));
+		ResequencingMessageHandler resequencer = new ResequencingMessageHandler(
+				new ResequencingMessageGroupProcessor(), store, null, null);
+		resequencer.setReleasePartialSequences(true);
+		resequencer.setBeanFactory(mock(BeanFactory.class));
+		resequencer.afterPropertiesSet();
+		QueueChannel out = new QueueChannel();
+		resequencer.setOutputChannel(out);
+
+		resequencer.handleMessage(createMessage(1, 0));
+		for (int i = 1; i <= 3; i++) {
+			Message<?> message = out.receive(0);
+			assertEquals(i, new IntegrationMessageHeaderAccessor(message).getSequenceNumber().intValue());
+		}
+		for (int i = 1000; i > 3; i--) {
+			resequencer.handleMessage(createMessage(i, 0));
+			if (i > 4) {
+				assertNull(out.receive(0));
+			}
+		}
+		for (int i = 4; i <= 1000; i++) {
+			Message<?> message = out.receive(0);
+			assertEquals(i, new IntegrationMessageHeaderAccessor(message).getSequenceNumber().intValue());
+		}
+		assertNull(out.receive(0));
+		assertEquals(0, store.getMessageGroup("foo").size());
+		assertEquals(1000, store.getMessageGroup("foo").getLastReleasedMessageSequenceNumber());
+	}
+
+	private static Message<?> createMessage(int sequenceNumber, int sequenceSize) {
+		return MessageBuilder.withPayload(sequenceNumber)
+				.setCorrelationId("foo")
+				.setSequenceNumber(sequenceNumber)
+				.setSequenceSize(sequenceSize)
+				.build();
+	}
+
+}
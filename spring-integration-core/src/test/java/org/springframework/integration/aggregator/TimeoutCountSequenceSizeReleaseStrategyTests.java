@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2008 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,12 +17,14 @@
 package org.springframework.integration.aggregator;
 
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import org.junit.Test;
 import org.springframework.messaging.Message;
 import org.springframework.integration.store.SimpleMessageGroup;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.MessageTimestamps;
 
 /**
  * @author Dave Syer
@@ -49,6 +51,22 @@ public class TimeoutCountSequenceSizeReleaseStrategyTests {
 		assertTrue(releaseStrategy.canRelease(messages));
 	}
 
+	@Test
+	public void testIncompleteListWithoutTimestamps() {
+		MessageTimestamps.setMode(MessageTimestamps.Mode.NONE);
+		try {
+			SimpleMessageGroup messages = new SimpleMessageGroup("FOO");
+			messages.add(MessageBuilder.withPayload("test1").setSequenceSize(3).build());
+			messages.add(MessageBuilder.withPayload("test2").setSequenceSize(3).build());
+			assertNull(messages.getOne().getHeaders().getTimestamp());
+			assertFalse(new TimeoutCountSequenceSizeReleaseStrategy().canRelease(messages));
+			assertTrue(new TimeoutCountSequenceSizeReleaseStrategy(2, -100).canRelease(messages));
+		}
+		finally {
+			MessageTimestamps.setMode(MessageTimestamps.Mode.PRECISE);
+		}
+	}
+
 	@Test
 	public void testIncompleteListWithCount() {
 		Message<String> message = MessageBuilder.withPayload("test1")
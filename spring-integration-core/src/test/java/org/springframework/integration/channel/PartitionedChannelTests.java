@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.test.util.TestUtils.TestApplicationContext;
+import org.springframework.integration.util.CallerBlocksPolicy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 4.2
+ *
+ */
+public class PartitionedChannelTests {
+
+	@Test
+	public void testOrderingPerKey() throws Exception {
+		PartitionedChannel channel = new PartitionedChannel(4);
+		channel.setPartitionKeyHeader("customer");
+		channel.setBeanName("partitioned");
+		channel.afterPropertiesSet();
+		final int keys = 8;
+		final int perKey = 200;
+		final CountDownLatch latch = new CountDownLatch(keys * perKey);
+		final Map<Object, List<Integer>> received = new ConcurrentHashMap<Object, List<Integer>>();
+		final Map<Object, Set<String>> threads = new ConcurrentHashMap<Object, Set<String>>();
+		for (int i = 0; i < keys; i++) {
+			received.put(i, new ArrayList<Integer>());
+			threads.put(i, new HashSet<String>());
+		}
+		channel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				Object key = message.getHeaders().get("customer");
+				List<Integer> list = received.get(key);
+				synchronized (list) {
+					list.add((Integer) message.getPayload());
+					threads.get(key).add(Thread.currentThread().getName());
+				}
+				latch.countDown();
+			}
+
+		});
+		for (int i = 0; i < perKey; i++) {
+			for (int j = 0; j < keys; j++) {
+				channel.send(MessageBuilder.withPayload(i).setHeader("customer", j).build());
+			}
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		Set<String> allThreads = new HashSet<String>();
+		for (int i = 0; i < keys; i++) {
+			List<Integer> list = received.get(i);
+			synchronized (list) {
+				for (int j = 0; j < perKey; j++) {
+					assertEquals(Integer.valueOf(j), list.get(j));
+				}
+				assertEquals(1, threads.get(i).size());
+				allThreads.addAll(threads.get(i));
+			}
+		}
+		assertThat(allThreads.size(), Matchers.greaterThan(1));
+		for (String thread : allThreads) {
+			assertThat(thread, Matchers.startsWith("partitioned-"));
+		}
+		channel.destroy();
+	}
+
+	@Test
+	public void testExpressionKey() throws Exception {
+		PartitionedChannel channel = new PartitionedChannel(3);
+		channel.setPartitionKeyExpression(new SpelExpressionParser().parseExpression("payload.substring(0, 1)"));
+		channel.afterPropertiesSet();
+		final Map<String, String> threads = new ConcurrentHashMap<String, String>();
+		final CountDownLatch latch = new CountDownLatch(30);
+		channel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				String key = ((String) message.getPayload()).substring(0, 1);
+				String previous = threads.put(key, Thread.currentThread().getName());
+				if (previous == null || previous.equals(Thread.currentThread().getName())) {
+					latch.countDown();
+				}
+			}
+
+		});
+		for (int i = 0; i < 10; i++) {
+			channel.send(new GenericMessage<String>("a" + i));
+			channel.send(new GenericMessage<String>("b" + i));
+			channel.send(new GenericMessage<String>("c" + i));
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		channel.destroy();
+	}
+
+	@Test
+	public void testBackPressureAndQueueSizes() throws Exception {
+		PartitionedChannel channel = new PartitionedChannel(2);
+		channel.setPartitionKeyHeader("key");
+		channel.setPartitionQueueCapacity(1);
+		channel.setRejectedExecutionHandler(new CallerBlocksPolicy(100));
+		channel.afterPropertiesSet();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		channel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				blocked.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+		});
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("key", "foo").build();
+		int partition = channel.getDispatcher().partitionFor(message);
+		channel.send(message);
+		assertTrue(blocked.await(10, TimeUnit.SECONDS));
+		channel.send(message);
+		assertEquals(1, channel.getPartitionQueueSizes()[partition]);
+		assertEquals(1, channel.getQueueSize());
+		assertEquals(1, channel.getMaxPartitionQueueSize());
+		assertEquals(2, channel.getPartitionCount());
+		long start = System.currentTimeMillis();
+		try {
+			channel.send(message);
+			fail("Expected exception");
+		}
+		catch (MessageDeliveryException e) {
+			assertThat(e.getCause(), Matchers.instanceOf(RejectedExecutionException.class));
+		}
+		assertThat(System.currentTimeMillis() - start, Matchers.greaterThanOrEqualTo(100L));
+		release.countDown();
+		channel.destroy();
+	}
+
+	@Test
+	public void testErrorChannel() throws Exception {
+		TestApplicationContext context = TestUtils.createTestApplicationContext();
+		QueueChannel errorChannel = new QueueChannel();
+		context.registerChannel("errorChannel", errorChannel);
+		context.refresh();
+		PartitionedChannel channel = new PartitionedChannel(2);
+		channel.setBeanFactory(context);
+		channel.afterPropertiesSet();
+		channel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				throw new RuntimeException("test");
+			}
+
+		});
+		Message<String> message = new GenericMessage<String>("foo");
+		channel.send(message);
+		Message<?> error = errorChannel.receive(10000);
+		assertNotNull(error);
+		assertThat(error, Matchers.instanceOf(ErrorMessage.class));
+		assertSame(message, ((MessagingException) error.getPayload()).getFailedMessage());
+		assertArrayEquals(new int[] { 0, 0 }, channel.getPartitionQueueSizes());
+		channel.destroy();
+		context.close();
+	}
+
+}
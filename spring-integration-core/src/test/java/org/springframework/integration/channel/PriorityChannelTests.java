@@ -16,7 +16,9 @@
 
 package org.springframework.integration.channel;
 
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
@@ -50,6 +52,22 @@ public class PriorityChannelTests {
 		channel.receive(0);
 		assertTrue(channel.send(new GenericMessage<String>("test5")));
 	}
+
+	@Test
+	public void testDrainToReleasesCapacity() {
+		PriorityChannel channel = new PriorityChannel(3);
+		assertTrue(channel.send(MessageBuilder.withPayload("low").setPriority(1).build(), 0));
+		assertTrue(channel.send(MessageBuilder.withPayload("high").setPriority(5).build(), 0));
+		assertTrue(channel.send(MessageBuilder.withPayload("mid").setPriority(3).build(), 0));
+		assertFalse(channel.send(new GenericMessage<String>("full"), 0));
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(2, channel.drainTo(drained, 2));
+		assertEquals("high", drained.get(0).getPayload());
+		assertEquals("mid", drained.get(1).getPayload());
+		assertTrue(channel.send(new GenericMessage<String>("test1"), 0));
+		assertTrue(channel.send(new GenericMessage<String>("test2"), 0));
+		assertFalse(channel.send(new GenericMessage<String>("test3"), 0));
+	}
 	
 	@Test
 	public void testDefaultComparatorWithTimestampFallback() throws Exception{
@@ -27,12 +27,14 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.junit.Ignore;
@@ -46,6 +48,8 @@ import org.springframework.integration.selector.UnexpiredMessageSelector;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.support.ChannelInterceptorAdapter;
 import org.springframework.messaging.support.GenericMessage;
 
 import reactor.io.codec.JavaSerializationCodec;
@@ -274,6 +278,46 @@ public class QueueChannelTests {
 		assertTrue(channel.send(new GenericMessage<String>("roomAvailable"), 0));
 	}
 
+	@Test
+	public void testDrainTo() {
+		QueueChannel channel = new QueueChannel();
+		channel.enableCounts(true);
+		for (int i = 0; i < 5; i++) {
+			channel.send(new GenericMessage<Integer>(i));
+		}
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(3, channel.drainTo(drained, 3));
+		assertEquals(3, drained.size());
+		assertEquals(0, drained.get(0).getPayload());
+		assertEquals(2, drained.get(2).getPayload());
+		assertEquals(2, channel.drainTo(drained, 3));
+		assertEquals(0, channel.drainTo(drained, 3));
+		assertEquals(5, drained.size());
+		assertEquals(5, channel.getReceiveCount());
+	}
+
+	@Test
+	public void testDrainToWithInterceptor() {
+		QueueChannel channel = new QueueChannel();
+		final AtomicInteger postReceives = new AtomicInteger();
+		channel.addInterceptor(new ChannelInterceptorAdapter() {
+
+			@Override
+			public Message<?> postReceive(Message<?> message, MessageChannel channel) {
+				if (message != null) {
+					postReceives.incrementAndGet();
+				}
+				return message;
+			}
+
+		});
+		channel.send(new GenericMessage<String>("foo"));
+		channel.send(new GenericMessage<String>("bar"));
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(2, channel.drainTo(drained, 10));
+		assertEquals(2, postReceives.get());
+	}
+
 	@Rule
 	public final TemporaryFolder tempFolder = new TemporaryFolder();
 
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import org.springframework.integration.selector.UnexpiredMessageSelector;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 4.2
+ *
+ */
+public class RingBufferChannelTests {
+
+	@Test
+	public void testSendAndReceive() {
+		RingBufferChannel channel = new RingBufferChannel(3);
+		assertEquals(4, channel.getCapacity());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(channel.send(new GenericMessage<Integer>(i), 0));
+		}
+		assertFalse(channel.send(new GenericMessage<Integer>(4), 0));
+		assertFalse(channel.send(new GenericMessage<Integer>(4), 10));
+		assertEquals(4, channel.getQueueSize());
+		assertEquals(0, channel.getRemainingCapacity());
+		for (int i = 0; i < 4; i++) {
+			assertEquals(i, channel.receive(0).getPayload());
+		}
+		assertNull(channel.receive(0));
+		assertNull(channel.receive(10));
+		assertEquals(4, channel.getRemainingCapacity());
+	}
+
+	@Test
+	public void testWrapAround() {
+		RingBufferChannel channel = new RingBufferChannel(2, true, new BusySpinWaitStrategy());
+		for (int i = 0; i < 100; i++) {
+			assertTrue(channel.send(new GenericMessage<Integer>(i), 0));
+			assertEquals(i, channel.receive(0).getPayload());
+		}
+	}
+
+	@Test
+	public void testBlockingReceive() throws Exception {
+		final RingBufferChannel channel = new RingBufferChannel();
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		exec.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					Thread.sleep(50);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				channel.send(new GenericMessage<String>("foo"));
+			}
+
+		});
+		Message<?> message = channel.receive(10000);
+		assertEquals("foo", message.getPayload());
+		exec.shutdownNow();
+	}
+
+	@Test
+	public void testPurgeAndClear() {
+		RingBufferChannel channel = new RingBufferChannel(8);
+		long past = System.currentTimeMillis() - 60000;
+		channel.send(MessageBuilder.withPayload("expired").setExpirationDate(past).build());
+		channel.send(new GenericMessage<String>("foo"));
+		channel.send(MessageBuilder.withPayload("expired").setExpirationDate(past).build());
+		channel.send(new GenericMessage<String>("bar"));
+		List<Message<?>> purged = channel.purge(new UnexpiredMessageSelector());
+		assertEquals(2, purged.size());
+		assertEquals(2, channel.getQueueSize());
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(1, channel.drainTo(drained, 1));
+		assertEquals("foo", drained.get(0).getPayload());
+		assertEquals(1, channel.clear().size());
+		assertEquals(0, channel.getQueueSize());
+	}
+
+	@Test
+	public void testMultipleProducersAndConsumers() throws Exception {
+		doTestConcurrent(new RingBufferChannel(64), 4, 2);
+		doTestConcurrent(new RingBufferChannel(64, false, new YieldingWaitStrategy()), 4, 2);
+		doTestConcurrent(new RingBufferChannel(64, true, new ParkingWaitStrategy()), 1, 2);
+	}
+
+	private void doTestConcurrent(final RingBufferChannel channel, int producers, int consumers)
+			throws Exception {
+		final int count = 10000;
+		ExecutorService exec = Executors.newCachedThreadPool();
+		final AtomicLong sum = new AtomicLong();
+		final CountDownLatch received = new CountDownLatch(producers * count);
+		for (int i = 0; i < consumers; i++) {
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					while (!Thread.currentThread().isInterrupted()) {
+						Message<?> message = channel.receive(100);
+						if (message != null) {
+							sum.addAndGet((Integer) message.getPayload());
+							received.countDown();
+						}
+					}
+				}
+
+			});
+		}
+		for (int i = 0; i < producers; i++) {
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < count; j++) {
+						channel.send(new GenericMessage<Integer>(j));
+					}
+				}
+
+			});
+		}
+		assertTrue(received.await(30, TimeUnit.SECONDS));
+		exec.shutdownNow();
+		assertEquals((long) producers * count * (count - 1) / 2, sum.get());
+		assertEquals(0, channel.getQueueSize());
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,8 @@ import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -36,6 +38,7 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.integration.channel.AbstractMessageChannel;
 import org.springframework.integration.channel.ChannelInterceptorAware;
 import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.history.MessageHistory;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -173,6 +176,68 @@ public class ChannelInterceptorTests {
 		assertFalse(interceptor2.wasAfterCompletionInvoked());
 	}
 
+	@Test
+	public void afterCompletionInReverseOrder() {
+		final List<String> calls = new ArrayList<String>();
+		this.channel.addInterceptor(new OrderRecordingInterceptor("one", calls));
+		this.channel.addInterceptor(new OrderRecordingInterceptor("two", calls));
+		assertTrue(this.channel.send(new GenericMessage<String>("test")));
+		assertEquals(Arrays.asList("preSend:one", "preSend:two", "postSend:one", "postSend:two",
+				"afterSendCompletion:two", "afterSendCompletion:one"), calls);
+	}
+
+	@Test
+	public void configurationChangesAfterSendAreApplied() {
+		final List<Message<?>> sent = new ArrayList<Message<?>>();
+		AbstractMessageChannel testChannel = new AbstractMessageChannel() {
+
+			{
+				getInterceptors().add(new OrderRecordingInterceptor("one", new ArrayList<String>()) {
+
+					@Override
+					public Message<?> preSend(Message<?> message, MessageChannel channel) {
+						return MessageBuilder.fromMessage(message).setHeader("intercepted", true).build();
+					}
+
+				});
+			}
+
+			@Override
+			protected boolean doSend(Message<?> message, long timeout) {
+				sent.add(message);
+				return true;
+			}
+
+		};
+		testChannel.setBeanName("testChannel");
+		testChannel.send(new GenericMessage<String>("test"));
+		assertNotNull(sent.get(0).getHeaders().get("intercepted"));
+		assertEquals(1, testChannel.getChannelInterceptors().size());
+		assertNotNull(testChannel.removeInterceptor(0));
+		testChannel.send(new GenericMessage<String>("test"));
+		assertNull(sent.get(1).getHeaders().get("intercepted"));
+		testChannel.setShouldTrack(true);
+		testChannel.enableCounts(true);
+		testChannel.send(new GenericMessage<String>("test"));
+		assertNotNull(MessageHistory.read(sent.get(2)));
+		assertEquals(1, testChannel.getSendCount());
+		testChannel.setShouldTrack(false);
+		testChannel.enableCounts(false);
+		testChannel.send(new GenericMessage<String>("test"));
+		assertNull(MessageHistory.read(sent.get(3)));
+		assertEquals(1, testChannel.getSendCount());
+		testChannel.addInterceptor(new ChannelInterceptorAdapter() {
+
+			@Override
+			public Message<?> preSend(Message<?> message, MessageChannel channel) {
+				return null;
+			}
+
+		});
+		assertFalse(testChannel.send(new GenericMessage<String>("test")));
+		assertEquals(4, sent.size());
+	}
+
 	@Test
 	public void testPreReceiveInterceptorReturnsTrue() {
 		PreReceiveReturnsTrueInterceptor interceptor = new PreReceiveReturnsTrueInterceptor();
@@ -377,6 +442,35 @@ public class ChannelInterceptorTests {
 	}
 
 
+	private static class OrderRecordingInterceptor extends ChannelInterceptorAdapter {
+
+		private final String name;
+
+		private final List<String> calls;
+
+		private OrderRecordingInterceptor(String name, List<String> calls) {
+			this.name = name;
+			this.calls = calls;
+		}
+
+		@Override
+		public Message<?> preSend(Message<?> message, MessageChannel channel) {
+			this.calls.add("preSend:" + this.name);
+			return message;
+		}
+
+		@Override
+		public void postSend(Message<?> message, MessageChannel channel, boolean sent) {
+			this.calls.add("postSend:" + this.name);
+		}
+
+		@Override
+		public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+			this.calls.add("afterSendCompletion:" + this.name);
+		}
+
+	}
+
 	private static class PreReceiveReturnsFalseInterceptor extends ChannelInterceptorAdapter {
 
 		private static AtomicInteger counter = new AtomicInteger();
@@ -16,22 +16,42 @@
 package org.springframework.integration.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicLong;
 
+import org.hamcrest.Matchers;
+
 import org.junit.Test;
 
 import org.springframework.beans.factory.BeanDefinitionStoreException;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.context.IntegrationProperties;
 import org.springframework.integration.support.IdGenerators.JdkIdGenerator;
 import org.springframework.integration.support.IdGenerators.SimpleIncrementingIdGenerator;
+import org.springframework.integration.support.IdGenerators.ThreadLocalIncrementingIdGenerator;
+import org.springframework.integration.support.IdGenerators.TimeOrderedIdGenerator;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.MessageTimestamps;
 import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.util.IdGenerator;
 
@@ -203,6 +223,95 @@ public class IdGeneratorConfigurerTests {
 		context.destroy();
 	}
 
+	@Test
+	public void testTimeOrdered() throws Exception {
+		final TimeOrderedIdGenerator idGenerator = new TimeOrderedIdGenerator(42);
+		UUID last = idGenerator.generateId();
+		assertEquals(7, last.version());
+		assertEquals(2, last.variant());
+		assertEquals(42, (last.getLeastSignificantBits() >>> 46) & 0xffff);
+		long now = System.currentTimeMillis();
+		assertTrue(Math.abs(now - (last.getMostSignificantBits() >>> 16)) < 10000);
+		for (int i = 0; i < 10000; i++) {
+			UUID id = idGenerator.generateId();
+			assertThat(id.getMostSignificantBits(), Matchers.greaterThanOrEqualTo(last.getMostSignificantBits()));
+			assertTrue(id.getMostSignificantBits() > last.getMostSignificantBits()
+					|| id.getLeastSignificantBits() > last.getLeastSignificantBits());
+			last = id;
+		}
+		ExecutorService exec = Executors.newFixedThreadPool(4);
+		Set<Future<Set<UUID>>> futures = new HashSet<Future<Set<UUID>>>();
+		for (int i = 0; i < 4; i++) {
+			futures.add(exec.submit(new Callable<Set<UUID>>() {
+
+				@Override
+				public Set<UUID> call() throws Exception {
+					Set<UUID> ids = new HashSet<UUID>();
+					for (int j = 0; j < 10000; j++) {
+						ids.add(idGenerator.generateId());
+					}
+					return ids;
+				}
+
+			}));
+		}
+		Set<UUID> all = new HashSet<UUID>();
+		for (Future<Set<UUID>> future : futures) {
+			all.addAll(future.get());
+		}
+		exec.shutdown();
+		assertEquals(40000, all.size());
+		assertFalse(all.contains(last));
+	}
+
+	@Test
+	public void testThreadLocalIncrementing() throws Exception {
+		final ThreadLocalIncrementingIdGenerator idGenerator = new ThreadLocalIncrementingIdGenerator();
+		assertEquals(new UUID(1, 1), idGenerator.generateId());
+		assertEquals(new UUID(1, 2), idGenerator.generateId());
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		assertEquals(new UUID(2, 1), exec.submit(new Callable<UUID>() {
+
+			@Override
+			public UUID call() throws Exception {
+				return idGenerator.generateId();
+			}
+
+		}).get());
+		exec.shutdown();
+	}
+
+	@Test
+	public void testTimestampMode() throws Exception {
+		GenericApplicationContext context = new GenericApplicationContext();
+		context.registerBeanDefinition("bfpp", new RootBeanDefinition(DefaultConfiguringBeanFactoryPostProcessor.class));
+		Properties properties = new Properties();
+		properties.setProperty(IntegrationProperties.MESSAGE_BUILDER_TIMESTAMP, "none");
+		context.getBeanFactory().registerSingleton(IntegrationContextUtils.INTEGRATION_GLOBAL_PROPERTIES_BEAN_NAME,
+				properties);
+		context.refresh();
+		assertSame(MessageTimestamps.Mode.NONE, MessageTimestamps.getMode());
+		Message<String> message = MessageBuilder.withPayload("foo").build();
+		assertNotNull(message.getHeaders().getId());
+		assertNull(message.getHeaders().getTimestamp());
+		assertFalse(message.getHeaders().containsKey(MessageHeaders.TIMESTAMP));
+		context.destroy();
+		assertSame(MessageTimestamps.Mode.PRECISE, MessageTimestamps.getMode());
+		assertNotNull(MessageBuilder.withPayload("foo").build().getHeaders().getTimestamp());
+
+		MessageTimestamps.setMode(MessageTimestamps.Mode.COARSE);
+		try {
+			long before = System.currentTimeMillis();
+			Thread.sleep(50);
+			Long timestamp = MessageBuilder.withPayload("foo").build().getHeaders().getTimestamp();
+			assertThat(timestamp, Matchers.greaterThan(before));
+			assertThat(timestamp, Matchers.lessThanOrEqualTo(System.currentTimeMillis()));
+		}
+		finally {
+			MessageTimestamps.setMode(MessageTimestamps.Mode.PRECISE);
+		}
+	}
+
 	public static class MyIdGenerator implements IdGenerator {
 
 		@Override
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -29,6 +29,9 @@ import org.mockito.Mockito;
 
 import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.context.support.GenericXmlApplicationContext;
+import org.springframework.integration.support.IdGenerators;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.MessageTimestamps;
 import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageHeaders;
 import org.springframework.messaging.support.GenericMessage;
@@ -175,6 +178,38 @@ public class MessageIdGenerationTests {
 		System.out.println("Time-based ID generator is " + defaultGeneratorElapsedTime/timebasedGeneratorElapsedTime + " times faster");
 	}
 
+	@Test
+	@Ignore
+	public void messageBuilderPerformanceTest() throws Exception {
+		int times = 10000000;
+		Field idGeneratorField = ReflectionUtils.findField(MessageHeaders.class, "idGenerator");
+		ReflectionUtils.makeAccessible(idGeneratorField);
+		IdGenerator[] idGenerators = { null, new IdGenerators.JdkIdGenerator(),
+				new IdGenerators.TimeOrderedIdGenerator(), new IdGenerators.ThreadLocalIncrementingIdGenerator() };
+		try {
+			for (IdGenerator idGenerator : idGenerators) {
+				ReflectionUtils.setField(idGeneratorField, null, idGenerator);
+				for (MessageTimestamps.Mode mode : MessageTimestamps.Mode.values()) {
+					MessageTimestamps.setMode(mode);
+					StopWatch watch = new StopWatch();
+					watch.start();
+					for (int i = 0; i < times; i++) {
+						MessageBuilder.withPayload(i).setHeader("foo", "bar").build();
+					}
+					watch.stop();
+					System.out.println("Built " + times + " messages using "
+							+ (idGenerator == null ? "default" : idGenerator.getClass().getSimpleName())
+							+ " with " + mode + " timestamps in " + watch.getTotalTimeSeconds() + " seconds ("
+							+ (long) (times / watch.getTotalTimeSeconds()) + "/sec)");
+				}
+			}
+		}
+		finally {
+			ReflectionUtils.setField(idGeneratorField, null, null);
+			MessageTimestamps.setMode(MessageTimestamps.Mode.PRECISE);
+		}
+	}
+
 	private void assertDestroy() throws Exception {
 		Field idGenField = ReflectionUtils.findField(MessageHeaders.class, "idGenerator");
 		ReflectionUtils.makeAccessible(idGenField);
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2010 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -19,7 +19,9 @@ package org.springframework.integration.endpoint;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.mock;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -33,6 +35,8 @@ import org.mockito.Mockito;
 import org.springframework.beans.factory.BeanFactory;
 import org.springframework.messaging.Message;
 import org.springframework.integration.MessageRejectedException;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.handler.BatchMessageHandler;
 import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.PollableChannel;
 import org.springframework.messaging.support.GenericMessage;
@@ -171,6 +175,61 @@ public class PollingConsumerEndpointTests {
 		assertEquals(1, consumer.counter.get());
 	}
 
+	@Test
+	public void batchFromQueueChannel() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		for (int i = 0; i < 10; i++) {
+			channel.send(new GenericMessage<Integer>(i));
+		}
+		TestBatchConsumer batchConsumer = new TestBatchConsumer();
+		PollingConsumer endpoint = createBatchEndpoint(channel, batchConsumer);
+		endpoint.setMaxMessagesPerPoll(4);
+		endpoint.start();
+		trigger.await();
+		endpoint.stop();
+		assertEquals(1, batchConsumer.batches.size());
+		assertEquals(4, batchConsumer.batches.get(0).size());
+		assertEquals(0, batchConsumer.batches.get(0).get(0).getPayload());
+		assertEquals(3, batchConsumer.batches.get(0).get(3).getPayload());
+		assertEquals(6, channel.getQueueSize());
+	}
+
+	@Test
+	public void batchUnboundedFromPollableChannel() throws Exception {
+		Mockito.when(channelMock.receive()).thenReturn(message, (Message) null);
+		Mockito.when(channelMock.receive(0)).thenReturn(message, message, null);
+		TestBatchConsumer batchConsumer = new TestBatchConsumer();
+		PollingConsumer endpoint = createBatchEndpoint(channelMock, batchConsumer);
+		endpoint.start();
+		trigger.await();
+		endpoint.stop();
+		assertEquals(1, batchConsumer.batches.size());
+		assertEquals(3, batchConsumer.batches.get(0).size());
+	}
+
+	private PollingConsumer createBatchEndpoint(PollableChannel channel, MessageHandler handler) throws Exception {
+		PollingConsumer endpoint = new PollingConsumer(channel, handler);
+		endpoint.setErrorHandler(errorHandler);
+		endpoint.setTaskScheduler(taskScheduler);
+		endpoint.setTrigger(trigger);
+		endpoint.setBeanFactory(mock(BeanFactory.class));
+		endpoint.setReceiveTimeout(-1);
+		endpoint.afterPropertiesSet();
+		return endpoint;
+	}
+
+
+	private static class TestBatchConsumer extends TestConsumer implements BatchMessageHandler {
+
+		private final List<List<Message<?>>> batches = new ArrayList<List<Message<?>>>();
+
+		@Override
+		public void handleMessages(List<Message<?>> messages) {
+			this.batches.add(new ArrayList<Message<?>>(messages));
+		}
+
+	}
+
 
 	private static class TestConsumer implements MessageHandler {
 
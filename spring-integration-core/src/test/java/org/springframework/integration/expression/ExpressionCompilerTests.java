@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.config.IntegrationEvaluationContextFactoryBean;
+import org.springframework.integration.context.IntegrationContextUtils;
+import org.springframework.integration.expression.ExpressionCompiler.ExpressionStatistics;
+import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 4.2
+ *
+ */
+public class ExpressionCompilerTests {
+
+	private final SpelExpressionParser parser = new SpelExpressionParser();
+
+	@Test
+	public void testMixedRevertsToInterpreted() {
+		ExpressionCompiler compiler = new ExpressionCompiler(SpelCompilerMode.MIXED);
+		Expression expression = this.parser.parseExpression("#root.size()");
+		EvaluationContext context = ExpressionUtils.createStandardEvaluationContext();
+		assertEquals(Integer.valueOf(1), compiler.getValue(expression, context,
+				new ArrayList<String>(Arrays.asList("foo")), Integer.class));
+		ExpressionStatistics statistics = compiler.getStatistics().get(0);
+		assertTrue(statistics.isCompiled());
+		assertEquals(Integer.valueOf(2), compiler.getValue(expression, context,
+				new ArrayList<String>(Arrays.asList("foo", "bar")), Integer.class));
+		assertEquals(1, statistics.getInterpretedEvaluations());
+		assertEquals(1, statistics.getCompiledEvaluations());
+		assertEquals(1, compiler.getCompiledExpressionCount());
+
+		assertEquals(Integer.valueOf(1), compiler.getValue(expression, context,
+				new LinkedList<String>(Arrays.asList("foo")), Integer.class));
+		assertEquals(1, statistics.getFailedAttempts());
+		assertEquals(2, statistics.getInterpretedEvaluations());
+		assertTrue(statistics.isCompiled());
+		assertEquals(Integer.valueOf(2), compiler.getValue(expression, context,
+				new LinkedList<String>(Arrays.asList("foo", "bar")), Integer.class));
+		assertEquals(2, statistics.getCompiledEvaluations());
+	}
+
+	@Test
+	public void testStatisticsRetainedAfterGc() {
+		ExpressionCompiler compiler = new ExpressionCompiler(SpelCompilerMode.MIXED);
+		Expression expression = this.parser.parseExpression("#root.size()");
+		EvaluationContext context = ExpressionUtils.createStandardEvaluationContext();
+		for (int i = 0; i < 5; i++) {
+			compiler.getValue(expression, context, new ArrayList<String>(), Integer.class);
+		}
+		System.gc();
+		compiler.getValue(expression, context, new ArrayList<String>(), Integer.class);
+		ExpressionStatistics statistics = compiler.getStatistics().get(0);
+		assertTrue(statistics.isCompiled());
+		assertEquals(5, statistics.getCompiledEvaluations());
+		assertEquals(1, statistics.getInterpretedEvaluations());
+		assertEquals(1, compiler.getCompiledExpressionCount());
+	}
+
+	@Test
+	public void testConcurrentEvaluations() throws Exception {
+		final ExpressionCompiler compiler = new ExpressionCompiler(SpelCompilerMode.MIXED);
+		final Expression expression = this.parser.parseExpression("#root.size()");
+		final EvaluationContext context = ExpressionUtils.createStandardEvaluationContext();
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService exec = Executors.newFixedThreadPool(8);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		for (int i = 0; i < 8; i++) {
+			futures.add(exec.submit(() -> {
+				start.await();
+				for (int j = 0; j < 1000; j++) {
+					assertEquals(Integer.valueOf(0),
+							compiler.getValue(expression, context, new ArrayList<String>(), Integer.class));
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(30, TimeUnit.SECONDS);
+		}
+		exec.shutdown();
+		List<ExpressionStatistics> statistics = compiler.getStatistics();
+		assertEquals(1, statistics.size());
+		assertEquals(8000, statistics.get(0).getCompiledEvaluations() + statistics.get(0).getInterpretedEvaluations());
+		assertTrue(statistics.get(0).isCompiled());
+	}
+
+	@Test
+	public void testCollectedExpressionsForgotten() throws Exception {
+		ExpressionCompiler compiler = new ExpressionCompiler(SpelCompilerMode.MIXED);
+		EvaluationContext context = ExpressionUtils.createStandardEvaluationContext();
+		for (int i = 0; i < 10; i++) {
+			compiler.getValue(this.parser.parseExpression("#root.size() + " + i), context,
+					new ArrayList<String>(), Integer.class);
+		}
+		Expression retained = this.parser.parseExpression("#root.size()");
+		compiler.getValue(retained, context, new ArrayList<String>(), Integer.class);
+		int n = 0;
+		while (n++ < 100 && compiler.getStatistics().size() > 1) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		List<ExpressionStatistics> statistics = compiler.getStatistics();
+		assertEquals(1, statistics.size());
+		assertEquals("#root.size()", statistics.get(0).getExpressionString());
+		compiler.getValue(retained, context, new ArrayList<String>(), Integer.class);
+		assertEquals(1, statistics.get(0).getCompiledEvaluations());
+	}
+
+	@Test
+	public void testImmediatePropagatesFailure() {
+		ExpressionCompiler compiler = new ExpressionCompiler(SpelCompilerMode.IMMEDIATE);
+		Expression expression = this.parser.parseExpression("#root.size()");
+		EvaluationContext context = ExpressionUtils.createStandardEvaluationContext();
+		compiler.getValue(expression, context, new ArrayList<String>(), Integer.class);
+		try {
+			compiler.getValue(expression, context, new LinkedList<String>(), Integer.class);
+			fail("Expected SpelEvaluationException");
+		}
+		catch (SpelEvaluationException e) {
+			assertEquals(SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION, e.getMessageCode());
+		}
+	}
+
+	@Test
+	public void testNotCompilable() {
+		ExpressionCompiler compiler = new ExpressionCompiler(SpelCompilerMode.MIXED);
+		Expression expression = this.parser.parseExpression("{1, 2, 3}.?[#this > 1].size()");
+		EvaluationContext context = ExpressionUtils.createStandardEvaluationContext();
+		for (int i = 0; i < 200; i++) {
+			assertEquals(Integer.valueOf(2), compiler.getValue(expression, context, Integer.class));
+		}
+		ExpressionStatistics statistics = compiler.getStatistics().get(0);
+		assertFalse(statistics.isCompiled());
+		assertEquals(200, statistics.getInterpretedEvaluations());
+		assertEquals(100, statistics.getFailedAttempts());
+		assertEquals(1, compiler.getInterpretedExpressionCount());
+	}
+
+	@Test
+	public void testCompilerFromFactoryBean() {
+		GenericApplicationContext context = new GenericApplicationContext();
+		RootBeanDefinition factoryBean = new RootBeanDefinition(IntegrationEvaluationContextFactoryBean.class);
+		factoryBean.getPropertyValues().add("compilerMode", "MIXED");
+		context.registerBeanDefinition(IntegrationContextUtils.INTEGRATION_EVALUATION_CONTEXT_BEAN_NAME, factoryBean);
+		context.refresh();
+		ExpressionCompiler compiler = IntegrationContextUtils.getExpressionCompiler(context);
+		assertNotNull(compiler);
+		assertSame(SpelCompilerMode.MIXED, compiler.getCompilerMode());
+
+		ExpressionEvaluatingMessageProcessor<String> processor = new ExpressionEvaluatingMessageProcessor<String>(
+				this.parser.parseExpression("payload.toUpperCase()"), String.class);
+		processor.setBeanFactory(context);
+		assertEquals("FOO", processor.processMessage(new GenericMessage<String>("foo")));
+		assertEquals("BAR", processor.processMessage(new GenericMessage<String>("bar")));
+		ExpressionStatistics statistics = compiler.getStatistics().get(0);
+		assertEquals("payload.toUpperCase()", statistics.getExpressionString());
+		assertTrue(statistics.isCompiled());
+		assertEquals(1, statistics.getCompiledEvaluations());
+		context.close();
+
+		context = new GenericApplicationContext();
+		context.registerBeanDefinition(IntegrationContextUtils.INTEGRATION_EVALUATION_CONTEXT_BEAN_NAME,
+				new RootBeanDefinition(IntegrationEvaluationContextFactoryBean.class));
+		context.refresh();
+		assertNull(IntegrationContextUtils.getExpressionCompiler(context));
+		context.close();
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 
@@ -46,6 +47,7 @@ import org.springframework.integration.annotation.ServiceActivator;
 import org.springframework.integration.gateway.GatewayProxyFactoryBean;
 import org.springframework.integration.gateway.RequestReplyExchanger;
 import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
 import org.springframework.integration.util.MessagingMethodInvokerHelper;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHandlingException;
@@ -352,6 +354,36 @@ public class MethodInvokingMessageProcessorTests {
 		assertEquals("true", bean.lastArg);
 	}
 
+	@Test
+	public void testOverloadedMethodCachedForPayloadType() {
+		AmbiguousMethodBean bean = new AmbiguousMethodBean();
+		MethodInvokingMessageProcessor processor = new MethodInvokingMessageProcessor(bean, "foo");
+		assertEquals("foo", processor.processMessage(new GenericMessage<String>("foo")));
+		assertEquals("42", processor.processMessage(new GenericMessage<Integer>(42)));
+		assertEquals("bar", processor.processMessage(new GenericMessage<String>("bar")));
+		assertEquals("bar", bean.lastArg);
+		System.gc();
+		Map<?, ?> cache = TestUtils.getPropertyValue(processor, "delegate.handlerMethodCache", Map.class);
+		assertTrue(cache.containsKey(String.class));
+		assertTrue(cache.containsKey(Integer.class));
+		assertEquals("43", processor.processMessage(new GenericMessage<Integer>(43)));
+		assertEquals(43, bean.lastArg);
+	}
+
+	@Test
+	public void testDirectInvocationUnlessConversionRequired() throws Exception {
+		Method method = TestBean.class.getMethod("acceptPayloadAndHeaderAndReturnObject", String.class,
+				Integer.class);
+		MethodInvokingMessageProcessor processor = new MethodInvokingMessageProcessor(new TestBean(), method);
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("number", 42).build();
+		assertEquals("foo-42", processor.processMessage(message));
+		assertNotNull(TestUtils.getPropertyValue(processor, "delegate.handlerMethod.invocableMethod"));
+		message = MessageBuilder.withPayload("foo").setHeader("number", "43").build();
+		assertEquals("foo-43", processor.processMessage(message));
+		assertEquals("123-42", processor.processMessage(MessageBuilder.withPayload(123).setHeader("number", 42)
+				.build()));
+	}
+
 	@Test
 	public void gatewayTest() throws Exception {
 		GatewayProxyFactoryBean gwFactoryBean = new GatewayProxyFactoryBean();
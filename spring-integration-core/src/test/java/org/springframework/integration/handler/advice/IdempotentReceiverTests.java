@@ -1,5 +1,5 @@
 /*
- * Copyright 2014 the original author or authors.
+ * Copyright 2014-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,7 +18,9 @@ package org.springframework.integration.handler.advice;
 
 import static org.hamcrest.Matchers.instanceOf;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -41,6 +43,8 @@ import org.springframework.integration.metadata.ConcurrentMetadataStore;
 import org.springframework.integration.metadata.MetadataStore;
 import org.springframework.integration.metadata.SimpleMetadataStore;
 import org.springframework.integration.selector.MetadataStoreSelector;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.MessageTimestamps;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
@@ -81,6 +85,23 @@ public class IdempotentReceiverTests {
 	@Autowired
 	private FooAdvice fooAdvice;
 
+	@Test
+	public void testDefaultValueWithoutTimestamp() {
+		ConcurrentMetadataStore store = new SimpleMetadataStore();
+		MetadataStoreSelector selector = new MetadataStoreSelector(m -> (String) m.getPayload(), store);
+		MessageTimestamps.setMode(MessageTimestamps.Mode.NONE);
+		try {
+			Message<String> message = MessageBuilder.withPayload("foo").build();
+			assertNull(message.getHeaders().getTimestamp());
+			assertTrue(selector.accept(message));
+			assertFalse(selector.accept(MessageBuilder.withPayload("foo").build()));
+			assertNotNull(store.get("foo"));
+		}
+		finally {
+			MessageTimestamps.setMode(MessageTimestamps.Mode.PRECISE);
+		}
+	}
+
 	@Test
 	public void testIdempotentReceiverInterceptor() {
 		ConcurrentMetadataStore store = new SimpleMetadataStore();
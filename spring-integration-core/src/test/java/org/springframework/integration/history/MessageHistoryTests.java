@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import org.springframework.integration.support.context.NamedComponent;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 4.2
+ *
+ */
+public class MessageHistoryTests {
+
+	@Test
+	public void testBranchesShareEntries() {
+		Message<String> message = new GenericMessage<String>("foo");
+		message = MessageHistory.write(message, new TestComponent("channel1", "channel"));
+		message = MessageHistory.write(message, new TestComponent("org.springframework.integration.internal", "x"));
+		Message<String> branch1 = MessageHistory.write(message, new TestComponent("handler1", "service-activator"));
+		Message<String> branch2 = MessageHistory.write(message, new TestComponent("handler2", null));
+		MessageHistory history = MessageHistory.read(message);
+		MessageHistory history1 = MessageHistory.read(branch1);
+		MessageHistory history2 = MessageHistory.read(branch2);
+		assertEquals(1, history.size());
+		assertEquals("channel1,handler1", history1.toString());
+		assertEquals("channel1,handler2", history2.toString());
+		assertSame(history.get(0), history1.get(0));
+		assertSame(history.get(0), history2.get(0));
+		Properties entry = history1.get(1);
+		assertThat(entry, Matchers.instanceOf(MessageHistory.Entry.class));
+		assertEquals("handler1", ((MessageHistory.Entry) entry).getName());
+		assertEquals("service-activator", entry.getProperty(MessageHistory.TYPE_PROPERTY));
+		assertNotNull(entry.getProperty(MessageHistory.TIMESTAMP_PROPERTY));
+		assertEquals(2, history2.get(1).size());
+		List<String> names = new ArrayList<String>();
+		for (Properties properties : history1) {
+			names.add(properties.getProperty(MessageHistory.NAME_PROPERTY));
+		}
+		assertEquals("[channel1, handler1]", names.toString());
+		assertEquals(1, history1.indexOf(entry));
+		assertEquals(1, history1.subList(1, 2).size());
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		Message<String> message = new GenericMessage<String>("foo");
+		message = MessageHistory.write(message, new TestComponent("channel1", "channel"));
+		message = MessageHistory.write(message, new TestComponent("handler1", "service-activator"));
+		MessageHistory history = MessageHistory.read(message);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(history);
+		out.close();
+		MessageHistory result = readHistory(new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(new ArrayList<Properties>(history), new ArrayList<Properties>(result));
+		assertEquals("channel1,handler1", result.toString());
+		message = MessageHistory.write(message, new TestComponent("channel2", "channel"));
+		assertEquals("channel1,handler1,channel2", MessageHistory.read(message).toString());
+	}
+
+	@Test
+	public void testReadPreviousVersion() throws Exception {
+		InputStream stream = getClass().getResourceAsStream("messageHistory-4.1.ser");
+		MessageHistory history = readHistory(stream);
+		stream.close();
+		assertEquals("channel1,handler1", history.toString());
+		assertEquals("service-activator", history.get(1).getProperty(MessageHistory.TYPE_PROPERTY));
+		Message<String> message = MessageHistory.write(new GenericMessage<String>("foo",
+				Collections.<String, Object>singletonMap(MessageHistory.HEADER_NAME, history)),
+				new TestComponent("channel2", "channel"));
+		history = MessageHistory.read(message);
+		assertEquals("channel1,handler1,channel2", history.toString());
+	}
+
+	private static MessageHistory readHistory(InputStream stream) throws Exception {
+		ObjectInputStream in = new ObjectInputStream(stream);
+		try {
+			return (MessageHistory) in.readObject();
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private static class TestComponent implements NamedComponent {
+
+		private final String name;
+
+		private final String type;
+
+		private TestComponent(String name, String type) {
+			this.name = name;
+			this.type = type;
+		}
+
+		@Override
+		public String getComponentName() {
+			return this.name;
+		}
+
+		@Override
+		public String getComponentType() {
+			return this.type;
+		}
+
+	}
+
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+/**
+ * @since 4.2
+ *
+ */
+public class BoundedMetadataStoreTests {
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() {
+		BoundedMetadataStore store = new BoundedMetadataStore(3, 1);
+		store.put("foo", "1");
+		store.put("bar", "2");
+		assertNull(store.putIfAbsent("baz", "3"));
+		assertEquals("1", store.get("foo"));
+		store.put("qux", "4");
+		assertEquals(3, store.getSize());
+		assertNull(store.get("bar"));
+		assertEquals("1", store.get("foo"));
+		assertEquals("3", store.putIfAbsent("baz", "x"));
+		assertTrue(store.replace("qux", "4", "5"));
+		assertFalse(store.replace("qux", "4", "6"));
+		store.put("fiz", "6");
+		assertNull(store.get("foo"));
+		assertEquals("5", store.remove("qux"));
+		assertEquals(2, store.getSize());
+		assertEquals(2, store.getEvictionCount());
+		assertEquals(3, store.getHitCount());
+		assertEquals(3, store.getMissCount());
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+		BoundedMetadataStore store = new BoundedMetadataStore(100);
+		store.setTimeToLive(50);
+		store.put("foo", "1");
+		store.put("bar", "2");
+		assertEquals("1", store.get("foo"));
+		Thread.sleep(100);
+		assertNull(store.get("foo"));
+		assertFalse(store.replace("bar", "2", "3"));
+		assertNull(store.putIfAbsent("bar", "3"));
+		assertEquals("3", store.get("bar"));
+		store.put("baz", "1");
+		Thread.sleep(100);
+		assertEquals(2, store.purgeExpired());
+		assertEquals(0, store.getSize());
+		assertEquals(4, store.getExpirationCount());
+	}
+
+	@Test
+	public void testKeyFilter() {
+		BoundedMetadataStore store = new BoundedMetadataStore(100);
+		store.setKeyFilter(true);
+		for (int i = 0; i < 1000; i++) {
+			assertNull(store.putIfAbsent("key" + i, "value"));
+		}
+		assertEquals(100, store.getSize());
+		assertEquals(900, store.getEvictionCount());
+		int present = 0;
+		for (int i = 0; i < 1000; i++) {
+			if (store.get("key" + i) != null) {
+				present++;
+				assertEquals("value", store.putIfAbsent("key" + i, "other"));
+			}
+		}
+		assertEquals(100, present);
+		for (int i = 0; i < 1000; i++) {
+			assertNull(store.get("other" + i));
+			assertNull(store.remove("other" + i));
+			assertFalse(store.replace("other" + i, "value", "other"));
+		}
+	}
+
+	@Test
+	public void testConcurrentPutIfAbsent() throws Exception {
+		final BoundedMetadataStore store = new BoundedMetadataStore(10000);
+		store.setKeyFilter(true);
+		final AtomicInteger inserted = new AtomicInteger();
+		ExecutorService exec = Executors.newFixedThreadPool(8);
+		final CountDownLatch latch = new CountDownLatch(8);
+		for (int i = 0; i < 8; i++) {
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 5000; j++) {
+						if (store.putIfAbsent("key" + j, "value") == null) {
+							inserted.incrementAndGet();
+						}
+					}
+					latch.countDown();
+				}
+
+			});
+		}
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		exec.shutdown();
+		assertEquals(5000, inserted.get());
+		assertEquals(5000, store.getSize());
+		assertThat(store.getHitCount(), Matchers.equalTo(35000L));
+	}
+
+	/**
+	 * Keys are removed and stored again while the key filter is rebuilt (the rebuild
+	 * does not see a removed key); a stored key must never be missing from the filter.
+	 */
+	@Test
+	public void testNoFalseNegativesWhileKeyFilterRebuilt() throws Exception {
+		final BoundedMetadataStore store = new BoundedMetadataStore(500);
+		store.setKeyFilter(true);
+		final AtomicInteger falseNegatives = new AtomicInteger();
+		ExecutorService exec = Executors.newFixedThreadPool(8);
+		final CountDownLatch latch = new CountDownLatch(8);
+		for (int i = 0; i < 8; i++) {
+			final int thread = i;
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 200000; j++) {
+						String key = "key" + thread + "." + (j % 20);
+						store.remove(key);
+						if (store.putIfAbsent(key, "value") != null || store.get(key) == null) {
+							falseNegatives.incrementAndGet();
+						}
+					}
+					latch.countDown();
+				}
+
+			});
+		}
+		assertTrue(latch.await(60, TimeUnit.SECONDS));
+		exec.shutdown();
+		assertEquals(0, falseNegatives.get());
+		for (int i = 0; i < 8; i++) {
+			for (int j = 0; j < 20; j++) {
+				assertEquals("value", store.putIfAbsent("key" + i + "." + j, "other"));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.hamcrest.Matchers;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @since 4.2
+ *
+ */
+public class LogPersistingMetadataStoreTests {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReplay() throws Exception {
+		LogPersistingMetadataStore store = createStore();
+		store.put("foo", "bar");
+		assertNull(store.putIfAbsent("baz", "qux"));
+		assertEquals("qux", store.putIfAbsent("baz", "fiz"));
+		assertFalse(store.replace("foo", "xxx", "buz"));
+		assertTrue(store.replace("foo", "bar", "buz"));
+		store.put("remove", "me");
+		assertEquals("me", store.remove("remove"));
+		assertNull(store.remove("remove"));
+		store.put("unicode", "é中");
+		store.close();
+		try {
+			store.put("foo", "bar");
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), Matchers.containsString("not running"));
+		}
+
+		store = createStore();
+		assertEquals("buz", store.get("foo"));
+		assertEquals("qux", store.get("baz"));
+		assertNull(store.get("remove"));
+		assertEquals("é中", store.get("unicode"));
+		store.close();
+	}
+
+	@Test
+	public void testIncompleteRecordDiscarded() throws Exception {
+		LogPersistingMetadataStore store = createStore();
+		store.put("foo", "bar");
+		store.close();
+		File log = new File(this.folder.getRoot(), "metadata-store.log");
+		long length = log.length();
+		FileOutputStream out = new FileOutputStream(log, true);
+		out.write(new byte[] { 0, 0, 0, 42, 1, 2, 3, 4, 1 });
+		out.close();
+
+		store = createStore();
+		assertEquals(length, log.length());
+		assertEquals("bar", store.get("foo"));
+		store.put("baz", "qux");
+		store.close();
+
+		store = createStore();
+		assertEquals("bar", store.get("foo"));
+		assertEquals("qux", store.get("baz"));
+		store.close();
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		LogPersistingMetadataStore store = new LogPersistingMetadataStore();
+		store.setBaseDirectory(this.folder.getRoot().getAbsolutePath());
+		store.setCompactionThreshold(100);
+		store.afterPropertiesSet();
+		for (int i = 0; i < 1000; i++) {
+			store.put("foo", Integer.toString(i));
+			store.put("bar" + (i % 10), Integer.toString(i));
+		}
+		store.flush();
+		File log = new File(this.folder.getRoot(), "metadata-store.log");
+		assertThat(log.length(), Matchers.lessThan(200L * 25));
+		store.close();
+		assertFalse(new File(this.folder.getRoot(), "metadata-store.log.compact").exists());
+
+		store = createStore();
+		assertEquals("999", store.get("foo"));
+		for (int i = 0; i < 10; i++) {
+			assertEquals(Integer.toString(990 + i), store.get("bar" + i));
+		}
+		store.close();
+	}
+
+	@Test
+	public void testConcurrentUpdatesAlwaysSynced() throws Exception {
+		final LogPersistingMetadataStore store = new LogPersistingMetadataStore();
+		store.setBaseDirectory(this.folder.getRoot().getAbsolutePath());
+		store.setFsyncPolicy(LogPersistingMetadataStore.FsyncPolicy.ALWAYS);
+		store.afterPropertiesSet();
+		ExecutorService exec = Executors.newFixedThreadPool(10);
+		final CountDownLatch latch = new CountDownLatch(10);
+		for (int i = 0; i < 10; i++) {
+			final int thread = i;
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 100; j++) {
+						store.putIfAbsent("key" + (j % 50), Integer.toString(thread));
+						store.put(thread + "." + j, "value");
+					}
+					latch.countDown();
+				}
+
+			});
+		}
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		exec.shutdown();
+		String[] winners = new String[50];
+		for (int i = 0; i < 50; i++) {
+			winners[i] = store.get("key" + i);
+		}
+		store.close();
+
+		LogPersistingMetadataStore replayed = createStore();
+		for (int i = 0; i < 50; i++) {
+			assertEquals(winners[i], replayed.get("key" + i));
+		}
+		for (int i = 0; i < 10; i++) {
+			for (int j = 0; j < 100; j++) {
+				assertEquals("value", replayed.get(i + "." + j));
+			}
+		}
+		replayed.close();
+	}
+
+	private LogPersistingMetadataStore createStore() throws Exception {
+		LogPersistingMetadataStore store = new LogPersistingMetadataStore();
+		store.setBaseDirectory(this.folder.getRoot().getAbsolutePath());
+		store.afterPropertiesSet();
+		return store;
+	}
+
+}
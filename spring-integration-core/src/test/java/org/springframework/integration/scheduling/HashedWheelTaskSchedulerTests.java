@@ -0,0 +1,258 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.scheduling;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Test;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.aggregator.AggregatingMessageHandler;
+import org.springframework.integration.aggregator.DefaultAggregatingMessageGroupProcessor;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.scheduling.support.PeriodicTrigger;
+
+/**
+ * @since 4.2
+ *
+ */
+public class HashedWheelTaskSchedulerTests {
+
+	private final HashedWheelTaskScheduler scheduler = new HashedWheelTaskScheduler(1, 8);
+
+	@After
+	public void tearDown() {
+		this.scheduler.destroy();
+	}
+
+	@Test
+	public void testOneShot() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		long start = System.currentTimeMillis();
+		ScheduledFuture<?> future = this.scheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+
+		}, new Date(start + 50));
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertNull(future.get(10, TimeUnit.SECONDS));
+		assertThat(System.currentTimeMillis() - start, Matchers.greaterThanOrEqualTo(50L));
+		assertTrue(future.isDone());
+		assertFalse(future.isCancelled());
+		assertFalse(future.cancel(false));
+		assertEquals(0, this.scheduler.getScheduledTaskCount());
+	}
+
+	@Test
+	public void testDelayLongerThanOneRevolution() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		long start = System.currentTimeMillis();
+		ScheduledFuture<?> future = this.scheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				count.incrementAndGet();
+			}
+
+		}, new Date(start + 100));
+		future.get(10, TimeUnit.SECONDS);
+		assertThat(System.currentTimeMillis() - start, Matchers.greaterThanOrEqualTo(100L));
+		assertEquals(1, count.get());
+	}
+
+	@Test
+	public void testCancel() throws Exception {
+		final AtomicInteger count = new AtomicInteger();
+		Runnable task = new Runnable() {
+
+			@Override
+			public void run() {
+				count.incrementAndGet();
+			}
+
+		};
+		List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+		Date startTime = new Date(System.currentTimeMillis() + 1000);
+		for (int i = 0; i < 10000; i++) {
+			futures.add(this.scheduler.schedule(task, startTime));
+		}
+		assertEquals(10000, this.scheduler.getScheduledTaskCount());
+		for (int i = 0; i < 10000; i += 2) {
+			assertTrue(futures.get(i).cancel(false));
+		}
+		assertEquals(5000, this.scheduler.getScheduledTaskCount());
+		for (int i = 1; i < 10000; i += 2) {
+			futures.get(i).get(10, TimeUnit.SECONDS);
+		}
+		assertEquals(5000, count.get());
+		assertEquals(0, this.scheduler.getScheduledTaskCount());
+		try {
+			futures.get(0).get();
+			fail("Expected CancellationException");
+		}
+		catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRepeating() throws Exception {
+		final CountDownLatch fixedRate = new CountDownLatch(3);
+		final CountDownLatch fixedDelay = new CountDownLatch(3);
+		final CountDownLatch trigger = new CountDownLatch(3);
+		List<ScheduledFuture<?>> futures = new ArrayList<ScheduledFuture<?>>();
+		futures.add(this.scheduler.scheduleAtFixedRate(new Runnable() {
+
+			@Override
+			public void run() {
+				fixedRate.countDown();
+			}
+
+		}, 10));
+		futures.add(this.scheduler.scheduleWithFixedDelay(new Runnable() {
+
+			@Override
+			public void run() {
+				fixedDelay.countDown();
+			}
+
+		}, 10));
+		futures.add(this.scheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				trigger.countDown();
+			}
+
+		}, new PeriodicTrigger(10)));
+		assertTrue(fixedRate.await(10, TimeUnit.SECONDS));
+		assertTrue(fixedDelay.await(10, TimeUnit.SECONDS));
+		assertTrue(trigger.await(10, TimeUnit.SECONDS));
+		assertEquals(3, this.scheduler.getScheduledTaskCount());
+		for (ScheduledFuture<?> future : futures) {
+			assertFalse(future.isDone());
+			assertTrue(future.cancel(false));
+			assertTrue(future.isDone());
+		}
+		assertEquals(0, this.scheduler.getScheduledTaskCount());
+	}
+
+	@Test
+	public void testFailureAndExecutor() throws Exception {
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		this.scheduler.setTaskExecutor(exec);
+		final AtomicInteger count = new AtomicInteger();
+		ScheduledFuture<?> future = this.scheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				count.incrementAndGet();
+				throw new IllegalStateException("test");
+			}
+
+		}, new Date());
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Expected ExecutionException");
+		}
+		catch (ExecutionException e) {
+			assertEquals("test", e.getCause().getMessage());
+		}
+		assertEquals(1, count.get());
+		exec.shutdownNow();
+	}
+
+	@Test
+	public void testDestroyCancelsPendingTasks() throws Exception {
+		ScheduledFuture<?> future = this.scheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+			}
+
+		}, new Date(System.currentTimeMillis() + 60000));
+		this.scheduler.destroy();
+		try {
+			future.get(10, TimeUnit.SECONDS);
+			fail("Expected CancellationException");
+		}
+		catch (CancellationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testAggregatorGroupTimeout() {
+		AggregatingMessageHandler aggregator = new AggregatingMessageHandler(
+				new DefaultAggregatingMessageGroupProcessor());
+		aggregator.setGroupTimeoutExpression(new SpelExpressionParser().parseExpression("500"));
+		aggregator.setIntegrationEvaluationContext(new StandardEvaluationContext());
+		aggregator.setTaskScheduler(this.scheduler);
+		QueueChannel outputChannel = new QueueChannel();
+		aggregator.setOutputChannel(outputChannel);
+		QueueChannel discardChannel = new QueueChannel();
+		aggregator.setDiscardChannel(discardChannel);
+		aggregator.setBeanFactory(mock(BeanFactory.class));
+		aggregator.afterPropertiesSet();
+		for (int i = 0; i < 100; i++) {
+			aggregator.handleMessage(MessageBuilder.withPayload(i)
+					.setCorrelationId(i)
+					.setSequenceNumber(1)
+					.setSequenceSize(2)
+					.build());
+		}
+		for (int i = 0; i < 99; i++) {
+			aggregator.handleMessage(MessageBuilder.withPayload(i)
+					.setCorrelationId(i)
+					.setSequenceNumber(2)
+					.setSequenceSize(2)
+					.build());
+			assertNotNull(outputChannel.receive(0));
+		}
+		assertNotNull(discardChannel.receive(10000));
+		assertNull(discardChannel.receive(100));
+		assertEquals(0, this.scheduler.getScheduledTaskCount());
+	}
+
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import org.springframework.integration.store.MessageGroupStore.MessageGroupCallback;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.MessageTimestamps;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.PatternMatchUtils;
+
+/**
+ * @since 4.2
+ *
+ */
+public class KeyValueMessageGroupStoreTests {
+
+	private final MapMessageStore store = new MapMessageStore();
+
+	@Test
+	public void testAddIsConstant() {
+		for (int i = 0; i < 1000; i++) {
+			this.store.addMessageToGroup("foo", new GenericMessage<Integer>(i));
+		}
+		this.store.operations.set(0);
+		MessageGroup group = this.store.addMessageToGroup("foo", MessageBuilder.withPayload(1000)
+				.setSequenceSize(1001)
+				.build());
+		assertThat(this.store.operations.get(), Matchers.lessThanOrEqualTo(5));
+		this.store.operations.set(0);
+		assertEquals(1001, group.size());
+		assertEquals(1001, this.store.messageGroupSize("foo"));
+		assertFalse(group.isComplete());
+		assertThat(this.store.operations.get(), Matchers.lessThanOrEqualTo(3));
+		Collection<Message<?>> messages = group.getMessages();
+		assertEquals(1001, messages.size());
+		Iterator<Message<?>> iterator = messages.iterator();
+		for (int i = 0; i <= 1000; i++) {
+			Message<?> message = iterator.next();
+			assertEquals(i, message.getPayload());
+			assertFalse(message.getHeaders().containsKey(AbstractKeyValueMessageStore.CREATED_DATE));
+		}
+		assertEquals(0, group.getOne().getPayload());
+	}
+
+	@Test
+	public void testGroupOperations() {
+		Message<String> foo = new GenericMessage<String>("foo");
+		Message<String> bar = MessageBuilder.withPayload("bar").setSequenceSize(2).build();
+		assertEquals(0, this.store.getMessageGroup("group").size());
+		this.store.addMessageToGroup("group", bar);
+		this.store.addMessageToGroup("group", foo);
+		this.store.setLastReleasedSequenceNumberForGroup("group", 5);
+		this.store.completeGroup("group");
+		MessageGroup group = this.store.getMessageGroup("group");
+		assertEquals(2, group.size());
+		assertEquals(2, group.getSequenceSize());
+		assertEquals(5, group.getLastReleasedMessageSequenceNumber());
+		assertTrue(group.isComplete());
+		assertThat(group.getLastModified(), Matchers.greaterThanOrEqualTo(group.getTimestamp()));
+		MessageGroupMetadata metadata = this.store.getGroupMetadata("group");
+		assertEquals(2, metadata.size());
+		assertEquals(bar.getHeaders().getId(), metadata.firstId());
+		assertEquals("bar", this.store.getOneMessageFromGroup("group").getPayload());
+		group = this.store.removeMessageFromGroup("group", bar);
+		assertEquals(1, group.size());
+		assertNull(this.store.getMessage(bar.getHeaders().getId()));
+		assertEquals("foo", this.store.pollMessageFromGroup("group").getPayload());
+		assertNull(this.store.pollMessageFromGroup("group"));
+		assertEquals(0, this.store.messageGroupSize("group"));
+		this.store.addMessageToGroup("group", foo);
+		assertEquals(1, this.store.getMessageGroupCount());
+		assertEquals(1, this.store.getMessageCountForAllMessageGroups());
+		this.store.removeMessageGroup("group");
+		assertEquals(0, this.store.getMessageGroupCount());
+		assertTrue(this.store.map.isEmpty());
+	}
+
+	@Test
+	public void testGroupStoredByEarlierVersion() {
+		List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 3; i++) {
+			Message<Integer> message = new GenericMessage<Integer>(i);
+			messages.add(message);
+			this.store.addMessage(message);
+		}
+		SimpleMessageGroup legacy = new SimpleMessageGroup(messages, "legacy", 42, true);
+		legacy.setLastReleasedMessageSequenceNumber(7);
+		this.store.map.put(AbstractKeyValueMessageStore.MESSAGE_GROUP_KEY_PREFIX + "legacy",
+				new MessageGroupMetadata(legacy));
+		assertEquals(3, this.store.messageGroupSize("legacy"));
+		MessageGroup group = this.store.addMessageToGroup("legacy", new GenericMessage<Integer>(3));
+		assertEquals(4, group.size());
+		assertEquals(42, group.getTimestamp());
+		assertEquals(7, group.getLastReleasedMessageSequenceNumber());
+		assertTrue(group.isComplete());
+		int i = 0;
+		for (Message<?> message : group.getMessages()) {
+			assertEquals(i++, message.getPayload());
+		}
+		MessageGroupMetadata header = (MessageGroupMetadata) this.store.map.get(
+				AbstractKeyValueMessageStore.MESSAGE_GROUP_KEY_PREFIX + "legacy");
+		assertFalse(header.hasMessageIds());
+		this.store.removeMessageGroup("legacy");
+		assertTrue(this.store.map.isEmpty());
+	}
+
+	@Test
+	public void testExpiryIndex() throws Exception {
+		final List<Object> expired = new ArrayList<Object>();
+		this.store.registerMessageGroupExpiryCallback(new MessageGroupCallback() {
+
+			@Override
+			public void execute(MessageGroupStore messageGroupStore, MessageGroup group) {
+				expired.add(group.getGroupId());
+				messageGroupStore.removeMessageGroup(group.getGroupId());
+			}
+
+		});
+		SimpleMessageGroup legacy = new SimpleMessageGroup(new ArrayList<Message<?>>(), "legacy", 42, false);
+		this.store.map.put(AbstractKeyValueMessageStore.MESSAGE_GROUP_KEY_PREFIX + "legacy",
+				new MessageGroupMetadata(legacy));
+		for (int i = 0; i < 100; i++) {
+			this.store.addMessageToGroup("group" + i, new GenericMessage<Integer>(i));
+		}
+		assertEquals(100, this.store.index.size());
+		Thread.sleep(200);
+		this.store.addMessageToGroup("recent", new GenericMessage<String>("foo"));
+
+		// the first run examines all groups and adds the legacy group to the index
+		assertEquals(1, this.store.expireMessageGroups(10000));
+		assertEquals(1, expired.size());
+		assertEquals("legacy", expired.get(0));
+		assertFalse(this.store.index.containsKey("legacy"));
+
+		this.store.operations.set(0);
+		assertEquals(0, this.store.expireMessageGroups(10000));
+		assertThat(this.store.operations.get(), Matchers.lessThanOrEqualTo(1));
+
+		assertEquals(100, this.store.expireMessageGroups(100));
+		assertEquals(101, expired.size());
+		assertEquals(1, this.store.getMessageGroupCount());
+		assertEquals(1, this.store.index.size());
+		assertTrue(this.store.index.containsKey("recent"));
+	}
+
+	@Test
+	public void testMessageWithManyHeadersRetainsIdAndTimestamp() {
+		MessageBuilder<String> builder = MessageBuilder.withPayload("foo");
+		for (int i = 0; i < 12; i++) {
+			builder.setHeader("h" + i, "v" + i);
+		}
+		Message<String> message = MessageBuilder.fromMessage(builder.build())
+				.setHeader("foo", "bar")
+				.build();
+		this.store.addMessageToGroup("foo", message);
+		Message<?> stored = this.store.getMessage(message.getHeaders().getId());
+		assertEquals(message.getHeaders().getId(), stored.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), stored.getHeaders().getTimestamp());
+		assertEquals("bar", stored.getHeaders().get("foo"));
+		assertEquals("v11", stored.getHeaders().get("h11"));
+		assertFalse(stored.getHeaders().containsKey(AbstractKeyValueMessageStore.CREATED_DATE));
+		assertEquals(message.getHeaders().getId(),
+				this.store.getMessageGroup("foo").getOne().getHeaders().getId());
+		assertEquals(message.getHeaders(), stored.getHeaders());
+	}
+
+	@Test
+	public void testMessageWithoutTimestamp() {
+		MessageTimestamps.setMode(MessageTimestamps.Mode.NONE);
+		try {
+			Message<String> message = MessageBuilder.withPayload("foo").build();
+			this.store.addMessageToGroup("foo", message);
+			Message<?> stored = this.store.getMessage(message.getHeaders().getId());
+			assertEquals(message.getHeaders().getId(), stored.getHeaders().getId());
+			assertNull(stored.getHeaders().getTimestamp());
+			assertFalse(stored.getHeaders().containsKey(MessageHeaders.TIMESTAMP));
+		}
+		finally {
+			MessageTimestamps.setMode(MessageTimestamps.Mode.PRECISE);
+		}
+	}
+
+
+	private static class MapMessageStore extends AbstractKeyValueMessageStore {
+
+		private final Map<Object, Object> map = new ConcurrentHashMap<Object, Object>();
+
+		private final AtomicInteger operations = new AtomicInteger();
+
+		private final Map<Object, Long> index = new ConcurrentHashMap<Object, Long>();
+
+		@Override
+		protected Object doRetrieve(Object id) {
+			this.operations.incrementAndGet();
+			return this.map.get(id);
+		}
+
+		@Override
+		protected void doStore(Object id, Object objectToStore) {
+			this.operations.incrementAndGet();
+			if (objectToStore instanceof List) {
+				objectToStore = new ArrayList<Object>((List<?>) objectToStore);
+			}
+			this.map.put(id, objectToStore);
+		}
+
+		@Override
+		protected Object doRemove(Object id) {
+			this.operations.incrementAndGet();
+			return this.map.remove(id);
+		}
+
+		@Override
+		protected Collection<?> doListKeys(String keyPattern) {
+			this.operations.incrementAndGet();
+			List<Object> keys = new ArrayList<Object>();
+			for (Object key : this.map.keySet()) {
+				if (PatternMatchUtils.simpleMatch(keyPattern, key.toString())) {
+					keys.add(key);
+				}
+			}
+			return keys;
+		}
+
+		@Override
+		protected void doAddToExpiryIndex(Object groupId, long timestamp) {
+			this.index.put(groupId, timestamp);
+		}
+
+		@Override
+		protected void doRemoveFromExpiryIndex(Object groupId) {
+			this.index.remove(groupId);
+		}
+
+		@Override
+		protected Collection<?> doGetExpiryIndexRange(long threshold) {
+			this.operations.incrementAndGet();
+			List<Object> groupIds = new ArrayList<Object>();
+			for (Map.Entry<Object, Long> entry : this.index.entrySet()) {
+				if (entry.getValue() <= threshold) {
+					groupIds.add(entry.getKey());
+				}
+			}
+			return groupIds;
+		}
+
+	}
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import org.springframework.integration.store.MessageGroupStore.MessageGroupCallback;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 4.2
+ *
+ */
+public class LockFreeMessageStoreTests {
+
+	@Test
+	public void testGroupOperations() {
+		LockFreeMessageStore store = new LockFreeMessageStore();
+		Message<String> message1 = new GenericMessage<String>("foo");
+		Message<String> message2 = new GenericMessage<String>("bar");
+		Message<String> message3 = new GenericMessage<String>("baz");
+		store.addMessageToGroup("x", message1);
+		MessageGroup snapshot = store.addMessageToGroup("x", message2);
+		store.addMessageToGroup("x", message3);
+		assertEquals(2, snapshot.size());
+		assertEquals(3, store.messageGroupSize("x"));
+		assertSame(store.getMessageGroup("x"), store.getMessageGroup("x"));
+
+		List<Message<?>> messages = new ArrayList<Message<?>>(store.getMessageGroup("x").getMessages());
+		assertSame(message1, messages.get(0));
+		assertSame(message2, messages.get(1));
+		assertSame(message3, messages.get(2));
+
+		store.removeMessageFromGroup("x", message2);
+		assertEquals(2, store.messageGroupSize("x"));
+		assertEquals(2, snapshot.size());
+		assertFalse(store.removeMessageFromGroupIfPresent("x", message2));
+		assertTrue(store.removeMessageFromGroupIfPresent("x", message3));
+
+		store.setLastReleasedSequenceNumberForGroup("x", 5);
+		store.completeGroup("x");
+		MessageGroup group = store.getMessageGroup("x");
+		assertTrue(group.isComplete());
+		assertEquals(5, group.getLastReleasedMessageSequenceNumber());
+		assertSame(message1, group.getOne());
+		assertEquals(snapshot.getTimestamp(), group.getTimestamp());
+
+		store.removeMessageGroup("x");
+		assertEquals(0, store.getMessageGroup("x").size());
+		assertEquals(0, store.getMessageGroupCount());
+	}
+
+	@Test
+	public void testPollIsFifo() {
+		LockFreeMessageStore store = new LockFreeMessageStore();
+		for (int i = 0; i < 10; i++) {
+			store.addMessageToGroup("x", new GenericMessage<Integer>(i));
+			if (i == 4) {
+				assertEquals(0, store.pollMessageFromGroup("x").getPayload());
+			}
+		}
+		for (int i = 1; i < 10; i++) {
+			assertEquals(i, store.pollMessageFromGroup("x").getPayload());
+		}
+		assertNull(store.pollMessageFromGroup("x"));
+		assertNull(store.pollMessageFromGroup("y"));
+	}
+
+	@Test(expected = MessagingException.class)
+	public void testGroupCapacity() {
+		LockFreeMessageStore store = new LockFreeMessageStore(0, 1);
+		store.addMessageToGroup("foo", MessageBuilder.withPayload("foo").build());
+		store.addMessageToGroup("foo", MessageBuilder.withPayload("bar").build());
+	}
+
+	@Test
+	public void testConcurrentAdds() throws Exception {
+		final LockFreeMessageStore store = new LockFreeMessageStore();
+		ExecutorService exec = Executors.newFixedThreadPool(8);
+		final CountDownLatch latch = new CountDownLatch(8);
+		for (int i = 0; i < 8; i++) {
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 1000; j++) {
+						store.addMessageToGroup(j % 10, new GenericMessage<Integer>(j));
+					}
+					latch.countDown();
+				}
+
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		exec.shutdownNow();
+		assertEquals(10, store.getMessageGroupCount());
+		assertEquals(8000, store.getMessageCountForAllMessageGroups());
+	}
+
+	@Test
+	public void testExpiry() throws Exception {
+		LockFreeMessageStore store = new LockFreeMessageStore();
+		final AtomicInteger expired = new AtomicInteger();
+		store.registerMessageGroupExpiryCallback(new MessageGroupCallback() {
+
+			@Override
+			public void execute(MessageGroupStore messageGroupStore, MessageGroup group) {
+				expired.addAndGet(group.size());
+				messageGroupStore.removeMessageGroup(group.getGroupId());
+			}
+
+		});
+		store.addMessageToGroup("foo", new GenericMessage<String>("foo"));
+		store.addMessageToGroup("foo", new GenericMessage<String>("bar"));
+		Thread.sleep(10);
+		assertEquals(1, store.expireMessageGroups(0));
+		assertEquals(2, expired.get());
+		Iterator<MessageGroup> iterator = store.iterator();
+		assertFalse(iterator.hasNext());
+	}
+
+}
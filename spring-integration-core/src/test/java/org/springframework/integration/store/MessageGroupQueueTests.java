@@ -16,7 +16,9 @@
 
 package org.springframework.integration.store;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
@@ -91,6 +93,22 @@ public class MessageGroupQueueTests {
 		assertNotNull(result);
 	}
 
+	@Test
+	public void testDrainToMaxElements() throws Exception {
+		MessageGroupQueue queue = new MessageGroupQueue(new SimpleMessageStore(), "FOO");
+		for (int i = 0; i < 5; i++) {
+			queue.put(new GenericMessage<Integer>(i));
+		}
+		List<Message<?>> drained = new ArrayList<Message<?>>();
+		assertEquals(2, queue.drainTo(drained, 2));
+		assertEquals(3, queue.size());
+		assertEquals(3, queue.drainTo(drained));
+		assertEquals(5, drained.size());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(i, drained.get(i).getPayload());
+		}
+	}
+
 	@Test
 	@Ignore
 	public void testConcurrentAccess() throws Exception {
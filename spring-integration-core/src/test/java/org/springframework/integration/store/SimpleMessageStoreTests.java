@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,7 +18,9 @@ package org.springframework.integration.store;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 
 import java.util.ArrayList;
@@ -148,4 +150,42 @@ public class SimpleMessageStoreTests {
 
 	}
 
+	@Test
+	public void shouldExamineOnlyDueGroups() throws Exception {
+		SimpleMessageStore store = new SimpleMessageStore();
+		final List<Object> expired = new ArrayList<Object>();
+		store.registerMessageGroupExpiryCallback(new MessageGroupCallback() {
+			public void execute(MessageGroupStore messageGroupStore, MessageGroup group) {
+				expired.add(group.getGroupId());
+				messageGroupStore.removeMessageGroup(group.getGroupId());
+			}
+		});
+		store.addMessageToGroup("foo", MessageBuilder.withPayload("foo").build());
+		Thread.sleep(50);
+		long threshold = System.currentTimeMillis() - 1;
+		store.addMessageToGroup("bar", MessageBuilder.withPayload("bar").build());
+		store.addMessageToGroup("baz", MessageBuilder.withPayload("baz").build());
+
+		List<MessageGroup> candidates = new ArrayList<MessageGroup>();
+		for (MessageGroup group : store.getExpiryCandidates(threshold)) {
+			candidates.add(group);
+		}
+		assertEquals(1, candidates.size());
+		assertSame(store.getMessageGroup("foo"), candidates.get(0));
+
+		store.removeMessageGroup("foo");
+		assertEquals(0, store.expireMessageGroups(10000));
+		assertEquals(0, expired.size());
+
+		store.setTimeoutOnIdle(true);
+		Thread.sleep(50);
+		threshold = System.currentTimeMillis() - 1;
+		store.addMessageToGroup("bar", MessageBuilder.withPayload("qux").build());
+		assertEquals(1, store.expireMessageGroups(25));
+		assertEquals("[baz]", expired.toString());
+		assertEquals(2, store.getMessageGroup("bar").size());
+		// 'bar' is now indexed with its last modified time
+		assertFalse(store.getExpiryCandidates(threshold).iterator().hasNext());
+	}
+
 }
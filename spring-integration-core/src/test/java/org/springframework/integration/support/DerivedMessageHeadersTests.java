@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * @since 4.2
+ *
+ */
+public class DerivedMessageHeadersTests {
+
+	@Test
+	public void testChangesAppliedToParentHeaders() {
+		Message<String> original = largeMessage();
+		Message<String> message = MessageBuilder.fromMessage(original)
+				.setHeader("foo", "FOO")
+				.setHeader("bar", "BAR")
+				.removeHeader("h1")
+				.build();
+		MessageHeaders headers = message.getHeaders();
+		assertThat(headers, Matchers.instanceOf(DerivedMessageHeaders.class));
+		assertNotEquals(original.getHeaders().getId(), headers.getId());
+		assertEquals("FOO", headers.get("foo"));
+		assertEquals("BAR", headers.get("bar", String.class));
+		assertNull(headers.get("h1"));
+		assertFalse(headers.containsKey("h1"));
+		assertEquals("v2", headers.get("h2"));
+		assertEquals(original.getHeaders().size() + 1, headers.size());
+		assertEquals("v1", original.getHeaders().get("h1"));
+		assertNull(original.getHeaders().get("foo"));
+
+		Map<String, Object> expected = new HashMap<String, Object>(original.getHeaders());
+		expected.remove("h1");
+		expected.put("foo", "FOO");
+		expected.put("bar", "BAR");
+		expected.put(MessageHeaders.ID, headers.getId());
+		expected.put(MessageHeaders.TIMESTAMP, headers.getTimestamp());
+		assertEquals(expected, headers);
+		assertEquals(expected.keySet(), headers.keySet());
+		assertEquals(expected.hashCode(), headers.hashCode());
+	}
+
+	@Test
+	public void testEqualToStandardHeaders() {
+		MessageHeaders derived = MessageBuilder.fromMessage(largeMessage())
+				.setHeader("foo", "FOO")
+				.build()
+				.getHeaders();
+		MutableMessageHeaders standard = new MutableMessageHeaders(derived);
+		standard.put(MessageHeaders.ID, derived.getId());
+		standard.put(MessageHeaders.TIMESTAMP, derived.getTimestamp());
+		assertTrue(standard.equals(derived));
+		assertTrue(derived.equals(standard));
+		assertEquals(standard.hashCode(), derived.hashCode());
+	}
+
+	@Test
+	public void testIdAndTimestampRestoredByFieldAccess() {
+		Message<String> original = largeMessage();
+		Message<String> message = MessageBuilder.fromMessage(original)
+				.setHeader("foo", "FOO")
+				.build();
+		MessageHeaders headers = message.getHeaders();
+		assertThat(headers, Matchers.instanceOf(DerivedMessageHeaders.class));
+		// as message stores restore the original id and timestamp
+		@SuppressWarnings("unchecked")
+		Map<String, Object> innerMap = (Map<String, Object>) new DirectFieldAccessor(headers)
+				.getPropertyValue("headers");
+		innerMap.put(MessageHeaders.ID, original.getHeaders().getId());
+		innerMap.put(MessageHeaders.TIMESTAMP, 42L);
+		assertEquals(original.getHeaders().getId(), headers.getId());
+		assertEquals(Long.valueOf(42L), headers.getTimestamp());
+		assertEquals(original.getHeaders().getId(), headers.get(MessageHeaders.ID));
+	}
+
+	@Test
+	public void testSmallHeadersCopied() {
+		Message<String> message = MessageBuilder.fromMessage(new GenericMessage<String>("foo"))
+				.setHeader("foo", "bar")
+				.build();
+		assertSame(MessageHeaders.class, message.getHeaders().getClass());
+	}
+
+	@Test
+	public void testRemovePatternsAndReplace() {
+		Message<String> original = largeMessage();
+		Message<String> message = MessageBuilder.fromMessage(original)
+				.removeHeaders("h1*")
+				.setHeader("h2", "replaced")
+				.setHeaderIfAbsent("h3", "notSet")
+				.build();
+		MessageHeaders headers = message.getHeaders();
+		assertThat(headers, Matchers.instanceOf(DerivedMessageHeaders.class));
+		assertNull(headers.get("h1"));
+		assertNull(headers.get("h10"));
+		assertNull(headers.get("h12"));
+		assertEquals("replaced", headers.get("h2"));
+		assertEquals("v3", headers.get("h3"));
+		assertEquals(original.getHeaders().size() - 4, headers.size());
+	}
+
+	@Test
+	public void testManyHops() {
+		Message<String> message = largeMessage();
+		for (int i = 0; i < 20; i++) {
+			message = MessageBuilder.fromMessage(message).setHeader("hop", i).build();
+		}
+		MessageHeaders headers = message.getHeaders();
+		assertThat(headers, Matchers.instanceOf(DerivedMessageHeaders.class));
+		assertEquals(19, headers.get("hop"));
+		assertEquals("v1", headers.get("h1"));
+		assertEquals(15, headers.size());
+	}
+
+	@Test
+	public void testCopyHeaders() {
+		Message<String> original = largeMessage();
+		Message<String> message = MessageBuilder.withPayload("bar")
+				.copyHeaders(original.getHeaders())
+				.setHeader("foo", "FOO")
+				.build();
+		MessageHeaders headers = message.getHeaders();
+		assertThat(headers, Matchers.instanceOf(DerivedMessageHeaders.class));
+		assertEquals("FOO", headers.get("foo"));
+		assertEquals("v1", headers.get("h1"));
+		assertNotEquals(original.getHeaders().getId(), headers.getId());
+	}
+
+	@Test
+	public void testSerialization() throws Exception {
+		Message<String> message = MessageBuilder.fromMessage(largeMessage())
+				.setHeader("foo", "FOO")
+				.removeHeader("h1")
+				.build();
+		Message<?> deserialized = (Message<?>) serializeAndDeserialize(message);
+		MessageHeaders headers = deserialized.getHeaders();
+		assertSame(MessageHeaders.class, headers.getClass());
+		assertEquals(message.getHeaders().getId(), headers.getId());
+		assertEquals(message.getHeaders().getTimestamp(), headers.getTimestamp());
+		assertEquals("FOO", headers.get("foo"));
+		assertFalse(headers.containsKey("h1"));
+		assertTrue(message.getHeaders().equals(headers));
+		assertTrue(headers.equals(message.getHeaders()));
+	}
+
+	@Test
+	public void testTimestampDisabled() {
+		Message<String> original = largeMessage();
+		MessageTimestamps.setMode(MessageTimestamps.Mode.NONE);
+		try {
+			MessageHeaders headers = MessageBuilder.fromMessage(original)
+					.setHeader("foo", "FOO")
+					.build()
+					.getHeaders();
+			assertThat(headers, Matchers.instanceOf(DerivedMessageHeaders.class));
+			assertNull(headers.getTimestamp());
+			assertEquals(original.getHeaders().size(), headers.size());
+			assertFalse(headers.keySet().contains(MessageHeaders.TIMESTAMP));
+		}
+		finally {
+			MessageTimestamps.setMode(MessageTimestamps.Mode.PRECISE);
+		}
+	}
+
+	@Test
+	public void testTimestampDisabledHeadersSerializedAndDerived() throws Exception {
+		MessageTimestamps.setMode(MessageTimestamps.Mode.NONE);
+		try {
+			Message<String> original = largeMessage();
+			assertThat(original.getHeaders(), Matchers.instanceOf(MessageTimestamps.TimestampedMessageHeaders.class));
+			MessageHeaders headers = ((Message<?>) serializeAndDeserialize(original)).getHeaders();
+			assertSame(MessageHeaders.class, headers.getClass());
+			assertEquals(original.getHeaders().getId(), headers.getId());
+			assertNull(headers.getTimestamp());
+			assertEquals(original.getHeaders(), headers);
+			MessageHeaders derived = MessageBuilder.fromMessage(original)
+					.setHeader("foo", "FOO")
+					.build()
+					.getHeaders();
+			assertThat(derived, Matchers.instanceOf(DerivedMessageHeaders.class));
+			assertEquals("v12", derived.get("h12"));
+		}
+		finally {
+			MessageTimestamps.setMode(MessageTimestamps.Mode.PRECISE);
+		}
+	}
+
+	private static Object serializeAndDeserialize(Object object) throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(object);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		return in.readObject();
+	}
+
+	private static Message<String> largeMessage() {
+		MessageBuilder<String> builder = MessageBuilder.withPayload("foo");
+		for (int i = 1; i <= 12; i++) {
+			builder.setHeader("h" + i, "v" + i);
+		}
+		return builder.build();
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import org.springframework.integration.channel.management.DefaultMessageChannelMetrics;
+
+/**
+ * @since 4.2
+ *
+ */
+public class LatencyHistogramTests {
+
+	@Test
+	public void testBucketBoundaries() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		long[] values = { 0, 1, 63, 64, 65, 127, 128, 1000, 123456789, Long.MAX_VALUE };
+		for (long value : values) {
+			int index = histogram.indexFor(value);
+			assertTrue(histogram.lowestValueAt(index) <= value);
+			assertTrue(histogram.highestValueAt(index) >= value);
+			assertTrue((histogram.highestValueAt(index) - histogram.lowestValueAt(index)) <= value / 32);
+		}
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram(1000.);
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000L);
+		}
+		histogram.record(-5);
+		HistogramSnapshot snapshot = histogram.getSnapshot();
+		assertEquals(1001, snapshot.getCount());
+		assertEquals(500, snapshot.getValueAtPercentile(50), 500 * 0.04);
+		assertEquals(990, snapshot.getValueAtPercentile(99), 990 * 0.04);
+		assertEquals(999, snapshot.getValueAtPercentile(99.9), 999 * 0.04);
+		assertEquals(1000, snapshot.getMax(), 1000 * 0.04);
+		assertEquals(0, snapshot.getMin(), 0);
+		assertEquals(500, snapshot.getMean(), 500 * 0.04);
+	}
+
+	@Test
+	public void testIntervalIsResetOnRead() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(10);
+		histogram.record(20);
+		assertEquals(2, histogram.getIntervalSnapshot().getCount());
+		histogram.record(1000);
+		HistogramSnapshot interval = histogram.getIntervalSnapshot();
+		assertEquals(1, interval.getCount());
+		assertEquals(1000, interval.getMin(), 1000 * 0.04);
+		assertEquals(0, histogram.getIntervalSnapshot().getCount());
+		assertEquals(3, histogram.getSnapshot().getCount());
+		histogram.reset();
+		assertEquals(0, histogram.getSnapshot().getCount());
+		assertEquals(0, histogram.getSnapshot().getValueAtPercentile(99), 0);
+	}
+
+	@Test
+	public void testChannelMetrics() {
+		DefaultMessageChannelMetrics metrics = new DefaultMessageChannelMetrics("foo");
+		metrics.setFullStatsEnabled(true);
+		for (int i = 0; i < 100; i++) {
+			metrics.afterSend(metrics.beforeSend(), true);
+		}
+		assertEquals(100, metrics.getSendDurationHistogram().getCount());
+		assertTrue(metrics.getSendDurationPercentile(99) > 0);
+		assertEquals(100, metrics.getSendDurationIntervalHistogram().getCount());
+		assertEquals(0, metrics.getSendDurationIntervalHistogram().getCount());
+		metrics.reset();
+		assertEquals(0, metrics.getSendDurationHistogram().getCount());
+	}
+
+}
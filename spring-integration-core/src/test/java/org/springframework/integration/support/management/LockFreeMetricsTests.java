@@ -0,0 +1,210 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+import org.springframework.integration.channel.management.LockFreeMessageChannelMetrics;
+import org.springframework.integration.handler.management.LockFreeMessageHandlerMetrics;
+
+/**
+ * @since 4.2
+ *
+ */
+public class LockFreeMetricsTests {
+
+	@Test
+	public void testStripedCounterConcurrent() throws Exception {
+		final StripedCounter counter = new StripedCounter(4);
+		ExecutorService exec = Executors.newFixedThreadPool(8);
+		final CountDownLatch latch = new CountDownLatch(8);
+		for (int i = 0; i < 8; i++) {
+			exec.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						counter.increment();
+					}
+					latch.countDown();
+				}
+
+			});
+		}
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		exec.shutdownNow();
+		assertEquals(80000, counter.get());
+		counter.decrement();
+		assertEquals(79999, counter.get());
+		counter.reset();
+		assertEquals(0, counter.get());
+	}
+
+	@Test
+	public void testAverageMatchesSynchronized() {
+		ExponentialMovingAverage expected = new ExponentialMovingAverage(10);
+		LockFreeExponentialMovingAverage actual = new LockFreeExponentialMovingAverage(10);
+		for (int i = 0; i < 1000; i++) {
+			expected.append(i % 7);
+			actual.append(i % 7);
+		}
+		assertEquals(expected.getCountLong(), actual.getCountLong());
+		assertEquals(expected.getMean(), actual.getMean(), 0.0001);
+		assertEquals(expected.getStandardDeviation(), actual.getStandardDeviation(), 0.0001);
+		assertEquals(expected.getMin(), actual.getMin(), 0.0001);
+		assertEquals(expected.getMax(), actual.getMax(), 0.0001);
+		actual.reset();
+		assertEquals(0, actual.getCount());
+		assertEquals(0, actual.getMean(), 0.0001);
+		actual.append(3);
+		assertEquals(3, actual.getMin(), 0.0001);
+	}
+
+	@Test
+	public void testAverageMinMaxNotLostFromRing() {
+		LockFreeExponentialMovingAverage average = new LockFreeExponentialMovingAverage(2);
+		average.append(100);
+		average.append(-5);
+		for (int i = 0; i < 50; i++) {
+			average.append(1);
+		}
+		assertEquals(100, average.getMax(), 0.0001);
+		assertEquals(-5, average.getMin(), 0.0001);
+		assertEquals(1, average.getMean(), 0.0001);
+		assertEquals(52, average.getCount());
+		average.reset();
+		assertEquals(0, average.getCount());
+		assertEquals(0, average.getMax(), 0.0001);
+		assertEquals(0, average.getMin(), 0.0001);
+		assertEquals(0, average.getMean(), 0.0001);
+		average.append(7);
+		assertEquals(7, average.getMean(), 0.0001);
+		assertEquals(0, average.getStandardDeviation(), 0.0001);
+	}
+
+	@Test
+	public void testAverageConcurrentAppendsOnlyReadPublishedSamples() throws Exception {
+		final LockFreeExponentialMovingAverage average = new LockFreeExponentialMovingAverage(10);
+		ExecutorService exec = Executors.newFixedThreadPool(5);
+		final AtomicBoolean running = new AtomicBoolean(true);
+		Future<Integer> reader = exec.submit(() -> {
+			int snapshots = 0;
+			while (running.get()) {
+				Statistics statistics = average.getStatistics();
+				if (statistics.getCountLong() > 0) {
+					assertTrue("min: " + statistics.getMin(), statistics.getMin() >= 1);
+					assertTrue("mean: " + statistics.getMean(),
+							statistics.getMean() >= 1 && statistics.getMean() <= 10000);
+					snapshots++;
+				}
+			}
+			return snapshots;
+		});
+		final CountDownLatch latch = new CountDownLatch(4);
+		for (int i = 0; i < 4; i++) {
+			exec.execute(() -> {
+				for (int j = 1; j <= 10000; j++) {
+					average.append(j);
+				}
+				latch.countDown();
+			});
+		}
+		assertTrue(latch.await(30, TimeUnit.SECONDS));
+		running.set(false);
+		assertTrue(reader.get(10, TimeUnit.SECONDS) > 0);
+		exec.shutdownNow();
+		assertEquals(40000, average.getCountLong());
+		assertEquals(1, average.getMin(), 0.0001);
+		assertEquals(10000, average.getMax(), 0.0001);
+	}
+
+	@Test
+	public void testRateMatchesSynchronized() {
+		ExponentialMovingAverageRate expected = new ExponentialMovingAverageRate(1, 60, 10, true);
+		LockFreeExponentialMovingAverageRate actual = new LockFreeExponentialMovingAverageRate(1, 60, 10, true);
+		long t = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			t += 1000000;
+			expected.increment(t);
+			actual.increment(t);
+		}
+		assertEquals(expected.getCountLong(), actual.getCountLong());
+		assertEquals(expected.getStatistics().getMean(), actual.getStatistics().getMean(), 0.0001);
+		assertEquals(expected.getStandardDeviation(), actual.getStandardDeviation(), 0.0001);
+		assertEquals(expected.getMax(), actual.getMax(), 0.0001);
+	}
+
+	@Test
+	public void testRatioMatchesSynchronized() {
+		ExponentialMovingAverageRatio expected = new ExponentialMovingAverageRatio(60, 10, true);
+		LockFreeExponentialMovingAverageRatio actual = new LockFreeExponentialMovingAverageRatio(60, 10, true);
+		long t = System.nanoTime();
+		for (int i = 0; i < 100; i++) {
+			t += 1000000;
+			if (i % 4 == 0) {
+				expected.failure(t);
+				actual.failure(t);
+			}
+			else {
+				expected.success(t);
+				actual.success(t);
+			}
+		}
+		assertEquals(expected.getCountLong(), actual.getCountLong());
+		assertEquals(expected.getStatistics().getMean(), actual.getStatistics().getMean(), 0.0001);
+		assertEquals(expected.getMin(), actual.getMin(), 0.0001);
+		assertEquals(expected.getMax(), actual.getMax(), 0.0001);
+	}
+
+	@Test
+	public void testChannelAndHandlerMetrics() {
+		LockFreeMessageChannelMetrics channelMetrics = new LockFreeMessageChannelMetrics("foo");
+		channelMetrics.setFullStatsEnabled(true);
+		MetricsContext context = channelMetrics.beforeSend();
+		channelMetrics.afterSend(context, true);
+		context = channelMetrics.beforeSend();
+		channelMetrics.afterSend(context, false);
+		channelMetrics.afterReceive();
+		assertEquals(2, channelMetrics.getSendCount());
+		assertEquals(1, channelMetrics.getSendErrorCount());
+		assertEquals(1, channelMetrics.getReceiveCount());
+		assertEquals(1, channelMetrics.getSendDuration().getCount());
+		assertEquals(1, channelMetrics.getErrorRate().getCount());
+		channelMetrics.reset();
+		assertEquals(0, channelMetrics.getSendCount());
+
+		LockFreeMessageHandlerMetrics handlerMetrics = new LockFreeMessageHandlerMetrics("bar");
+		context = handlerMetrics.beforeHandle(null);
+		assertEquals(1, handlerMetrics.getActiveCount());
+		handlerMetrics.afterHandle(context, false);
+		assertEquals(0, handlerMetrics.getActiveCount());
+		assertEquals(1, handlerMetrics.getHandleCount());
+		assertEquals(1, handlerMetrics.getErrorCount());
+		assertEquals(0, handlerMetrics.getDuration().getCount());
+	}
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.support.serializer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Date;
+
+import org.hamcrest.Matchers;
+import org.junit.Test;
+
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.support.MutableMessageBuilder;
+import org.springframework.integration.support.context.NamedComponent;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.StreamUtils;
+
+/**
+ * @since 4.2
+ *
+ */
+public class CompactMessageSerializerTests {
+
+	private final CompactMessageSerializer serializer = new CompactMessageSerializer();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo")
+				.setCorrelationId("bar")
+				.setSequenceNumber(2)
+				.setSequenceSize(3)
+				.setPriority(-5)
+				.setExpirationDate(Long.MAX_VALUE)
+				.setHeader("string", "baz")
+				.setHeader("bytes", new byte[] { 1, 2, 3 })
+				.setHeader("long", -1L)
+				.setHeader("bool", true)
+				.setHeader("double", 1.5)
+				.setHeader("date", new Date(42))
+				.setHeader("null", null)
+				.setHeader("notSerializable", new Object())
+				.setReplyChannel(new QueueChannel())
+				.setErrorChannelName("errors")
+				.build();
+		message = MessageHistory.write(message, new TestComponent("component1"));
+		message = MessageHistory.write(message, new TestComponent("component2"));
+		byte[] bytes = serialize(message);
+		assertTrue(CompactMessageSerializer.isCompactFormat(bytes));
+		Message<?> result = this.serializer.deserialize(new ByteArrayInputStream(bytes));
+		assertThat(result, Matchers.instanceOf(GenericMessage.class));
+		assertEquals("foo", result.getPayload());
+		assertEquals(message.getHeaders().getId(), result.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), result.getHeaders().getTimestamp());
+		assertEquals("bar", result.getHeaders().get("correlationId"));
+		assertEquals(2, result.getHeaders().get("sequenceNumber"));
+		assertEquals(3, result.getHeaders().get("sequenceSize"));
+		assertEquals(-5, result.getHeaders().get("priority"));
+		assertEquals(Long.MAX_VALUE, result.getHeaders().get("expirationDate"));
+		assertEquals("baz", result.getHeaders().get("string"));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) result.getHeaders().get("bytes"));
+		assertEquals(-1L, result.getHeaders().get("long"));
+		assertEquals(true, result.getHeaders().get("bool"));
+		assertEquals(1.5, result.getHeaders().get("double"));
+		assertEquals(new Date(42), result.getHeaders().get("date"));
+		assertFalse(result.getHeaders().containsKey("null"));
+		assertFalse(result.getHeaders().containsKey("notSerializable"));
+		assertNull(result.getHeaders().getReplyChannel());
+		assertEquals("errors", result.getHeaders().getErrorChannel());
+		MessageHistory history = MessageHistory.read(result);
+		assertEquals(2, history.size());
+		assertEquals("component1", history.get(0).getProperty(MessageHistory.NAME_PROPERTY));
+		assertEquals("component2", history.get(1).getProperty(MessageHistory.NAME_PROPERTY));
+		assertEquals(MessageHistory.read(message).get(1), history.get(1));
+	}
+
+	@Test
+	public void testSmallerThanJavaSerialization() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo")
+				.setCorrelationId("bar")
+				.setSequenceNumber(1)
+				.setSequenceSize(1)
+				.build();
+		message = MessageHistory.write(message, new TestComponent("component"));
+		int compact = serialize(message).length;
+		int java = new SerializingConverter().convert(message).length;
+		assertThat(compact * 4, Matchers.lessThan(java));
+	}
+
+	@Test
+	public void testReadsJavaSerialization() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("foo").setHeader("bar", "baz").build();
+		byte[] bytes = new SerializingConverter().convert(message);
+		assertFalse(CompactMessageSerializer.isCompactFormat(bytes));
+		Message<?> result = this.serializer.deserialize(new ByteArrayInputStream(bytes));
+		assertEquals(message, result);
+		try {
+			this.serializer.deserialize(new ByteArrayInputStream(new SerializingConverter().convert("foo")));
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), Matchers.containsString("Expected a Message"));
+		}
+	}
+
+	@Test
+	public void testErrorAndOtherMessages() throws Exception {
+		ErrorMessage error = new ErrorMessage(new RuntimeException("foo"));
+		Message<?> result = this.serializer.deserialize(new ByteArrayInputStream(serialize(error)));
+		assertThat(result, Matchers.instanceOf(ErrorMessage.class));
+		assertEquals("foo", ((ErrorMessage) result).getPayload().getMessage());
+		assertEquals(error.getHeaders().getId(), result.getHeaders().getId());
+		Message<String> mutable = MutableMessageBuilder.withPayload("bar").build();
+		byte[] bytes = serialize(mutable);
+		assertFalse(CompactMessageSerializer.isCompactFormat(bytes));
+		result = this.serializer.deserialize(new ByteArrayInputStream(bytes));
+		assertEquals("bar", result.getPayload());
+		assertEquals(mutable.getHeaders().getId(), result.getHeaders().getId());
+	}
+
+	@Test
+	public void testRegisteredType() throws Exception {
+		this.serializer.registerType(1, Point.class, new Serializer<Point>() {
+
+			@Override
+			public void serialize(Point point, OutputStream outputStream) throws IOException {
+				outputStream.write(point.x);
+				outputStream.write(point.y);
+			}
+
+		}, new Deserializer<Point>() {
+
+			@Override
+			public Point deserialize(InputStream inputStream) throws IOException {
+				byte[] bytes = StreamUtils.copyToByteArray(inputStream);
+				assertEquals(2, bytes.length);
+				return new Point(bytes[0], bytes[1]);
+			}
+
+		});
+		Message<Point> message = MessageBuilder.withPayload(new Point(3, 4)).setHeader("point", new Point(5, 6)).build();
+		byte[] bytes = serialize(message);
+		Message<?> result = this.serializer.deserialize(new ByteArrayInputStream(bytes));
+		assertEquals(new Point(3, 4), result.getPayload());
+		assertEquals(new Point(5, 6), result.getHeaders().get("point"));
+		try {
+			new CompactMessageSerializer().deserialize(new ByteArrayInputStream(bytes));
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), Matchers.containsString("No type is registered with id 1"));
+		}
+	}
+
+	@Test
+	public void testUnsupportedVersion() throws Exception {
+		byte[] bytes = serialize(new GenericMessage<String>("foo"));
+		bytes[2] = (byte) (CompactMessageSerializer.FORMAT_VERSION + 1);
+		try {
+			this.serializer.deserialize(new ByteArrayInputStream(bytes));
+			fail("Expected IOException");
+		}
+		catch (IOException e) {
+			assertThat(e.getMessage(), Matchers.containsString("Unsupported message format version"));
+		}
+	}
+
+	private byte[] serialize(Message<?> message) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		this.serializer.serialize(message, out);
+		return out.toByteArray();
+	}
+
+	private static class TestComponent implements NamedComponent {
+
+		private final String name;
+
+		private TestComponent(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public String getComponentName() {
+			return this.name;
+		}
+
+		@Override
+		public String getComponentType() {
+			return "test";
+		}
+
+	}
+
+	private static class Point {
+
+		private final int x;
+
+		private final int y;
+
+		private Point(int x, int y) {
+			this.x = x;
+			this.y = y;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Point && ((Point) obj).x == this.x && ((Point) obj).y == this.y;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * this.x + this.y;
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,16 +16,23 @@
 
 package org.springframework.integration.gemfire.store;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.core.serializer.Deserializer;
+import org.springframework.core.serializer.Serializer;
 import org.springframework.data.gemfire.RegionAttributesFactoryBean;
 import org.springframework.data.gemfire.RegionFactoryBean;
 import org.springframework.integration.store.AbstractKeyValueMessageStore;
 import org.springframework.integration.store.MessageGroupStore;
 import org.springframework.integration.store.MessageStore;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
 import org.springframework.util.Assert;
 import org.springframework.util.PatternMatchUtils;
 
@@ -51,6 +58,10 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore implements
 
 	private volatile boolean ignoreJta = true;
 
+	private volatile Serializer<? super Message<?>> serializer;
+
+	private volatile Deserializer<? extends Message<?>> deserializer;
+
 	/**
 	 * Provides the region to be used for the message store. This is useful when
 	 * using a configured region. This is also required if using a client region
@@ -77,9 +88,34 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore implements
 		this.ignoreJta = ignoreJta;
 	}
 
+	/**
+	 * Set a serializer to store messages in the region as {@code byte[]} instead of
+	 * relying on the region's serialization (for example a
+	 * {@link org.springframework.integration.support.serializer.CompactMessageSerializer}).
+	 * A {@link #setDeserializer(Deserializer) deserializer} is also required. Messages
+	 * already in the region continue to be readable.
+	 * @param serializer the serializer.
+	 * @since 4.2
+	 */
+	public void setSerializer(Serializer<? super Message<?>> serializer) {
+		this.serializer = serializer;
+	}
+
+	/**
+	 * Set the deserializer for messages stored as {@code byte[]} by the
+	 * {@link #setSerializer(Serializer) serializer}.
+	 * @param deserializer the deserializer.
+	 * @since 4.2
+	 */
+	public void setDeserializer(Deserializer<? extends Message<?>> deserializer) {
+		this.deserializer = deserializer;
+	}
+
 	@Override
 	@SuppressWarnings("unchecked")
 	public void afterPropertiesSet() {
+		Assert.state(this.serializer == null || this.deserializer != null,
+				"A 'deserializer' is required when a 'serializer' is provided");
 		if (this.messageStoreRegion != null) {
 			return;
 		}
@@ -107,20 +143,20 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore implements
 	@Override
 	protected Object doRetrieve(Object id) {
 		Assert.notNull(id, "'id' must not be null");
-		return this.messageStoreRegion.get(id);
+		return fromStoredValue(this.messageStoreRegion.get(id));
 	}
 
 	@Override
 	protected void doStore(Object id, Object objectToStore) {
 		Assert.notNull(id, "'id' must not be null");
 		Assert.notNull(objectToStore, "'objectToStore' must not be null");
-		this.messageStoreRegion.put(id, objectToStore);
+		this.messageStoreRegion.put(id, toStoredValue(objectToStore));
 	}
 
 	@Override
 	protected Object doRemove(Object id) {
 		Assert.notNull(id, "'id' must not be null");
-		return this.messageStoreRegion.remove(id);
+		return fromStoredValue(this.messageStoreRegion.remove(id));
 	}
 
 	@Override
@@ -137,4 +173,33 @@ public class GemfireMessageStore extends AbstractKeyValueMessageStore implements
 		return keyList;
 	}
 
+	private Object toStoredValue(Object object) {
+		Serializer<? super Message<?>> serializer = this.serializer;
+		if (serializer == null || !(object instanceof Message)) {
+			return object;
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			serializer.serialize((Message<?>) object, out);
+			return out.toByteArray();
+		}
+		catch (IOException e) {
+			throw new MessagingException((Message<?>) object, "Failed to serialize message", e);
+		}
+	}
+
+	private Object fromStoredValue(Object value) {
+		if (!(value instanceof byte[])) {
+			return value;
+		}
+		Deserializer<? extends Message<?>> deserializer = this.deserializer;
+		Assert.state(deserializer != null, "A 'deserializer' is required to read serialized messages");
+		try {
+			return deserializer.deserialize(new ByteArrayInputStream((byte[]) value));
+		}
+		catch (IOException e) {
+			throw new MessagingException("Failed to deserialize message", e);
+		}
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -13,24 +13,39 @@
 
 package org.springframework.integration.jdbc;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
 import org.springframework.integration.MessageRejectedException;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
 import org.springframework.integration.handler.AbstractMessageHandler;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.JdbcAccessor;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
 import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageHandlingException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
 import org.springframework.util.LinkedCaseInsensitiveMap;
 
 /**
@@ -44,20 +59,53 @@ import org.springframework.util.LinkedCaseInsensitiveMap;
  *
  * N.B. do not use quotes to escape the header keys. The default SQL parameter source (from Spring JDBC) can also handle
  * headers with dotted names (e.g. <code>business.id</code>)
+ * <p>
+ * When the {@link #setBatchSize(int) batchSize} is greater than 1, messages are accumulated and the updates are
+ * executed with a single JDBC batch when the batch is full, when the {@link #setBatchMaxBytes(long) batchMaxBytes}
+ * threshold is reached, every {@link #setBatchTimeout(long) batchTimeout} milliseconds, and when the handler is
+ * destroyed. Each batch is executed in a new transaction. Updates that fail are reported as a
+ * {@link MessageHandlingException} to the error channel (the {@code errorChannel} header of the failed message,
+ * or the default error channel).
  *
  * @author Dave Syer
  * @since 2.0
  */
-public class JdbcMessageHandler extends AbstractMessageHandler {
+public class JdbcMessageHandler extends AbstractMessageHandler implements DisposableBean {
 
 	private final NamedParameterJdbcOperations jdbcOperations;
 
+	private final DataSource dataSource;
+
 	private volatile String updateSql;
 
 	private volatile SqlParameterSourceFactory sqlParameterSourceFactory = new BeanPropertySqlParameterSourceFactory();
 
 	private volatile boolean keysGenerated;
 
+	private volatile int batchSize = 1;
+
+	private volatile long batchMaxBytes;
+
+	private volatile long batchTimeout;
+
+	private volatile MessageChannel errorChannel;
+
+	private final Object batchMonitor = new Object();
+
+	private List<Message<?>> batch = new ArrayList<Message<?>>();
+
+	private long batchBytes;
+
+	private boolean destroyed;
+
+	private volatile MessagePublishingErrorHandler errorHandler;
+
+	private volatile ScheduledFuture<?> batchTimeoutTask;
+
+	private volatile PlatformTransactionManager batchTransactionManager;
+
+	private volatile TransactionTemplate batchTransactionTemplate;
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be obtained and the select query to
 	 * execute to retrieve new rows.
@@ -67,6 +115,7 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 	 */
 	public JdbcMessageHandler(DataSource dataSource, String updateSql) {
 		this.jdbcOperations = new NamedParameterJdbcTemplate(dataSource);
+		this.dataSource = dataSource;
 		this.updateSql = updateSql;
 	}
 
@@ -79,6 +128,8 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 	 */
 	public JdbcMessageHandler(JdbcOperations jdbcOperations, String updateSql) {
 		this.jdbcOperations = new NamedParameterJdbcTemplate(jdbcOperations);
+		this.dataSource = jdbcOperations instanceof JdbcAccessor ? ((JdbcAccessor) jdbcOperations).getDataSource()
+				: null;
 		this.updateSql = updateSql;
 	}
 
@@ -98,28 +149,297 @@ public class JdbcMessageHandler extends AbstractMessageHandler {
 		this.sqlParameterSourceFactory = sqlParameterSourceFactory;
 	}
 
+	/**
+	 * The maximum number of messages for which the updates are executed in a single JDBC
+	 * batch. When greater than 1, the caller no longer waits for (and is no longer part of
+	 * any transaction around) the update of its message; each batch is executed in a new
+	 * transaction (see {@link #setBatchTransactionManager(PlatformTransactionManager)}),
+	 * even when a full batch is executed on the caller's thread, and failures are sent to
+	 * the error channel instead of being thrown. Cannot be combined with
+	 * {@link #setKeysGenerated(boolean)}.
+	 * @param batchSize the batch size; default 1 (no batching).
+	 * @since 4.2
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be greater than 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * When batching, execute the batch when the total estimated size of the batched
+	 * messages reaches this number of bytes, even if the batch is not full.
+	 * @param batchMaxBytes the maximum bytes; default 0 (no limit).
+	 * @since 4.2
+	 * @see #estimateSize(Message)
+	 */
+	public void setBatchMaxBytes(long batchMaxBytes) {
+		this.batchMaxBytes = batchMaxBytes;
+	}
+
+	/**
+	 * When batching, execute any partial batch every this number of milliseconds, so that
+	 * no message waits longer than this for its update. Requires a {@link TaskScheduler}.
+	 * @param batchTimeout the timeout; default 0 (partial batches are only executed when
+	 * the handler is destroyed or {@link #flush()} is invoked).
+	 * @since 4.2
+	 */
+	public void setBatchTimeout(long batchTimeout) {
+		this.batchTimeout = batchTimeout;
+	}
+
+	/**
+	 * When batching, the transaction manager used to execute each batch in a new
+	 * transaction; defaults to a {@link DataSourceTransactionManager} for the data source.
+	 * Required if the handler was constructed with a {@link JdbcOperations} that is not a
+	 * {@link JdbcAccessor} (such as a {@code JdbcTemplate}).
+	 * @param batchTransactionManager the transaction manager.
+	 * @since 4.2
+	 */
+	public void setBatchTransactionManager(PlatformTransactionManager batchTransactionManager) {
+		this.batchTransactionManager = batchTransactionManager;
+	}
+
+	/**
+	 * When batching, the channel to which failed updates are sent if the message has no
+	 * {@code errorChannel} header; defaults to the {@code errorChannel} bean.
+	 * @param errorChannel the error channel.
+	 * @since 4.2
+	 */
+	public void setErrorChannel(MessageChannel errorChannel) {
+		this.errorChannel = errorChannel;
+	}
+
 	@Override
 	public String getComponentType() {
 		return "jdbc:outbound-channel-adapter";
 	}
 
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		if (this.batchSize > 1) {
+			Assert.state(!this.keysGenerated, "'keysGenerated' is not supported when batching");
+			PlatformTransactionManager transactionManager = this.batchTransactionManager;
+			if (transactionManager == null) {
+				Assert.state(this.dataSource != null,
+						"A 'batchTransactionManager' is required when batching with this JdbcOperations");
+				transactionManager = new DataSourceTransactionManager(this.dataSource);
+			}
+			this.batchTransactionTemplate = new TransactionTemplate(transactionManager);
+			this.batchTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+			if (getBeanFactory() != null) {
+				this.errorHandler = new MessagePublishingErrorHandler(getChannelResolver());
+			}
+			else {
+				this.errorHandler = new MessagePublishingErrorHandler();
+			}
+			this.errorHandler.setDefaultErrorChannel(this.errorChannel);
+			if (this.batchTimeout > 0) {
+				TaskScheduler taskScheduler = getTaskScheduler();
+				Assert.state(taskScheduler != null, "A 'taskScheduler' is required when a 'batchTimeout' is set");
+				this.batchTimeoutTask = taskScheduler.scheduleAtFixedRate(new Runnable() {
+
+					@Override
+					public void run() {
+						flush();
+					}
+
+				}, this.batchTimeout);
+			}
+		}
+	}
+
 	/**
 	 * Executes the update, passing the message into the {@link SqlParameterSourceFactory}.
+	 * When batching, adds the message to the batch and executes the batch if a threshold
+	 * is reached.
 	 */
 	@Override
 	protected void handleMessageInternal(Message<?> message) throws MessageRejectedException, MessageHandlingException,
 			MessageDeliveryException {
+		if (this.batchSize > 1 && addToBatch(message)) {
+			return;
+		}
 		List<? extends Map<String, Object>> keys = executeUpdateQuery(message, keysGenerated);
 		if (logger.isDebugEnabled() && !keys.isEmpty()) {
 			logger.debug("Generated keys: "+keys);
 		}
 	}
 
-	protected List<? extends Map<String, Object>> executeUpdateQuery(Object obj, boolean keysGenerated) {
-		SqlParameterSource updateParameterSource = new MapSqlParameterSource();
+	/**
+	 * Execute the updates for any batched messages.
+	 * @since 4.2
+	 */
+	public void flush() {
+		List<Message<?>> messages;
+		synchronized (this.batchMonitor) {
+			messages = takeBatch();
+		}
+		if (!messages.isEmpty()) {
+			executeBatch(messages);
+		}
+	}
+
+	/**
+	 * Cancel the batch timeout task and execute the updates for any batched messages;
+	 * subsequent messages are not batched.
+	 */
+	@Override
+	public void destroy() {
+		ScheduledFuture<?> batchTimeoutTask = this.batchTimeoutTask;
+		if (batchTimeoutTask != null) {
+			batchTimeoutTask.cancel(false);
+			this.batchTimeoutTask = null;
+		}
+		synchronized (this.batchMonitor) {
+			this.destroyed = true;
+		}
+		flush();
+	}
+
+	/**
+	 * Estimate the size of a message, for the {@link #setBatchMaxBytes(long) batchMaxBytes}
+	 * threshold. This implementation returns the length of {@code byte[]} payloads, the
+	 * UTF-8 encoded length of {@code String} payloads, and 0 for other payloads.
+	 * @param message the message.
+	 * @return the estimated size in bytes.
+	 * @since 4.2
+	 */
+	protected long estimateSize(Message<?> message) {
+		Object payload = message.getPayload();
+		if (payload instanceof byte[]) {
+			return ((byte[]) payload).length;
+		}
+		else if (payload instanceof String) {
+			return utf8Length((String) payload);
+		}
+		return 0;
+	}
+
+	private static long utf8Length(String string) {
+		long length = 0;
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			if (c < 0x80) {
+				length++;
+			}
+			else if (c < 0x800) {
+				length += 2;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < string.length()
+					&& Character.isLowSurrogate(string.charAt(i + 1))) {
+				length += 4;
+				i++;
+			}
+			else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	private boolean addToBatch(Message<?> message) {
+		List<Message<?>> fullBatch = null;
+		synchronized (this.batchMonitor) {
+			if (this.destroyed) {
+				return false;
+			}
+			this.batch.add(message);
+			this.batchBytes += estimateSize(message);
+			if (this.batch.size() >= this.batchSize
+					|| (this.batchMaxBytes > 0 && this.batchBytes >= this.batchMaxBytes)) {
+				fullBatch = takeBatch();
+			}
+		}
+		if (fullBatch != null) {
+			executeBatch(fullBatch);
+		}
+		return true;
+	}
+
+	private List<Message<?>> takeBatch() {
+		List<Message<?>> messages = this.batch;
+		if (!messages.isEmpty()) {
+			this.batch = new ArrayList<Message<?>>(this.batchSize);
+			this.batchBytes = 0;
+		}
+		return messages;
+	}
+
+	private void executeBatch(List<Message<?>> messages) {
+		List<Message<?>> batched = new ArrayList<Message<?>>(messages.size());
+		List<SqlParameterSource> parameterSources = new ArrayList<SqlParameterSource>(messages.size());
+		for (Message<?> message : messages) {
+			try {
+				parameterSources.add(createParameterSource(message));
+				batched.add(message);
+			}
+			catch (Exception e) {
+				handleBatchFailure(message, e);
+			}
+		}
+		if (batched.isEmpty()) {
+			return;
+		}
+		final SqlParameterSource[] batchArgs = parameterSources.toArray(new SqlParameterSource[parameterSources.size()]);
+		try {
+			int[] updateCounts = this.batchTransactionTemplate.execute(new TransactionCallback<int[]>() {
+
+				@Override
+				public int[] doInTransaction(TransactionStatus status) {
+					return JdbcMessageHandler.this.jdbcOperations.batchUpdate(JdbcMessageHandler.this.updateSql,
+							batchArgs);
+				}
+
+			});
+			if (logger.isDebugEnabled()) {
+				logger.debug("Executed batch of " + updateCounts.length + " updates");
+			}
+		}
+		catch (DataAccessException e) {
+			/*
+			 * The whole batch was rolled back; execute the updates individually so that
+			 * only the failed ones are reported.
+			 */
+			if (logger.isDebugEnabled()) {
+				logger.debug("Batch failed, executing " + batched.size() + " updates individually", e);
+			}
+			for (int i = 0; i < batched.size(); i++) {
+				executeBatchedUpdate(batched.get(i), batchArgs[i]);
+			}
+		}
+	}
+
+	private void executeBatchedUpdate(Message<?> message, final SqlParameterSource parameterSource) {
+		try {
+			this.batchTransactionTemplate.execute(new TransactionCallback<Integer>() {
+
+				@Override
+				public Integer doInTransaction(TransactionStatus status) {
+					return JdbcMessageHandler.this.jdbcOperations.update(JdbcMessageHandler.this.updateSql,
+							parameterSource);
+				}
+
+			});
+		}
+		catch (DataAccessException e) {
+			handleBatchFailure(message, e);
+		}
+	}
+
+	private void handleBatchFailure(Message<?> message, Exception e) {
+		this.errorHandler.handleError(new MessageHandlingException(message, "Failed to execute batched update", e));
+	}
+
+	private SqlParameterSource createParameterSource(Object obj) {
 		if (this.sqlParameterSourceFactory != null) {
-			updateParameterSource = this.sqlParameterSourceFactory.createParameterSource(obj);
+			return this.sqlParameterSourceFactory.createParameterSource(obj);
 		}
+		return new MapSqlParameterSource();
+	}
+
+	protected List<? extends Map<String, Object>> executeUpdateQuery(Object obj, boolean keysGenerated) {
+		SqlParameterSource updateParameterSource = createParameterSource(obj);
 		if (keysGenerated) {
 			KeyHolder keyHolder = new GeneratedKeyHolder();
 			this.jdbcOperations.update(this.updateSql, updateParameterSource,
@@ -154,7 +154,12 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 		UPDATE_GROUP("UPDATE %PREFIX%MESSAGE_GROUP set UPDATED_DATE=? where GROUP_KEY=? and REGION=?"),
 
-		LIST_GROUP_KEYS("SELECT distinct GROUP_KEY as CREATED from %PREFIX%MESSAGE_GROUP where REGION=?");
+		LIST_GROUP_KEYS("SELECT distinct GROUP_KEY as CREATED from %PREFIX%MESSAGE_GROUP where REGION=?"),
+
+		LIST_GROUP_KEYS_CREATED_BEFORE("SELECT GROUP_KEY from %PREFIX%MESSAGE_GROUP where REGION=? and CREATED_DATE<=?"),
+
+		LIST_GROUP_KEYS_UPDATED_BEFORE("SELECT GROUP_KEY from %PREFIX%MESSAGE_GROUP where REGION=? " +
+				"and (UPDATED_DATE<=? or (UPDATED_DATE is null and CREATED_DATE<=?))");
 
 		private String sql;
 
@@ -336,8 +341,15 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 				.setHeader(CREATED_DATE_KEY, createdDate).build();
 
 		Map innerMap = (Map) new DirectFieldAccessor(result.getHeaders()).getPropertyValue("headers");
-		// using reflection to set ID since it is immutable through MessageHeaders
+		// using reflection to set ID and TIMESTAMP since they are immutable through MessageHeaders
 		innerMap.put(MessageHeaders.ID, message.getHeaders().get(MessageHeaders.ID));
+		Long timestamp = message.getHeaders().getTimestamp();
+		if (timestamp != null) {
+			innerMap.put(MessageHeaders.TIMESTAMP, timestamp);
+		}
+		else {
+			innerMap.remove(MessageHeaders.TIMESTAMP);
+		}
 
 		final String messageId = getKey(result.getHeaders().getId());
 		final byte[] messageBytes = serializer.convert(result);
@@ -565,31 +577,42 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 		return polledMessage;
 	}
 
+	/**
+	 * Select the groups that are due to expire with a query on the group's
+	 * {@code CREATED_DATE} (or {@code UPDATED_DATE} when
+	 * {@link #setTimeoutOnIdle(boolean) timeoutOnIdle}), rather than retrieving every group.
+	 */
 	@Override
-	public Iterator<MessageGroup> iterator() {
-
-		final Iterator<String> iterator = jdbcTemplate.query(getQuery(Query.LIST_GROUP_KEYS), new Object[] { region },
-				new SingleColumnRowMapper<String>()).iterator();
-
-		return new Iterator<MessageGroup>() {
-
-			@Override
-			public boolean hasNext() {
-				return iterator.hasNext();
-			}
+	protected Iterable<MessageGroup> getExpiryCandidates(long threshold) {
+		Timestamp thresholdDate = new Timestamp(threshold);
+		final List<String> groupKeys;
+		if (isTimeoutOnIdle()) {
+			groupKeys = this.jdbcTemplate.query(getQuery(Query.LIST_GROUP_KEYS_UPDATED_BEFORE),
+					new Object[] { this.region, thresholdDate, thresholdDate }, new SingleColumnRowMapper<String>());
+		}
+		else {
+			groupKeys = this.jdbcTemplate.query(getQuery(Query.LIST_GROUP_KEYS_CREATED_BEFORE),
+					new Object[] { this.region, thresholdDate }, new SingleColumnRowMapper<String>());
+		}
+		return new Iterable<MessageGroup>() {
 
 			@Override
-			public MessageGroup next() {
-				return getMessageGroup(iterator.next());
+			public Iterator<MessageGroup> iterator() {
+				return new MessageGroupIterator(groupKeys.iterator());
 			}
 
-			@Override
-			public void remove() {
-				throw new UnsupportedOperationException("Cannot remove MessageGroup from this iterator.");
-			}
 		};
 	}
 
+	@Override
+	public Iterator<MessageGroup> iterator() {
+
+		Iterator<String> iterator = jdbcTemplate.query(getQuery(Query.LIST_GROUP_KEYS), new Object[] { region },
+				new SingleColumnRowMapper<String>()).iterator();
+
+		return new MessageGroupIterator(iterator);
+	}
+
 	/**
 	 * Replace patterns in the input to produce a valid SQL query. This implementation lazily initializes a
 	 * simple map-based cache, only replacing the table prefix on the first access to a named query. Further
@@ -714,4 +737,29 @@ public class JdbcMessageStore extends AbstractMessageGroupStore implements Messa
 
 	}
 
+	private class MessageGroupIterator implements Iterator<MessageGroup> {
+
+		private final Iterator<String> groupKeys;
+
+		private MessageGroupIterator(Iterator<String> groupKeys) {
+			this.groupKeys = groupKeys;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.groupKeys.hasNext();
+		}
+
+		@Override
+		public MessageGroup next() {
+			return getMessageGroup(this.groupKeys.next());
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException("Cannot remove MessageGroup from this iterator.");
+		}
+
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,30 +16,66 @@
 
 package org.springframework.integration.jdbc;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 
 import javax.sql.DataSource;
 
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
 import org.springframework.dao.DataAccessException;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.context.IntegrationObjectSupport;
 import org.springframework.integration.core.MessageSource;
+import org.springframework.integration.metadata.MetadataStore;
+import org.springframework.integration.metadata.SimpleMetadataStore;
 import org.springframework.jdbc.core.ColumnMapRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
 import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.RowMapperResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcOperations;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.messaging.Message;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
 
 /**
  * A polling channel adapter that creates messages from the payload returned by
  * executing a select query. Optionally an update can be executed after the
  * select in order to update processed rows.
+ * <p>
+ * Alternatively, when a {@link #setWatermarkColumn(String) watermarkColumn} is
+ * provided, the adapter pages through the table using the value of that column
+ * (keyset pagination) instead of updating processed rows. The select query must
+ * return the rows with a watermark column value greater than the
+ * {@code :watermark} parameter, ordered by that column; for example:
+ *
+ * <pre class="code">
+ * SELECT * FROM ITEMS WHERE ID &gt; :watermark ORDER BY ID
+ * </pre>
+ *
+ * Each query reads at most {@link #setMaxRowsPerPoll(int) maxRowsPerPoll} rows through
+ * a forward-only result set; the rows are then emitted over subsequent polls, one message
+ * per row (or per {@link #setChunkSize(int) chunk} of rows). The watermark of the last
+ * emitted row is stored in a {@link MetadataStore} so that processing resumes from that
+ * row after a restart. When polled within a transaction, the watermark is stored before
+ * the transaction commits and, if the transaction rolls back, the rows emitted within
+ * it are emitted again.
  *
  * @author Jonas Partner
  * @author Dave Syer
@@ -65,6 +101,24 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 
 	private volatile int maxRowsPerPoll = 0;
 
+	private volatile String watermarkColumn;
+
+	private volatile String watermarkKey;
+
+	private volatile Object initialWatermark;
+
+	private volatile MetadataStore metadataStore;
+
+	private volatile int chunkSize = 1;
+
+	private volatile int fetchSize;
+
+	private final LinkedList<KeysetRow> keysetRows = new LinkedList<KeysetRow>();
+
+	private Object watermark;
+
+	private Object committedWatermark;
+
 	/**
 	 * Constructor taking {@link DataSource} from which the DB Connection can be
 	 * obtained and the select query to execute to retrieve new rows.
@@ -126,6 +180,68 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		this.maxRowsPerPoll = maxRows;
 	}
 
+	/**
+	 * The column, returned by the select query, whose value is used as the keyset
+	 * watermark; setting this property enables keyset pagination. The column must be
+	 * unique and the query must order the rows by it.
+	 * @param watermarkColumn the watermark column.
+	 * @since 4.2
+	 */
+	public void setWatermarkColumn(String watermarkColumn) {
+		this.watermarkColumn = watermarkColumn;
+	}
+
+	/**
+	 * The key under which the watermark is stored in the {@link MetadataStore}.
+	 * @param watermarkKey the key; defaults to the component name.
+	 * @since 4.2
+	 */
+	public void setWatermarkKey(String watermarkKey) {
+		this.watermarkKey = watermarkKey;
+	}
+
+	/**
+	 * The watermark to use when none is stored in the {@link MetadataStore}; required
+	 * unless a watermark has been stored. A stored watermark is converted to the type of
+	 * this value.
+	 * @param initialWatermark the initial watermark.
+	 * @since 4.2
+	 */
+	public void setInitialWatermark(Object initialWatermark) {
+		this.initialWatermark = initialWatermark;
+	}
+
+	/**
+	 * The {@link MetadataStore} for the watermark; defaults to the {@code metadataStore}
+	 * bean, if present, or a {@link SimpleMetadataStore}.
+	 * @param metadataStore the metadata store.
+	 * @since 4.2
+	 */
+	public void setMetadataStore(MetadataStore metadataStore) {
+		Assert.notNull(metadataStore, "'metadataStore' must not be null");
+		this.metadataStore = metadataStore;
+	}
+
+	/**
+	 * When using a watermark, the number of rows in each message. When 1 (default), the
+	 * payload is the row; otherwise it is a List of up to this number of rows.
+	 * @param chunkSize the chunk size.
+	 * @since 4.2
+	 */
+	public void setChunkSize(int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "'chunkSize' must be greater than 0");
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * When using a watermark, the fetch size hint for the select query.
+	 * @param fetchSize the fetch size; default 0 (the driver default).
+	 * @since 4.2
+	 */
+	public void setFetchSize(int fetchSize) {
+		this.fetchSize = fetchSize;
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		super.onInit();
@@ -133,6 +249,39 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 			((ExpressionEvaluatingSqlParameterSourceFactory)this.sqlParameterSourceFactory)
 				.setBeanFactory(this.getBeanFactory());
 		}
+		if (this.watermarkColumn != null) {
+			Assert.state(this.updateSql == null, "An 'updateSql' cannot be used with a 'watermarkColumn'");
+			if (this.watermarkKey == null) {
+				this.watermarkKey = getComponentName();
+			}
+			Assert.state(this.watermarkKey != null, "A 'watermarkKey' is required with a 'watermarkColumn'");
+			if (this.metadataStore == null) {
+				BeanFactory beanFactory = this.getBeanFactory();
+				if (beanFactory != null) {
+					this.metadataStore = IntegrationContextUtils.getMetadataStore(beanFactory);
+				}
+				if (this.metadataStore == null) {
+					this.metadataStore = new SimpleMetadataStore();
+				}
+			}
+			String storedWatermark = this.metadataStore.get(this.watermarkKey);
+			if (storedWatermark == null) {
+				Assert.state(this.initialWatermark != null, "An 'initialWatermark' is required when no watermark "
+						+ "is stored under the key '" + this.watermarkKey + "'");
+				this.watermark = this.initialWatermark;
+			}
+			else if (this.initialWatermark == null || this.initialWatermark instanceof String) {
+				this.watermark = storedWatermark;
+			}
+			else {
+				ConversionService conversionService = getConversionService();
+				if (conversionService == null) {
+					conversionService = new DefaultConversionService();
+				}
+				this.watermark = conversionService.convert(storedWatermark, this.initialWatermark.getClass());
+			}
+			this.committedWatermark = this.watermark;
+		}
 	}
 
 	/**
@@ -140,9 +289,10 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 	 * Message payload will contain either a List of Maps for each row or, if a
 	 * RowMapper has been provided, the values mapped from those rows. If the
 	 * query returns no rows, this method will return <code>null</code>.
+	 * When using a watermark, the payload is the next row or chunk of rows.
 	 */
 	public Message<Object> receive() {
-		Object payload = poll();
+		Object payload = this.watermarkColumn != null ? pollKeyset() : poll();
 		if (payload == null) {
 			return null;
 		}
@@ -177,6 +327,132 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		this.jdbcOperations.update(this.updateSql, updateParamaterSource);
 	}
 
+	/**
+	 * Return the next row (or chunk), fetching the next page of rows after the watermark
+	 * if necessary, and store the new watermark; within a transaction, the watermark is
+	 * stored when the transaction commits.
+	 */
+	private synchronized Object pollKeyset() {
+		if (this.keysetRows.isEmpty()) {
+			this.keysetRows.addAll(doPollKeyset(this.watermark));
+		}
+		List<Object> rows = new ArrayList<Object>(this.chunkSize);
+		Object lastKey = null;
+		while (rows.size() < this.chunkSize && !this.keysetRows.isEmpty()) {
+			KeysetRow row = this.keysetRows.removeFirst();
+			rows.add(row.row);
+			lastKey = row.key;
+		}
+		if (rows.isEmpty()) {
+			return null;
+		}
+		this.watermark = lastKey;
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			getTransactionWatermark().key = lastKey;
+		}
+		else {
+			this.metadataStore.put(this.watermarkKey, lastKey.toString());
+			this.committedWatermark = lastKey;
+		}
+		return this.chunkSize == 1 ? rows.get(0) : rows;
+	}
+
+	private TransactionWatermark getTransactionWatermark() {
+		TransactionWatermark transactionWatermark =
+				(TransactionWatermark) TransactionSynchronizationManager.getResource(this);
+		if (transactionWatermark == null) {
+			final TransactionWatermark newTransactionWatermark = new TransactionWatermark();
+			TransactionSynchronizationManager.bindResource(this, newTransactionWatermark);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void beforeCommit(boolean readOnly) {
+					// participates in the transaction if the metadata store uses the same resource
+					JdbcPollingChannelAdapter.this.metadataStore.put(JdbcPollingChannelAdapter.this.watermarkKey,
+							newTransactionWatermark.key.toString());
+				}
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(JdbcPollingChannelAdapter.this);
+					watermarkCompleted(newTransactionWatermark.key, status == TransactionSynchronization.STATUS_COMMITTED);
+				}
+
+			});
+			transactionWatermark = newTransactionWatermark;
+		}
+		return transactionWatermark;
+	}
+
+	/**
+	 * Record the watermark of a committed transaction or, after a rollback, discard the
+	 * fetched rows so that the next poll resumes from the last committed watermark.
+	 */
+	private synchronized void watermarkCompleted(Object key, boolean committed) {
+		if (committed) {
+			this.committedWatermark = key;
+		}
+		else {
+			this.watermark = this.committedWatermark;
+			this.keysetRows.clear();
+		}
+	}
+
+	/**
+	 * Execute the select query with the watermark, reading at most
+	 * {@code maxRowsPerPoll} (or {@code chunkSize} if greater) rows.
+	 * @param watermark the watermark.
+	 * @return the rows and their watermarks.
+	 */
+	private List<KeysetRow> doPollKeyset(Object watermark) {
+		final int maxRows = Math.max(this.maxRowsPerPoll, this.chunkSize);
+		final RowMapper<?> rowMapper = this.rowMapper == null ? new ColumnMapRowMapper() : this.rowMapper;
+		SqlParameterSource parameterSource = new WatermarkSqlParameterSource(watermark, this.sqlQueryParameterSource);
+		return this.jdbcOperations.getJdbcOperations().query(
+				keysetStatementCreator(parameterSource, maxRows), new ResultSetExtractor<List<KeysetRow>>() {
+
+					@Override
+					public List<KeysetRow> extractData(ResultSet rs) throws SQLException, DataAccessException {
+						List<KeysetRow> rows = new ArrayList<KeysetRow>(maxRows);
+						int rowNum = 0;
+						while (rowNum < maxRows && rs.next()) {
+							Object key = JdbcUtils.getResultSetValue(rs, rs.findColumn(watermarkColumn));
+							Assert.state(key != null, "The watermark column '" + watermarkColumn + "' cannot be null");
+							rows.add(new KeysetRow(rowMapper.mapRow(rs, rowNum++), key));
+						}
+						return rows;
+					}
+
+				});
+	}
+
+	/**
+	 * Create a statement creator for a forward-only result set, limited to the max rows,
+	 * with the fetch size (if set).
+	 */
+	private PreparedStatementCreator keysetStatementCreator(SqlParameterSource parameterSource,
+			final int maxRows) {
+		ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(this.selectQuery);
+		String sql = NamedParameterUtils.substituteNamedParameters(parsedSql, parameterSource);
+		Object[] parameters = NamedParameterUtils.buildValueArray(parsedSql, parameterSource, null);
+		PreparedStatementCreatorFactory statementCreatorFactory = new PreparedStatementCreatorFactory(sql,
+				NamedParameterUtils.buildSqlParameterList(parsedSql, parameterSource));
+		final PreparedStatementCreator statementCreator = statementCreatorFactory.newPreparedStatementCreator(parameters);
+		return new PreparedStatementCreator() {
+
+			@Override
+			public PreparedStatement createPreparedStatement(Connection con) throws SQLException {
+				PreparedStatement statement = statementCreator.createPreparedStatement(con);
+				statement.setMaxRows(maxRows);
+				if (fetchSize > 0) {
+					statement.setFetchSize(fetchSize);
+				}
+				return statement;
+			}
+
+		};
+	}
+
 	protected List<?> doPoll(SqlParameterSource sqlQueryParameterSource) {
 
 		List<?> payload = null;
@@ -217,4 +493,79 @@ public class JdbcPollingChannelAdapter extends IntegrationObjectSupport implemen
 		return "jdbc:inbound-channel-adapter";
 	}
 
+
+	/**
+	 * The watermark of the last row emitted within a transaction.
+	 */
+	private static final class TransactionWatermark {
+
+		private Object key;
+
+	}
+
+
+	private static final class KeysetRow {
+
+		private final Object row;
+
+		private final Object key;
+
+		private KeysetRow(Object row, Object key) {
+			this.row = row;
+			this.key = key;
+		}
+
+	}
+
+
+	/**
+	 * Adds the {@code watermark} parameter to the select parameters, if any.
+	 */
+	private static final class WatermarkSqlParameterSource implements SqlParameterSource {
+
+		private static final String WATERMARK = "watermark";
+
+		private final Object watermark;
+
+		private final SqlParameterSource delegate;
+
+		private WatermarkSqlParameterSource(Object watermark, SqlParameterSource delegate) {
+			this.watermark = watermark;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean hasValue(String paramName) {
+			return WATERMARK.equals(paramName) || (this.delegate != null && this.delegate.hasValue(paramName));
+		}
+
+		@Override
+		public Object getValue(String paramName) throws IllegalArgumentException {
+			if (WATERMARK.equals(paramName)) {
+				return this.watermark;
+			}
+			if (this.delegate == null) {
+				throw new IllegalArgumentException("No value registered for key '" + paramName + "'");
+			}
+			return this.delegate.getValue(paramName);
+		}
+
+		@Override
+		public int getSqlType(String paramName) {
+			if (WATERMARK.equals(paramName) || this.delegate == null) {
+				return TYPE_UNKNOWN;
+			}
+			return this.delegate.getSqlType(paramName);
+		}
+
+		@Override
+		public String getTypeName(String paramName) {
+			if (WATERMARK.equals(paramName) || this.delegate == null) {
+				return null;
+			}
+			return this.delegate.getTypeName(paramName);
+		}
+
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -76,6 +76,12 @@ public class JdbcPollingChannelAdapterParser extends AbstractPollingInboundChann
 			builder.addPropertyValue("updateSql", update);
 		}
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "update-per-row");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "watermark-column");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "watermark-key");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "initial-watermark");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, "metadata-store");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "chunk-size");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, "fetch-size");
 		return builder.getBeanDefinition();
 	}
 
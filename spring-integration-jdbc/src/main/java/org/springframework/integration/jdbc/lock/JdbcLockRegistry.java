@@ -0,0 +1,551 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.lock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.integration.support.locks.LockRegistry;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link LockRegistry} providing a distributed lock using a shared
+ * database table ({@code INT_LOCK} by default, created by the standard schema scripts).
+ * Each registry (typically, one per application instance) has a client id; a lock is
+ * held by the client that owns the row for the lock key.
+ * <p>
+ * Locks are leases; a lock whose row has not been renewed within the
+ * {@link #setTimeToLive(long) timeToLive} is considered to be expired and can be
+ * acquired by another client. The leases of locks held by this registry are renewed
+ * in the background every third of the time to live, so a lock is only lost if this
+ * client cannot reach the database (or is stopped) for longer than that. Threads
+ * unlocking a lock whose lease was lost get an {@link IllegalStateException}. This
+ * should be considered as a critical error because it is possible the protected
+ * resources were compromised. Lease expiry is determined by comparing timestamps
+ * generated by each client, so the clocks of the clients must be synchronized.
+ * <p>
+ * Locks are reentrant; only the first acquisition by a thread requires a database
+ * round trip. Local contention is resolved with a {@link ReentrantLock} per lock key,
+ * so only one thread per client competes for a lock in the database. The registry
+ * only retains the lock objects that are in use: a lock is forgotten when it is
+ * released (or a failed attempt to acquire it ends) with no other local thread waiting
+ * for it and no cached lease, so {@link #obtain(Object)} then returns a new object.
+ * <p>
+ * When {@link #setLeaseCaching(boolean) leaseCaching} is enabled, the row is retained
+ * when a lock is released; the lock can then be re-acquired on this client, while at
+ * least half of the time to live remains, without a database round trip. Other
+ * clients can only acquire the lock when the lease expires.
+ * <p>
+ * {@link Condition}s are not supported.
+ *
+ * @since 4.2
+ *
+ */
+public final class JdbcLockRegistry implements LockRegistry, DisposableBean {
+
+	private static final Log logger = LogFactory.getLog(JdbcLockRegistry.class);
+
+	public static final String DEFAULT_TABLE_PREFIX = "INT_";
+
+	private static final long DEFAULT_TTL = 10000;
+
+	private static final String DELETE_EXPIRED = "DELETE FROM %PREFIX%LOCK WHERE REGION=? AND LOCK_KEY=? AND CREATED_DATE<?";
+
+	private static final String RENEW = "UPDATE %PREFIX%LOCK SET CREATED_DATE=? WHERE REGION=? AND LOCK_KEY=? AND CLIENT_ID=?";
+
+	private static final String INSERT = "INSERT INTO %PREFIX%LOCK (REGION, LOCK_KEY, CLIENT_ID, CREATED_DATE) VALUES (?, ?, ?, ?)";
+
+	private static final String DELETE = "DELETE FROM %PREFIX%LOCK WHERE REGION=? AND LOCK_KEY=? AND CLIENT_ID=?";
+
+	private static final String DELETE_ALL = "DELETE FROM %PREFIX%LOCK WHERE REGION=? AND CLIENT_ID=?";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	/**
+	 * The locks in use; a lock is removed when it is released (or its cached lease
+	 * expires) and no other thread is waiting for it.
+	 */
+	private final ConcurrentMap<String, JdbcLock> locks = new ConcurrentHashMap<String, JdbcLock>();
+
+	/**
+	 * The locks with a lease (held or cached); only these are visited by the renewal task.
+	 */
+	private final Set<JdbcLock> leases = Collections.newSetFromMap(new ConcurrentHashMap<JdbcLock, Boolean>());
+
+	private volatile String region = "DEFAULT";
+
+	private volatile String tablePrefix = DEFAULT_TABLE_PREFIX;
+
+	private volatile String clientId = UUID.randomUUID().toString();
+
+	private volatile long timeToLive = DEFAULT_TTL;
+
+	private volatile boolean leaseCaching;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile ThreadPoolTaskScheduler internalTaskScheduler;
+
+	private volatile ScheduledFuture<?> renewalTask;
+
+	/**
+	 * Construct an instance using the supplied data source. Each lock operation is
+	 * performed, and committed, in a new transaction.
+	 * @param dataSource the data source.
+	 */
+	public JdbcLockRegistry(DataSource dataSource) {
+		Assert.notNull(dataSource, "'dataSource' cannot be null");
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	/**
+	 * A unique grouping identifier for all locks in this registry; registries sharing the
+	 * table only compete for locks in the same region.
+	 * @param region the region; default {@code DEFAULT}.
+	 */
+	public void setRegion(String region) {
+		Assert.hasText(region, "'region' must not be null or empty");
+		this.region = region;
+	}
+
+	/**
+	 * @param tablePrefix the prefix of the lock table name; default {@code INT_}.
+	 */
+	public void setTablePrefix(String tablePrefix) {
+		this.tablePrefix = tablePrefix;
+	}
+
+	/**
+	 * The id of this client; it must be unique for each registry sharing the table and
+	 * no longer than 36 characters.
+	 * @param clientId the client id; default a random UUID.
+	 */
+	public void setClientId(String clientId) {
+		Assert.hasText(clientId, "'clientId' must not be null or empty");
+		Assert.isTrue(clientId.length() <= 36, "'clientId' must not be longer than 36 characters");
+		this.clientId = clientId;
+	}
+
+	public String getClientId() {
+		return this.clientId;
+	}
+
+	/**
+	 * The time after which a lease that has not been renewed expires.
+	 * @param timeToLive the time to live in milliseconds; default 10 seconds.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be greater than 0");
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Set to true to retain the lease when a lock is released, so that it can be
+	 * re-acquired on this client without a database round trip.
+	 * @param leaseCaching true to cache leases; default false.
+	 */
+	public void setLeaseCaching(boolean leaseCaching) {
+		this.leaseCaching = leaseCaching;
+	}
+
+	/**
+	 * The scheduler used to renew the leases of held locks; by default, an internal
+	 * single-threaded scheduler is created when a lock is first acquired.
+	 * @param taskScheduler the task scheduler.
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	@Override
+	public Lock obtain(Object lockKey) {
+		Assert.notNull(lockKey, "'lockKey' cannot be null");
+		String key = UUIDConverter.getUUID(lockKey).toString();
+		JdbcLock lock = this.locks.get(key);
+		if (lock == null) {
+			lock = new JdbcLock(key, lockKey);
+			JdbcLock existing = this.locks.putIfAbsent(key, lock);
+			if (existing != null) {
+				lock = existing;
+			}
+		}
+		return lock;
+	}
+
+	/**
+	 * Stop renewing leases and delete the rows of all locks (and cached leases) of this
+	 * client.
+	 */
+	@Override
+	public void destroy() {
+		synchronized (this.locks) {
+			if (this.renewalTask != null) {
+				this.renewalTask.cancel(false);
+				this.renewalTask = null;
+			}
+			if (this.internalTaskScheduler != null) {
+				this.internalTaskScheduler.destroy();
+				this.internalTaskScheduler = null;
+			}
+		}
+		this.jdbcTemplate.update(getQuery(DELETE_ALL), this.region, this.clientId);
+	}
+
+	private String getQuery(String query) {
+		return query.replace("%PREFIX%", this.tablePrefix);
+	}
+
+	private void startRenewal() {
+		if (this.renewalTask == null) {
+			synchronized (this.locks) {
+				if (this.renewalTask == null) {
+					TaskScheduler scheduler = this.taskScheduler;
+					if (scheduler == null) {
+						this.internalTaskScheduler = new ThreadPoolTaskScheduler();
+						this.internalTaskScheduler.setThreadNamePrefix("jdbc-lock-renewal-");
+						this.internalTaskScheduler.setDaemon(true);
+						this.internalTaskScheduler.afterPropertiesSet();
+						scheduler = this.internalTaskScheduler;
+					}
+					long period = this.timeToLive / 3;
+					// the lease has just been acquired; the first renewal is due after one period
+					this.renewalTask = scheduler.scheduleWithFixedDelay(new Runnable() {
+
+						@Override
+						public void run() {
+							try {
+								renewLeases();
+							}
+							catch (Exception e) {
+								logger.error("Failed to renew lock leases", e);
+							}
+						}
+
+					}, new Date(System.currentTimeMillis() + period), period);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Renew the leases of all locks held by this client with a single batch, and forget
+	 * cached leases that have expired.
+	 */
+	private void renewLeases() {
+		long now = System.currentTimeMillis();
+		List<JdbcLock> held = new ArrayList<JdbcLock>();
+		for (JdbcLock lock : this.leases) {
+			if (lock.delegate.isLocked()) {
+				if (lock.leaseExpires > 0) {
+					held.add(lock);
+				}
+			}
+			else if (now >= lock.leaseExpires && lock.delegate.tryLock()) {
+				try {
+					if (lock.delegate.getHoldCount() == 1 && now >= lock.leaseExpires) {
+						lock.leaseExpires = 0;
+						this.leases.remove(lock);
+						lock.removeIfUnused();
+					}
+				}
+				finally {
+					lock.delegate.unlock();
+				}
+			}
+		}
+		if (held.isEmpty()) {
+			return;
+		}
+		Date leaseDate = new Date(now);
+		List<Object[]> args = new ArrayList<Object[]>(held.size());
+		for (JdbcLock lock : held) {
+			args.add(new Object[] { leaseDate, this.region, lock.key, this.clientId });
+		}
+		int[] updated = this.jdbcTemplate.batchUpdate(getQuery(RENEW), args);
+		for (int i = 0; i < held.size(); i++) {
+			JdbcLock lock = held.get(i);
+			if (updated[i] == 0) {
+				lock.leaseExpires = 0;
+				this.leases.remove(lock);
+				if (lock.delegate.isLocked()) {
+					logger.error("Lease lost; " + lock);
+				}
+			}
+			else {
+				lock.leaseExpires = now + this.timeToLive;
+			}
+		}
+	}
+
+	/**
+	 * Acquire (or renew) the lease in a new transaction. A row owned by this client is
+	 * only renewed when the calling lock holds the lease; otherwise, it is treated like
+	 * any other client's row.
+	 * @param renew true if the calling lock holds (or has cached) the lease.
+	 * @return true if the lease was acquired.
+	 */
+	private boolean acquireLease(final String key, final long now, final boolean renew) {
+		Boolean acquired = this.transactionTemplate.execute(new TransactionCallback<Boolean>() {
+
+			@Override
+			public Boolean doInTransaction(TransactionStatus status) {
+				Date leaseDate = new Date(now);
+				JdbcTemplate jdbcTemplate = JdbcLockRegistry.this.jdbcTemplate;
+				String region = JdbcLockRegistry.this.region;
+				String clientId = JdbcLockRegistry.this.clientId;
+				jdbcTemplate.update(getQuery(DELETE_EXPIRED), region, key,
+						new Date(now - JdbcLockRegistry.this.timeToLive));
+				if (renew && jdbcTemplate.update(getQuery(RENEW), leaseDate, region, key, clientId) > 0) {
+					return true;
+				}
+				try {
+					return jdbcTemplate.update(getQuery(INSERT), region, key, clientId, leaseDate) > 0;
+				}
+				catch (DataIntegrityViolationException e) {
+					return false;
+				}
+			}
+
+		});
+		return acquired != null && acquired;
+	}
+
+	private boolean releaseLease(String key) {
+		return this.jdbcTemplate.update(getQuery(DELETE), this.region, key, this.clientId) > 0;
+	}
+
+
+	private final class JdbcLock implements Lock {
+
+		private final String key;
+
+		private final Object lockKey;
+
+		private final ReentrantLock delegate = new ReentrantLock();
+
+		/**
+		 * The local time at which the lease expires; 0 when there is no lease.
+		 */
+		private volatile long leaseExpires;
+
+		private JdbcLock(String key, Object lockKey) {
+			this.key = key;
+			this.lockKey = lockKey;
+		}
+
+		@Override
+		public void lock() {
+			this.delegate.lock();
+			try {
+				while (true) {
+					try {
+						while (!obtainLease()) {
+							Thread.sleep(100);
+						}
+						break;
+					}
+					catch (InterruptedException e) {
+						/*
+						 * This method must be uninterruptible so catch and ignore
+						 * interrupts and only break out of the while loop when
+						 * we get the lock.
+						 */
+					}
+				}
+			}
+			catch (RuntimeException e) {
+				releaseDelegate();
+				throw e;
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			this.delegate.lockInterruptibly();
+			try {
+				while (!obtainLease()) {
+					Thread.sleep(100);
+				}
+			}
+			catch (InterruptedException e) {
+				releaseDelegate();
+				throw e;
+			}
+			catch (RuntimeException e) {
+				releaseDelegate();
+				throw e;
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			try {
+				return tryLock(0, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		@Override
+		public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+			long expire = System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(time, unit);
+			if (!this.delegate.tryLock(time, unit)) {
+				return false;
+			}
+			try {
+				boolean acquired;
+				while (!(acquired = obtainLease()) && System.currentTimeMillis() < expire) {
+					Thread.sleep(100);
+				}
+				if (!acquired) {
+					releaseDelegate();
+				}
+				return acquired;
+			}
+			catch (InterruptedException e) {
+				releaseDelegate();
+				throw e;
+			}
+			catch (RuntimeException e) {
+				releaseDelegate();
+				throw e;
+			}
+		}
+
+		/**
+		 * Called with the local lock held.
+		 * @return true if this client holds the lease.
+		 */
+		private boolean obtainLease() {
+			if (this.delegate.getHoldCount() > 1) {
+				return true;
+			}
+			long now = System.currentTimeMillis();
+			if (JdbcLockRegistry.this.leaseCaching
+					&& this.leaseExpires - now > JdbcLockRegistry.this.timeToLive / 2) {
+				return true;
+			}
+			if (acquireLease(this.key, now, this.leaseExpires > 0)) {
+				this.leaseExpires = now + JdbcLockRegistry.this.timeToLive;
+				JdbcLockRegistry.this.leases.add(this);
+				JdbcLockRegistry.this.locks.putIfAbsent(this.key, this);
+				startRenewal();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Acquired lease; " + this);
+				}
+				return true;
+			}
+			return false;
+		}
+
+		@Override
+		public void unlock() {
+			if (!this.delegate.isHeldByCurrentThread()) {
+				throw new IllegalStateException("Lock is not held by the current thread; " + this);
+			}
+			try {
+				if (this.delegate.getHoldCount() == 1) {
+					boolean lost = this.leaseExpires == 0;
+					if (!JdbcLockRegistry.this.leaseCaching || lost) {
+						this.leaseExpires = 0;
+						JdbcLockRegistry.this.leases.remove(this);
+						lost |= !releaseLease(this.key);
+					}
+					if (lost) {
+						throw new IllegalStateException("Lock was released due to expiration; " + this);
+					}
+				}
+			}
+			finally {
+				releaseDelegate();
+			}
+		}
+
+		/**
+		 * Release the local lock; when it is no longer held by this thread, forget this
+		 * lock if it is unused.
+		 */
+		private void releaseDelegate() {
+			try {
+				if (this.delegate.getHoldCount() == 1) {
+					removeIfUnused();
+				}
+			}
+			finally {
+				this.delegate.unlock();
+			}
+		}
+
+		/**
+		 * Called with the local lock held; forget this lock if it has no lease and no other
+		 * thread is waiting for it. A thread that obtained this lock before it was removed
+		 * can still use it; the database row still ensures that only one lock holds the
+		 * lease, and this lock is registered again when it acquires the lease.
+		 */
+		private void removeIfUnused() {
+			if (this.leaseExpires == 0 && !this.delegate.hasQueuedThreads()) {
+				JdbcLockRegistry.this.locks.remove(this.key, this);
+			}
+		}
+
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported");
+		}
+
+		@Override
+		public String toString() {
+			return "JdbcLock [lockKey=" + this.lockKey + ", key=" + this.key + ", region=" + JdbcLockRegistry.this.region
+					+ ", clientId=" + JdbcLockRegistry.this.clientId + "]";
+		}
+
+	}
+
+}
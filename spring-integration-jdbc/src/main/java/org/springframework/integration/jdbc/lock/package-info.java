@@ -0,0 +1,4 @@
+/**
+ * Provides a JDBC-backed distributed lock registry.
+ */
+package org.springframework.integration.jdbc.lock;
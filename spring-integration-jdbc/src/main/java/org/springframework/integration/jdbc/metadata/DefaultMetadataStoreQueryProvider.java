@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.metadata;
+
+/**
+ * A {@link MetadataStoreQueryProvider} using standard SQL, suitable for any database.
+ * The insert fails with a duplicate key exception when the row exists; with databases
+ * that mark the current transaction as failed when a statement fails (such as
+ * PostgreSQL), use a database-specific subclass if the store participates in
+ * transactions.
+ *
+ * @since 4.2
+ *
+ */
+public class DefaultMetadataStoreQueryProvider implements MetadataStoreQueryProvider {
+
+	@Override
+	public String getPutIfAbsentQuery() {
+		return "INSERT INTO %PREFIX%METADATA_STORE (METADATA_KEY, METADATA_VALUE, REGION) VALUES (?, ?, ?)";
+	}
+
+	@Override
+	public String getReplaceQuery() {
+		return "UPDATE %PREFIX%METADATA_STORE SET METADATA_VALUE=? "
+				+ "WHERE METADATA_KEY=? AND REGION=? AND METADATA_VALUE=?";
+	}
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.metadata;
+
+/**
+ * A {@link MetadataStoreQueryProvider} for HSQLDB.
+ *
+ * @since 4.2
+ *
+ */
+public class HsqlMetadataStoreQueryProvider extends DefaultMetadataStoreQueryProvider {
+
+	@Override
+	public String getPutIfAbsentQuery() {
+		return "MERGE INTO %PREFIX%METADATA_STORE USING (VALUES (CAST(? AS CHAR(36)), CAST(? AS VARCHAR(4000)), "
+				+ "CAST(? AS VARCHAR(100)))) AS S(METADATA_KEY, METADATA_VALUE, REGION) "
+				+ "ON (%PREFIX%METADATA_STORE.METADATA_KEY = S.METADATA_KEY AND %PREFIX%METADATA_STORE.REGION = S.REGION) "
+				+ "WHEN NOT MATCHED THEN INSERT (METADATA_KEY, METADATA_VALUE, REGION) "
+				+ "VALUES (S.METADATA_KEY, S.METADATA_VALUE, S.REGION)";
+	}
+
+}
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.metadata;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.integration.metadata.BoundedMetadataStore;
+import org.springframework.integration.metadata.ConcurrentMetadataStore;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+/**
+ * Implementation of {@link ConcurrentMetadataStore} using a shared database table
+ * ({@code INT_METADATA_STORE} by default, created by the standard schema scripts), so
+ * that the metadata (for example, the keys of an idempotent receiver's
+ * {@code MetadataStoreSelector}, or the files seen by a persistent file list filter) is
+ * shared by all application instances and survives restarts.
+ * <p>
+ * {@link #putIfAbsent(String, String)} and {@link #replace(String, String, String)} are
+ * atomic single statements (an insert-if-absent and a compare-and-set update); the
+ * insert is provided by a database-specific {@link MetadataStoreQueryProvider}
+ * (default {@link DefaultMetadataStoreQueryProvider}). Other operations are optimistic:
+ * they are retried if the row is concurrently changed.
+ * <p>
+ * Optionally, values can be cached locally (see {@link #setCacheSize(int)}); the cache
+ * is updated (or invalidated) by the operations of this store, but changes made by other
+ * instances are only seen when a cached entry expires. Since {@code putIfAbsent} returns a
+ * cached value without accessing the database, caching is best suited to keys that are
+ * not removed (or are only removed by this instance).
+ * <p>
+ * When the {@link #setBatchSize(int) batchSize} is greater than 1, concurrent
+ * {@code putIfAbsent} operations are combined: while one thread executes a batch, the
+ * operations of other threads are queued, and then executed as a single JDBC batch in
+ * a new transaction. Operations are executed individually when the batch fails, or when
+ * the JDBC driver does not report the update count of each statement.
+ * <p>
+ * Keys are stored as name-based UUIDs; values are limited to 4000 characters by the
+ * standard schema.
+ *
+ * @since 4.2
+ *
+ */
+public class JdbcMetadataStore implements ConcurrentMetadataStore, InitializingBean {
+
+	public static final String DEFAULT_TABLE_PREFIX = "INT_";
+
+	private static final String GET = "SELECT METADATA_VALUE FROM %PREFIX%METADATA_STORE "
+			+ "WHERE METADATA_KEY=? AND REGION=?";
+
+	private static final String UPDATE = "UPDATE %PREFIX%METADATA_STORE SET METADATA_VALUE=? "
+			+ "WHERE METADATA_KEY=? AND REGION=?";
+
+	private static final String DELETE = "DELETE FROM %PREFIX%METADATA_STORE "
+			+ "WHERE METADATA_KEY=? AND REGION=? AND METADATA_VALUE=?";
+
+	private final JdbcTemplate jdbcTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final Queue<PutIfAbsent> pending = new ConcurrentLinkedQueue<PutIfAbsent>();
+
+	private final ReentrantLock batchLock = new ReentrantLock();
+
+	private volatile MetadataStoreQueryProvider queryProvider = new DefaultMetadataStoreQueryProvider();
+
+	private volatile String region = "DEFAULT";
+
+	private volatile String tablePrefix = DEFAULT_TABLE_PREFIX;
+
+	private volatile int batchSize = 1;
+
+	private volatile int cacheSize;
+
+	private volatile long cacheTimeToLive;
+
+	private volatile BoundedMetadataStore cache;
+
+	/**
+	 * Construct an instance using the supplied data source.
+	 * @param dataSource the data source.
+	 */
+	public JdbcMetadataStore(DataSource dataSource) {
+		Assert.notNull(dataSource, "'dataSource' cannot be null");
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+	}
+
+	/**
+	 * Set the {@link MetadataStoreQueryProvider} providing database-specific queries.
+	 * @param queryProvider the query provider.
+	 */
+	public void setQueryProvider(MetadataStoreQueryProvider queryProvider) {
+		Assert.notNull(queryProvider, "'queryProvider' cannot be null");
+		this.queryProvider = queryProvider;
+	}
+
+	/**
+	 * A unique grouping identifier for all metadata in this store; stores sharing the
+	 * same table, with different regions, do not see each other's entries.
+	 * @param region the region; default "DEFAULT".
+	 */
+	public void setRegion(String region) {
+		Assert.hasText(region, "'region' must not be empty");
+		this.region = region;
+	}
+
+	/**
+	 * @param tablePrefix the prefix of the table name; default "INT_".
+	 */
+	public void setTablePrefix(String tablePrefix) {
+		this.tablePrefix = tablePrefix;
+	}
+
+	/**
+	 * The maximum number of concurrent {@link #putIfAbsent(String, String)} operations
+	 * executed in one JDBC batch. When greater than 1, each batch (and so each
+	 * {@code putIfAbsent}) is executed in a new transaction, rather than in the caller's
+	 * transaction.
+	 * @param batchSize the batch size; default 1 (no batching).
+	 */
+	public void setBatchSize(int batchSize) {
+		Assert.isTrue(batchSize > 0, "'batchSize' must be > 0");
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * The maximum number of values cached locally.
+	 * @param cacheSize the cache size; default 0 (no cache).
+	 */
+	public void setCacheSize(int cacheSize) {
+		Assert.isTrue(cacheSize >= 0, "'cacheSize' must be >= 0");
+		this.cacheSize = cacheSize;
+	}
+
+	/**
+	 * The time in milliseconds after which a cached value expires, which limits the
+	 * time for which changes made by other instances are not seen.
+	 * @param cacheTimeToLive the time to live; default 0 (cached values do not expire).
+	 */
+	public void setCacheTimeToLive(long cacheTimeToLive) {
+		Assert.isTrue(cacheTimeToLive >= 0, "'cacheTimeToLive' must be >= 0");
+		this.cacheTimeToLive = cacheTimeToLive;
+	}
+
+	@Override
+	public void afterPropertiesSet() {
+		if (this.cacheSize > 0) {
+			BoundedMetadataStore cache = new BoundedMetadataStore(this.cacheSize);
+			cache.setTimeToLive(this.cacheTimeToLive);
+			this.cache = cache;
+		}
+		else {
+			this.cache = null;
+		}
+	}
+
+	@Override
+	public void put(String key, String value) {
+		Assert.notNull(key, "'key' must not be null.");
+		Assert.notNull(value, "'value' must not be null.");
+		String id = getId(key);
+		boolean written = false;
+		while (!written) {
+			// retry if the row is inserted by another thread between the update and the insert
+			written = this.jdbcTemplate.update(getQuery(UPDATE), value, id, this.region) > 0
+					|| insertIfAbsent(id, value);
+		}
+		cachePut(key, value);
+	}
+
+	@Override
+	public String get(String key) {
+		Assert.notNull(key, "'key' must not be null.");
+		BoundedMetadataStore cache = this.cache;
+		if (cache != null) {
+			String value = cache.get(key);
+			if (value != null) {
+				return value;
+			}
+		}
+		String value = doGet(getId(key));
+		if (value != null) {
+			cachePut(key, value);
+		}
+		return value;
+	}
+
+	@Override
+	public String remove(String key) {
+		Assert.notNull(key, "'key' must not be null.");
+		String id = getId(key);
+		try {
+			while (true) {
+				String value = doGet(id);
+				if (value == null
+						|| this.jdbcTemplate.update(getQuery(DELETE), id, this.region, value) > 0) {
+					return value;
+				}
+			}
+		}
+		finally {
+			cacheRemove(key);
+		}
+	}
+
+	@Override
+	public String putIfAbsent(String key, String value) {
+		Assert.notNull(key, "'key' must not be null.");
+		Assert.notNull(value, "'value' must not be null.");
+		BoundedMetadataStore cache = this.cache;
+		if (cache != null) {
+			String cached = cache.get(key);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		String id = getId(key);
+		String existing = this.batchSize > 1 ? combinedPutIfAbsent(id, value) : doPutIfAbsent(id, value);
+		cachePut(key, existing != null ? existing : value);
+		return existing;
+	}
+
+	@Override
+	public boolean replace(String key, String oldValue, String newValue) {
+		Assert.notNull(key, "'key' must not be null.");
+		Assert.notNull(oldValue, "'oldValue' must not be null.");
+		Assert.notNull(newValue, "'newValue' must not be null.");
+		boolean replaced = this.jdbcTemplate.update(getQuery(this.queryProvider.getReplaceQuery()),
+				newValue, getId(key), this.region, oldValue) > 0;
+		if (replaced) {
+			cachePut(key, newValue);
+		}
+		else {
+			cacheRemove(key);
+		}
+		return replaced;
+	}
+
+	private String doGet(String id) {
+		List<String> values = this.jdbcTemplate.queryForList(getQuery(GET), String.class, id, this.region);
+		return values.isEmpty() ? null : values.get(0);
+	}
+
+	/**
+	 * @return null if the value was inserted, otherwise the existing value.
+	 */
+	private String doPutIfAbsent(String id, String value) {
+		while (true) {
+			if (insertIfAbsent(id, value)) {
+				return null;
+			}
+			String existing = doGet(id);
+			if (existing != null) {
+				return existing;
+			}
+		}
+	}
+
+	private boolean insertIfAbsent(String id, String value) {
+		try {
+			return this.jdbcTemplate.update(getQuery(this.queryProvider.getPutIfAbsentQuery()),
+					id, value, this.region) > 0;
+		}
+		catch (DuplicateKeyException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Queue the operation; the thread holding the batch lock executes all the queued
+	 * operations (including those of threads waiting for the lock), in batches. A key
+	 * appears at most once in a batch; later operations for the same key are executed
+	 * individually, after the batch.
+	 */
+	private String combinedPutIfAbsent(String id, String value) {
+		PutIfAbsent operation = new PutIfAbsent(id, value);
+		this.pending.add(operation);
+		this.batchLock.lock();
+		try {
+			while (!operation.done) {
+				List<PutIfAbsent> batch = new ArrayList<PutIfAbsent>();
+				List<PutIfAbsent> duplicates = new ArrayList<PutIfAbsent>();
+				Set<String> ids = new HashSet<String>();
+				PutIfAbsent next;
+				while (batch.size() < this.batchSize && (next = this.pending.poll()) != null) {
+					if (ids.add(next.id)) {
+						batch.add(next);
+					}
+					else {
+						duplicates.add(next);
+					}
+				}
+				executeBatch(batch);
+				for (PutIfAbsent duplicate : duplicates) {
+					executeIndividually(duplicate);
+				}
+			}
+		}
+		finally {
+			this.batchLock.unlock();
+		}
+		if (operation.exception != null) {
+			throw operation.exception;
+		}
+		return operation.existing;
+	}
+
+	/**
+	 * Execute the batch in a new transaction; if it fails, or the driver does not report
+	 * which rows were inserted, the transaction is rolled back and the operations are
+	 * executed individually.
+	 */
+	private void executeBatch(final List<PutIfAbsent> batch) {
+		final List<Object[]> args = new ArrayList<Object[]>(batch.size());
+		for (PutIfAbsent operation : batch) {
+			args.add(new Object[] { operation.id, operation.value, this.region });
+		}
+		int[] counts = null;
+		try {
+			counts = this.transactionTemplate.execute(new TransactionCallback<int[]>() {
+
+				@Override
+				public int[] doInTransaction(TransactionStatus status) {
+					int[] updated = JdbcMetadataStore.this.jdbcTemplate.batchUpdate(
+							getQuery(JdbcMetadataStore.this.queryProvider.getPutIfAbsentQuery()), args);
+					for (int count : updated) {
+						if (count == Statement.SUCCESS_NO_INFO) {
+							status.setRollbackOnly();
+							return null;
+						}
+					}
+					return updated;
+				}
+
+			});
+		}
+		catch (RuntimeException e) {
+			// typically a duplicate key; the batch was rolled back so execute the operations individually
+		}
+		for (int i = 0; i < batch.size(); i++) {
+			PutIfAbsent operation = batch.get(i);
+			if (counts != null && counts[i] > 0) {
+				operation.existing = null;
+				operation.done = true;
+			}
+			else {
+				executeIndividually(operation);
+			}
+		}
+	}
+
+	private void executeIndividually(final PutIfAbsent operation) {
+		try {
+			operation.existing = this.transactionTemplate.execute(new TransactionCallback<String>() {
+
+				@Override
+				public String doInTransaction(TransactionStatus status) {
+					return doPutIfAbsent(operation.id, operation.value);
+				}
+
+			});
+		}
+		catch (RuntimeException e) {
+			operation.exception = e;
+		}
+		operation.done = true;
+	}
+
+	private void cachePut(String key, String value) {
+		BoundedMetadataStore cache = this.cache;
+		if (cache != null) {
+			cache.put(key, value);
+		}
+	}
+
+	private void cacheRemove(String key) {
+		BoundedMetadataStore cache = this.cache;
+		if (cache != null) {
+			cache.remove(key);
+		}
+	}
+
+	private String getId(String key) {
+		return UUIDConverter.getUUID(key).toString();
+	}
+
+	private String getQuery(String base) {
+		return base.replace("%PREFIX%", this.tablePrefix);
+	}
+
+	/**
+	 * A queued {@code putIfAbsent}; the results are written and read while holding the
+	 * batch lock.
+	 */
+	private static final class PutIfAbsent {
+
+		private final String id;
+
+		private final String value;
+
+		private boolean done;
+
+		private String existing;
+
+		private RuntimeException exception;
+
+		private PutIfAbsent(String id, String value) {
+			this.id = id;
+			this.value = value;
+		}
+
+	}
+
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.metadata;
+
+/**
+ * Common interface used in order to configure the {@link JdbcMetadataStore} to provide
+ * database-specific queries. Queries may contain the {@code %PREFIX%} table prefix
+ * placeholder.
+ *
+ * @since 4.2
+ *
+ */
+public interface MetadataStoreQueryProvider {
+
+	/**
+	 * Get the query used to insert a row if there is no row for the key and region. The
+	 * parameters are the key, the value and the region, in that order. The update count
+	 * must be 0 if the row exists; the query may also fail with a duplicate key
+	 * exception, in which case the {@link JdbcMetadataStore} reads the existing value.
+	 *
+	 * @return Sql Query
+	 */
+	String getPutIfAbsentQuery();
+
+	/**
+	 * Get the query used to replace the value of a row only if it has the expected
+	 * value. The parameters are the new value, the key, the region and the expected
+	 * value, in that order; the update count must be 1 if the value was replaced.
+	 *
+	 * @return Sql Query
+	 */
+	String getReplaceQuery();
+
+}
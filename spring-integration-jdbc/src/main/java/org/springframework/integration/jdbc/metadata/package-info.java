@@ -0,0 +1,4 @@
+/**
+ * Provides a JDBC-backed metadata store and its database-specific queries.
+ */
+package org.springframework.integration.jdbc.metadata;
@@ -15,13 +15,20 @@ package org.springframework.integration.jdbc.store;
 
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -43,6 +50,7 @@ import org.springframework.core.serializer.support.SerializingConverter;
 import org.springframework.integration.IntegrationMessageHeaderAccessor;
 import org.springframework.integration.jdbc.JdbcMessageStore;
 import org.springframework.integration.jdbc.store.channel.ChannelMessageStoreQueryProvider;
+import org.springframework.integration.jdbc.store.channel.ClaimingChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.DerbyChannelMessageStoreQueryProvider;
 import org.springframework.integration.jdbc.store.channel.MessageRowMapper;
 import org.springframework.integration.jdbc.store.channel.MySqlChannelMessageStoreQueryProvider;
@@ -71,6 +79,8 @@ import org.springframework.jmx.export.annotation.ManagedMetric;
 import org.springframework.jmx.export.annotation.ManagedResource;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageHeaders;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -90,6 +100,10 @@ import org.springframework.util.StringUtils;
  * under <code>org/springframework/integration/jdbc/messagestore/channel/schema-*.sql</code>,
  * where <code>*</code> denotes the target database type.
  * </p>
+ * <p>
+ * By default, each poll selects and deletes a single message; see
+ * {@link #setClaimBatchSize(int)} to claim several messages with each statement.
+ * </p>
  *
  * @author Gunnar Hillert
  * @author Artem Bilan
@@ -153,6 +167,15 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 
 	private volatile Map<String, String> queryCache = new HashMap<String, String>();
 
+	private final ConcurrentMap<String, Queue<Message<?>>> claimedMessages =
+			new ConcurrentHashMap<String, Queue<Message<?>>>();
+
+	private volatile NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+	private volatile NamedParameterJdbcTemplate claimJdbcTemplate;
+
+	private int claimBatchSize = 1;
+
 	private boolean usingIdCache = false;
 
 	private boolean priorityEnabled;
@@ -353,6 +376,40 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		this.usingIdCache = usingIdCache;
 	}
 
+	/**
+	 * <p>Set the maximum number of messages to claim from a channel (group) with one
+	 * statement; default 1. When greater than 1, the messages are claimed using the
+	 * {@link ClaimingChannelMessageStoreQueryProvider#getClaimFromGroupQuery()} (or
+	 * {@link ClaimingChannelMessageStoreQueryProvider#getPriorityClaimFromGroupQuery()}), which
+	 * skips messages locked by other transactions on databases that support
+	 * {@code SKIP LOCKED} (PostgreSQL, Oracle, MySQL 8), so competing consumers do not
+	 * block each other. On other databases, competing consumers may claim the same
+	 * messages; a message is only returned by the consumer that deletes it. The id cache
+	 * ({@link #setUsingIdCache(boolean)}) cannot be used in this mode.</p>
+	 *
+	 * <p>When polled without a transaction, the claimed messages are deleted immediately,
+	 * with one batch statement, and buffered in memory for subsequent polls (by any thread);
+	 * buffered messages are lost if the application stops before they are polled.</p>
+	 *
+	 * <p>When polled within a transaction (for example, by a transactional poller with
+	 * {@code max-messages-per-poll} greater than 1), the claimed messages are bound to the
+	 * transaction and each message is deleted when it is polled; messages that are claimed
+	 * but not polled remain in the database.</p>
+	 *
+	 * <p>With priority enabled, buffered messages are polled before messages stored
+	 * after they were claimed, regardless of priority.</p>
+	 *
+	 * <p>If the query provider does not provide the claim queries, this property is
+	 * ignored (with a warning) and messages are polled one at a time.</p>
+	 *
+	 * @param claimBatchSize the claim batch size.
+	 * @since 4.2
+	 */
+	public void setClaimBatchSize(int claimBatchSize) {
+		Assert.isTrue(claimBatchSize > 0, "'claimBatchSize' must be > 0");
+		this.claimBatchSize = claimBatchSize;
+	}
+
 	public void setPriorityEnabled(boolean priorityEnabled) {
 		this.priorityEnabled = priorityEnabled;
 	}
@@ -398,6 +455,24 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 			this.messageBuilderFactory = IntegrationUtils.getMessageBuilderFactory(this.beanFactory);
 		}
 		this.jdbcTemplate.afterPropertiesSet();
+		this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(this.jdbcTemplate);
+
+		if (this.claimBatchSize > 1 && getClaimQuery() == null) {
+			if (logger.isWarnEnabled()) {
+				logger.warn("The channelMessageStoreQueryProvider does not support claiming messages in batches; "
+						+ "'claimBatchSize' is ignored and messages are polled one at a time.");
+			}
+			this.claimBatchSize = 1;
+		}
+		if (this.claimBatchSize > 1) {
+			Assert.state(!this.usingIdCache, "'usingIdCache' cannot be used with a 'claimBatchSize' greater than 1");
+			JdbcTemplate claimTemplate = new JdbcTemplate(this.jdbcTemplate.getDataSource());
+			claimTemplate.setExceptionTranslator(this.jdbcTemplate.getExceptionTranslator());
+			claimTemplate.setFetchSize(this.claimBatchSize);
+			claimTemplate.setMaxRows(this.claimBatchSize);
+			claimTemplate.afterPropertiesSet();
+			this.claimJdbcTemplate = new NamedParameterJdbcTemplate(claimTemplate);
+		}
 	}
 
 	/**
@@ -514,12 +589,15 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 	@ManagedAttribute
 	public int messageGroupSize(Object groupId) {
 		final String key = getKey(groupId);
-		return jdbcTemplate.queryForObject(getQuery(channelMessageStoreQueryProvider.getCountAllMessagesInGroupQuery()),
+		int size = jdbcTemplate.queryForObject(getQuery(channelMessageStoreQueryProvider.getCountAllMessagesInGroupQuery()),
 				Integer.class, key, this.region);
+		Queue<Message<?>> claimed = this.claimedMessages.get(key);
+		return claimed != null ? size + claimed.size() : size;
 	}
 
 	@Override
 	public void removeMessageGroup(Object groupId) {
+		this.claimedMessages.remove(getKey(groupId));
 		this.jdbcTemplate.update(this.getQuery(this.channelMessageStoreQueryProvider.getDeleteMessageGroupQuery()),
 				this.getKey(groupId), this.region);
 	}
@@ -532,6 +610,9 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 	public Message<?> pollMessageFromGroup(Object groupId) {
 
 		final String key = getKey(groupId);
+		if (this.claimBatchSize > 1) {
+			return pollClaimedMessage(key);
+		}
 		final Message<?> polledMessage = this.doPollForMessage(key);
 
 		if (polledMessage != null) {
@@ -553,39 +634,37 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 	 */
 	protected Message<?> doPollForMessage(String groupIdKey) {
 
-		final NamedParameterJdbcTemplate namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
 		final MapSqlParameterSource parameters = new MapSqlParameterSource();
 
 		parameters.addValue("region", region);
 		parameters.addValue("group_key", groupIdKey);
 
-		String query;
-
 		final List<Message<?>> messages;
 
-		this.idCacheReadLock.lock();
-		try {
-			if (this.usingIdCache && !this.idCache.isEmpty()) {
-				if (this.priorityEnabled) {
-					query = getQuery(this.channelMessageStoreQueryProvider.getPriorityPollFromGroupExcludeIdsQuery());
+		if (this.usingIdCache) {
+			this.idCacheReadLock.lock();
+			try {
+				String query;
+				if (!this.idCache.isEmpty()) {
+					if (this.priorityEnabled) {
+						query = getQuery(this.channelMessageStoreQueryProvider.getPriorityPollFromGroupExcludeIdsQuery());
+					}
+					else {
+						query = getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupExcludeIdsQuery());
+					}
+					parameters.addValue("message_ids", idCache);
 				}
 				else {
-					query = getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupExcludeIdsQuery());
+					query = getPollQuery();
 				}
-				parameters.addValue("message_ids", idCache);
+				messages = this.namedParameterJdbcTemplate.query(query, parameters, messageRowMapper);
 			}
-			else {
-				if (this.priorityEnabled) {
-					query = getQuery(this.channelMessageStoreQueryProvider.getPriorityPollFromGroupQuery());
-				}
-				else {
-					query = getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupQuery());
-				}
+			finally {
+				this.idCacheReadLock.unlock();
 			}
-			messages = namedParameterJdbcTemplate.query(query, parameters, messageRowMapper);
 		}
-		finally {
-			this.idCacheReadLock.unlock();
+		else {
+			messages = this.namedParameterJdbcTemplate.query(getPollQuery(), parameters, messageRowMapper);
 		}
 
 
@@ -614,11 +693,147 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		return null;
 	}
 
+	private String getPollQuery() {
+		if (this.priorityEnabled) {
+			return getQuery(this.channelMessageStoreQueryProvider.getPriorityPollFromGroupQuery());
+		}
+		else {
+			return getQuery(this.channelMessageStoreQueryProvider.getPollFromGroupQuery());
+		}
+	}
+
+	/**
+	 * @return the claim query, or null if the query provider does not support claiming
+	 * messages in batches.
+	 */
+	private String getClaimQuery() {
+		if (!(this.channelMessageStoreQueryProvider instanceof ClaimingChannelMessageStoreQueryProvider)) {
+			return null;
+		}
+		ClaimingChannelMessageStoreQueryProvider queryProvider =
+				(ClaimingChannelMessageStoreQueryProvider) this.channelMessageStoreQueryProvider;
+		if (this.priorityEnabled) {
+			return queryProvider.getPriorityClaimFromGroupQuery();
+		}
+		else {
+			return queryProvider.getClaimFromGroupQuery();
+		}
+	}
+
+	/**
+	 * Poll a message claimed in a batch; outside of a transaction, the buffered messages
+	 * have already been deleted; within a transaction, each message is deleted when it
+	 * is polled.
+	 * @param groupIdKey String representation of message group (Channel) ID
+	 * @return a message; could be null if there are no messages
+	 */
+	private Message<?> pollClaimedMessage(String groupIdKey) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			return getTransactionClaim(groupIdKey).poll();
+		}
+		Queue<Message<?>> claimed = this.claimedMessages.get(groupIdKey);
+		if (claimed == null) {
+			claimed = new ConcurrentLinkedQueue<Message<?>>();
+			Queue<Message<?>> existing = this.claimedMessages.putIfAbsent(groupIdKey, claimed);
+			if (existing != null) {
+				claimed = existing;
+			}
+		}
+		Message<?> message = claimed.poll();
+		while (message == null) {
+			List<Message<?>> messages = claimMessages(groupIdKey);
+			if (messages.isEmpty()) {
+				return null;
+			}
+			// only deliver messages that were not deleted by a competing consumer
+			List<Message<?>> deleted = deleteMessages(groupIdKey, messages);
+			if (!deleted.isEmpty()) {
+				message = deleted.get(0);
+				claimed.addAll(deleted.subList(1, deleted.size()));
+			}
+		}
+		return message;
+	}
+
+	private TransactionClaim getTransactionClaim(String groupIdKey) {
+		@SuppressWarnings("unchecked")
+		Map<String, TransactionClaim> claims =
+				(Map<String, TransactionClaim>) TransactionSynchronizationManager.getResource(this);
+		if (claims == null) {
+			final Map<String, TransactionClaim> transactionClaims = new HashMap<String, TransactionClaim>();
+			TransactionSynchronizationManager.bindResource(this, transactionClaims);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+
+				@Override
+				public void afterCompletion(int status) {
+					TransactionSynchronizationManager.unbindResourceIfPossible(JdbcChannelMessageStore.this);
+				}
+
+			});
+			claims = transactionClaims;
+		}
+		TransactionClaim claim = claims.get(groupIdKey);
+		if (claim == null) {
+			claim = new TransactionClaim(groupIdKey);
+			claims.put(groupIdKey, claim);
+		}
+		return claim;
+	}
+
+	private List<Message<?>> claimMessages(String groupIdKey) {
+		MapSqlParameterSource parameters = new MapSqlParameterSource();
+		parameters.addValue("region", this.region);
+		parameters.addValue("group_key", groupIdKey);
+		parameters.addValue("max_rows", this.claimBatchSize);
+		List<Message<?>> messages = this.claimJdbcTemplate.query(getQuery(getClaimQuery()), parameters,
+				this.messageRowMapper);
+		if (logger.isDebugEnabled()) {
+			logger.debug(String.format("Claimed %d messages for group key '%s'.", messages.size(), groupIdKey));
+		}
+		return messages;
+	}
+
+	/**
+	 * Delete the messages with one batch statement.
+	 * @param groupIdKey String representation of message group (Channel) ID
+	 * @param messages the messages.
+	 * @return the messages that were deleted (others were deleted by another consumer).
+	 */
+	private List<Message<?>> deleteMessages(String groupIdKey, List<Message<?>> messages) {
+		List<Object[]> batchArgs = new ArrayList<Object[]>(messages.size());
+		for (Message<?> message : messages) {
+			batchArgs.add(new Object[] {getKey(message.getHeaders().getId()), groupIdKey, this.region});
+		}
+		int[] updated = this.jdbcTemplate.batchUpdate(getQuery(this.channelMessageStoreQueryProvider.getDeleteMessageQuery()),
+				batchArgs, new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR});
+		List<Message<?>> deleted = new ArrayList<Message<?>>(messages.size());
+		for (int i = 0; i < messages.size(); i++) {
+			Message<?> message = messages.get(i);
+			if (updated[i] > 0) {
+				deleted.add(message);
+			}
+			else if (updated[i] == Statement.SUCCESS_NO_INFO) {
+				// the driver doesn't report whether this consumer deleted the message
+				if (deleteMessage(groupIdKey, message)) {
+					deleted.add(message);
+				}
+			}
+			else if (logger.isWarnEnabled()) {
+				logger.warn(String.format("Message with id '%s' was not deleted.", message.getHeaders().getId()));
+			}
+		}
+		return deleted;
+	}
+
 	private boolean doRemoveMessageFromGroup(Object groupId, Message<?> messageToRemove) {
+		return deleteMessage(getKey(groupId), messageToRemove);
+	}
+
+	private boolean deleteMessage(String groupIdKey, Message<?> messageToRemove) {
 		final UUID id = messageToRemove.getHeaders().getId();
 
 		int updated = jdbcTemplate.update(getQuery(channelMessageStoreQueryProvider.getDeleteMessageQuery()),
-				new Object[] {getKey(id), getKey(groupId), region}, new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR});
+				new Object[] {getKey(id), groupIdKey, region}, new int[] {Types.VARCHAR, Types.VARCHAR, Types.VARCHAR});
 
 		boolean result = updated != 0;
 		if (result) {
@@ -665,4 +880,36 @@ public class JdbcChannelMessageStore implements PriorityCapableChannelMessageSto
 		return this.idCache.size();
 	}
 
+	/**
+	 * Messages claimed within a transaction; each message is deleted before it is polled,
+	 * and skipped if it was deleted by a competing consumer.
+	 */
+	private final class TransactionClaim {
+
+		private final String groupIdKey;
+
+		private final Queue<Message<?>> claimed = new LinkedList<Message<?>>();
+
+		private TransactionClaim(String groupIdKey) {
+			this.groupIdKey = groupIdKey;
+		}
+
+		private Message<?> poll() {
+			while (true) {
+				Message<?> message = this.claimed.poll();
+				if (message == null) {
+					this.claimed.addAll(claimMessages(this.groupIdKey));
+					message = this.claimed.poll();
+					if (message == null) {
+						return null;
+					}
+				}
+				if (deleteMessage(this.groupIdKey, message)) {
+					return message;
+				}
+			}
+		}
+
+	}
+
 }
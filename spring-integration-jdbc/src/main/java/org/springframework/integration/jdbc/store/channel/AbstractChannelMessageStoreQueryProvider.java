@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -18,7 +18,7 @@ package org.springframework.integration.jdbc.store.channel;
  * @author Artem Bilan
  * @since 2.2
  */
-public abstract class AbstractChannelMessageStoreQueryProvider implements ChannelMessageStoreQueryProvider {
+public abstract class AbstractChannelMessageStoreQueryProvider implements ClaimingChannelMessageStoreQueryProvider {
 
 	public String getCountAllMessagesInGroupQuery() {
 		return "SELECT COUNT(MESSAGE_ID) from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=?";
@@ -45,4 +45,20 @@ public abstract class AbstractChannelMessageStoreQueryProvider implements Channe
 		return "DELETE from %PREFIX%CHANNEL_MESSAGE where GROUP_KEY=? and REGION=?";
 	}
 
+	/**
+	 * Batch claiming is not supported by default.
+	 * @return null.
+	 */
+	public String getClaimFromGroupQuery() {
+		return null;
+	}
+
+	/**
+	 * Batch claiming is not supported by default.
+	 * @return null.
+	 */
+	public String getPriorityClaimFromGroupQuery() {
+		return null;
+	}
+
 }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+package org.springframework.integration.jdbc.store.channel;
+
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+
+
+/**
+ * A {@link ChannelMessageStoreQueryProvider} that can also provide the queries used by
+ * the {@link JdbcChannelMessageStore} to claim several messages with one statement
+ * (see {@link JdbcChannelMessageStore#setClaimBatchSize(int)}). With other providers,
+ * the store polls one message at a time.
+ *
+ * @since 4.2
+ */
+public interface ClaimingChannelMessageStoreQueryProvider extends ChannelMessageStoreQueryProvider {
+
+	/**
+	 * Get the query used to claim up to {@code :max_rows} of the oldest messages for a
+	 * channel in one statement, skipping (where supported) rows locked by other
+	 * transactions.
+	 *
+	 * @return Sql Query, or {@code null} if batch claiming is not supported
+	 */
+	String getClaimFromGroupQuery();
+
+	/**
+	 * Get the query used to claim up to {@code :max_rows} of the oldest messages by
+	 * priority for a channel in one statement, skipping (where supported) rows locked by
+	 * other transactions.
+	 *
+	 * @return Sql Query, or {@code null} if batch claiming is not supported
+	 */
+	String getPriorityClaimFromGroupQuery();
+
+}
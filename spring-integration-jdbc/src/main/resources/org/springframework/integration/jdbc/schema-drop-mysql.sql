@@ -4,3 +4,6 @@ DROP TABLE IF EXISTS INT_MESSAGE ;
 DROP TABLE IF EXISTS INT_MESSAGE_GROUP ;
 DROP TABLE IF EXISTS INT_GROUP_TO_MESSAGE ;
 DROP INDEX IF EXISTS INT_MESSAGE_IX1 ;
+DROP INDEX IF EXISTS INT_MESSAGE_GROUP_IX1 ;
+DROP TABLE IF EXISTS INT_LOCK ;
+DROP TABLE IF EXISTS INT_METADATA_STORE ;
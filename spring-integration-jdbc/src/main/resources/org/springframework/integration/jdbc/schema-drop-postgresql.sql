@@ -4,3 +4,6 @@ DROP TABLE  INT_MESSAGE ;
 DROP TABLE  INT_MESSAGE_GROUP ;
 DROP TABLE  INT_GROUP_TO_MESSAGE ;
 DROP INDEX  INT_MESSAGE_IX1 ;
+DROP INDEX  INT_MESSAGE_GROUP_IX1 ;
+DROP TABLE  INT_LOCK ;
+DROP TABLE  INT_METADATA_STORE ;
@@ -26,4 +26,21 @@ CREATE TABLE INT_MESSAGE_GROUP  (
 	CREATED_DATE DATETIME NOT NULL,
 	UPDATED_DATE DATETIME DEFAULT NULL,
 	constraint MESSAGE_GROUP_PK primary key (GROUP_KEY, REGION)
+) ENGINE=InnoDB;
+
+CREATE INDEX INT_MESSAGE_GROUP_IX1 ON INT_MESSAGE_GROUP (REGION, CREATED_DATE);
+
+CREATE TABLE INT_LOCK  (
+	LOCK_KEY CHAR(36),
+	REGION VARCHAR(100),
+	CLIENT_ID VARCHAR(36),
+	CREATED_DATE DATETIME NOT NULL,
+	constraint LOCK_PK primary key (LOCK_KEY, REGION)
+) ENGINE=InnoDB;
+
+CREATE TABLE INT_METADATA_STORE  (
+	METADATA_KEY CHAR(36),
+	METADATA_VALUE VARCHAR(4000),
+	REGION VARCHAR(100),
+	constraint METADATA_STORE_PK primary key (METADATA_KEY, REGION)
 ) ENGINE=InnoDB;
\ No newline at end of file
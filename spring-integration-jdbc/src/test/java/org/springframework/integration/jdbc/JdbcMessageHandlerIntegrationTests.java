@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2011 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,6 +17,8 @@
 package org.springframework.integration.jdbc;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Map;
 
@@ -24,13 +26,22 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.context.IntegrationContextUtils;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessagingException;
 import org.springframework.messaging.support.GenericMessage;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author Dave Syer
@@ -100,4 +111,128 @@ public class JdbcMessageHandlerIntegrationTests {
 		assertEquals("Wrong name", "foo", map.get("NAME"));
 	}
 
+	@Test
+	public void testBatchInsert() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (:headers[idAsString], 0, :payload)");
+		handler.setBatchSize(3);
+		handler.afterPropertiesSet();
+		for (int i = 0; i < 4; i++) {
+			handler.handleMessage(MessageBuilder.withPayload("foo" + i).setHeader("idAsString", "" + i).build());
+			assertEquals(i < 2 ? 0 : 3, rowCount());
+		}
+		handler.destroy();
+		assertEquals(4, rowCount());
+		handler.handleMessage(MessageBuilder.withPayload("foo4").setHeader("idAsString", "4").build());
+		assertEquals(5, rowCount());
+	}
+
+	@Test
+	public void testBatchMaxBytes() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (1, 0, :payload)");
+		handler.setBatchSize(100);
+		handler.setBatchMaxBytes(10);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("12345"));
+		assertEquals(0, rowCount());
+		handler.handleMessage(new GenericMessage<String>("67890"));
+		assertEquals(2, rowCount());
+		handler.destroy();
+	}
+
+	@Test
+	public void testBatchMaxBytesCountsEncodedBytes() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (1, 0, :payload)");
+		handler.setBatchSize(100);
+		handler.setBatchMaxBytes(10);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("\u00e9\u00e9\u00e9\u00e9"));
+		assertEquals(0, rowCount());
+		handler.handleMessage(new GenericMessage<String>("\u00e9"));
+		assertEquals(2, rowCount());
+		handler.destroy();
+	}
+
+	@Test
+	public void testBatchNotPartOfCallerTransaction() throws Exception {
+		final JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (:headers[idAsString], 0, :payload)");
+		handler.setBatchSize(2);
+		handler.afterPropertiesSet();
+		TransactionTemplate transactionTemplate =
+				new TransactionTemplate(new DataSourceTransactionManager(this.embeddedDatabase));
+		transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+
+			@Override
+			protected void doInTransactionWithoutResult(TransactionStatus status) {
+				for (int i = 0; i < 2; i++) {
+					handler.handleMessage(MessageBuilder.withPayload("foo" + i).setHeader("idAsString", "" + i)
+							.build());
+				}
+				// with HSQLDB's table locks, an earlier insert would block the batch
+				jdbcTemplate.update("insert into foos (id, status, name) values ('x', 0, 'caller')");
+				status.setRollbackOnly();
+			}
+
+		});
+		assertEquals(2, rowCount());
+		assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FOOS WHERE NAME='caller'", Integer.class)
+				.intValue());
+		handler.destroy();
+	}
+
+	@Test
+	public void testBatchTimeout() throws Exception {
+		ThreadPoolTaskScheduler taskScheduler = new ThreadPoolTaskScheduler();
+		taskScheduler.afterPropertiesSet();
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (1, 0, :payload)");
+		handler.setBatchSize(100);
+		handler.setBatchTimeout(50);
+		DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+		beanFactory.registerSingleton(IntegrationContextUtils.TASK_SCHEDULER_BEAN_NAME, taskScheduler);
+		handler.setBeanFactory(beanFactory);
+		handler.afterPropertiesSet();
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		int n = 0;
+		while (n++ < 100 && rowCount() == 0) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, rowCount());
+		handler.destroy();
+		taskScheduler.destroy();
+	}
+
+	@Test
+	public void testBatchFailureSentToErrorChannel() throws Exception {
+		JdbcMessageHandler handler = new JdbcMessageHandler(jdbcTemplate,
+				"insert into foos (id, status, name) values (1, 0, :payload)");
+		handler.setBatchSize(3);
+		QueueChannel errorChannel = new QueueChannel();
+		handler.setErrorChannel(errorChannel);
+		handler.afterPropertiesSet();
+		Message<String> tooLong = new GenericMessage<String>("this name is too long for the column");
+		handler.handleMessage(new GenericMessage<String>("foo"));
+		handler.handleMessage(tooLong);
+		handler.handleMessage(new GenericMessage<String>("bar"));
+		Message<?> error = errorChannel.receive(0);
+		assertTrue(error.getPayload() instanceof MessagingException);
+		assertEquals(tooLong, ((MessagingException) error.getPayload()).getFailedMessage());
+		int failed = 1;
+		while (errorChannel.receive(0) != null) {
+			failed++;
+		}
+		assertEquals(3, rowCount() + failed);
+		assertEquals(1, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FOOS WHERE NAME='foo'", Integer.class)
+				.intValue());
+		assertNull(errorChannel.receive(0));
+		handler.destroy();
+	}
+
+	private int rowCount() {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FOOS", Integer.class);
+	}
+
 }
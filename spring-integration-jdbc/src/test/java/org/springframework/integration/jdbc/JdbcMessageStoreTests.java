@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -106,6 +106,26 @@ public class JdbcMessageStoreTests {
 		assertNotNull(result.getHeaders().get(JdbcMessageStore.CREATED_DATE_KEY));
 	}
 
+	@Test
+	@Transactional
+	public void testAddAndGetWithManyHeaders() throws Exception {
+		MessageBuilder<String> builder = MessageBuilder.withPayload("foo");
+		for (int i = 0; i < 12; i++) {
+			builder.setHeader("h" + i, "v" + i);
+		}
+		Message<String> message = MessageBuilder.fromMessage(builder.build())
+				.setHeader("foo", "bar")
+				.build();
+		Message<String> saved = messageStore.addMessage(message);
+		assertEquals(message.getHeaders().getId(), saved.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), saved.getHeaders().getTimestamp());
+		Message<?> result = messageStore.getMessage(message.getHeaders().getId());
+		assertNotNull(result);
+		assertEquals(message.getHeaders().getId(), result.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), result.getHeaders().getTimestamp());
+		assertEquals("v11", result.getHeaders().get("h11"));
+	}
+
 	@Test
 	@Transactional
 	public void testWithMessageHistory() throws Exception{
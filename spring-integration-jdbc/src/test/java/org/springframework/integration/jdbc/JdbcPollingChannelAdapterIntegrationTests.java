@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -34,13 +34,20 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.springframework.beans.factory.BeanFactory;
+import org.springframework.integration.metadata.MetadataStore;
+import org.springframework.integration.metadata.SimpleMetadataStore;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
 import org.springframework.messaging.Message;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 /**
  * @author Jonas Partner
@@ -302,6 +309,126 @@ public class JdbcPollingChannelAdapterIntegrationTests {
 
 	}
 
+	@Test
+	public void testKeysetPollOneRowPerMessage() {
+		for (int i = 1; i <= 5; i++) {
+			this.jdbcTemplate.update("insert into item values(?, 0)", i);
+		}
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		JdbcPollingChannelAdapter adapter = keysetAdapter(metadataStore);
+		adapter.setMaxRowsPerPoll(2);
+		adapter.afterPropertiesSet();
+		for (int i = 1; i <= 3; i++) {
+			assertEquals(i, ((Item) adapter.receive().getPayload()).getId());
+		}
+		assertEquals("3", metadataStore.get("items"));
+
+		adapter = keysetAdapter(metadataStore);
+		adapter.afterPropertiesSet();
+		assertEquals(4, ((Item) adapter.receive().getPayload()).getId());
+		assertEquals(5, ((Item) adapter.receive().getPayload()).getId());
+		assertNull(adapter.receive());
+		this.jdbcTemplate.update("insert into item values(6, 0)");
+		assertEquals(6, ((Item) adapter.receive().getPayload()).getId());
+		assertEquals("6", metadataStore.get("items"));
+		assertEquals(6, this.jdbcTemplate.queryForObject("select count(*) from item where status = 0", Integer.class)
+				.intValue());
+	}
+
+	@Test
+	public void testKeysetPollChunks() {
+		for (int i = 1; i <= 5; i++) {
+			this.jdbcTemplate.update("insert into item values(?, ?)", i, i % 2);
+		}
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(this.embeddedDatabase,
+				"select * from item where id > :watermark and status = :status order by id");
+		adapter.setSelectSqlParameterSource(new MapSqlParameterSource("status", 1));
+		adapter.setWatermarkColumn("id");
+		adapter.setWatermarkKey("items");
+		adapter.setInitialWatermark(0);
+		adapter.setChunkSize(2);
+		adapter.setFetchSize(2);
+		adapter.afterPropertiesSet();
+		List<?> payload = (List<?>) adapter.receive().getPayload();
+		assertEquals(2, payload.size());
+		assertEquals(1, ((Map<?, ?>) payload.get(0)).get("ID"));
+		assertEquals(3, ((Map<?, ?>) payload.get(1)).get("ID"));
+		payload = (List<?>) adapter.receive().getPayload();
+		assertEquals(1, payload.size());
+		assertEquals(5, ((Map<?, ?>) payload.get(0)).get("ID"));
+		assertNull(adapter.receive());
+	}
+
+	@Test
+	public void testKeysetPollWithinTransaction() {
+		for (int i = 1; i <= 3; i++) {
+			this.jdbcTemplate.update("insert into item values(?, ?)", i, 0);
+		}
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		final JdbcPollingChannelAdapter adapter = keysetAdapter(metadataStore);
+		adapter.afterPropertiesSet();
+		TransactionTemplate transactionTemplate =
+				new TransactionTemplate(new DataSourceTransactionManager(this.embeddedDatabase));
+		assertEquals(1, receiveInTransaction(transactionTemplate, adapter, false).getId());
+		assertEquals("1", metadataStore.get("items"));
+		assertEquals(2, receiveInTransaction(transactionTemplate, adapter, true).getId());
+		assertEquals("1", metadataStore.get("items"));
+		assertEquals(2, ((Item) adapter.receive().getPayload()).getId());
+		assertEquals("2", metadataStore.get("items"));
+		assertEquals(3, receiveInTransaction(transactionTemplate, adapter, false).getId());
+		assertEquals("3", metadataStore.get("items"));
+		assertNull(adapter.receive());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testKeysetInitialWatermarkRequired() throws Exception {
+		JdbcPollingChannelAdapter adapter = keysetAdapter(new SimpleMetadataStore());
+		adapter.setInitialWatermark(null);
+		adapter.afterPropertiesSet();
+	}
+
+	@Test
+	public void testKeysetStoredWatermarkWithoutInitialWatermark() throws Exception {
+		this.jdbcTemplate.update("insert into item values(?, ?)", 1, 0);
+		this.jdbcTemplate.update("insert into item values(?, ?)", 2, 0);
+		SimpleMetadataStore metadataStore = new SimpleMetadataStore();
+		metadataStore.put("items", "1");
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(this.embeddedDatabase,
+				"select * from item where id > cast(:watermark as int) order by id");
+		adapter.setRowMapper(new ItemRowMapper());
+		adapter.setWatermarkColumn("id");
+		adapter.setWatermarkKey("items");
+		adapter.setMetadataStore(metadataStore);
+		adapter.afterPropertiesSet();
+		assertEquals(2, ((Item) adapter.receive().getPayload()).getId());
+	}
+
+	private Item receiveInTransaction(TransactionTemplate transactionTemplate, final JdbcPollingChannelAdapter adapter,
+			final boolean rollback) {
+		return transactionTemplate.execute(new TransactionCallback<Item>() {
+
+			@Override
+			public Item doInTransaction(TransactionStatus status) {
+				if (rollback) {
+					status.setRollbackOnly();
+				}
+				return (Item) adapter.receive().getPayload();
+			}
+
+		});
+	}
+
+	private JdbcPollingChannelAdapter keysetAdapter(MetadataStore metadataStore) {
+		JdbcPollingChannelAdapter adapter = new JdbcPollingChannelAdapter(this.embeddedDatabase,
+				"select * from item where id > :watermark order by id");
+		adapter.setRowMapper(new ItemRowMapper());
+		adapter.setWatermarkColumn("id");
+		adapter.setWatermarkKey("items");
+		adapter.setInitialWatermark(0);
+		adapter.setMetadataStore(metadataStore);
+		return adapter;
+	}
+
 	private static class Item {
 
 		private int id;
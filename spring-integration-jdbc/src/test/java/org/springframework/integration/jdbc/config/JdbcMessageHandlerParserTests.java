@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -14,6 +14,7 @@
 package org.springframework.integration.jdbc.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Collections;
@@ -131,6 +132,20 @@ public class JdbcMessageHandlerParserTests {
 		assertEquals("Wrong id", "foo", map.get("name"));
 	}
 
+	@Test
+	public void testBatchOutboundChannelAdapter() {
+		setUp("handlingBatchJdbcOutboundChannelAdapterTest.xml", getClass());
+		JdbcMessageHandler handler = context.getBean(JdbcMessageHandler.class);
+		assertEquals(2, TestUtils.getPropertyValue(handler, "batchSize"));
+		assertEquals(1000L, TestUtils.getPropertyValue(handler, "batchMaxBytes"));
+		assertEquals(60000L, TestUtils.getPropertyValue(handler, "batchTimeout"));
+		assertSame(context.getBean("batchErrors"), TestUtils.getPropertyValue(handler, "errorChannel"));
+		channel.send(MessageBuilder.withPayload("foo").setHeader("business.key", "FOO").build());
+		assertEquals(0, this.jdbcTemplate.queryForObject("SELECT COUNT(*) from FOOS", Integer.class).intValue());
+		channel.send(MessageBuilder.withPayload("bar").setHeader("business.key", "BAR").build());
+		assertEquals(2, this.jdbcTemplate.queryForObject("SELECT COUNT(*) from FOOS", Integer.class).intValue());
+	}
+
 	@After
 	public void tearDown(){
 		if(context != null){
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2015 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -36,6 +36,7 @@ import org.springframework.context.support.ClassPathXmlApplicationContext;
 import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.endpoint.SourcePollingChannelAdapter;
 import org.springframework.integration.history.MessageHistory;
+import org.springframework.integration.metadata.MetadataStore;
 import org.springframework.integration.test.util.TestUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.AbstractSqlParameterSource;
@@ -175,6 +176,25 @@ public class JdbcPollingChannelAdapterParserTests {
 		}
 	}
 
+	@Test
+	public void testWatermarkInboundChannelAdapter() {
+		setUp("pollingWithWatermarkJdbcInboundChannelAdapterTest.xml", getClass());
+		jdbcTemplate.update("insert into item values(1,'',2)");
+		jdbcTemplate.update("insert into item values(2,'',2)");
+		jdbcTemplate.update("insert into item values(3,'',2)");
+		Message<?> message = messagingTemplate.receive();
+		assertNotNull(message);
+		assertEquals(2, ((List<?>) message.getPayload()).size());
+		message = messagingTemplate.receive();
+		assertNotNull(message);
+		assertEquals(1, ((List<?>) message.getPayload()).size());
+		assertEquals(3, ((Map<?, ?>) ((List<?>) message.getPayload()).get(0)).get("ID"));
+		assertEquals("3", appCtx.getBean(MetadataStore.class).get("items"));
+		assertNull(messagingTemplate.receive());
+		assertEquals(3, jdbcTemplate.queryForObject("select count(*) from item where status = 2", Integer.class)
+				.intValue());
+	}
+
 	@Test
 	public void testAutoChannel() {
 		setUp("autoChannelJdbcPollingChannelAdapterParserTests-context.xml", getClass());
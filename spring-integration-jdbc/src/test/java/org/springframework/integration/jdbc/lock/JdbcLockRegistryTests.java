@@ -0,0 +1,333 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.lock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import org.hamcrest.Matchers;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.util.StopWatch;
+
+/**
+ * @since 4.2
+ *
+ */
+public class JdbcLockRegistryTests {
+
+	private EmbeddedDatabase dataSource;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private final List<JdbcLockRegistry> registries = new ArrayList<JdbcLockRegistry>();
+
+	@Before
+	public void setUp() {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("classpath:/org/springframework/integration/jdbc/schema-h2.sql")
+				.build();
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+	}
+
+	@After
+	public void tearDown() {
+		for (JdbcLockRegistry registry : this.registries) {
+			registry.destroy();
+		}
+		this.dataSource.shutdown();
+	}
+
+	@Test
+	public void testLockUnlock() {
+		JdbcLockRegistry registry = registry();
+		Lock lock = registry.obtain("foo");
+		assertSame(lock, registry.obtain("foo"));
+		lock.lock();
+		assertEquals(registry.getClientId(), this.jdbcTemplate.queryForObject(
+				"SELECT CLIENT_ID FROM INT_LOCK WHERE LOCK_KEY=?", String.class, UUIDConverter.getUUID("foo").toString()));
+		lock.unlock();
+		assertEquals(0, rowCount());
+	}
+
+	@Test
+	public void testReentrant() {
+		JdbcLockRegistry registry = registry();
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		assertTrue(lock.tryLock());
+		lock.unlock();
+		assertEquals(1, rowCount());
+		lock.unlock();
+		assertEquals(0, rowCount());
+		try {
+			lock.unlock();
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), Matchers.containsString("not held"));
+		}
+	}
+
+	@Test
+	public void testTwoClients() throws Exception {
+		JdbcLockRegistry registry1 = registry();
+		JdbcLockRegistry registry2 = registry();
+		assertNotEquals(registry1.getClientId(), registry2.getClientId());
+		Lock lock1 = registry1.obtain("foo");
+		Lock lock2 = registry2.obtain("foo");
+		lock1.lockInterruptibly();
+		assertFalse(lock2.tryLock());
+		assertFalse(lock2.tryLock(200, TimeUnit.MILLISECONDS));
+		assertTrue(registry2.obtain("bar").tryLock());
+		registry2.obtain("bar").unlock();
+		lock1.unlock();
+		assertTrue(lock2.tryLock());
+		lock2.unlock();
+	}
+
+	@Test
+	public void testExpiredLeaseAcquired() {
+		this.jdbcTemplate.update("INSERT INTO INT_LOCK (REGION, LOCK_KEY, CLIENT_ID, CREATED_DATE) VALUES (?, ?, ?, ?)",
+				"DEFAULT", UUIDConverter.getUUID("foo").toString(), "crashed",
+				new Date(System.currentTimeMillis() - 20000));
+		JdbcLockRegistry registry = registry();
+		Lock lock = registry.obtain("foo");
+		assertTrue(lock.tryLock());
+		lock.unlock();
+	}
+
+	@Test
+	public void testLeaseRenewed() throws Exception {
+		JdbcLockRegistry registry1 = registry();
+		registry1.setTimeToLive(300);
+		JdbcLockRegistry registry2 = registry();
+		registry2.setTimeToLive(300);
+		Lock lock1 = registry1.obtain("foo");
+		lock1.lock();
+		Thread.sleep(1000);
+		assertFalse(registry2.obtain("foo").tryLock());
+		lock1.unlock();
+	}
+
+	@Test
+	public void testLeaseLost() throws Exception {
+		JdbcLockRegistry registry = registry();
+		registry.setTimeToLive(300);
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		this.jdbcTemplate.update("DELETE FROM INT_LOCK");
+		try {
+			lock.unlock();
+			fail("Expected IllegalStateException");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), Matchers.containsString("expiration"));
+		}
+		assertTrue(lock.tryLock());
+		lock.unlock();
+	}
+
+	@Test
+	public void testLeaseCaching() throws Exception {
+		JdbcLockRegistry registry = registry();
+		registry.setLeaseCaching(true);
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		lock.unlock();
+		assertEquals(1, rowCount());
+		Date leaseDate = this.jdbcTemplate.queryForObject("SELECT CREATED_DATE FROM INT_LOCK", Date.class);
+		Thread.sleep(50);
+		lock.lock();
+		lock.unlock();
+		assertEquals(leaseDate, this.jdbcTemplate.queryForObject("SELECT CREATED_DATE FROM INT_LOCK", Date.class));
+		assertFalse(registry().obtain("foo").tryLock());
+	}
+
+	@Test
+	public void testHeldLockSurvivesGc() throws Exception {
+		final JdbcLockRegistry registry = registry();
+		registry.setTimeToLive(300);
+		registry.obtain("foo").lock();
+		System.gc();
+		Thread.sleep(1000);
+		ExecutorService exec = Executors.newSingleThreadExecutor();
+		assertFalse(exec.submit(new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				return registry.obtain("foo").tryLock();
+			}
+
+		}).get());
+		exec.shutdown();
+		assertFalse(registry().obtain("foo").tryLock());
+		registry.obtain("foo").unlock();
+		assertEquals(0, rowCount());
+	}
+
+	@Test
+	public void testOwnRowNotHeldByLockIsNotAcquired() {
+		JdbcLockRegistry registry = registry();
+		this.jdbcTemplate.update("INSERT INTO INT_LOCK (REGION, LOCK_KEY, CLIENT_ID, CREATED_DATE) VALUES (?, ?, ?, ?)",
+				"DEFAULT", UUIDConverter.getUUID("foo").toString(), registry.getClientId(), new Date());
+		assertFalse(registry.obtain("foo").tryLock());
+	}
+
+	@Test
+	public void testUnusedLocksForgotten() throws Exception {
+		JdbcLockRegistry registry = registry();
+		JdbcLockRegistry other = registry();
+		Lock held = other.obtain("held");
+		held.lock();
+		for (int i = 0; i < 1000; i++) {
+			Lock lock = registry.obtain("key" + i);
+			lock.lock();
+			lock.unlock();
+		}
+		assertFalse(registry.obtain("held").tryLock());
+		assertEquals(0, TestUtils.getPropertyValue(registry, "locks", Map.class).size());
+		assertEquals(0, TestUtils.getPropertyValue(registry, "leases", Set.class).size());
+		held.unlock();
+	}
+
+	@Test
+	public void testExpiredCachedLeaseForgotten() throws Exception {
+		JdbcLockRegistry registry = registry();
+		registry.setLeaseCaching(true);
+		registry.setTimeToLive(300);
+		Lock lock = registry.obtain("foo");
+		lock.lock();
+		lock.unlock();
+		assertSame(lock, registry.obtain("foo"));
+		Thread.sleep(1000);
+		assertEquals(0, TestUtils.getPropertyValue(registry, "locks", Map.class).size());
+		assertEquals(0, TestUtils.getPropertyValue(registry, "leases", Set.class).size());
+		JdbcLockRegistry other = registry();
+		other.setTimeToLive(300);
+		Lock otherLock = other.obtain("foo");
+		assertTrue(otherLock.tryLock());
+		otherLock.unlock();
+	}
+
+	@Test
+	public void testContention() throws Exception {
+		contention(2, 4, 50, false);
+		contention(2, 4, 50, true);
+	}
+
+	@Test
+	@Ignore
+	public void benchmarkContention() throws Exception {
+		for (int i = 0; i < 2; i++) {
+			for (boolean leaseCaching : new boolean[] { false, true }) {
+				long elapsed = contention(1, 1, 5000, leaseCaching);
+				System.out.println("1 node(s) x 1 thread(s), leaseCaching=" + leaseCaching
+						+ ": " + (5000 * 1000L / Math.max(1, elapsed)) + " locks/s");
+				elapsed = contention(2, 4, 500, leaseCaching);
+				System.out.println("2 node(s) x 4 thread(s), leaseCaching=" + leaseCaching
+						+ ": " + (8 * 500 * 1000L / Math.max(1, elapsed)) + " locks/s");
+			}
+		}
+	}
+
+	/**
+	 * Each thread increments a counter (without synchronization) in a loop under the
+	 * same lock; if the lock is not exclusive, updates are lost.
+	 * @return the elapsed time in milliseconds.
+	 */
+	private long contention(int nodes, int threadsPerNode, final int iterations, boolean leaseCaching)
+			throws Exception {
+		final AtomicInteger counter = new AtomicInteger();
+		int threads = nodes * threadsPerNode;
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		final CountDownLatch latch = new CountDownLatch(threads);
+		StopWatch watch = new StopWatch();
+		watch.start();
+		for (int i = 0; i < nodes; i++) {
+			JdbcLockRegistry registry = registry();
+			registry.setLeaseCaching(leaseCaching);
+			registry.setTimeToLive(1000);
+			for (int j = 0; j < threadsPerNode; j++) {
+				final Lock lock = registry.obtain("foo");
+				exec.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						for (int k = 0; k < iterations; k++) {
+							lock.lock();
+							try {
+								int value = counter.get();
+								Thread.yield();
+								counter.set(value + 1);
+							}
+							finally {
+								lock.unlock();
+							}
+						}
+						latch.countDown();
+					}
+
+				});
+			}
+		}
+		assertTrue(latch.await(60, TimeUnit.SECONDS));
+		watch.stop();
+		exec.shutdown();
+		assertEquals(threads * iterations, counter.get());
+		return watch.getTotalTimeMillis();
+	}
+
+	private JdbcLockRegistry registry() {
+		JdbcLockRegistry registry = new JdbcLockRegistry(this.dataSource);
+		this.registries.add(registry);
+		return registry;
+	}
+
+	private int rowCount() {
+		return this.jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INT_LOCK", Integer.class);
+	}
+
+}
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.metadata;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.integration.handler.MessageProcessor;
+import org.springframework.integration.selector.MetadataStoreSelector;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.messaging.Message;
+import org.springframework.util.StopWatch;
+
+/**
+ * @since 4.2
+ *
+ */
+public class JdbcMetadataStoreTests {
+
+	private EmbeddedDatabase dataSource;
+
+	@After
+	public void tearDown() {
+		if (this.dataSource != null) {
+			this.dataSource.shutdown();
+		}
+	}
+
+	@Test
+	public void testPutGetRemove() {
+		JdbcMetadataStore store = h2Store();
+		assertNull(store.get("foo"));
+		store.put("foo", "bar");
+		assertEquals("bar", store.get("foo"));
+		store.put("foo", "baz");
+		assertEquals("baz", store.get("foo"));
+		assertEquals("baz", store.remove("foo"));
+		assertNull(store.get("foo"));
+		assertNull(store.remove("foo"));
+	}
+
+	@Test
+	public void testPutIfAbsentAndReplace() {
+		JdbcMetadataStore store = h2Store();
+		assertNull(store.putIfAbsent("foo", "bar"));
+		assertEquals("bar", store.putIfAbsent("foo", "baz"));
+		assertFalse(store.replace("foo", "baz", "qux"));
+		assertTrue(store.replace("foo", "bar", "qux"));
+		assertEquals("qux", store.get("foo"));
+	}
+
+	@Test
+	public void testRegions() {
+		JdbcMetadataStore store1 = h2Store();
+		JdbcMetadataStore store2 = new JdbcMetadataStore(this.dataSource);
+		store2.setRegion("other");
+		store2.afterPropertiesSet();
+		store1.put("foo", "bar");
+		assertNull(store2.get("foo"));
+		assertNull(store2.putIfAbsent("foo", "baz"));
+		assertEquals("bar", store1.get("foo"));
+	}
+
+	@Test
+	public void testHsqlPutIfAbsent() {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.HSQL)
+				.addScript("classpath:/org/springframework/integration/jdbc/schema-hsqldb.sql")
+				.build();
+		JdbcMetadataStore store = new JdbcMetadataStore(this.dataSource);
+		store.setQueryProvider(new HsqlMetadataStoreQueryProvider());
+		store.afterPropertiesSet();
+		assertNull(store.putIfAbsent("foo", "bar"));
+		assertEquals("bar", store.putIfAbsent("foo", "baz"));
+		store.put("foo", "qux");
+		assertEquals("qux", store.get("foo"));
+	}
+
+	@Test
+	public void testCache() {
+		JdbcMetadataStore store = new JdbcMetadataStore(h2DataSource());
+		store.setCacheSize(10);
+		store.afterPropertiesSet();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+		assertNull(store.putIfAbsent("foo", "bar"));
+		jdbcTemplate.update("UPDATE INT_METADATA_STORE SET METADATA_VALUE='baz'");
+		assertEquals("bar", store.get("foo"));
+		assertEquals("bar", store.putIfAbsent("foo", "qux"));
+		assertFalse(store.replace("foo", "bar", "qux"));
+		assertEquals("baz", store.get("foo"));
+		assertTrue(store.replace("foo", "baz", "qux"));
+		jdbcTemplate.update("DELETE FROM INT_METADATA_STORE");
+		assertEquals("qux", store.get("foo"));
+		assertNull(store.remove("foo"));
+		assertNull(store.get("foo"));
+	}
+
+	@Test
+	public void testConcurrentPutIfAbsent() throws Exception {
+		concurrentPutIfAbsent(h2Store(), 8, 100, false);
+	}
+
+	@Test
+	public void testConcurrentBatchedPutIfAbsent() throws Exception {
+		JdbcMetadataStore store = h2Store();
+		store.setBatchSize(16);
+		concurrentPutIfAbsent(store, 8, 100, false);
+	}
+
+	@Test
+	public void testConcurrentBatchedPutIfAbsentHsql() throws Exception {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.HSQL)
+				.addScript("classpath:/org/springframework/integration/jdbc/schema-hsqldb.sql")
+				.build();
+		JdbcMetadataStore store = new JdbcMetadataStore(this.dataSource);
+		store.setQueryProvider(new HsqlMetadataStoreQueryProvider());
+		store.setBatchSize(16);
+		store.afterPropertiesSet();
+		concurrentPutIfAbsent(store, 8, 100, false);
+	}
+
+	@Test
+	public void testConcurrentBatchedPutIfAbsentSameValue() throws Exception {
+		JdbcMetadataStore store = h2Store();
+		store.setBatchSize(16);
+		concurrentPutIfAbsent(store, 8, 100, true);
+	}
+
+	/**
+	 * A merge (which does not fail for a duplicate key) reported as
+	 * {@link Statement#SUCCESS_NO_INFO}, as by some Oracle drivers.
+	 */
+	@Test
+	public void testConcurrentBatchedPutIfAbsentWithoutUpdateCounts() throws Exception {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.HSQL)
+				.addScript("classpath:/org/springframework/integration/jdbc/schema-hsqldb.sql")
+				.build();
+		JdbcMetadataStore store = new JdbcMetadataStore(this.dataSource);
+		store.setQueryProvider(new HsqlMetadataStoreQueryProvider());
+		store.setBatchSize(16);
+		store.afterPropertiesSet();
+		new DirectFieldAccessor(store).setPropertyValue("jdbcTemplate", new JdbcTemplate(this.dataSource) {
+
+			@Override
+			public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+				int[] counts = super.batchUpdate(sql, batchArgs);
+				Arrays.fill(counts, Statement.SUCCESS_NO_INFO);
+				return counts;
+			}
+
+		});
+		concurrentPutIfAbsent(store, 8, 100, true);
+	}
+
+	@Test
+	public void testSelector() {
+		JdbcMetadataStore store = h2Store();
+		store.setBatchSize(10);
+		MetadataStoreSelector selector = new MetadataStoreSelector(new MessageProcessor<String>() {
+
+			@Override
+			public String processMessage(Message<?> message) {
+				return (String) message.getPayload();
+			}
+
+		}, store);
+		assertTrue(selector.accept(MessageBuilder.withPayload("foo").build()));
+		assertFalse(selector.accept(MessageBuilder.withPayload("foo").build()));
+		assertTrue(selector.accept(MessageBuilder.withPayload("bar").build()));
+	}
+
+	@Test
+	@Ignore
+	public void benchmarkPutIfAbsent() throws Exception {
+		JdbcMetadataStore store = h2Store();
+		JdbcTemplate jdbcTemplate = new JdbcTemplate(this.dataSource);
+		for (int i = 0; i < 3; i++) {
+			for (int batchSize : new int[] { 1, 64 }) {
+				store.setBatchSize(batchSize);
+				putIfAbsentThroughput(store, 8, 5000);
+				jdbcTemplate.update("DELETE FROM INT_METADATA_STORE");
+			}
+		}
+	}
+
+	/**
+	 * Each thread calls putIfAbsent for its own (new) keys, as an idempotent receiver
+	 * does for messages that are not duplicates.
+	 */
+	private void putIfAbsentThroughput(final JdbcMetadataStore store, int threads, final int keys)
+			throws Exception {
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		StopWatch watch = new StopWatch();
+		watch.start();
+		for (int i = 0; i < threads; i++) {
+			final int thread = i;
+			futures.add(exec.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					for (int j = 0; j < keys; j++) {
+						assertNull(store.putIfAbsent("key" + thread + "." + j, "value"));
+					}
+				}
+
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		watch.stop();
+		exec.shutdown();
+		System.out.println(threads + " thread(s), batchSize=" + TestUtils.getPropertyValue(store, "batchSize") + ": "
+				+ (threads * keys * 1000L / Math.max(1, watch.getTotalTimeMillis())) + " putIfAbsent/s");
+	}
+
+	/**
+	 * Each thread calls putIfAbsent for the same keys (in a different order); exactly one
+	 * thread must win each key, and the other threads must see the winning value.
+	 */
+	private void concurrentPutIfAbsent(final JdbcMetadataStore store, int threads, final int keys,
+			final boolean sameValue) throws Exception {
+		ExecutorService exec = Executors.newFixedThreadPool(threads);
+		List<Future<List<String>>> futures = new ArrayList<Future<List<String>>>();
+		for (int i = 0; i < threads; i++) {
+			final int thread = i;
+			futures.add(exec.submit(new Callable<List<String>>() {
+
+				@Override
+				public List<String> call() throws Exception {
+					List<String> results = new ArrayList<String>();
+					for (int j = 0; j < keys; j++) {
+						int key = (j + thread * 7) % keys;
+						String value = sameValue ? "value" : "value" + thread;
+						String existing = store.putIfAbsent("key" + key, value);
+						results.add(key + ":" + (existing == null ? value : existing)
+								+ (existing == null ? ":won" : ""));
+					}
+					return results;
+				}
+
+			}));
+		}
+		String[] winners = new String[keys];
+		int wins = 0;
+		List<List<String>> allResults = new ArrayList<List<String>>();
+		for (Future<List<String>> future : futures) {
+			List<String> results = future.get();
+			allResults.add(results);
+			for (String result : results) {
+				String[] parts = result.split(":");
+				if (parts.length == 3) {
+					wins++;
+					winners[Integer.parseInt(parts[0])] = parts[1];
+				}
+			}
+		}
+		exec.shutdown();
+		assertEquals(keys, wins);
+		for (List<String> results : allResults) {
+			for (String result : results) {
+				String[] parts = result.split(":");
+				int key = Integer.parseInt(parts[0]);
+				assertEquals(winners[key], parts[1]);
+				assertEquals(winners[key], store.get("key" + key));
+			}
+		}
+	}
+
+	private JdbcMetadataStore h2Store() {
+		JdbcMetadataStore store = new JdbcMetadataStore(h2DataSource());
+		store.afterPropertiesSet();
+		return store;
+	}
+
+	private EmbeddedDatabase h2DataSource() {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.addScript("classpath:/org/springframework/integration/jdbc/schema-h2.sql")
+				.build();
+		return this.dataSource;
+	}
+
+}
@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.jdbc.store.channel;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.integration.jdbc.store.JdbcChannelMessageStore;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.util.UUIDConverter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.messaging.Message;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * @since 4.2
+ *
+ */
+public class JdbcChannelMessageStoreClaimTests {
+
+	private static final String GROUP = "claimTests";
+
+	private EmbeddedDatabase dataSource;
+
+	private JdbcChannelMessageStore messageStore;
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void setUp() throws Exception {
+		this.dataSource = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.HSQL)
+				.addScript("classpath:/org/springframework/integration/jdbc/store/channel/schema-hsql.sql")
+				.build();
+		this.jdbcTemplate = new JdbcTemplate(this.dataSource);
+		this.messageStore = new JdbcChannelMessageStore(this.dataSource);
+		this.messageStore.setChannelMessageStoreQueryProvider(new HsqlChannelMessageStoreQueryProvider());
+		this.messageStore.setClaimBatchSize(3);
+		this.messageStore.afterPropertiesSet();
+	}
+
+	@After
+	public void tearDown() {
+		this.dataSource.shutdown();
+	}
+
+	@Test
+	public void testClaimWithoutTransaction() {
+		for (int i = 0; i < 5; i++) {
+			this.messageStore.addMessageToGroup(GROUP, MessageBuilder.withPayload(i).build());
+		}
+		assertEquals(0, this.messageStore.pollMessageFromGroup(GROUP).getPayload());
+		assertEquals(2, rowCount());
+		assertEquals(4, this.messageStore.messageGroupSize(GROUP));
+		assertEquals(1, this.messageStore.pollMessageFromGroup(GROUP).getPayload());
+		assertEquals(2, this.messageStore.pollMessageFromGroup(GROUP).getPayload());
+		assertEquals(3, this.messageStore.pollMessageFromGroup(GROUP).getPayload());
+		assertEquals(0, rowCount());
+		assertEquals(4, this.messageStore.pollMessageFromGroup(GROUP).getPayload());
+		assertNull(this.messageStore.pollMessageFromGroup(GROUP));
+		assertEquals(0, this.messageStore.messageGroupSize(GROUP));
+	}
+
+	@Test
+	public void testClaimWithinTransaction() {
+		for (int i = 0; i < 5; i++) {
+			this.messageStore.addMessageToGroup(GROUP, MessageBuilder.withPayload(i).build());
+		}
+		TransactionTemplate transactionTemplate =
+				new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		List<Object> payloads = transactionTemplate.execute(new TransactionCallback<List<Object>>() {
+
+			@Override
+			public List<Object> doInTransaction(TransactionStatus status) {
+				List<Object> payloads = new ArrayList<Object>();
+				for (int i = 0; i < 4; i++) {
+					payloads.add(messageStore.pollMessageFromGroup(GROUP).getPayload());
+				}
+				return payloads;
+			}
+
+		});
+		assertEquals("[0, 1, 2, 3]", payloads.toString());
+		assertEquals(1, rowCount());
+
+		payloads = transactionTemplate.execute(new TransactionCallback<List<Object>>() {
+
+			@Override
+			public List<Object> doInTransaction(TransactionStatus status) {
+				List<Object> payloads = new ArrayList<Object>();
+				payloads.add(messageStore.pollMessageFromGroup(GROUP).getPayload());
+				status.setRollbackOnly();
+				return payloads;
+			}
+
+		});
+		assertEquals("[4]", payloads.toString());
+		assertEquals(1, rowCount());
+		Message<?> message = this.messageStore.pollMessageFromGroup(GROUP);
+		assertEquals(4, message.getPayload());
+		assertNull(this.messageStore.pollMessageFromGroup(GROUP));
+	}
+
+	@Test
+	public void testClaimedMessageDeletedByCompetingConsumerWithinTransaction() {
+		final List<Message<?>> messages = new ArrayList<Message<?>>();
+		for (int i = 0; i < 3; i++) {
+			Message<Integer> message = MessageBuilder.withPayload(i).build();
+			messages.add(message);
+			this.messageStore.addMessageToGroup(GROUP, message);
+		}
+		TransactionTemplate transactionTemplate =
+				new TransactionTemplate(new DataSourceTransactionManager(this.dataSource));
+		List<Object> payloads = transactionTemplate.execute(new TransactionCallback<List<Object>>() {
+
+			@Override
+			public List<Object> doInTransaction(TransactionStatus status) {
+				List<Object> payloads = new ArrayList<Object>();
+				payloads.add(messageStore.pollMessageFromGroup(GROUP).getPayload());
+				// another consumer claimed and deleted the next message
+				jdbcTemplate.update("DELETE FROM INT_CHANNEL_MESSAGE WHERE MESSAGE_ID = ?",
+						UUIDConverter.getUUID(messages.get(1).getHeaders().getId()).toString());
+				payloads.add(messageStore.pollMessageFromGroup(GROUP).getPayload());
+				payloads.add(messageStore.pollMessageFromGroup(GROUP));
+				return payloads;
+			}
+
+		});
+		assertEquals("[0, 2, null]", payloads.toString());
+		assertEquals(0, rowCount());
+	}
+
+	@Test
+	public void testIdCacheNotAllowed() throws Exception {
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(this.dataSource);
+		store.setChannelMessageStoreQueryProvider(new HsqlChannelMessageStoreQueryProvider());
+		store.setClaimBatchSize(3);
+		store.setUsingIdCache(true);
+		try {
+			store.afterPropertiesSet();
+			fail("IllegalStateException expected");
+		}
+		catch (IllegalStateException e) {
+			assertThat(e.getMessage(), containsString("usingIdCache"));
+		}
+	}
+
+	@Test
+	public void testProviderWithoutClaimQueriesPollsOneAtATime() throws Exception {
+		final ChannelMessageStoreQueryProvider delegate = new HsqlChannelMessageStoreQueryProvider();
+		ChannelMessageStoreQueryProvider queryProvider = (ChannelMessageStoreQueryProvider) Proxy.newProxyInstance(
+				getClass().getClassLoader(), new Class<?>[] { ChannelMessageStoreQueryProvider.class },
+				new InvocationHandler() {
+
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+						return method.invoke(delegate, args);
+					}
+
+				});
+		JdbcChannelMessageStore store = new JdbcChannelMessageStore(this.dataSource);
+		store.setChannelMessageStoreQueryProvider(queryProvider);
+		store.setClaimBatchSize(3);
+		store.afterPropertiesSet();
+		for (int i = 0; i < 3; i++) {
+			store.addMessageToGroup(GROUP, MessageBuilder.withPayload(i).build());
+		}
+		assertEquals(0, store.pollMessageFromGroup(GROUP).getPayload());
+		assertEquals(2, rowCount());
+		assertEquals(1, store.pollMessageFromGroup(GROUP).getPayload());
+		assertEquals(1, rowCount());
+	}
+
+	private int rowCount() {
+		return this.jdbcTemplate.queryForObject("SELECT COUNT(*) from INT_CHANNEL_MESSAGE", Integer.class);
+	}
+
+}
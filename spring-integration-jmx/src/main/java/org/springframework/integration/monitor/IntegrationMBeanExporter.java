@@ -59,6 +59,7 @@ import org.springframework.integration.history.TrackableComponent;
 import org.springframework.integration.router.MappingMessageRouterManagement;
 import org.springframework.integration.support.context.NamedComponent;
 import org.springframework.integration.support.management.ConfigurableMetricsAware;
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.IntegrationManagedResource;
 import org.springframework.integration.support.management.Statistics;
 import org.springframework.jmx.export.MBeanExporter;
@@ -618,6 +619,30 @@ public class IntegrationMBeanExporter extends MBeanExporter implements Applicati
 		return null;
 	}
 
+	public HistogramSnapshot getHandlerDurationHistogram(String name) {
+		if (handlersByName.containsKey(name)) {
+			return handlersByName.get(name).getDurationHistogram();
+		}
+		logger.debug("No handler found for (" + name + ")");
+		return null;
+	}
+
+	/**
+	 * Return the handler duration distribution since the previous call for this handler
+	 * (reset-on-read).
+	 * @param name the handler name.
+	 * @return the distribution, or null if the handler is not found or the metrics do not
+	 * maintain a histogram.
+	 * @since 4.2
+	 */
+	public HistogramSnapshot getHandlerDurationIntervalHistogram(String name) {
+		if (handlersByName.containsKey(name)) {
+			return handlersByName.get(name).getDurationIntervalHistogram();
+		}
+		logger.debug("No handler found for (" + name + ")");
+		return null;
+	}
+
 	public int getSourceMessageCount(String name) {
 		return (int) getSourceMessageCountLong(name);
 	}
@@ -661,6 +686,30 @@ public class IntegrationMBeanExporter extends MBeanExporter implements Applicati
 		return null;
 	}
 
+	public HistogramSnapshot getChannelSendDurationHistogram(String name) {
+		if (channelsByName.containsKey(name)) {
+			return channelsByName.get(name).getSendDurationHistogram();
+		}
+		logger.debug("No channel found for (" + name + ")");
+		return null;
+	}
+
+	/**
+	 * Return the channel send duration distribution since the previous call for this
+	 * channel (reset-on-read).
+	 * @param name the channel name.
+	 * @return the distribution, or null if the channel is not found or the metrics do not
+	 * maintain a histogram.
+	 * @since 4.2
+	 */
+	public HistogramSnapshot getChannelSendDurationIntervalHistogram(String name) {
+		if (channelsByName.containsKey(name)) {
+			return channelsByName.get(name).getSendDurationIntervalHistogram();
+		}
+		logger.debug("No channel found for (" + name + ")");
+		return null;
+	}
+
 	@SuppressWarnings("unchecked")
 	private void registerChannels() {
 		for (MessageChannelMetrics monitor : channels) {
@@ -20,6 +20,7 @@ import org.springframework.context.Lifecycle;
 import org.springframework.integration.handler.management.AbstractMessageHandlerMetrics;
 import org.springframework.integration.handler.management.MessageHandlerMetrics;
 import org.springframework.integration.support.management.ConfigurableMetricsAware;
+import org.springframework.integration.support.management.HistogramSnapshot;
 import org.springframework.integration.support.management.IntegrationManagedResource;
 import org.springframework.integration.support.management.Statistics;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
@@ -113,6 +114,36 @@ public class LifecycleMessageHandlerMetrics implements MessageHandlerMetrics, Li
 		return this.delegate.getDuration();
 	}
 
+	@Override
+	public double getP50Duration() {
+		return this.delegate.getP50Duration();
+	}
+
+	@Override
+	public double getP99Duration() {
+		return this.delegate.getP99Duration();
+	}
+
+	@Override
+	public double getP999Duration() {
+		return this.delegate.getP999Duration();
+	}
+
+	@Override
+	public double getDurationPercentile(double percentile) {
+		return this.delegate.getDurationPercentile(percentile);
+	}
+
+	@Override
+	public HistogramSnapshot getDurationHistogram() {
+		return this.delegate.getDurationHistogram();
+	}
+
+	@Override
+	public HistogramSnapshot getDurationIntervalHistogram() {
+		return this.delegate.getDurationIntervalHistogram();
+	}
+
 	@Override
 	public String getManagedName() {
 		return this.delegate.getManagedName();
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.monitor;
+
+import org.springframework.integration.channel.management.AbstractMessageChannelMetrics;
+import org.springframework.integration.channel.management.LockFreeMessageChannelMetrics;
+import org.springframework.integration.handler.management.AbstractMessageHandlerMetrics;
+import org.springframework.integration.handler.management.LockFreeMessageHandlerMetrics;
+
+/**
+ * A {@link MetricsFactory} creating metrics that neither lock nor box on the send/handle
+ * path; recommended when full statistics are enabled on highly concurrent flows.
+ *
+ * @since 4.2
+ *
+ */
+public class LockFreeMetricsFactory implements MetricsFactory {
+
+	@Override
+	public AbstractMessageChannelMetrics createChannelMetrics(String name) {
+		return new LockFreeMessageChannelMetrics(name);
+	}
+
+	@Override
+	public AbstractMessageHandlerMetrics createHandlerMetrics(String name) {
+		return new LockFreeMessageHandlerMetrics(name);
+	}
+
+}
@@ -105,7 +105,8 @@ public class MBeanAttributeFilterTests {
 		Map<String, Object> bean = (Map<String, Object>) payload
 				.get(domain + ":name=in,type=MessageChannel");
 
-		assertEquals(8, bean.size());
+		assertEquals(11, bean.size());
+		assertTrue(bean.containsKey("P99SendDuration"));
 		assertFalse(bean.containsKey("SendCount"));
 		assertFalse(bean.containsKey("SendErrorCount"));
 		assertFalse(bean.containsKey("SendCountLong"));
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.redis.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.integration.support.serializer.CompactMessageSerializer;
+import org.springframework.messaging.Message;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link RedisSerializer} for the message stores that writes messages using a
+ * {@link CompactMessageSerializer}; other values (such as message group metadata) are
+ * written using Java serialization. Values written by the default
+ * {@link JdkSerializationRedisSerializer} can still be read, so an existing store can
+ * be switched to this serializer using {@code setValueSerializer()}.
+ *
+ * @since 4.2
+ *
+ */
+public class CompactMessageRedisSerializer implements RedisSerializer<Object> {
+
+	private final JdkSerializationRedisSerializer jdkSerializer = new JdkSerializationRedisSerializer();
+
+	private final CompactMessageSerializer messageSerializer;
+
+	public CompactMessageRedisSerializer() {
+		this(new CompactMessageSerializer());
+	}
+
+	/**
+	 * Construct an instance using the provided message serializer (for example, one with
+	 * {@link CompactMessageSerializer#registerType registered types}).
+	 * @param messageSerializer the message serializer.
+	 */
+	public CompactMessageRedisSerializer(CompactMessageSerializer messageSerializer) {
+		Assert.notNull(messageSerializer, "'messageSerializer' must not be null");
+		this.messageSerializer = messageSerializer;
+	}
+
+	@Override
+	public byte[] serialize(Object object) throws SerializationException {
+		if (!(object instanceof Message)) {
+			return this.jdkSerializer.serialize(object);
+		}
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			this.messageSerializer.serialize((Message<?>) object, out);
+			return out.toByteArray();
+		}
+		catch (IOException e) {
+			throw new SerializationException("Cannot serialize", e);
+		}
+	}
+
+	@Override
+	public Object deserialize(byte[] bytes) throws SerializationException {
+		if (!CompactMessageSerializer.isCompactFormat(bytes)) {
+			return this.jdkSerializer.deserialize(bytes);
+		}
+		try {
+			return this.messageSerializer.deserialize(new ByteArrayInputStream(bytes));
+		}
+		catch (IOException e) {
+			throw new SerializationException("Cannot deserialize", e);
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2013 the original author or authors
+ * Copyright 2007-2015 the original author or authors
  *
  *     Licensed under the Apache License, Version 2.0 (the "License");
  *     you may not use this file except in compliance with the License.
@@ -16,12 +16,18 @@
 
 package org.springframework.integration.redis.store;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.BoundListOperations;
 import org.springframework.data.redis.core.BoundValueOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.SerializationException;
@@ -33,6 +39,11 @@ import org.springframework.util.Assert;
 
 /**
  * Redis implementation of the key/value style {@link MessageStore} and {@link MessageGroupStore}
+ * <p>
+ * The ids of the messages in each group are held in a Redis {@code LIST}, so adding a
+ * message to a group is a constant number of operations, regardless of the size of
+ * the group. The groups are indexed by their creation time in a {@code ZSET}, so that
+ * {@link #expireMessageGroups(long)} only retrieves the groups that are due to expire.
  *
  * @author Oleg Zhurakousky
  * @author Gary Russell
@@ -42,7 +53,10 @@ public class RedisMessageStore extends AbstractKeyValueMessageStore {
 
 	private final RedisTemplate<Object, Object> redisTemplate;
 
+	private final StringRedisTemplate groupMembersTemplate;
+
 	public RedisMessageStore(RedisConnectionFactory connectionFactory) {
+		this.groupMembersTemplate = new StringRedisTemplate(connectionFactory);
 		this.redisTemplate = new RedisTemplate<Object, Object>();
 		this.redisTemplate.setConnectionFactory(connectionFactory);
 		this.redisTemplate.setKeySerializer(new StringRedisSerializer());
@@ -96,4 +110,68 @@ public class RedisMessageStore extends AbstractKeyValueMessageStore {
 		Set<Object> keys = redisTemplate.keys(keyPattern);
 		return keys;
 	}
+
+	@Override
+	protected void doAddToGroupMembers(String membersKey, UUID messageId) {
+		this.groupMembersTemplate.boundListOps(membersKey).rightPush(messageId.toString());
+	}
+
+	@Override
+	protected boolean doRemoveFromGroupMembers(String membersKey, UUID messageId) {
+		Long removed = this.groupMembersTemplate.boundListOps(membersKey).remove(0, messageId.toString());
+		return removed != null && removed > 0;
+	}
+
+	@Override
+	protected UUID doPollGroupMembers(String membersKey) {
+		String messageId = this.groupMembersTemplate.boundListOps(membersKey).leftPop();
+		return messageId != null ? UUID.fromString(messageId) : null;
+	}
+
+	@Override
+	protected UUID doPeekGroupMembers(String membersKey) {
+		String messageId = this.groupMembersTemplate.boundListOps(membersKey).index(0);
+		return messageId != null ? UUID.fromString(messageId) : null;
+	}
+
+	@Override
+	protected int doGetGroupMembersSize(String membersKey) {
+		Long size = this.groupMembersTemplate.boundListOps(membersKey).size();
+		return size != null ? size.intValue() : 0;
+	}
+
+	@Override
+	protected List<UUID> doGetGroupMembers(String membersKey) {
+		BoundListOperations<String, String> ops = this.groupMembersTemplate.boundListOps(membersKey);
+		List<String> members = ops.range(0, -1);
+		List<UUID> messageIds = new ArrayList<UUID>();
+		if (members != null) {
+			for (String messageId : members) {
+				messageIds.add(UUID.fromString(messageId));
+			}
+		}
+		return messageIds;
+	}
+
+	@Override
+	protected void doRemoveGroupMembers(String membersKey) {
+		this.groupMembersTemplate.delete(membersKey);
+	}
+
+	@Override
+	protected void doAddToExpiryIndex(Object groupId, long timestamp) {
+		this.redisTemplate.boundZSetOps(MESSAGE_GROUP_EXPIRY_INDEX_KEY).add(groupId, timestamp);
+	}
+
+	@Override
+	protected void doRemoveFromExpiryIndex(Object groupId) {
+		this.redisTemplate.boundZSetOps(MESSAGE_GROUP_EXPIRY_INDEX_KEY).remove(groupId);
+	}
+
+	@Override
+	protected Collection<?> doGetExpiryIndexRange(long threshold) {
+		Set<Object> groupIds = this.redisTemplate.boundZSetOps(MESSAGE_GROUP_EXPIRY_INDEX_KEY)
+				.rangeByScore(Double.NEGATIVE_INFINITY, threshold);
+		return groupIds != null ? groupIds : Collections.emptySet();
+	}
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2014 the original author or authors
+ * Copyright 2007-2015 the original author or authors
  *
  *     Licensed under the Apache License, Version 2.0 (the "License");
  *     you may not use this file except in compliance with the License.
@@ -66,6 +66,9 @@ public class RedisMessageGroupStoreTests extends RedisAvailableTests {
 		template.delete("MESSAGE_GROUP_1");
 		template.delete("MESSAGE_GROUP_2");
 		template.delete("MESSAGE_GROUP_3");
+		template.delete("GROUP_MEMBERS_1");
+		template.delete("GROUP_MEMBERS_2");
+		template.delete("GROUP_MEMBERS_3");
 	}
 
 	@Test
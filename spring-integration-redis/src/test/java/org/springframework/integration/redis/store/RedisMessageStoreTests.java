@@ -1,5 +1,5 @@
 /*
- * Copyright 2007-2013 the original author or authors
+ * Copyright 2007-2015 the original author or authors
  *
  *     Licensed under the Apache License, Version 2.0 (the "License");
  *     you may not use this file except in compliance with the License.
@@ -103,6 +103,26 @@ public class RedisMessageStoreTests extends RedisAvailableTests {
 		store.addMessage(objectMessage);
 	}
 
+	@Test
+	@RedisAvailable
+	public void testCompactSerializerReadsExistingMessages() {
+		RedisConnectionFactory jcf = this.getConnectionFactoryForTest();
+		RedisMessageStore store = new RedisMessageStore(jcf);
+		Message<String> existing = new GenericMessage<String>("existing");
+		store.addMessage(existing);
+		store.addMessageToGroup("group", existing);
+		store.setValueSerializer(new CompactMessageRedisSerializer());
+		Message<String> compact = new GenericMessage<String>("compact");
+		store.addMessage(compact);
+		store.addMessageToGroup("group", compact);
+		assertEquals(existing, store.getMessage(existing.getHeaders().getId()));
+		assertEquals(compact, store.getMessage(compact.getHeaders().getId()));
+		assertEquals(2, store.getMessageGroup("group").size());
+		store.removeMessageGroup("group");
+		store.removeMessage(existing.getHeaders().getId());
+		store.removeMessage(compact.getHeaders().getId());
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	@RedisAvailable